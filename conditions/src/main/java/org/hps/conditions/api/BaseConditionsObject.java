@@ -7,6 +7,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.text.SimpleDateFormat;
 
+import org.hps.conditions.database.ConditionsLoadMetrics;
 import org.hps.conditions.database.Field;
 
 /**
@@ -321,15 +322,22 @@ public abstract class BaseConditionsObject implements ConditionsObject {
         boolean selected = false;
         try {
             statement = this.connection.createStatement();
+            final long start = System.nanoTime();
             resultSet = statement.executeQuery(sql);
+            final long queried = System.nanoTime();
             selected = resultSet.next();
+            long bytes = 0;
             if (selected) {
                 int columnIndex = 1;
                 for (final String fieldName : this.tableMetaData.getFieldNames()) {
-                    this.setFieldValue(fieldName, resultSet.getObject(columnIndex));
+                    final Object value = resultSet.getObject(columnIndex);
+                    bytes += ConditionsLoadMetrics.estimateSize(value);
+                    this.setFieldValue(fieldName, value);
                     ++columnIndex;
                 }
             }
+            ConditionsLoadMetrics.getInstance().addQuery(this.tableMetaData.getTableName(), queried - start,
+                    System.nanoTime() - queried, selected ? 1 : 0, bytes);
         } finally {
             if (resultSet != null) {
                 resultSet.close();
@@ -1,15 +1,20 @@
 package org.hps.conditions.api;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -24,6 +29,7 @@ import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVPrinter;
 import org.apache.commons.csv.CSVRecord;
+import org.hps.conditions.database.ConditionsLoadMetrics;
 
 /**
  * Implementation of the {@link ConditionsObjectCollection} interface.
@@ -176,6 +182,31 @@ public class BaseConditionsObjectCollection<ObjectType extends ConditionsObject>
         this.objects.clear();
     }
 
+    /**
+     * Create the field values of an object which is read into this collection from the database, a CSV file or a
+     * snapshot.
+     * <p>
+     * Sub-classes may override this to store the field values somewhere else than in the object, for example in the
+     * columns of {@link ColumnarConditionsObjectCollection}.
+     *
+     * @return the field values or <code>null</code> to use those created by the object
+     */
+    protected FieldValues createFieldValues() {
+        return null;
+    }
+
+    /**
+     * Set the field values of a new object which is read into this collection.
+     *
+     * @param object the new object
+     */
+    private void initializeFieldValues(final ObjectType object) {
+        final FieldValues fieldValues = this.createFieldValues();
+        if (fieldValues != null) {
+            object.setFieldValues(fieldValues);
+        }
+    }
+
     /**
      * Return <code>true</code> if object is contained in this collection.
      *
@@ -430,7 +461,7 @@ public class BaseConditionsObjectCollection<ObjectType extends ConditionsObject>
             ConditionsObjectException {
 
         // Clear the objects from the collection.
-        this.objects.clear();
+        this.clear();
 
         final TableMetaData tableMetaData = this.getTableMetaData();
 
@@ -483,6 +514,7 @@ public class BaseConditionsObjectCollection<ObjectType extends ConditionsObject>
                 } catch (InstantiationException | IllegalAccessException e) {
                     throw new RuntimeException("Error creating conditions object.", e);
                 }
+                this.initializeFieldValues(object);
 
                 // Set the field values on the object.
                 for (final String header : headers) {
@@ -503,6 +535,95 @@ public class BaseConditionsObjectCollection<ObjectType extends ConditionsObject>
         }
     }
 
+    /**
+     * Read the objects of this collection from the binary format written by {@link #writeSnapshot(DataOutput)}.
+     * <p>
+     * The table meta data must be set, and the field names stored with the data must match those of the table.
+     *
+     * @param collectionId the collection ID of the objects
+     * @param in the input
+     * @throws IOException if there is an error reading the data or it does not match the table
+     */
+    public final void readSnapshot(final int collectionId, final DataInput in) throws IOException {
+        if (this.tableMetaData == null) {
+            throw new IllegalStateException("The table meta data is not set.");
+        }
+        final int nFields = in.readInt();
+        final List<String> fieldNames = new ArrayList<String>(nFields);
+        for (int i = 0; i < nFields; i++) {
+            fieldNames.add(in.readUTF());
+        }
+        if (!fieldNames.equals(new ArrayList<String>(this.tableMetaData.getFieldNames()))) {
+            throw new IOException("The fields " + fieldNames + " do not match the columns of the "
+                    + this.tableMetaData.getTableName() + " table.");
+        }
+        this.clear();
+        this.collectionId = collectionId;
+        final int nObjects = in.readInt();
+        for (int i = 0; i < nObjects; i++) {
+            try {
+                final ObjectType newObject = (ObjectType) this.tableMetaData.getObjectClass().newInstance();
+                this.initializeFieldValues(newObject);
+                newObject.setConnection(this.connection);
+                newObject.setTableMetaData(this.tableMetaData);
+                ((BaseConditionsObject) newObject).setRowId(in.readInt());
+                for (final String fieldName : fieldNames) {
+                    newObject.setFieldValue(fieldName, readValue(in));
+                }
+                this.add(newObject);
+            } catch (InstantiationException | IllegalAccessException | ConditionsObjectException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Read a field value written by {@link #writeValue(DataOutput, Object)}.
+     *
+     * @param in the input
+     * @return the value
+     * @throws IOException if there is an error reading the value
+     */
+    private static Object readValue(final DataInput in) throws IOException {
+        final int type = in.readByte();
+        switch (type) {
+            case 0:
+                return null;
+            case 1:
+                return in.readInt();
+            case 2:
+                return in.readLong();
+            case 3:
+                return in.readDouble();
+            case 4:
+                return in.readFloat();
+            case 5:
+                return in.readShort();
+            case 6:
+                return in.readByte();
+            case 7:
+                return in.readBoolean();
+            case 8: {
+                final byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+            case 9: {
+                final Timestamp timestamp = new Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                return timestamp;
+            }
+            case 10:
+                return new java.sql.Date(in.readLong());
+            case 11:
+                return new Date(in.readLong());
+            case 12:
+                return new BigDecimal(in.readUTF());
+            default:
+                throw new IOException("Unknown field value type " + type);
+        }
+    }
+
     /**
      * Select objects into this collection by their collection ID in the database.
      *
@@ -523,17 +644,25 @@ public class BaseConditionsObjectCollection<ObjectType extends ConditionsObject>
             sb.setLength(sb.length() - 2);
             sb.append(" FROM " + this.tableMetaData.getTableName() + " WHERE collection_id = " + collectionId);
             final String sql = sb.toString();
+            final long start = System.nanoTime();
             final ResultSet resultSet = statement.executeQuery(sql);
+            final long queried = System.nanoTime();
+            int rows = 0;
+            long bytes = 0;
             while (resultSet.next()) {
                 try {
                     final ObjectType newObject = (ObjectType) this.tableMetaData.getObjectClass().newInstance();
+                    this.initializeFieldValues(newObject);
                     newObject.setConnection(this.connection);
                     newObject.setTableMetaData(this.tableMetaData);
                     final int id = resultSet.getInt(1);
                     ((BaseConditionsObject) newObject).setRowId(id);
+                    bytes += Integer.BYTES;
                     int column = 2;
                     for (final String fieldName : this.tableMetaData.getFieldNames()) {
-                        newObject.setFieldValue(fieldName, resultSet.getObject(column));
+                        final Object value = resultSet.getObject(column);
+                        bytes += ConditionsLoadMetrics.estimateSize(value);
+                        newObject.setFieldValue(fieldName, value);
                         ++column;
                     }
                     try {
@@ -541,11 +670,14 @@ public class BaseConditionsObjectCollection<ObjectType extends ConditionsObject>
                     } catch (final ConditionsObjectException e) {
                         throw new DatabaseObjectException("Error adding object to collection.", e, newObject);
                     }
+                    ++rows;
                     selected = true;
                 } catch (InstantiationException | IllegalAccessException e) {
                     throw new RuntimeException(e);
                 }
             }
+            ConditionsLoadMetrics.getInstance().addQuery(this.tableMetaData.getTableName(), queried - start,
+                    System.nanoTime() - queried, rows, bytes);
         } finally {
             if (statement != null) {
                 statement.close();
@@ -632,7 +764,7 @@ public class BaseConditionsObjectCollection<ObjectType extends ConditionsObject>
      * @param comparator the comparison operator to use for sorting
      */
     @Override
-    public final void sort(final Comparator<ObjectType> comparator) {
+    public void sort(final Comparator<ObjectType> comparator) {
         final List<ObjectType> list = new ArrayList<ObjectType>(this.objects);
         Collections.sort(list, comparator);
         this.objects.clear();
@@ -733,4 +865,82 @@ public class BaseConditionsObjectCollection<ObjectType extends ConditionsObject>
             }
         }
     }
+
+    /**
+     * Write the objects of this collection in a compact binary format which can be read back with
+     * {@link #readSnapshot(int, DataInput)}.
+     * <p>
+     * The field names of the table are written first, followed by the row ID and field values of each object.
+     *
+     * @param out the output
+     * @throws IOException if there is an error writing the data or a field value has an unsupported type
+     */
+    public final void writeSnapshot(final DataOutput out) throws IOException {
+        final Set<String> fieldNames = this.getTableMetaData().getFieldNames();
+        out.writeInt(fieldNames.size());
+        for (final String fieldName : fieldNames) {
+            out.writeUTF(fieldName);
+        }
+        out.writeInt(this.objects.size());
+        for (final ConditionsObject conditionsObject : this.objects) {
+            out.writeInt(conditionsObject.getRowId());
+            for (final String fieldName : fieldNames) {
+                writeValue(out, conditionsObject.getFieldValue(fieldName));
+            }
+        }
+    }
+
+    /**
+     * Write a field value with a type code so that it is read back with the same class.
+     *
+     * @param out the output
+     * @param value the value
+     * @throws IOException if there is an error writing the value or it has an unsupported type
+     */
+    private static void writeValue(final DataOutput out, final Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(0);
+        } else if (value instanceof Integer) {
+            out.writeByte(1);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(2);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(3);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(4);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Short) {
+            out.writeByte(5);
+            out.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(6);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(7);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof String) {
+            final byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+            out.writeByte(8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } else if (value instanceof Timestamp) {
+            out.writeByte(9);
+            out.writeLong(((Timestamp) value).getTime());
+            out.writeInt(((Timestamp) value).getNanos());
+        } else if (value.getClass() == java.sql.Date.class) {
+            out.writeByte(10);
+            out.writeLong(((Date) value).getTime());
+        } else if (value.getClass() == Date.class) {
+            out.writeByte(11);
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(12);
+            out.writeUTF(value.toString());
+        } else {
+            throw new IOException("Field values of type " + value.getClass().getName() + " cannot be written.");
+        }
+    }
 }
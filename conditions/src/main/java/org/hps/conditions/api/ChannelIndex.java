@@ -0,0 +1,117 @@
+package org.hps.conditions.api;
+
+import java.util.Arrays;
+
+/**
+ * Immutable map from encoded 64-bit channel identifiers, such as geometric cell IDs or DAQ IDs, to dense channel
+ * indices.
+ * <p>
+ * The identifiers are kept in an open addressing hash table of primitive longs, so a lookup does not box the
+ * identifier or follow any object references.
+ */
+public final class ChannelIndex {
+
+    /**
+     * Value of an empty slot in the table of indices.
+     */
+    private static final int EMPTY = -1;
+
+    /**
+     * The identifiers of the slots.
+     */
+    private final long[] keys;
+
+    /**
+     * The channel indices of the slots or {@link #EMPTY}.
+     */
+    private final int[] indices;
+
+    /**
+     * Mask of the slot number, which is the table size minus one.
+     */
+    private final int mask;
+
+    /**
+     * The number of identifiers.
+     */
+    private final int size;
+
+    /**
+     * Create an index from pairs of identifiers and channel indices.
+     * <p>
+     * The table size is a power of two which is at least four times the number of identifiers, which keeps the probe
+     * sequences short.
+     *
+     * @param ids the identifiers
+     * @param channelIndices the channel index of each identifier
+     * @throws IllegalArgumentException if an identifier occurs more than once
+     */
+    public ChannelIndex(final long[] ids, final int[] channelIndices) {
+        if (ids.length != channelIndices.length) {
+            throw new IllegalArgumentException("There are " + ids.length + " identifiers and "
+                    + channelIndices.length + " channel indices.");
+        }
+        int capacity = 4;
+        while (capacity < 4 * ids.length) {
+            capacity <<= 1;
+        }
+        this.keys = new long[capacity];
+        this.indices = new int[capacity];
+        Arrays.fill(this.indices, EMPTY);
+        this.mask = capacity - 1;
+        for (int i = 0; i < ids.length; i++) {
+            if (channelIndices[i] < 0) {
+                throw new IllegalArgumentException("Invalid channel index " + channelIndices[i]);
+            }
+            int slot = this.slot(ids[i]);
+            while (this.indices[slot] != EMPTY) {
+                if (this.keys[slot] == ids[i]) {
+                    throw new IllegalArgumentException("Duplicate channel identifier " + ids[i]);
+                }
+                slot = (slot + 1) & this.mask;
+            }
+            this.keys[slot] = ids[i];
+            this.indices[slot] = channelIndices[i];
+        }
+        this.size = ids.length;
+    }
+
+    /**
+     * Find the channel index of an identifier.
+     *
+     * @param id the identifier
+     * @return the channel index or -1 if the identifier is not in the index
+     */
+    public int find(final long id) {
+        int slot = this.slot(id);
+        int index;
+        while ((index = this.indices[slot]) != EMPTY) {
+            if (this.keys[slot] == id) {
+                return index;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Get the number of identifiers in the index.
+     *
+     * @return the number of identifiers
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Get the first slot of an identifier by mixing its bits, since cell IDs differ mostly in their high bits.
+     *
+     * @param id the identifier
+     * @return the slot
+     */
+    private int slot(final long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return (int) h & this.mask;
+    }
+}
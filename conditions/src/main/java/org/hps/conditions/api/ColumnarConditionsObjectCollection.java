@@ -0,0 +1,76 @@
+package org.hps.conditions.api;
+
+import java.sql.Connection;
+
+/**
+ * Conditions object collection which stores the field values of its objects in columns of primitive arrays.
+ * <p>
+ * The objects which are read into this collection from the database, a CSV file or a snapshot are flyweight views of
+ * a row of the {@link ConditionsColumns} of the collection instead of holding a map of boxed values, which reduces the
+ * heap used by tables with many rows such as the SVT channel constants. The objects are used in the same way as
+ * those of {@link BaseConditionsObjectCollection}, and objects which are created separately and added to the
+ * collection keep their own field values.
+ *
+ * @param <ObjectType> the type of the object contained in this collection
+ */
+public class ColumnarConditionsObjectCollection<ObjectType extends ConditionsObject> extends
+        BaseConditionsObjectCollection<ObjectType> {
+
+    /**
+     * The columns of the objects read into this collection, which are created when the first object is read.
+     */
+    private ConditionsColumns columns = null;
+
+    /**
+     * No argument constructor; usable by sub-classes.
+     */
+    protected ColumnarConditionsObjectCollection() {
+    }
+
+    /**
+     * Constructor with connection and meta data.
+     *
+     * @param connection the database connection
+     * @param tableMetaData the table meta data
+     */
+    public ColumnarConditionsObjectCollection(final Connection connection, final TableMetaData tableMetaData) {
+        super(connection, tableMetaData);
+    }
+
+    /**
+     * Clear the objects and the columns of this collection.
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        this.columns = null;
+    }
+
+    /**
+     * Add a row to the columns for a new object.
+     *
+     * @return the field values of the new row
+     */
+    @Override
+    protected FieldValues createFieldValues() {
+        if (this.columns == null) {
+            if (this.getTableMetaData() == null) {
+                throw new IllegalStateException("The table meta data is not set.");
+            }
+            this.columns = new ConditionsColumns(this.getTableMetaData());
+        }
+        return this.columns.addRow();
+    }
+
+    /**
+     * Get the columns of the objects which were read into this collection.
+     * <p>
+     * The rows are in the order the objects were read, which is the order of the collection unless it was sorted in
+     * place.
+     *
+     * @return the columns or <code>null</code> if no objects were read
+     */
+    public final ConditionsColumns getColumns() {
+        return this.columns;
+    }
+}
@@ -0,0 +1,456 @@
+package org.hps.conditions.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Column-oriented storage of the field values of the objects in a conditions collection.
+ * <p>
+ * There is one column per field of the {@link TableMetaData}, which stores the values of every row in a primitive
+ * array if the field type is a number, so a table of many rows does not create a boxed value and a map entry for each
+ * field of each object. Each object gets a lightweight {@link FieldValues} view of its row from {@link #addRow()}.
+ * <p>
+ * If a value is set which does not have the type of its column, for example a <code>Float</code> in a column of
+ * doubles, the column is converted to a column of objects so the values are always returned with the same type they
+ * were set with.
+ */
+public final class ConditionsColumns {
+
+    /**
+     * The initial number of rows allocated for each column.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * A column of values.
+     */
+    private abstract static class Column {
+
+        /**
+         * The rows which have a <code>null</code> value.
+         */
+        final BitSet nulls = new BitSet();
+
+        /**
+         * Get the value of a row.
+         */
+        abstract Object get(int row);
+
+        /**
+         * Set the non-null value of a row.
+         *
+         * @return <code>false</code> if the value does not have the type of the column
+         */
+        abstract boolean setValue(int row, Object value);
+
+        /**
+         * Grow the column to a number of rows.
+         */
+        abstract void resize(int capacity);
+
+        final boolean set(final int row, final Object value) {
+            if (value == null) {
+                this.nulls.set(row);
+                return true;
+            }
+            if (this.setValue(row, value)) {
+                this.nulls.clear(row);
+                return true;
+            }
+            return false;
+        }
+
+        final boolean isNull(final int row) {
+            return this.nulls.get(row);
+        }
+    }
+
+    /**
+     * A column of <code>Double</code> values.
+     */
+    private static final class DoubleColumn extends Column {
+
+        double[] values = new double[INITIAL_CAPACITY];
+
+        @Override
+        Object get(final int row) {
+            return this.isNull(row) ? null : Double.valueOf(this.values[row]);
+        }
+
+        @Override
+        boolean setValue(final int row, final Object value) {
+            if (value instanceof Double) {
+                this.values[row] = (Double) value;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        void resize(final int capacity) {
+            this.values = Arrays.copyOf(this.values, capacity);
+        }
+    }
+
+    /**
+     * A column of <code>Float</code> values.
+     */
+    private static final class FloatColumn extends Column {
+
+        float[] values = new float[INITIAL_CAPACITY];
+
+        @Override
+        Object get(final int row) {
+            return this.isNull(row) ? null : Float.valueOf(this.values[row]);
+        }
+
+        @Override
+        boolean setValue(final int row, final Object value) {
+            if (value instanceof Float) {
+                this.values[row] = (Float) value;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        void resize(final int capacity) {
+            this.values = Arrays.copyOf(this.values, capacity);
+        }
+    }
+
+    /**
+     * A column of <code>Integer</code> values.
+     */
+    private static final class IntColumn extends Column {
+
+        int[] values = new int[INITIAL_CAPACITY];
+
+        @Override
+        Object get(final int row) {
+            return this.isNull(row) ? null : Integer.valueOf(this.values[row]);
+        }
+
+        @Override
+        boolean setValue(final int row, final Object value) {
+            if (value instanceof Integer) {
+                this.values[row] = (Integer) value;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        void resize(final int capacity) {
+            this.values = Arrays.copyOf(this.values, capacity);
+        }
+    }
+
+    /**
+     * A column of <code>Long</code> values.
+     */
+    private static final class LongColumn extends Column {
+
+        long[] values = new long[INITIAL_CAPACITY];
+
+        @Override
+        Object get(final int row) {
+            return this.isNull(row) ? null : Long.valueOf(this.values[row]);
+        }
+
+        @Override
+        boolean setValue(final int row, final Object value) {
+            if (value instanceof Long) {
+                this.values[row] = (Long) value;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        void resize(final int capacity) {
+            this.values = Arrays.copyOf(this.values, capacity);
+        }
+    }
+
+    /**
+     * A column of values of any type.
+     */
+    private static final class ObjectColumn extends Column {
+
+        Object[] values;
+
+        ObjectColumn(final int capacity) {
+            this.values = new Object[capacity];
+        }
+
+        @Override
+        Object get(final int row) {
+            return this.values[row];
+        }
+
+        @Override
+        boolean setValue(final int row, final Object value) {
+            this.values[row] = value;
+            return true;
+        }
+
+        @Override
+        void resize(final int capacity) {
+            this.values = Arrays.copyOf(this.values, capacity);
+        }
+    }
+
+    /**
+     * The field values of one row.
+     */
+    private final class Row implements FieldValues {
+
+        private final int row;
+
+        Row(final int row) {
+            this.row = row;
+        }
+
+        @Override
+        public Set<String> getFieldNames() {
+            return Collections.unmodifiableSet(ConditionsColumns.this.columns.keySet());
+        }
+
+        @Override
+        public <T> T getValue(final Class<T> type, final String name) {
+            return type.cast(this.getValue(name));
+        }
+
+        @Override
+        public Object getValue(final String name) {
+            final Column column = ConditionsColumns.this.columns.get(name);
+            return column != null ? column.get(this.row) : null;
+        }
+
+        @Override
+        public Collection<Object> getValues() {
+            final List<Object> values = new ArrayList<Object>(ConditionsColumns.this.columns.size());
+            for (final Column column : ConditionsColumns.this.columns.values()) {
+                values.add(column.get(this.row));
+            }
+            return values;
+        }
+
+        @Override
+        public boolean hasField(final String name) {
+            return ConditionsColumns.this.columns.containsKey(name);
+        }
+
+        @Override
+        public boolean isNonNull(final String name) {
+            return !this.isNull(name);
+        }
+
+        @Override
+        public boolean isNull(final String name) {
+            final Column column = ConditionsColumns.this.columns.get(name);
+            return column == null || column.isNull(this.row);
+        }
+
+        @Override
+        public void setValue(final String name, final Object value) {
+            ConditionsColumns.this.set(this.row, name, value);
+        }
+
+        @Override
+        public int size() {
+            return ConditionsColumns.this.columns.size();
+        }
+    }
+
+    /**
+     * Create an empty column for a field type.
+     *
+     * @param type the field type
+     * @param capacity the number of rows to allocate
+     * @return the column
+     */
+    private static Column createColumn(final Class<?> type, final int capacity) {
+        final Column column;
+        if (Double.class.equals(type) || double.class.equals(type)) {
+            column = new DoubleColumn();
+        } else if (Integer.class.equals(type) || int.class.equals(type)) {
+            column = new IntColumn();
+        } else if (Long.class.equals(type) || long.class.equals(type)) {
+            column = new LongColumn();
+        } else if (Float.class.equals(type) || float.class.equals(type)) {
+            column = new FloatColumn();
+        } else {
+            return new ObjectColumn(capacity);
+        }
+        column.resize(capacity);
+        return column;
+    }
+
+    /**
+     * The columns by field name.
+     */
+    private final Map<String, Column> columns = new LinkedHashMap<String, Column>();
+
+    /**
+     * The number of rows allocated in each column.
+     */
+    private int capacity = INITIAL_CAPACITY;
+
+    /**
+     * The number of rows.
+     */
+    private int size = 0;
+
+    /**
+     * Create the columns of a table.
+     *
+     * @param tableMetaData the table meta data
+     */
+    public ConditionsColumns(final TableMetaData tableMetaData) {
+        for (final String fieldName : tableMetaData.getFieldNames()) {
+            this.columns.put(fieldName, createColumn(tableMetaData.getFieldType(fieldName), this.capacity));
+        }
+    }
+
+    /**
+     * Add a row with <code>null</code> values.
+     *
+     * @return the field values of the new row
+     */
+    public FieldValues addRow() {
+        if (this.size == this.capacity) {
+            this.capacity *= 2;
+            for (final Column column : this.columns.values()) {
+                column.resize(this.capacity);
+            }
+        }
+        final int row = this.size++;
+        for (final Column column : this.columns.values()) {
+            column.nulls.set(row);
+        }
+        return new Row(row);
+    }
+
+    /**
+     * Get the field names of the columns.
+     *
+     * @return the field names
+     */
+    public Set<String> getFieldNames() {
+        return Collections.unmodifiableSet(this.columns.keySet());
+    }
+
+    /**
+     * Get the number of rows.
+     *
+     * @return the number of rows
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Get a value without boxing it.
+     *
+     * @param row the row
+     * @param name the field name
+     * @return the value or <code>Double.NaN</code> if it is <code>null</code>
+     * @throws IllegalArgumentException if the field is not a column of numbers
+     */
+    public double getDouble(final int row, final String name) {
+        final Column column = this.getColumn(row, name);
+        if (column.isNull(row)) {
+            return Double.NaN;
+        } else if (column instanceof DoubleColumn) {
+            return ((DoubleColumn) column).values[row];
+        } else if (column instanceof FloatColumn) {
+            return ((FloatColumn) column).values[row];
+        } else if (column instanceof IntColumn) {
+            return ((IntColumn) column).values[row];
+        } else if (column instanceof LongColumn) {
+            return ((LongColumn) column).values[row];
+        }
+        final Object value = column.get(row);
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        throw new IllegalArgumentException("The field " + name + " is not a number.");
+    }
+
+    /**
+     * Get an integer value without boxing it.
+     *
+     * @param row the row
+     * @param name the field name
+     * @return the value
+     * @throws IllegalArgumentException if the field is not a column of integers or the value is <code>null</code>
+     */
+    public int getInt(final int row, final String name) {
+        final Column column = this.getColumn(row, name);
+        if (column.isNull(row)) {
+            throw new IllegalArgumentException("The field " + name + " is null in row " + row + ".");
+        } else if (column instanceof IntColumn) {
+            return ((IntColumn) column).values[row];
+        }
+        final Object value = column.get(row);
+        if (value instanceof Integer) {
+            return (Integer) value;
+        }
+        throw new IllegalArgumentException("The field " + name + " is not an integer.");
+    }
+
+    /**
+     * Check if a value is <code>null</code>.
+     *
+     * @param row the row
+     * @param name the field name
+     * @return <code>true</code> if the value is <code>null</code>
+     */
+    public boolean isNull(final int row, final String name) {
+        return this.getColumn(row, name).isNull(row);
+    }
+
+    /**
+     * Get the column of a field and check the row number.
+     */
+    private Column getColumn(final int row, final String name) {
+        if (row < 0 || row >= this.size) {
+            throw new IndexOutOfBoundsException("Row " + row + " is out of range.");
+        }
+        final Column column = this.columns.get(name);
+        if (column == null) {
+            throw new IllegalArgumentException("There is no field " + name + ".");
+        }
+        return column;
+    }
+
+    /**
+     * Set a value, adding a column for a new field or converting the column to objects if the value does not have
+     * the type of the column.
+     */
+    private void set(final int row, final String name, final Object value) {
+        Column column = this.columns.get(name);
+        if (column == null) {
+            column = new ObjectColumn(this.capacity);
+            column.nulls.set(0, this.size);
+            this.columns.put(name, column);
+        }
+        if (!column.set(row, value)) {
+            final ObjectColumn objects = new ObjectColumn(this.capacity);
+            for (int i = 0; i < this.size; i++) {
+                objects.set(i, column.get(i));
+            }
+            objects.set(row, value);
+            this.columns.put(name, objects);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import java.text.SimpleDateFormat;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.hps.conditions.database.ConditionsRecordConverter;
@@ -117,6 +118,12 @@ public final class ConditionsRecord extends BaseConditionsObject {
             }
         }
 
+        /**
+         * The index of the records by key and run range, which is built when it is first needed and discarded when
+         * the records change.
+         */
+        private ConditionsRecordIndex index = null;
+
         /**
          * Add a <code>ConditionsRecord</code> to the collection.
          *
@@ -133,9 +140,55 @@ public final class ConditionsRecord extends BaseConditionsObject {
             if (!added) {
                 throw new RuntimeException("Failed to add object.");
             }
+            this.index = null;
             return added;
         }
 
+        /**
+         * Add all records from a collection.
+         *
+         * @param collection the collection with records to add
+         */
+        @Override
+        public void addAll(final ConditionsObjectCollection<ConditionsRecord> collection) {
+            super.addAll(collection);
+            this.index = null;
+        }
+
+        /**
+         * Clear the records from this collection.
+         */
+        @Override
+        public void clear() {
+            super.clear();
+            this.index = null;
+        }
+
+        /**
+         * Sort the records in place.
+         *
+         * @param comparator the comparison operator to use for sorting
+         */
+        @Override
+        public void sort(final Comparator<ConditionsRecord> comparator) {
+            super.sort(comparator);
+            this.index = null;
+        }
+
+        /**
+         * Get the index of the records by key and run range.
+         * <p>
+         * The index is kept until the records are added to, cleared or sorted through this collection.
+         *
+         * @return the index of the records
+         */
+        public final ConditionsRecordIndex getIndex() {
+            if (this.index == null) {
+                this.index = new ConditionsRecordIndex(this);
+            }
+            return this.index;
+        }
+
         /**
          * Find a sub-set of the records matching the key name.
          * <p>
@@ -144,14 +197,33 @@ public final class ConditionsRecord extends BaseConditionsObject {
          * @param key the key to find
          */
         public ConditionsRecordCollection findByKey(final String key) {
+            return toCollection(this.getIndex().findByKey(key));
+        }
+
+        /**
+         * Find a sub-set of the records matching the key name which are valid for a run.
+         *
+         * @param key the key to find
+         * @param run the run number
+         * @return the matching records sorted by run start
+         */
+        public ConditionsRecordCollection findByKey(final String key, final int run) {
+            return toCollection(this.getIndex().findByKey(key, run));
+        }
+
+        /**
+         * Create a new collection from a list of records.
+         *
+         * @param records the records
+         * @return the new collection
+         */
+        private static ConditionsRecordCollection toCollection(final List<ConditionsRecord> records) {
             final ConditionsRecordCollection collection = new ConditionsRecordCollection();
-            for (final ConditionsRecord record : this) {
-                if (record.getName().equals(key)) {
-                    try {
-                        collection.add(record);
-                    } catch (final ConditionsObjectException e) {
-                        throw new RuntimeException("Error adding record to new collection.", e);
-                    }
+            for (final ConditionsRecord record : records) {
+                try {
+                    collection.add(record);
+                } catch (final ConditionsObjectException e) {
+                    throw new RuntimeException("Error adding record to new collection.", e);
                 }
             }
             return collection;
@@ -163,11 +235,7 @@ public final class ConditionsRecord extends BaseConditionsObject {
          * @return the set of unique conditions keys
          */
         public final Set<String> getConditionsKeys() {
-            final Set<String> conditionsKeys = new HashSet<String>();
-            for (final ConditionsRecord record : this) {
-                conditionsKeys.add(record.getName());
-            }
-            return conditionsKeys;
+            return new HashSet<String>(this.getIndex().getConditionsKeys());
         }
 
         /**
@@ -241,24 +309,19 @@ public final class ConditionsRecord extends BaseConditionsObject {
          * @return the unique conditions record or <code>null</code> if does not exist
          */
         public ConditionsRecord findUniqueRecord(String key, MultipleCollectionsAction action) {
-            ConditionsRecord record = null;
-            ConditionsRecordCollection keyRecords = this.findByKey(key);
-            if (keyRecords.size() > 0) {
-                if (keyRecords.size() == 1) {
-                    record = keyRecords.get(0);
-                } else {
-                    if (action.equals(MultipleCollectionsAction.LAST_UPDATED)) {
-                        record = keyRecords.sortedByUpdated().get(keyRecords.size() - 1);
-                    } else if (action.equals(MultipleCollectionsAction.LAST_CREATED)) {
-                        record = keyRecords.sortedByCreated().get(keyRecords.size() - 1);
-                    } else if (action.equals(MultipleCollectionsAction.LATEST_RUN_START)) {
-                        record = keyRecords.sortedByRunStart().get(keyRecords.size() - 1);
-                    } else if (action.equals(MultipleCollectionsAction.ERROR)) {
-                        throw new RuntimeException("Multiple ConditionsRecord object found for conditions key " + key + ".");
-                    }
-                }
-            }
-            return record;
+            return this.getIndex().findUniqueRecord(key, action);
+        }
+
+        /**
+         * Find a unique record which is valid for a run using the selected action for disambiguating conditions with
+         * the same key.
+         * @param key the name of the key
+         * @param run the run number
+         * @param action the disambiguation action
+         * @return the unique conditions record or <code>null</code> if does not exist
+         */
+        public ConditionsRecord findUniqueRecord(String key, int run, MultipleCollectionsAction action) {
+            return this.getIndex().findUniqueRecord(key, run, action);
         }
     }
 
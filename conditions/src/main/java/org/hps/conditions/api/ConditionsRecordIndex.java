@@ -0,0 +1,325 @@
+package org.hps.conditions.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hps.conditions.database.MultipleCollectionsAction;
+
+/**
+ * Immutable index of conditions records by their key and run validity range.
+ * <p>
+ * The records of each key are stored in an implicit interval tree, which is an array sorted by run start where each
+ * element is the root of the sub-tree of the elements around it and stores the largest run end of that sub-tree. The
+ * records which are valid for a run are then found in logarithmic time instead of by scanning every record.
+ * <p>
+ * The order of the records of each key for every {@link MultipleCollectionsAction} is computed when the index is
+ * built, so a unique record is picked without sorting. Records which compare equal are ordered as in the collection
+ * the index was built from, which gives the same record as taking the last element of
+ * {@link ConditionsRecord.ConditionsRecordCollection#sortedByUpdated()} and the other sorting methods.
+ */
+public final class ConditionsRecordIndex {
+
+    /**
+     * The index of the records of one key.
+     */
+    private static final class KeyIndex {
+
+        /**
+         * The records in the order of the collection.
+         */
+        private final List<ConditionsRecord> records;
+
+        /**
+         * The records sorted by run start.
+         */
+        private final ConditionsRecord[] byRunStart;
+
+        /**
+         * The run starts of the sorted records.
+         */
+        private final int[] runStart;
+
+        /**
+         * The run ends of the sorted records.
+         */
+        private final int[] runEnd;
+
+        /**
+         * The largest run end of the sub-tree rooted at each sorted record.
+         */
+        private final int[] maxRunEnd;
+
+        /**
+         * The rank of each sorted record in the order of each action, with the preferred record having the highest
+         * rank.
+         */
+        private final Map<MultipleCollectionsAction, int[]> ranks = new EnumMap<MultipleCollectionsAction, int[]>(
+                MultipleCollectionsAction.class);
+
+        /**
+         * The preferred record of all the records for each action.
+         */
+        private final Map<MultipleCollectionsAction, ConditionsRecord> preferred =
+                new EnumMap<MultipleCollectionsAction, ConditionsRecord>(MultipleCollectionsAction.class);
+
+        KeyIndex(final List<ConditionsRecord> records) {
+            this.records = Collections.unmodifiableList(records);
+            final int n = records.size();
+
+            final List<ConditionsRecord> sorted = new ArrayList<ConditionsRecord>(records);
+            Collections.sort(sorted, RUN_START);
+            this.byRunStart = sorted.toArray(new ConditionsRecord[n]);
+            this.runStart = new int[n];
+            this.runEnd = new int[n];
+            this.maxRunEnd = new int[n];
+            final Map<ConditionsRecord, Integer> positions = new IdentityHashMap<ConditionsRecord, Integer>();
+            for (int i = 0; i < n; i++) {
+                this.runStart[i] = this.byRunStart[i].getRunStart();
+                this.runEnd[i] = this.byRunStart[i].getRunEnd();
+                positions.put(this.byRunStart[i], i);
+            }
+            this.buildTree(0, n);
+
+            for (final MultipleCollectionsAction action : MultipleCollectionsAction.values()) {
+                final Comparator<ConditionsRecord> comparator = comparator(action);
+                if (comparator == null) {
+                    continue;
+                }
+                final List<ConditionsRecord> ordered = new ArrayList<ConditionsRecord>(records);
+                Collections.sort(ordered, comparator);
+                final int[] rank = new int[n];
+                for (int i = 0; i < n; i++) {
+                    rank[positions.get(ordered.get(i))] = i;
+                }
+                this.ranks.put(action, rank);
+                if (n > 0) {
+                    this.preferred.put(action, ordered.get(n - 1));
+                }
+            }
+        }
+
+        /**
+         * Compute the largest run end of the sub-tree of the sorted records from <code>lo</code> (inclusive) to
+         * <code>hi</code> (exclusive), whose root is the middle record.
+         *
+         * @return the largest run end of the sub-tree or <code>Integer.MIN_VALUE</code> if it is empty
+         */
+        private int buildTree(final int lo, final int hi) {
+            if (lo >= hi) {
+                return Integer.MIN_VALUE;
+            }
+            final int mid = (lo + hi) >>> 1;
+            final int max = Math.max(this.runEnd[mid],
+                    Math.max(this.buildTree(lo, mid), this.buildTree(mid + 1, hi)));
+            this.maxRunEnd[mid] = max;
+            return max;
+        }
+
+        /**
+         * Add the positions of the records in a sub-tree which are valid for a run.
+         */
+        private void findPositions(final int lo, final int hi, final int run, final List<Integer> found) {
+            if (lo >= hi) {
+                return;
+            }
+            final int mid = (lo + hi) >>> 1;
+            if (this.maxRunEnd[mid] < run) {
+                return;
+            }
+            this.findPositions(lo, mid, run, found);
+            if (this.runStart[mid] <= run) {
+                if (this.runEnd[mid] >= run) {
+                    found.add(mid);
+                }
+                this.findPositions(mid + 1, hi, run, found);
+            }
+        }
+
+        /**
+         * Find the positions of the records which are valid for a run in order of run start.
+         */
+        List<Integer> findPositions(final int run) {
+            final List<Integer> found = new ArrayList<Integer>();
+            this.findPositions(0, this.byRunStart.length, run, found);
+            return found;
+        }
+    }
+
+    /**
+     * Orders records by run start.
+     */
+    private static final Comparator<ConditionsRecord> RUN_START = new Comparator<ConditionsRecord>() {
+        @Override
+        public int compare(final ConditionsRecord c1, final ConditionsRecord c2) {
+            return Integer.compare(c1.getRunStart(), c2.getRunStart());
+        }
+    };
+
+    /**
+     * Orders records by creation date.
+     */
+    private static final Comparator<ConditionsRecord> CREATED = new Comparator<ConditionsRecord>() {
+        @Override
+        public int compare(final ConditionsRecord c1, final ConditionsRecord c2) {
+            return c1.getCreated().compareTo(c2.getCreated());
+        }
+    };
+
+    /**
+     * Orders records by updated date.
+     */
+    private static final Comparator<ConditionsRecord> UPDATED = new Comparator<ConditionsRecord>() {
+        @Override
+        public int compare(final ConditionsRecord c1, final ConditionsRecord c2) {
+            return c1.getUpdated().compareTo(c2.getUpdated());
+        }
+    };
+
+    /**
+     * Get the order of records used by an action.
+     *
+     * @param action the action
+     * @return the order where the preferred record is last or <code>null</code> if the action does not pick a record
+     */
+    private static Comparator<ConditionsRecord> comparator(final MultipleCollectionsAction action) {
+        switch (action) {
+            case LAST_CREATED:
+                return CREATED;
+            case LAST_UPDATED:
+                return UPDATED;
+            case LATEST_RUN_START:
+                return RUN_START;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * The index of each key.
+     */
+    private final Map<String, KeyIndex> keys = new LinkedHashMap<String, KeyIndex>();
+
+    /**
+     * Build an index of conditions records.
+     *
+     * @param records the records to index
+     */
+    public ConditionsRecordIndex(final Iterable<ConditionsRecord> records) {
+        final Map<String, List<ConditionsRecord>> recordsByKey = new LinkedHashMap<String, List<ConditionsRecord>>();
+        for (final ConditionsRecord record : records) {
+            List<ConditionsRecord> keyRecords = recordsByKey.get(record.getName());
+            if (keyRecords == null) {
+                keyRecords = new ArrayList<ConditionsRecord>();
+                recordsByKey.put(record.getName(), keyRecords);
+            }
+            keyRecords.add(record);
+        }
+        for (final Map.Entry<String, List<ConditionsRecord>> entry : recordsByKey.entrySet()) {
+            this.keys.put(entry.getKey(), new KeyIndex(entry.getValue()));
+        }
+    }
+
+    /**
+     * Get the conditions keys of the records.
+     *
+     * @return the conditions keys
+     */
+    public Set<String> getConditionsKeys() {
+        return Collections.unmodifiableSet(this.keys.keySet());
+    }
+
+    /**
+     * Get the records with a key.
+     *
+     * @param key the conditions key
+     * @return the records in the order of the indexed collection, which is empty if there are none
+     */
+    public List<ConditionsRecord> findByKey(final String key) {
+        final KeyIndex keyIndex = this.keys.get(key);
+        return keyIndex != null ? keyIndex.records : Collections.<ConditionsRecord> emptyList();
+    }
+
+    /**
+     * Get the records with a key which are valid for a run.
+     *
+     * @param key the conditions key
+     * @param run the run number
+     * @return the records sorted by run start, which is empty if there are none
+     */
+    public List<ConditionsRecord> findByKey(final String key, final int run) {
+        final KeyIndex keyIndex = this.keys.get(key);
+        if (keyIndex == null) {
+            return Collections.<ConditionsRecord> emptyList();
+        }
+        final List<Integer> positions = keyIndex.findPositions(run);
+        final List<ConditionsRecord> found = new ArrayList<ConditionsRecord>(positions.size());
+        for (final int position : positions) {
+            found.add(keyIndex.byRunStart[position]);
+        }
+        return found;
+    }
+
+    /**
+     * Find the unique record of a key using an action to pick one of several records.
+     *
+     * @param key the conditions key
+     * @param action the disambiguation action
+     * @return the unique record or <code>null</code> if there are no records with the key
+     * @throws RuntimeException if there are several records and the action is {@link MultipleCollectionsAction#ERROR}
+     */
+    public ConditionsRecord findUniqueRecord(final String key, final MultipleCollectionsAction action) {
+        final KeyIndex keyIndex = this.keys.get(key);
+        if (keyIndex == null) {
+            return null;
+        }
+        if (keyIndex.records.size() == 1) {
+            return keyIndex.records.get(0);
+        }
+        if (action.equals(MultipleCollectionsAction.ERROR)) {
+            throw new RuntimeException("Multiple ConditionsRecord object found for conditions key " + key + ".");
+        }
+        return keyIndex.preferred.get(action);
+    }
+
+    /**
+     * Find the unique record of a key which is valid for a run using an action to pick one of several records.
+     *
+     * @param key the conditions key
+     * @param run the run number
+     * @param action the disambiguation action
+     * @return the unique record or <code>null</code> if there are no records with the key for the run
+     * @throws RuntimeException if there are several records and the action is {@link MultipleCollectionsAction#ERROR}
+     */
+    public ConditionsRecord findUniqueRecord(final String key, final int run, final MultipleCollectionsAction action) {
+        final KeyIndex keyIndex = this.keys.get(key);
+        if (keyIndex == null) {
+            return null;
+        }
+        final List<Integer> positions = keyIndex.findPositions(run);
+        if (positions.isEmpty()) {
+            return null;
+        }
+        if (positions.size() == 1) {
+            return keyIndex.byRunStart[positions.get(0)];
+        }
+        if (action.equals(MultipleCollectionsAction.ERROR)) {
+            throw new RuntimeException("Multiple ConditionsRecord object found for conditions key " + key
+                    + " and run " + run + ".");
+        }
+        final int[] rank = keyIndex.ranks.get(action);
+        int best = positions.get(0);
+        for (final int position : positions) {
+            if (rank[position] > rank[best]) {
+                best = position;
+            }
+        }
+        return keyIndex.byRunStart[best];
+    }
+}
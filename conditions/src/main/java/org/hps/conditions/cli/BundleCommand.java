@@ -0,0 +1,537 @@
+package org.hps.conditions.cli;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.hps.conditions.database.DatabaseConditionsManager;
+
+/**
+ * Create a compact SQLite conditions bundle with the conditions of a run range, which can be shipped with a batch job
+ * and used instead of the remote database with a URL like <code>jdbc:sqlite:conditions.db</code>.
+ * <p>
+ * The bundle has the conditions records whose run range overlaps the selected runs, optionally restricted to one or
+ * more tags, together with their tag records, the collections they reference and the rows of the collection log. The
+ * data tables are indexed by collection ID and the conditions records by key and run range, which are the queries
+ * used by the conditions system. The row counts and row ID ranges of every collection are stored in the
+ * <i>bundle_collections</i> table and a description of the bundle is stored in the <i>bundle_manifest</i> table.
+ */
+final class BundleCommand extends AbstractCommand {
+
+    /**
+     * Initialize the logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(BundleCommand.class.getPackage().getName());
+
+    /**
+     * Version of the layout of the bundle tables.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Maximum number of values in one SQL <code>IN</code> clause.
+     */
+    private static final int MAX_IN_VALUES = 500;
+
+    /**
+     * Number of rows inserted in one batch.
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * Format of dates written to the bundle, which is the format of dates read from SQLite by the conditions records.
+     */
+    private static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
+
+    /**
+     * Defines command options.
+     */
+    private static final Options OPTIONS = new Options();
+
+    /**
+     * Define all command options.
+     */
+    static {
+        OPTIONS.addOption(new Option("h", "help", false, "print help for bundle command"));
+        OPTIONS.addOption(new Option("f", "file", true, "output SQLite file (required)"));
+        OPTIONS.addOption(new Option("s", "run-start", true, "starting run number (required)"));
+        OPTIONS.addOption(new Option("e", "run-end", true, "ending run number (required)"));
+        OPTIONS.addOption(new Option("t", "tag", true, "conditions tag to include (may be repeated)"));
+        OPTIONS.addOption(new Option("o", "overwrite", false, "overwrite an existing output file"));
+    }
+
+    /**
+     * Create a SQL <code>IN</code> clause from a list of values.
+     *
+     * @param values the values
+     * @return the <code>IN</code> clause
+     */
+    private static String inClause(final List<Integer> values) {
+        final StringBuffer sb = new StringBuffer("IN (");
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(values.get(i));
+        }
+        sb.append(')');
+        return sb.toString();
+    }
+
+    /**
+     * Split a set of values into lists which fit in one <code>IN</code> clause.
+     *
+     * @param values the values
+     * @return the lists of values
+     */
+    private static List<List<Integer>> partition(final Set<Integer> values) {
+        final List<List<Integer>> partitions = new ArrayList<List<Integer>>();
+        List<Integer> partition = null;
+        for (final Integer value : values) {
+            if (partition == null || partition.size() == MAX_IN_VALUES) {
+                partition = new ArrayList<Integer>(MAX_IN_VALUES);
+                partitions.add(partition);
+            }
+            partition.add(value);
+        }
+        return partitions;
+    }
+
+    /**
+     * Get the SQLite column type for a JDBC type.
+     *
+     * @param type the JDBC type from {@link java.sql.Types}
+     * @return the SQLite column type
+     */
+    private static String sqliteType(final int type) {
+        switch (type) {
+            case Types.BIT:
+            case Types.BOOLEAN:
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return "INTEGER";
+            case Types.FLOAT:
+            case Types.REAL:
+            case Types.DOUBLE:
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return "REAL";
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return "BLOB";
+            default:
+                return "TEXT";
+        }
+    }
+
+    /**
+     * The connection to the SQLite bundle.
+     */
+    private Connection bundle;
+
+    /**
+     * The names of the tables created in the bundle.
+     */
+    private final Set<String> createdTables = new TreeSet<String>();
+
+    /**
+     * Class constructor.
+     */
+    BundleCommand() {
+        super("bundle", "Create a SQLite conditions bundle for a run range", OPTIONS);
+    }
+
+    /**
+     * Copy the rows of the collection log for the collections in the bundle.
+     *
+     * @param source the connection to the conditions database
+     * @param collections the collection IDs by table name
+     */
+    private void copyCollectionLog(final Connection source, final Map<String, Set<Integer>> collections) {
+        int rows = 0;
+        try {
+            for (final Map.Entry<String, Set<Integer>> entry : collections.entrySet()) {
+                for (final List<Integer> ids : partition(entry.getValue())) {
+                    final PreparedStatement select = source.prepareStatement("SELECT * FROM collections WHERE "
+                            + "table_name = ? AND id " + inClause(ids));
+                    select.setString(1, entry.getKey());
+                    rows += this.copyRows(select, "collections");
+                }
+            }
+        } catch (final SQLException e) {
+            // The collection log is not needed to read conditions so it is left out if it cannot be read.
+            LOGGER.warning("collection log was not copied: " + e.getMessage());
+            return;
+        }
+        LOGGER.info("copied " + rows + " rows of the collection log");
+    }
+
+    /**
+     * Copy the rows selected by a query into a table of the bundle, creating the table if needed.
+     *
+     * @param select the query on the conditions database, which is closed by this method
+     * @param tableName the name of the table in the bundle
+     * @return the number of rows copied
+     * @throws SQLException if there is an error copying the rows
+     */
+    private int copyRows(final PreparedStatement select, final String tableName) throws SQLException {
+        final SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
+        int rows = 0;
+        try {
+            final ResultSet resultSet = select.executeQuery();
+            final ResultSetMetaData metaData = resultSet.getMetaData();
+            final int columns = metaData.getColumnCount();
+            if (!this.createdTables.contains(tableName)) {
+                this.createTable(tableName, metaData);
+            }
+            final StringBuffer sb = new StringBuffer("INSERT INTO " + tableName + " (");
+            for (int column = 1; column <= columns; column++) {
+                sb.append((column > 1 ? ", " : "") + metaData.getColumnName(column));
+            }
+            sb.append(") VALUES (");
+            for (int column = 1; column <= columns; column++) {
+                sb.append(column > 1 ? ", ?" : "?");
+            }
+            sb.append(')');
+            final PreparedStatement insert = this.bundle.prepareStatement(sb.toString());
+            try {
+                while (resultSet.next()) {
+                    for (int column = 1; column <= columns; column++) {
+                        final Object value = resultSet.getObject(column);
+                        if (value instanceof Date) {
+                            insert.setString(column, dateFormat.format((Date) value));
+                        } else {
+                            insert.setObject(column, value);
+                        }
+                    }
+                    insert.addBatch();
+                    if (++rows % BATCH_SIZE == 0) {
+                        insert.executeBatch();
+                    }
+                }
+                insert.executeBatch();
+            } finally {
+                insert.close();
+            }
+        } finally {
+            select.close();
+        }
+        return rows;
+    }
+
+    /**
+     * Copy the conditions records of the run range, restricted to the tags if there are any.
+     *
+     * @param source the connection to the conditions database
+     * @param runStart the starting run number
+     * @param runEnd the ending run number
+     * @param tags the tags or an empty list to copy all records
+     * @return the number of records copied
+     * @throws SQLException if there is an error copying the records
+     */
+    private int copyConditionsRecords(final Connection source, final int runStart, final int runEnd,
+            final List<String> tags) throws SQLException {
+        final StringBuffer sb = new StringBuffer("SELECT * FROM conditions WHERE run_start <= ? AND run_end >= ?");
+        if (!tags.isEmpty()) {
+            sb.append(" AND id IN (SELECT conditions_id FROM conditions_tags WHERE tag IN (");
+            for (int i = 0; i < tags.size(); i++) {
+                sb.append(i > 0 ? ", ?" : "?");
+            }
+            sb.append("))");
+        }
+        sb.append(" ORDER BY id");
+        final PreparedStatement select = source.prepareStatement(sb.toString());
+        select.setInt(1, runEnd);
+        select.setInt(2, runStart);
+        for (int i = 0; i < tags.size(); i++) {
+            select.setString(i + 3, tags.get(i));
+        }
+        return this.copyRows(select, "conditions");
+    }
+
+    /**
+     * Copy the tag records which reference the conditions records in the bundle.
+     *
+     * @param source the connection to the conditions database
+     * @param recordIds the IDs of the conditions records in the bundle
+     * @param tags the tags or an empty list to copy the records of all tags
+     * @throws SQLException if there is an error copying the records
+     */
+    private void copyTags(final Connection source, final Set<Integer> recordIds, final List<String> tags)
+            throws SQLException {
+        int rows = 0;
+        for (final List<Integer> ids : partition(recordIds)) {
+            final StringBuffer sb = new StringBuffer("SELECT * FROM conditions_tags WHERE conditions_id "
+                    + inClause(ids));
+            if (!tags.isEmpty()) {
+                sb.append(" AND tag IN (");
+                for (int i = 0; i < tags.size(); i++) {
+                    sb.append(i > 0 ? ", ?" : "?");
+                }
+                sb.append(')');
+            }
+            final PreparedStatement select = source.prepareStatement(sb.toString());
+            for (int i = 0; i < tags.size(); i++) {
+                select.setString(i + 1, tags.get(i));
+            }
+            rows += this.copyRows(select, "conditions_tags");
+        }
+        LOGGER.info("copied " + rows + " tag records");
+    }
+
+    /**
+     * Create a table in the bundle with the columns of a query result.
+     *
+     * @param tableName the name of the table
+     * @param metaData the meta data of the query result
+     * @throws SQLException if there is an error creating the table
+     */
+    private void createTable(final String tableName, final ResultSetMetaData metaData) throws SQLException {
+        final StringBuffer sb = new StringBuffer("CREATE TABLE " + tableName + " (");
+        for (int column = 1; column <= metaData.getColumnCount(); column++) {
+            final String name = metaData.getColumnName(column);
+            sb.append((column > 1 ? ", " : "") + name + " " + sqliteType(metaData.getColumnType(column)));
+            if (name.equals("id")) {
+                sb.append(" PRIMARY KEY");
+            }
+        }
+        sb.append(')');
+        this.executeSql(sb.toString());
+        this.createdTables.add(tableName);
+    }
+
+    /**
+     * Create the indexes used by the queries of the conditions system and the table of collection lookups.
+     *
+     * @param collections the collection IDs by table name
+     * @throws SQLException if there is an error creating the indexes
+     */
+    private void createIndexes(final Map<String, Set<Integer>> collections) throws SQLException {
+        this.executeSql("CREATE INDEX conditions_run_range ON conditions (run_start, run_end)");
+        this.executeSql("CREATE INDEX conditions_name ON conditions (name, run_start, run_end)");
+        if (this.createdTables.contains("conditions_tags")) {
+            this.executeSql("CREATE INDEX conditions_tags_tag ON conditions_tags (tag, conditions_id)");
+            this.executeSql("CREATE INDEX conditions_tags_conditions_id ON conditions_tags (conditions_id)");
+        }
+        if (this.createdTables.contains("collections")) {
+            this.executeSql("CREATE INDEX collections_table_name ON collections (table_name, id)");
+        }
+        this.executeSql("CREATE TABLE bundle_collections (table_name TEXT NOT NULL, collection_id INTEGER NOT NULL, "
+                + "row_count INTEGER NOT NULL, first_row_id INTEGER, last_row_id INTEGER, "
+                + "PRIMARY KEY (table_name, collection_id))");
+        for (final String tableName : collections.keySet()) {
+            if (!this.createdTables.contains(tableName)) {
+                continue;
+            }
+            this.executeSql("CREATE INDEX " + tableName + "_collection_id ON " + tableName + " (collection_id, id)");
+            this.executeSql("INSERT INTO bundle_collections SELECT '" + tableName + "', collection_id, COUNT(*), "
+                    + "MIN(id), MAX(id) FROM " + tableName + " GROUP BY collection_id");
+        }
+    }
+
+    /**
+     * Execute the bundle command.
+     *
+     * @param arguments the command arguments
+     */
+    @Override
+    void execute(final String[] arguments) {
+
+        final CommandLine commandLine = this.parse(arguments);
+
+        // Output file (required).
+        if (!commandLine.hasOption("f")) {
+            throw new RuntimeException("Missing required -f argument with the output file.");
+        }
+        final File file = new File(commandLine.getOptionValue("f"));
+        if (file.exists()) {
+            if (!commandLine.hasOption("o")) {
+                throw new RuntimeException("The output file " + file.getPath() + " already exists.");
+            }
+            if (!file.delete()) {
+                throw new RuntimeException("Failed to delete existing output file " + file.getPath());
+            }
+        }
+
+        // Run range (required).
+        if (!commandLine.hasOption("s")) {
+            throw new RuntimeException("Missing required -s argument with starting run number.");
+        }
+        if (!commandLine.hasOption("e")) {
+            throw new RuntimeException("Missing required -e argument with ending run number.");
+        }
+        final int runStart = Integer.parseInt(commandLine.getOptionValue("s"));
+        final int runEnd = Integer.parseInt(commandLine.getOptionValue("e"));
+        if (runStart > runEnd) {
+            throw new IllegalArgumentException("The run start is greater than the run end.");
+        }
+        LOGGER.config("run range set to " + runStart + " - " + runEnd);
+
+        // Tags (optional).
+        final List<String> tags = new ArrayList<String>();
+        if (commandLine.hasOption("t")) {
+            tags.addAll(Arrays.asList(commandLine.getOptionValues("t")));
+        }
+        LOGGER.config("tags set to " + tags);
+
+        final DatabaseConditionsManager manager = this.getManager();
+        manager.openConnection();
+        final Connection source = manager.getConnection();
+
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (final ClassNotFoundException e) {
+            throw new RuntimeException("SQLite db driver not found", e);
+        }
+
+        try {
+            this.bundle = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+            this.executeSql("PRAGMA journal_mode = OFF");
+            this.executeSql("PRAGMA synchronous = OFF");
+            this.bundle.setAutoCommit(false);
+
+            // Copy the conditions records and find the collections they reference.
+            final int records = this.copyConditionsRecords(source, runStart, runEnd, tags);
+            if (records == 0) {
+                throw new RuntimeException("No conditions records found for the run range and tags.");
+            }
+            LOGGER.info("copied " + records + " conditions records");
+            final Set<Integer> recordIds = new TreeSet<Integer>();
+            final Map<String, Set<Integer>> collections = new TreeMap<String, Set<Integer>>();
+            final Statement statement = this.bundle.createStatement();
+            try {
+                final ResultSet resultSet = statement.executeQuery("SELECT id, table_name, collection_id FROM "
+                        + "conditions");
+                while (resultSet.next()) {
+                    recordIds.add(resultSet.getInt(1));
+                    Set<Integer> ids = collections.get(resultSet.getString(2));
+                    if (ids == null) {
+                        ids = new TreeSet<Integer>();
+                        collections.put(resultSet.getString(2), ids);
+                    }
+                    ids.add(resultSet.getInt(3));
+                }
+            } finally {
+                statement.close();
+            }
+
+            // Copy the tag records so that the tags can still be selected when using the bundle.
+            this.copyTags(source, recordIds, tags);
+
+            // Copy the rows of each collection, ordered so that the rows of a collection are stored together.
+            int collectionCount = 0;
+            for (final Map.Entry<String, Set<Integer>> entry : collections.entrySet()) {
+                final String tableName = entry.getKey();
+                int rows = 0;
+                for (final List<Integer> ids : partition(entry.getValue())) {
+                    rows += this.copyRows(source.prepareStatement("SELECT * FROM " + tableName
+                            + " WHERE collection_id " + inClause(ids) + " ORDER BY collection_id, id"), tableName);
+                }
+                collectionCount += entry.getValue().size();
+                LOGGER.info("copied " + entry.getValue().size() + " collections with " + rows + " rows from "
+                        + tableName);
+            }
+
+            this.copyCollectionLog(source, collections);
+            this.createIndexes(collections);
+
+            // Describe the bundle.
+            final Map<String, String> manifest = new LinkedHashMap<String, String>();
+            manifest.put("format_version", Integer.toString(FORMAT_VERSION));
+            manifest.put("source_url", source.getMetaData().getURL());
+            manifest.put("created", new SimpleDateFormat(DATE_FORMAT).format(new Date()));
+            manifest.put("created_by", System.getProperty("user.name"));
+            manifest.put("run_start", Integer.toString(runStart));
+            manifest.put("run_end", Integer.toString(runEnd));
+            manifest.put("tags", String.join(",", tags));
+            manifest.put("conditions_records", Integer.toString(records));
+            manifest.put("collections", Integer.toString(collectionCount));
+            manifest.put("tables", String.join(",", collections.keySet()));
+            this.writeManifest(manifest);
+
+            this.bundle.commit();
+            this.bundle.setAutoCommit(true);
+
+            // Gather statistics for the query planner and compact the file.
+            this.executeSql("ANALYZE");
+            this.executeSql("VACUUM");
+
+            LOGGER.info("wrote conditions bundle " + file.getPath() + " with " + file.length() + " bytes" + '\n'
+                    + manifest);
+
+        } catch (final SQLException e) {
+            throw new RuntimeException("Error creating conditions bundle " + file.getPath(), e);
+        } finally {
+            if (this.bundle != null) {
+                try {
+                    this.bundle.close();
+                } catch (final SQLException e) {
+                    LOGGER.warning("error closing conditions bundle: " + e.getMessage());
+                }
+                this.bundle = null;
+            }
+            this.createdTables.clear();
+        }
+
+        LOGGER.info("done!");
+    }
+
+    /**
+     * Execute an SQL statement on the bundle.
+     *
+     * @param sql the SQL statement
+     * @throws SQLException if there is an error executing the statement
+     */
+    private void executeSql(final String sql) throws SQLException {
+        final Statement statement = this.bundle.createStatement();
+        try {
+            statement.execute(sql);
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Write the manifest of the bundle.
+     *
+     * @param manifest the values of the manifest by name
+     * @throws SQLException if there is an error writing the manifest
+     */
+    private void writeManifest(final Map<String, String> manifest) throws SQLException {
+        this.executeSql("CREATE TABLE bundle_manifest (name TEXT PRIMARY KEY, value TEXT)");
+        final PreparedStatement insert = this.bundle.prepareStatement("INSERT INTO bundle_manifest VALUES (?, ?)");
+        try {
+            for (final Map.Entry<String, String> entry : manifest.entrySet()) {
+                insert.setString(1, entry.getKey());
+                insert.setString(2, entry.getValue());
+                insert.executeUpdate();
+            }
+        } finally {
+            insert.close();
+        }
+    }
+}
@@ -47,6 +47,7 @@ public final class CommandLineTool {
         cli.registerCommand(new AddCommand());
         cli.registerCommand(new TagCommand());
         cli.registerCommand(new RunSummaryCommand());
+        cli.registerCommand(new BundleCommand());
         return cli;
     }
 
@@ -3,6 +3,7 @@ package org.hps.conditions.database;
 import java.sql.SQLException;
 import java.util.logging.Logger;
 
+import org.hps.conditions.api.BaseConditionsObjectCollection;
 import org.hps.conditions.api.ConditionsObjectCollection;
 import org.hps.conditions.api.ConditionsObjectException;
 import org.hps.conditions.api.ConditionsRecord;
@@ -89,50 +90,87 @@ public abstract class AbstractConditionsObjectConverter<T> implements Conditions
         }
 
         // Get the ConditionsRecordCollection with the run number assignments.
-        final ConditionsRecordCollection conditionsRecords = databaseConditionsManager.findConditionsRecords(name);
+        final ConditionsRecordCollection conditionsRecords = databaseConditionsManager.getConditionsRecords();
 
-        // The record with the collection information.
-        ConditionsRecord conditionsRecord = null;
-
-        // Now we need to determine which ConditionsRecord object to use.
-        if (conditionsRecords.size() == 0) {
+        // Determine which ConditionsRecord object to use from the index of the records, which orders the records with
+        // the same key for each MultipleCollectionsAction when it is built.
+        final ConditionsRecord conditionsRecord = conditionsRecords.findUniqueRecord(name, this.multipleCollections);
+        if (conditionsRecord == null) {
             // No conditions records were found for the key.
             throw new RuntimeException("No conditions were found with key: " + name);
-        } else if (conditionsRecords.size() == 1) {
-            // Use the single conditions set that was found.
-            conditionsRecord = conditionsRecords.get(0);
-        } else if (conditionsRecords.size() > 1) {
-            if (this.multipleCollections.equals(MultipleCollectionsAction.LAST_UPDATED)) {
-                // Use the conditions set with the latest updated date.
-                conditionsRecord = conditionsRecords.sortedByUpdated().get(conditionsRecords.size() - 1);
-            } else if (this.multipleCollections.equals(MultipleCollectionsAction.LAST_CREATED)) {
-                // Use the conditions set with the latest created date.
-                conditionsRecord = conditionsRecords.sortedByCreated().get(conditionsRecords.size() - 1);
-            } else if (this.multipleCollections.equals(MultipleCollectionsAction.LATEST_RUN_START)) {
-                // Use the conditions set with the greatest run start value.
-                conditionsRecord = conditionsRecords.sortedByRunStart().get(conditionsRecords.size() - 1);
-            } else if (this.multipleCollections.equals(MultipleCollectionsAction.ERROR)) {
-                // The converter has been configured to throw an error.
-                throw new RuntimeException("Multiple ConditionsRecord object found for conditions key " + name);
+        }
+
+        // Reuse the collection if it was already loaded in a previous run.
+        final IncrementalRefresh refresh = databaseConditionsManager.getIncrementalRefresh();
+        if (refresh != null) {
+            final ConditionsObjectCollection<?> loaded = refresh.findCollection(tableMetaData.getTableName(),
+                    conditionsRecord.getCollectionId());
+            if (loaded != null) {
+                LOGGER.info("reusing unchanged conditions set..." + '\n' + conditionsRecord);
+                ConditionsLoadMetrics.getInstance().addLoad(tableMetaData.getTableName(),
+                        ConditionsLoadMetrics.Source.REUSED);
+                return (T) loaded;
+            }
+        }
+
+        // Use the collection from the snapshot cache if it was stored with the same conditions record.
+        final ConditionsSnapshotCache snapshotCache = databaseConditionsManager.getSnapshotCache();
+        if (snapshotCache != null) {
+            final BaseConditionsObjectCollection<?> cached = snapshotCache.getCollection(tableMetaData,
+                    conditionsRecord);
+            if (cached != null) {
+                LOGGER.info("loading conditions set from snapshot..." + '\n' + conditionsRecord);
+                ConditionsLoadMetrics.getInstance().addLoad(tableMetaData.getTableName(),
+                        ConditionsLoadMetrics.Source.SNAPSHOT);
+                if (refresh != null) {
+                    refresh.addCollection(tableMetaData.getTableName(), conditionsRecord.getCollectionId(), cached);
+                }
+                return (T) cached;
             }
         }
 
-        // Create a collection of objects to return.
+        // Remember the table so it is prefetched when the run changes.
+        databaseConditionsManager.addPrefetchTable(tableMetaData.getTableName(), this.multipleCollections);
+
+        // Use the collection if it was already loaded by the prefetcher.
+        final ConditionsPrefetcher prefetcher = databaseConditionsManager.getPrefetcher();
         ConditionsObjectCollection collection = null;
-        try {
-            collection = createCollection(databaseConditionsManager, conditionsRecord, tableMetaData);
-        } catch (final ConditionsObjectException e) {
-            throw new RuntimeException(e);
+        if (prefetcher != null) {
+            collection = prefetcher.take(tableMetaData.getTableName(), conditionsRecord.getCollectionId());
         }
 
-        LOGGER.info("loading conditions set..." + '\n' + conditionsRecord);
+        if (collection != null) {
+            LOGGER.info("loaded prefetched conditions set..." + '\n' + conditionsRecord);
+            ConditionsLoadMetrics.getInstance().addLoad(tableMetaData.getTableName(),
+                    ConditionsLoadMetrics.Source.PREFETCHED);
+        } else {
+            // Create a collection of objects to return.
+            try {
+                collection = createCollection(databaseConditionsManager, conditionsRecord, tableMetaData);
+            } catch (final ConditionsObjectException e) {
+                throw new RuntimeException(e);
+            }
 
-        // Select the objects into the collection by the collection ID.
-        try {
-            collection.select(conditionsRecord.getCollectionId());
-        } catch (DatabaseObjectException | SQLException e) {
-            throw new RuntimeException("Error creating conditions collection from table " + name
-                    + " with collection ID " + conditionsRecord.getCollectionId(), e);
+            LOGGER.info("loading conditions set..." + '\n' + conditionsRecord);
+
+            // Select the objects into the collection by the collection ID.
+            try {
+                collection.select(conditionsRecord.getCollectionId());
+            } catch (DatabaseObjectException | SQLException e) {
+                throw new RuntimeException("Error creating conditions collection from table " + name
+                        + " with collection ID " + conditionsRecord.getCollectionId(), e);
+            }
+            ConditionsLoadMetrics.getInstance().addLoad(tableMetaData.getTableName(),
+                    ConditionsLoadMetrics.Source.DATABASE);
+        }
+
+        if (snapshotCache != null) {
+            snapshotCache.putCollection(tableMetaData, conditionsRecord,
+                    (BaseConditionsObjectCollection<?>) collection);
+        }
+
+        if (refresh != null) {
+            refresh.addCollection(tableMetaData.getTableName(), conditionsRecord.getCollectionId(), collection);
         }
 
         return (T) collection;
@@ -0,0 +1,394 @@
+package org.hps.conditions.database;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Metrics of the time spent loading conditions, which are used to find slow tables and to size the database server.
+ * <p>
+ * For each table, the number of queries, the time spent executing them, the rows and estimated bytes fetched and the
+ * time spent creating conditions objects from the rows are recorded by the collections when they are selected. The
+ * converters record whether each collection was reused from a previous run, read from the snapshot cache, taken from
+ * the prefetcher or selected from the database. The {@link DatabaseConditionsManager} records the time spent setting
+ * up each run and in each conditions listener.
+ * <p>
+ * There is one instance per JVM which is registered with the platform MBean server as
+ * <code>org.hps.conditions:type=ConditionsLoadMetrics</code>, and a summary can be printed at the end of a job with
+ * {@link #getSummary()}.
+ */
+public final class ConditionsLoadMetrics implements ConditionsLoadMetricsMXBean {
+
+    /**
+     * Where a collection was loaded from.
+     */
+    enum Source {
+        /** Reused from the previous run. */
+        REUSED,
+        /** Read from the snapshot cache. */
+        SNAPSHOT,
+        /** Selected from the database by the prefetcher. */
+        PREFETCHED,
+        /** Selected from the database when it was needed. */
+        DATABASE
+    }
+
+    /**
+     * Metrics of one table.
+     */
+    private static final class TableMetrics {
+
+        final AtomicLong bytes = new AtomicLong();
+        final AtomicLong constructionNanos = new AtomicLong();
+        final AtomicLongArray loads = new AtomicLongArray(Source.values().length);
+        final AtomicLong queries = new AtomicLong();
+        final AtomicLong queryNanos = new AtomicLong();
+        final AtomicLong rows = new AtomicLong();
+
+        long getTotalNanos() {
+            return this.queryNanos.get() + this.constructionNanos.get();
+        }
+    }
+
+    /**
+     * Metrics of one conditions listener class.
+     */
+    private static final class ListenerMetrics {
+
+        final AtomicLong callbacks = new AtomicLong();
+        final AtomicLong nanos = new AtomicLong();
+    }
+
+    /**
+     * The singleton instance.
+     */
+    private static ConditionsLoadMetrics instance = null;
+
+    /**
+     * Initialize the logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(ConditionsLoadMetrics.class.getPackage().getName());
+
+    /**
+     * The name of the MBean.
+     */
+    private static final String OBJECT_NAME = "org.hps.conditions:type=ConditionsLoadMetrics";
+
+    /**
+     * Estimate the number of bytes of a column value fetched from the database.
+     *
+     * @param value the column value
+     * @return the estimated number of bytes
+     */
+    public static long estimateSize(final Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof Double || value instanceof Long || value instanceof java.util.Date) {
+            return 8;
+        } else if (value instanceof Integer || value instanceof Float) {
+            return 4;
+        } else if (value instanceof Short) {
+            return 2;
+        } else if (value instanceof Byte || value instanceof Boolean) {
+            return 1;
+        } else if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        } else {
+            return value.toString().length();
+        }
+    }
+
+    /**
+     * Get the metrics of this JVM, registering them with the platform MBean server when they are first used.
+     *
+     * @return the metrics
+     */
+    public static synchronized ConditionsLoadMetrics getInstance() {
+        if (instance == null) {
+            instance = new ConditionsLoadMetrics();
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(instance, new ObjectName(OBJECT_NAME));
+            } catch (final JMException | SecurityException e) {
+                LOGGER.log(Level.WARNING, "Failed to register conditions load metrics with JMX", e);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Convert nanoseconds to milliseconds.
+     */
+    private static long toMillis(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * The metrics of each conditions listener class.
+     */
+    private final Map<String, ListenerMetrics> listeners = new ConcurrentHashMap<String, ListenerMetrics>();
+
+    /**
+     * The number of conditions setups.
+     */
+    private final AtomicLong setups = new AtomicLong();
+
+    /**
+     * The time spent in conditions setups.
+     */
+    private final AtomicLong setupNanos = new AtomicLong();
+
+    /**
+     * The metrics of each table.
+     */
+    private final Map<String, TableMetrics> tables = new ConcurrentHashMap<String, TableMetrics>();
+
+    /**
+     * Class constructor, which is private because there is one instance per JVM.
+     */
+    private ConditionsLoadMetrics() {
+    }
+
+    /**
+     * Record a conditions listener callback.
+     *
+     * @param listenerName the name of the listener class
+     * @param nanos the time spent in the callback in nanoseconds
+     */
+    void addListenerCallback(final String listenerName, final long nanos) {
+        ListenerMetrics metrics = this.listeners.get(listenerName);
+        if (metrics == null) {
+            this.listeners.putIfAbsent(listenerName, new ListenerMetrics());
+            metrics = this.listeners.get(listenerName);
+        }
+        metrics.callbacks.incrementAndGet();
+        metrics.nanos.addAndGet(nanos);
+    }
+
+    /**
+     * Record where a collection used by a converter was loaded from.
+     *
+     * @param tableName the table name
+     * @param source where the collection was loaded from
+     */
+    void addLoad(final String tableName, final Source source) {
+        this.getTableMetrics(tableName).loads.incrementAndGet(source.ordinal());
+    }
+
+    /**
+     * Record a query of a table.
+     *
+     * @param tableName the table name
+     * @param queryNanos the time spent executing the query in nanoseconds
+     * @param constructionNanos the time spent creating objects from the rows in nanoseconds
+     * @param rows the number of rows fetched
+     * @param bytes the estimated number of bytes fetched
+     */
+    public void addQuery(final String tableName, final long queryNanos, final long constructionNanos, final int rows,
+            final long bytes) {
+        final TableMetrics metrics = this.getTableMetrics(tableName);
+        metrics.queries.incrementAndGet();
+        metrics.queryNanos.addAndGet(queryNanos);
+        metrics.constructionNanos.addAndGet(constructionNanos);
+        metrics.rows.addAndGet(rows);
+        metrics.bytes.addAndGet(bytes);
+    }
+
+    /**
+     * Record the setup of the conditions for a new detector or run.
+     *
+     * @param nanos the time spent in the setup in nanoseconds
+     */
+    void addSetup(final long nanos) {
+        this.setups.incrementAndGet();
+        this.setupNanos.addAndGet(nanos);
+    }
+
+    @Override
+    public long getBytesFetched() {
+        long bytes = 0;
+        for (final TableMetrics metrics : this.tables.values()) {
+            bytes += metrics.bytes.get();
+        }
+        return bytes;
+    }
+
+    @Override
+    public long getCacheHits() {
+        return this.getLoads(Source.REUSED) + this.getLoads(Source.SNAPSHOT);
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return this.getLoads(Source.PREFETCHED) + this.getLoads(Source.DATABASE);
+    }
+
+    @Override
+    public long getConstructionTimeMillis() {
+        long nanos = 0;
+        for (final TableMetrics metrics : this.tables.values()) {
+            nanos += metrics.constructionNanos.get();
+        }
+        return toMillis(nanos);
+    }
+
+    @Override
+    public long getListenerCallbacks() {
+        long callbacks = 0;
+        for (final ListenerMetrics metrics : this.listeners.values()) {
+            callbacks += metrics.callbacks.get();
+        }
+        return callbacks;
+    }
+
+    @Override
+    public long getListenerTimeMillis() {
+        long nanos = 0;
+        for (final ListenerMetrics metrics : this.listeners.values()) {
+            nanos += metrics.nanos.get();
+        }
+        return toMillis(nanos);
+    }
+
+    /**
+     * Get the number of collections loaded from a source.
+     */
+    private long getLoads(final Source source) {
+        long loads = 0;
+        for (final TableMetrics metrics : this.tables.values()) {
+            loads += metrics.loads.get(source.ordinal());
+        }
+        return loads;
+    }
+
+    @Override
+    public long getQueryCount() {
+        long queries = 0;
+        for (final TableMetrics metrics : this.tables.values()) {
+            queries += metrics.queries.get();
+        }
+        return queries;
+    }
+
+    @Override
+    public long getQueryTimeMillis() {
+        long nanos = 0;
+        for (final TableMetrics metrics : this.tables.values()) {
+            nanos += metrics.queryNanos.get();
+        }
+        return toMillis(nanos);
+    }
+
+    @Override
+    public long getRowsFetched() {
+        long rows = 0;
+        for (final TableMetrics metrics : this.tables.values()) {
+            rows += metrics.rows.get();
+        }
+        return rows;
+    }
+
+    @Override
+    public long getSetupCount() {
+        return this.setups.get();
+    }
+
+    @Override
+    public long getSetupTimeMillis() {
+        return toMillis(this.setupNanos.get());
+    }
+
+    @Override
+    public String getSummary() {
+        final StringBuffer sb = new StringBuffer();
+        sb.append("conditions load metrics" + '\n');
+        sb.append(String.format("  setups: %d in %d ms%n", this.getSetupCount(), this.getSetupTimeMillis()));
+        sb.append(String.format("  queries: %d in %d ms, rows: %d, bytes: %d, construction: %d ms%n",
+                this.getQueryCount(), this.getQueryTimeMillis(), this.getRowsFetched(), this.getBytesFetched(),
+                this.getConstructionTimeMillis()));
+        sb.append(String.format("  collections: %d hits (%d reused, %d snapshot), %d misses (%d prefetched, "
+                + "%d database)%n", this.getCacheHits(), this.getLoads(Source.REUSED),
+                this.getLoads(Source.SNAPSHOT), this.getCacheMisses(), this.getLoads(Source.PREFETCHED),
+                this.getLoads(Source.DATABASE)));
+        sb.append(String.format("  listener callbacks: %d in %d ms%n", this.getListenerCallbacks(),
+                this.getListenerTimeMillis()));
+        final String[] tableSummaries = this.getTableSummaries();
+        if (tableSummaries.length > 0) {
+            sb.append(String.format("  %-32s %8s %10s %10s %12s %12s %8s %8s %10s %8s%n", "table", "queries",
+                    "query ms", "rows", "bytes", "construct ms", "reused", "snapshot", "prefetched", "database"));
+            for (final String tableSummary : tableSummaries) {
+                sb.append("  " + tableSummary + '\n');
+            }
+        }
+        final List<Map.Entry<String, ListenerMetrics>> listenerEntries =
+                new ArrayList<Map.Entry<String, ListenerMetrics>>(this.listeners.entrySet());
+        if (!listenerEntries.isEmpty()) {
+            Collections.sort(listenerEntries, new Comparator<Map.Entry<String, ListenerMetrics>>() {
+                @Override
+                public int compare(final Map.Entry<String, ListenerMetrics> e1,
+                        final Map.Entry<String, ListenerMetrics> e2) {
+                    return Long.compare(e2.getValue().nanos.get(), e1.getValue().nanos.get());
+                }
+            });
+            sb.append(String.format("  %-48s %10s %10s%n", "listener", "callbacks", "ms"));
+            for (final Map.Entry<String, ListenerMetrics> entry : listenerEntries) {
+                sb.append(String.format("  %-48s %10d %10d%n", entry.getKey(), entry.getValue().callbacks.get(),
+                        toMillis(entry.getValue().nanos.get())));
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String[] getTableSummaries() {
+        final List<Map.Entry<String, TableMetrics>> entries =
+                new ArrayList<Map.Entry<String, TableMetrics>>(this.tables.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, TableMetrics>>() {
+            @Override
+            public int compare(final Map.Entry<String, TableMetrics> e1, final Map.Entry<String, TableMetrics> e2) {
+                return Long.compare(e2.getValue().getTotalNanos(), e1.getValue().getTotalNanos());
+            }
+        });
+        final String[] summaries = new String[entries.size()];
+        for (int i = 0; i < summaries.length; i++) {
+            final TableMetrics metrics = entries.get(i).getValue();
+            summaries[i] = String.format("%-32s %8d %10d %10d %12d %12d %8d %8d %10d %8d", entries.get(i).getKey(),
+                    metrics.queries.get(), toMillis(metrics.queryNanos.get()), metrics.rows.get(),
+                    metrics.bytes.get(), toMillis(metrics.constructionNanos.get()),
+                    metrics.loads.get(Source.REUSED.ordinal()), metrics.loads.get(Source.SNAPSHOT.ordinal()),
+                    metrics.loads.get(Source.PREFETCHED.ordinal()), metrics.loads.get(Source.DATABASE.ordinal()));
+        }
+        return summaries;
+    }
+
+    /**
+     * Get the metrics of a table, creating them if needed.
+     */
+    private TableMetrics getTableMetrics(final String tableName) {
+        TableMetrics metrics = this.tables.get(tableName);
+        if (metrics == null) {
+            this.tables.putIfAbsent(tableName, new TableMetrics());
+            metrics = this.tables.get(tableName);
+        }
+        return metrics;
+    }
+
+    @Override
+    public void reset() {
+        this.tables.clear();
+        this.listeners.clear();
+        this.setups.set(0);
+        this.setupNanos.set(0);
+    }
+}
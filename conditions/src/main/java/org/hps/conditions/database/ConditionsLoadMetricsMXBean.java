@@ -0,0 +1,106 @@
+package org.hps.conditions.database;
+
+/**
+ * Management interface of the {@link ConditionsLoadMetrics}, which is registered with the platform MBean server as
+ * <code>org.hps.conditions:type=ConditionsLoadMetrics</code>.
+ */
+public interface ConditionsLoadMetricsMXBean {
+
+    /**
+     * Get the total number of bytes of the column values fetched from the database, which is estimated from the
+     * types and lengths of the values.
+     *
+     * @return the number of bytes fetched
+     */
+    long getBytesFetched();
+
+    /**
+     * Get the number of collections which were reused from a previous run or read from the snapshot cache.
+     *
+     * @return the number of cache hits
+     */
+    long getCacheHits();
+
+    /**
+     * Get the number of collections which had to be selected from the database, including those selected by the
+     * prefetcher.
+     *
+     * @return the number of cache misses
+     */
+    long getCacheMisses();
+
+    /**
+     * Get the total time spent creating conditions objects from the query results.
+     *
+     * @return the construction time in milliseconds
+     */
+    long getConstructionTimeMillis();
+
+    /**
+     * Get the number of conditions listener callbacks.
+     *
+     * @return the number of listener callbacks
+     */
+    long getListenerCallbacks();
+
+    /**
+     * Get the total time spent in conditions listener callbacks.
+     *
+     * @return the listener time in milliseconds
+     */
+    long getListenerTimeMillis();
+
+    /**
+     * Get the number of database queries.
+     *
+     * @return the number of queries
+     */
+    long getQueryCount();
+
+    /**
+     * Get the total time spent executing database queries.
+     *
+     * @return the query time in milliseconds
+     */
+    long getQueryTimeMillis();
+
+    /**
+     * Get the number of rows fetched from the database.
+     *
+     * @return the number of rows fetched
+     */
+    long getRowsFetched();
+
+    /**
+     * Get the number of times the conditions were set up for a new detector or run.
+     *
+     * @return the number of conditions setups
+     */
+    long getSetupCount();
+
+    /**
+     * Get the total time spent setting up the conditions for a new detector or run, including the listener callbacks.
+     *
+     * @return the setup time in milliseconds
+     */
+    long getSetupTimeMillis();
+
+    /**
+     * Get a summary of all the metrics.
+     *
+     * @return the summary
+     */
+    String getSummary();
+
+    /**
+     * Get one line of metrics for each table, with the slowest tables first.
+     *
+     * @return the table metrics
+     */
+    String[] getTableSummaries();
+
+    /**
+     * Reset all of the metrics to zero.
+     */
+    void reset();
+}
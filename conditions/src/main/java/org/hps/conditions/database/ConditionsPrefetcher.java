@@ -0,0 +1,274 @@
+package org.hps.conditions.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.hps.conditions.api.BaseConditionsObjectCollection;
+import org.hps.conditions.api.DatabaseObjectException;
+import org.hps.conditions.api.TableMetaData;
+
+/**
+ * Loads the conditions collections of a run concurrently over a small pool of database connections.
+ * <p>
+ * When the run changes, {@link DatabaseConditionsManager} resolves the conditions records of the new run and submits
+ * the collections of the tables which are expected to be used. The converters, which still run one at a time on the
+ * thread that sets up the conditions, then take the collections which have already been loaded with
+ * {@link #take(String, int)} instead of selecting them from the database, so the composite conditions objects such as
+ * {@link org.hps.conditions.ecal.EcalConditions} are assembled once all of their tables have arrived. Collections which
+ * were not prefetched are selected by the converters as before.
+ * <p>
+ * The pooled connection of a collection is detached once it has been selected, and the collection is given the
+ * connection of the manager when it is taken, so that it can be inserted, updated or deleted like a collection which
+ * was selected by a converter.
+ * <p>
+ * The connections of the pool are opened when they are first needed and closed by {@link #finish()} once the
+ * conditions system has been set up.
+ */
+final class ConditionsPrefetcher {
+
+    /**
+     * Initialize the logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(ConditionsPrefetcher.class.getPackage().getName());
+
+    /**
+     * The collections being loaded for one run and the connections used to load them.
+     */
+    private final class Batch {
+
+        private final int run;
+        private final Map<String, Future<BaseConditionsObjectCollection<?>>> futures =
+                new HashMap<String, Future<BaseConditionsObjectCollection<?>>>();
+        private final Deque<Connection> idleConnections = new ArrayDeque<Connection>();
+        private boolean finished = false;
+        private int connectionsOpened = 0;
+
+        Batch(final int run) {
+            this.run = run;
+        }
+
+        /**
+         * Select a collection using a connection from the pool.
+         */
+        BaseConditionsObjectCollection<?> load(final TableMetaData tableMetaData, final int collectionId)
+                throws InstantiationException, IllegalAccessException, SQLException, DatabaseObjectException {
+            final BaseConditionsObjectCollection<?> collection = (BaseConditionsObjectCollection<?>) tableMetaData
+                    .getCollectionClass().newInstance();
+            collection.setTableMetaData(tableMetaData);
+            final Connection connection = this.acquire();
+            try {
+                collection.setConnection(connection);
+                collection.select(collectionId);
+            } finally {
+                collection.setConnection(null);
+                this.release(connection);
+            }
+            return collection;
+        }
+
+        private Connection acquire() {
+            synchronized (this) {
+                if (!this.idleConnections.isEmpty()) {
+                    return this.idleConnections.pop();
+                }
+                ++this.connectionsOpened;
+            }
+            return manager.createConnection();
+        }
+
+        private void release(final Connection connection) {
+            synchronized (this) {
+                if (!this.finished) {
+                    this.idleConnections.push(connection);
+                    return;
+                }
+            }
+            close(connection);
+        }
+
+        /**
+         * Cancel the collections which have not been taken and close the idle connections. Connections which are
+         * still in use are closed when the tasks using them are done.
+         */
+        void finish() {
+            for (final Future<?> future : this.futures.values()) {
+                future.cancel(false);
+            }
+            synchronized (this) {
+                this.finished = true;
+                while (!this.idleConnections.isEmpty()) {
+                    close(this.idleConnections.pop());
+                }
+            }
+        }
+    }
+
+    /**
+     * Close a connection, logging any error.
+     *
+     * @param connection the connection
+     */
+    private static void close(final Connection connection) {
+        try {
+            connection.close();
+        } catch (final SQLException e) {
+            LOGGER.log(Level.WARNING, "Error closing conditions database connection.", e);
+        }
+    }
+
+    /**
+     * Create the key of a collection.
+     *
+     * @param tableName the table name
+     * @param collectionId the collection ID
+     * @return the key
+     */
+    private static String key(final String tableName, final int collectionId) {
+        return tableName + ":" + collectionId;
+    }
+
+    /**
+     * The conditions manager, which opens the connections.
+     */
+    private final DatabaseConditionsManager manager;
+
+    /**
+     * The threads loading the collections.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The number of threads and the maximum number of connections.
+     */
+    private final int threads;
+
+    /**
+     * The current batch or <code>null</code> if no run is being set up.
+     */
+    private Batch batch = null;
+
+    /**
+     * Create a prefetcher.
+     *
+     * @param manager the conditions manager
+     * @param threads the number of threads and connections
+     */
+    ConditionsPrefetcher(final DatabaseConditionsManager manager, final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be at least 1.");
+        }
+        this.manager = manager;
+        this.threads = threads;
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "ConditionsPrefetcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Get the number of threads.
+     *
+     * @return the number of threads
+     */
+    int getThreads() {
+        return this.threads;
+    }
+
+    /**
+     * Start a batch of collections for a run.
+     *
+     * @param run the run number
+     */
+    synchronized void start(final int run) {
+        if (this.batch != null) {
+            this.batch.finish();
+        }
+        this.batch = new Batch(run);
+    }
+
+    /**
+     * Submit a collection to be loaded in the current batch.
+     *
+     * @param tableMetaData the table meta data
+     * @param collectionId the collection ID
+     */
+    synchronized void submit(final TableMetaData tableMetaData, final int collectionId) {
+        final Batch current = this.batch;
+        final String key = key(tableMetaData.getTableName(), collectionId);
+        if (current == null || current.futures.containsKey(key)) {
+            return;
+        }
+        current.futures.put(key, this.executor.submit(() -> current.load(tableMetaData, collectionId)));
+    }
+
+    /**
+     * Take a prefetched collection, waiting for it to be loaded if necessary.
+     *
+     * @param tableName the table name
+     * @param collectionId the collection ID
+     * @return the collection with the connection of the manager or <code>null</code> if it was not prefetched
+     * @throws RuntimeException if there was an error loading the collection
+     */
+    BaseConditionsObjectCollection<?> take(final String tableName, final int collectionId) {
+        final Future<BaseConditionsObjectCollection<?>> future;
+        synchronized (this) {
+            if (this.batch == null) {
+                return null;
+            }
+            future = this.batch.futures.remove(key(tableName, collectionId));
+        }
+        if (future == null) {
+            return null;
+        }
+        final BaseConditionsObjectCollection<?> collection;
+        try {
+            collection = future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while loading conditions table " + tableName, e);
+        } catch (final CancellationException e) {
+            return null;
+        } catch (final ExecutionException e) {
+            throw new RuntimeException("Error creating conditions collection from table " + tableName
+                    + " with collection ID " + collectionId, e.getCause());
+        }
+        collection.setConnection(manager.getConnection());
+        return collection;
+    }
+
+    /**
+     * Finish the current batch, cancelling the collections which were not used and closing the connections.
+     */
+    synchronized void finish() {
+        if (this.batch != null) {
+            if (!this.batch.futures.isEmpty()) {
+                LOGGER.fine(this.batch.futures.size() + " prefetched conditions collections were not used: "
+                        + this.batch.futures.keySet());
+            }
+            LOGGER.config("loaded conditions for run " + this.batch.run + " using "
+                    + this.batch.connectionsOpened + " connections");
+            this.batch.finish();
+            this.batch = null;
+        }
+    }
+
+    /**
+     * Finish the current batch and stop the threads.
+     */
+    synchronized void shutdown() {
+        this.finish();
+        this.executor.shutdown();
+    }
+}
@@ -18,26 +18,28 @@ import org.lcsim.conditions.ConditionsManager;
 public final class ConditionsRecordConverter extends AbstractConditionsObjectConverter<ConditionsRecordCollection> {
 
     /**
-     * Get the ConditionsRecords for a run based on current configuration of the conditions system.
+     * Get the ConditionsRecords for a run from the snapshot cache if it is trusted, or else from the database.
      *
-     * @param manager The current conditions manager.
-     * @param name The name of the conditions set.
-     * @return The matching ConditionsRecords.
+     * @param databaseConditionsManager the conditions manager
+     * @param tableMetaData the table meta data of the conditions records
+     * @param run the run number
+     * @return the conditions records which are valid for the run
      */
-    @Override
     @SuppressWarnings({"unchecked", "rawtypes"})
-    public ConditionsRecordCollection getData(final ConditionsManager manager, final String name) {
-
-        final DatabaseConditionsManager databaseConditionsManager = DatabaseConditionsManager.getInstance();
-
-        final TableMetaData tableMetaData = databaseConditionsManager.findTableMetaData(name);
+    static ConditionsRecordCollection resolve(final DatabaseConditionsManager databaseConditionsManager,
+            final TableMetaData tableMetaData, final int run) {
 
-        if (tableMetaData == null) {
-            throw new RuntimeException("Failed to find meta data with key " + name);
+        // Use the conditions records from the snapshot cache if it is trusted.
+        final ConditionsSnapshotCache snapshotCache = databaseConditionsManager.getSnapshotCache();
+        if (snapshotCache != null) {
+            final ConditionsRecordCollection cached = snapshotCache.getConditionsRecords(tableMetaData);
+            if (cached != null) {
+                return cached;
+            }
         }
 
         final String query = "SELECT * from " + tableMetaData.getTableName() + " WHERE " + "run_start <= "
-                + manager.getRun() + " AND run_end >= " + manager.getRun();
+                + run + " AND run_end >= " + run;
 
         final ResultSet resultSet = databaseConditionsManager.selectQuery(query);
 
@@ -68,7 +70,39 @@ public final class ConditionsRecordConverter extends AbstractConditionsObjectCon
         // Close the ResultSet and Statement.
         DatabaseUtilities.cleanup(resultSet);
 
-        return this.getType().cast(collection);
+        if (snapshotCache != null) {
+            snapshotCache.putConditionsRecords((ConditionsRecordCollection) collection);
+        }
+
+        return (ConditionsRecordCollection) collection;
+    }
+
+    /**
+     * Get the ConditionsRecords for a run based on current configuration of the conditions system.
+     *
+     * @param manager The current conditions manager.
+     * @param name The name of the conditions set.
+     * @return The matching ConditionsRecords.
+     */
+    @Override
+    public ConditionsRecordCollection getData(final ConditionsManager manager, final String name) {
+
+        final DatabaseConditionsManager databaseConditionsManager = DatabaseConditionsManager.getInstance();
+
+        final TableMetaData tableMetaData = databaseConditionsManager.findTableMetaData(name);
+
+        if (tableMetaData == null) {
+            throw new RuntimeException("Failed to find meta data with key " + name);
+        }
+
+        // Use the conditions records which were resolved before the conditions of the run were set up.
+        final ConditionsRecordCollection resolved = databaseConditionsManager.getResolvedConditionsRecords(manager
+                .getRun());
+        if (resolved != null) {
+            return resolved;
+        }
+
+        return resolve(databaseConditionsManager, tableMetaData, manager.getRun());
     }
 
     /**
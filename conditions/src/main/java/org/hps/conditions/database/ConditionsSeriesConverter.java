@@ -1,7 +1,9 @@
 package org.hps.conditions.database;
 
 import java.sql.SQLException;
+import java.util.logging.Logger;
 
+import org.hps.conditions.api.BaseConditionsObjectCollection;
 import org.hps.conditions.api.ConditionsObject;
 import org.hps.conditions.api.ConditionsObjectCollection;
 import org.hps.conditions.api.ConditionsRecord;
@@ -25,6 +27,11 @@ import org.hps.conditions.api.TableMetaData;
  */
 final class ConditionsSeriesConverter<ObjectType extends ConditionsObject, CollectionType extends ConditionsObjectCollection<ObjectType>> {
 
+    /**
+     * Initialize the logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(ConditionsSeriesConverter.class.getPackage().getName());
+
     /**
      * The type of the collection.
      */
@@ -52,7 +59,6 @@ final class ConditionsSeriesConverter<ObjectType extends ConditionsObject, Colle
      * @param tableName the name of the data table
      * @return the conditions series
      */
-    @SuppressWarnings({"unchecked"})
     final ConditionsSeries<ObjectType, CollectionType> createSeries(final String tableName) {
 
         if (tableName == null) {
@@ -67,26 +73,87 @@ final class ConditionsSeriesConverter<ObjectType extends ConditionsObject, Colle
             throw new RuntimeException("Table meta data for " + this.collectionType + " was not found.");
         }
 
+        // Get the ConditionsRecord with the meta-data, which will use the current run number from the manager.
+        final ConditionsRecordCollection conditionsRecords = conditionsManager.findConditionsRecords(tableName);
+
+        return this.createSeries(conditionsManager, tableMetaData, conditionsRecords);
+    }
+
+    /**
+     * Create a new conditions series from the collections of the given conditions records.
+     * <p>
+     * Each collection is taken from the incremental refresh, the snapshot cache or the prefetcher if it is there, and
+     * is only selected from the database if it is in none of them.
+     *
+     * @param conditionsManager the conditions manager
+     * @param tableMetaData the table meta data of the collections
+     * @param conditionsRecords the conditions records of the collections
+     * @return the conditions series
+     */
+    @SuppressWarnings({"unchecked"})
+    final ConditionsSeries<ObjectType, CollectionType> createSeries(final DatabaseConditionsManager conditionsManager,
+            final TableMetaData tableMetaData, final ConditionsRecordCollection conditionsRecords) {
+
         // Create a new conditions series.
         final ConditionsSeries<ObjectType, CollectionType> series = new ConditionsSeries<ObjectType, CollectionType>();
 
-        // Get the ConditionsRecord with the meta-data, which will use the current run number from the manager.
-        final ConditionsRecordCollection conditionsRecords = conditionsManager.findConditionsRecords(tableName);
+        // Remember the table so it is prefetched when the run changes.
+        conditionsManager.addPrefetchSeries(tableMetaData.getTableName());
+        final ConditionsPrefetcher prefetcher = conditionsManager.getPrefetcher();
+        final IncrementalRefresh refresh = conditionsManager.getIncrementalRefresh();
+        final ConditionsSnapshotCache snapshotCache = conditionsManager.getSnapshotCache();
 
         for (final ConditionsRecord conditionsRecord : conditionsRecords) {
 
             ConditionsObjectCollection<?> collection = null;
-            try {
-                collection = tableMetaData.getCollectionClass().newInstance();
-            } catch (InstantiationException | IllegalAccessException e1) {
-                throw new RuntimeException(e1);
+            if (refresh != null) {
+                collection = refresh.findCollection(tableMetaData.getTableName(), conditionsRecord.getCollectionId());
+                if (collection != null) {
+                    ConditionsLoadMetrics.getInstance().addLoad(tableMetaData.getTableName(),
+                            ConditionsLoadMetrics.Source.REUSED);
+                }
+            }
+            if (collection == null && snapshotCache != null) {
+                collection = snapshotCache.getCollection(tableMetaData, conditionsRecord);
+                if (collection != null) {
+                    LOGGER.info("loading conditions set from snapshot..." + '\n' + conditionsRecord);
+                    ConditionsLoadMetrics.getInstance().addLoad(tableMetaData.getTableName(),
+                            ConditionsLoadMetrics.Source.SNAPSHOT);
+                }
+            }
+            if (collection == null && prefetcher != null) {
+                collection = prefetcher.take(tableMetaData.getTableName(), conditionsRecord.getCollectionId());
+                if (collection != null) {
+                    ConditionsLoadMetrics.getInstance().addLoad(tableMetaData.getTableName(),
+                            ConditionsLoadMetrics.Source.PREFETCHED);
+                    if (snapshotCache != null) {
+                        snapshotCache.putCollection(tableMetaData, conditionsRecord,
+                                (BaseConditionsObjectCollection<?>) collection);
+                    }
+                }
+            }
+            if (collection == null) {
+                try {
+                    collection = tableMetaData.getCollectionClass().newInstance();
+                } catch (InstantiationException | IllegalAccessException e1) {
+                    throw new RuntimeException(e1);
+                }
+                try {
+                    collection.setTableMetaData(tableMetaData);
+                    collection.setConnection(conditionsManager.getConnection());
+                    collection.select(conditionsRecord.getCollectionId());
+                } catch (final DatabaseObjectException | SQLException e) {
+                    throw new RuntimeException(e);
+                }
+                ConditionsLoadMetrics.getInstance().addLoad(tableMetaData.getTableName(),
+                        ConditionsLoadMetrics.Source.DATABASE);
+                if (snapshotCache != null) {
+                    snapshotCache.putCollection(tableMetaData, conditionsRecord,
+                            (BaseConditionsObjectCollection<?>) collection);
+                }
             }
-            try {
-                collection.setTableMetaData(tableMetaData);
-                collection.setConnection(conditionsManager.getConnection());
-                collection.select(conditionsRecord.getCollectionId());
-            } catch (final DatabaseObjectException | SQLException e) {
-                throw new RuntimeException(e);
+            if (refresh != null) {
+                refresh.addCollection(tableMetaData.getTableName(), conditionsRecord.getCollectionId(), collection);
             }
             series.add((ConditionsObjectCollection<ObjectType>) collection);
         }
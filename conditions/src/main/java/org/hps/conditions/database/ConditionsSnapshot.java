@@ -0,0 +1,221 @@
+package org.hps.conditions.database;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hps.conditions.api.ConditionsRecord;
+import org.hps.conditions.api.ConditionsRecordIndex;
+import org.hps.conditions.ecal.EcalConditions;
+import org.hps.conditions.hodoscope.HodoscopeConditions;
+import org.hps.conditions.svt.SvtConditions;
+import org.lcsim.geometry.Detector;
+
+/**
+ * Immutable view of the conditions of one detector and run.
+ * <p>
+ * A snapshot is created by the {@link DatabaseConditionsManager} when it is set up for a detector and run, and is
+ * published only once it is complete, before the conditions listeners are notified. It contains the conditions
+ * records of the run after the tags are applied, the collection of every conditions key of the run, the
+ * {@link Detector} and the combined ECAL, SVT and hodoscope conditions.
+ * <p>
+ * The contents of a snapshot never change after it is created, and it does not refer back to the manager. Threads
+ * which hold a snapshot therefore always see the same conditions of the same run, even while the manager is being set
+ * up for another run. Conditions which could not be loaded for the run are not in the snapshot, and requesting them
+ * always fails in the same way. The conditions objects themselves are shared with the manager and must not be
+ * modified by the readers of a snapshot.
+ *
+ * @see DatabaseConditionsManager#getSnapshot()
+ */
+public final class ConditionsSnapshot {
+
+    /**
+     * Create the key of a conditions object.
+     *
+     * @param type the class of the conditions object
+     * @param name the name of the conditions
+     * @return the key
+     */
+    static String key(final Class<?> type, final String name) {
+        return type.getName() + ":" + name;
+    }
+
+    /**
+     * The conditions objects by their key.
+     */
+    private final Map<String, Object> conditions;
+
+    /**
+     * The detector name.
+     */
+    private final String detectorName;
+
+    /**
+     * The index of the conditions records of the run.
+     */
+    private final ConditionsRecordIndex records;
+
+    /**
+     * The run number.
+     */
+    private final int run;
+
+    /**
+     * The active conditions tags.
+     */
+    private final Set<String> tags;
+
+    /**
+     * Create a snapshot.
+     *
+     * @param detectorName the detector name
+     * @param run the run number
+     * @param tags the active conditions tags
+     * @param records the index of the conditions records of the run after the tags are applied
+     * @param conditions the conditions objects of the run by their key, which are copied
+     */
+    ConditionsSnapshot(final String detectorName, final int run, final Set<String> tags,
+            final ConditionsRecordIndex records, final Map<String, Object> conditions) {
+        this.detectorName = detectorName;
+        this.run = run;
+        this.tags = Collections.unmodifiableSet(new LinkedHashSet<String>(tags));
+        this.records = records;
+        this.conditions = Collections.unmodifiableMap(new LinkedHashMap<String, Object>(conditions));
+    }
+
+    /**
+     * Find the conditions records of the run with a key.
+     *
+     * @param key the conditions key, which is usually a table name
+     * @return the conditions records, which is empty if there are none
+     */
+    public List<ConditionsRecord> findConditionsRecords(final String key) {
+        return this.records.findByKey(key);
+    }
+
+    /**
+     * Find the unique conditions record of the run with a key.
+     *
+     * @param key the conditions key, which is usually a table name
+     * @param action the action used to pick one of several records
+     * @return the conditions record or <code>null</code> if there is none
+     */
+    public ConditionsRecord findUniqueRecord(final String key, final MultipleCollectionsAction action) {
+        return this.records.findUniqueRecord(key, action);
+    }
+
+    /**
+     * Get a conditions object.
+     *
+     * @param type the class of the conditions object
+     * @param name the name of the conditions
+     * @param <T> the type of the conditions object
+     * @return the conditions object
+     * @throws IllegalArgumentException if the conditions are not in this snapshot
+     */
+    public <T> T getConditions(final Class<T> type, final String name) {
+        final Object data = this.conditions.get(key(type, name));
+        if (data == null) {
+            throw new IllegalArgumentException("The conditions " + name + " with type " + type.getSimpleName()
+                    + " were not loaded for run " + this.run + ".");
+        }
+        return type.cast(data);
+    }
+
+    /**
+     * Get the conditions keys of the records of the run.
+     *
+     * @return the conditions keys
+     */
+    public Set<String> getConditionsKeys() {
+        return this.records.getConditionsKeys();
+    }
+
+    /**
+     * Get the detector name.
+     *
+     * @return the detector name
+     */
+    public String getDetectorName() {
+        return this.detectorName;
+    }
+
+    /**
+     * Get the detector object.
+     *
+     * @return the detector object
+     */
+    public Detector getDetectorObject() {
+        return this.getConditions(Detector.class, "compact.xml");
+    }
+
+    /**
+     * Get the combined ECAL conditions.
+     *
+     * @return the combined ECAL conditions
+     */
+    public EcalConditions getEcalConditions() {
+        return this.getConditions(EcalConditions.class, "ecal_conditions");
+    }
+
+    /**
+     * Get the combined hodoscope conditions.
+     *
+     * @return the combined hodoscope conditions
+     */
+    public HodoscopeConditions getHodoConditions() {
+        return this.getConditions(HodoscopeConditions.class, "hodo_conditions");
+    }
+
+    /**
+     * Get the run number.
+     *
+     * @return the run number
+     */
+    public int getRun() {
+        return this.run;
+    }
+
+    /**
+     * Get the combined SVT conditions.
+     *
+     * @return the combined SVT conditions
+     */
+    public SvtConditions getSvtConditions() {
+        return this.getConditions(SvtConditions.class, "svt_conditions");
+    }
+
+    /**
+     * Get the conditions tags which were active for this run.
+     *
+     * @return the active tags
+     */
+    public Set<String> getTags() {
+        return this.tags;
+    }
+
+    /**
+     * Return <code>true</code> if a conditions object is in this snapshot.
+     *
+     * @param type the class of the conditions object
+     * @param name the name of the conditions
+     * @return <code>true</code> if the conditions object is in this snapshot
+     */
+    public boolean hasConditions(final Class<?> type, final String name) {
+        return this.conditions.containsKey(key(type, name));
+    }
+
+    /**
+     * Convert this object to a string.
+     *
+     * @return this object converted to a string
+     */
+    @Override
+    public String toString() {
+        return "ConditionsSnapshot { detector: " + this.detectorName + ", run: " + this.run + ", tags: " + this.tags
+                + ", conditions: " + this.conditions.size() + " }";
+    }
+}
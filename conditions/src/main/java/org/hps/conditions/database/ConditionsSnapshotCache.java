@@ -0,0 +1,427 @@
+package org.hps.conditions.database;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.hps.conditions.api.BaseConditionsObjectCollection;
+import org.hps.conditions.api.ConditionsRecord;
+import org.hps.conditions.api.ConditionsRecord.ConditionsRecordCollection;
+import org.hps.conditions.api.TableMetaData;
+
+/**
+ * Persistent on-disk cache of the conditions collections loaded for a detector, run and set of tags.
+ * <p>
+ * Every collection selected from the database is stored in a snapshot together with the row ID, collection ID and
+ * updated date of the conditions record it was found with. Collections are identified by table name and collection
+ * ID, since several collections of one table may be used for the same run. When the same detector, run and tags are
+ * used again, a collection is read from the snapshot instead of the database if the conditions record chosen for it
+ * is unchanged. Snapshots are written to one file per key in the cache directory when the conditions are changed and
+ * when the JVM exits.
+ * <p>
+ * The cache is enabled by setting the <code>org.hps.conditions.snapshot.dir</code> system property to the cache
+ * directory. Normally the conditions records for the run are still read from the database to validate the snapshot.
+ * If <code>org.hps.conditions.snapshot.trusted</code> is <code>true</code> then the conditions records are also read
+ * from the snapshot, and a run which has already been cached is set up without connecting to the database.
+ */
+final class ConditionsSnapshotCache {
+
+    /**
+     * Initialize the logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(ConditionsSnapshotCache.class.getPackage().getName());
+
+    /**
+     * System property with the cache directory.
+     */
+    static final String DIRECTORY_PROPERTY = "org.hps.conditions.snapshot.dir";
+
+    /**
+     * System property which enables reading the conditions records from the snapshot.
+     */
+    static final String TRUSTED_PROPERTY = "org.hps.conditions.snapshot.trusted";
+
+    /**
+     * Magic number at the start of a snapshot file.
+     */
+    private static final int MAGIC = 0x48505353; // "HPSS"
+
+    /**
+     * Version of the snapshot format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * A serialized collection and the conditions record it was loaded with.
+     */
+    private static final class Entry {
+
+        private final String tableName;
+        private final int recordId;
+        private final int collectionId;
+        private final long updated;
+        private final byte[] data;
+
+        Entry(final String tableName, final int recordId, final int collectionId, final long updated,
+                final byte[] data) {
+            this.tableName = tableName;
+            this.recordId = recordId;
+            this.collectionId = collectionId;
+            this.updated = updated;
+            this.data = data;
+        }
+
+        boolean matches(final ConditionsRecord conditionsRecord) {
+            return this.recordId == conditionsRecord.getRowId()
+                    && this.collectionId == conditionsRecord.getCollectionId()
+                    && this.updated == getUpdated(conditionsRecord);
+        }
+    }
+
+    /**
+     * Get the key of a collection in the snapshot.
+     *
+     * @param tableName the table name
+     * @param collectionId the collection ID
+     * @return the key
+     */
+    private static String getEntryKey(final String tableName, final int collectionId) {
+        return tableName + ":" + collectionId;
+    }
+
+    /**
+     * Create the cache from the system properties.
+     *
+     * @return the cache or <code>null</code> if it is not enabled
+     */
+    static ConditionsSnapshotCache fromSystemProperties() {
+        final String directory = System.getProperty(DIRECTORY_PROPERTY);
+        if (directory == null) {
+            return null;
+        }
+        return new ConditionsSnapshotCache(new File(directory), Boolean.getBoolean(TRUSTED_PROPERTY));
+    }
+
+    /**
+     * Get the updated date of a conditions record in ms, or -1 if it is not set.
+     *
+     * @param conditionsRecord the conditions record
+     * @return the updated date
+     */
+    private static long getUpdated(final ConditionsRecord conditionsRecord) {
+        final Date updated = conditionsRecord.getUpdated();
+        return updated != null ? updated.getTime() : -1L;
+    }
+
+    /**
+     * The cache directory.
+     */
+    private final File directory;
+
+    /**
+     * <code>true</code> to use the conditions records from the snapshot.
+     */
+    private final boolean trusted;
+
+    /**
+     * The key of the current snapshot.
+     */
+    private String key = null;
+
+    /**
+     * The serialized conditions records of the current snapshot.
+     */
+    private byte[] conditionsRecords = null;
+
+    /**
+     * The serialized collections of the current snapshot by table name and collection ID.
+     */
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+    /**
+     * <code>true</code> if the current snapshot has changes which have not been saved.
+     */
+    private boolean dirty = false;
+
+    /**
+     * Number of collections read from the current snapshot.
+     */
+    private int hits = 0;
+
+    /**
+     * Number of collections added to the current snapshot.
+     */
+    private int misses = 0;
+
+    /**
+     * Create a cache.
+     *
+     * @param directory the cache directory
+     * @param trusted <code>true</code> to also read the conditions records from the snapshot
+     */
+    ConditionsSnapshotCache(final File directory, final boolean trusted) {
+        this.directory = directory;
+        this.trusted = trusted;
+        Runtime.getRuntime().addShutdownHook(new Thread(this::save, "ConditionsSnapshotCache"));
+        LOGGER.config("conditions snapshot cache in " + directory.getPath() + (trusted ? " (trusted)" : ""));
+    }
+
+    /**
+     * Switch to the snapshot for a detector, run and set of tags, saving the current snapshot if it has changed.
+     *
+     * @param detectorName the detector name
+     * @param run the run number
+     * @param tags the active conditions tags
+     */
+    synchronized void open(final String detectorName, final int run, final Collection<String> tags) {
+        final List<String> sortedTags = new ArrayList<String>(tags);
+        Collections.sort(sortedTags);
+        final String newKey = detectorName + ":" + run + ":" + String.join(",", sortedTags);
+        if (newKey.equals(this.key)) {
+            return;
+        }
+        this.save();
+        this.key = newKey;
+        this.conditionsRecords = null;
+        this.entries.clear();
+        this.hits = 0;
+        this.misses = 0;
+        final File file = this.getFile();
+        if (file.exists()) {
+            try {
+                this.read(file);
+                LOGGER.info("read conditions snapshot " + file.getPath() + " with " + this.entries.size()
+                        + " collections");
+            } catch (final IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Ignoring unreadable conditions snapshot " + file.getPath(), e);
+                this.conditionsRecords = null;
+                this.entries.clear();
+            }
+        }
+    }
+
+    /**
+     * Get the conditions records from the snapshot if the cache is trusted.
+     *
+     * @param tableMetaData the table meta data of the conditions records
+     * @return the conditions records or <code>null</code> if they should be read from the database
+     */
+    synchronized ConditionsRecordCollection getConditionsRecords(final TableMetaData tableMetaData) {
+        if (!this.trusted || this.conditionsRecords == null) {
+            return null;
+        }
+        final ConditionsRecordCollection collection = new ConditionsRecordCollection();
+        collection.setTableMetaData(tableMetaData);
+        try {
+            collection.readSnapshot(-1, new DataInputStream(new ByteArrayInputStream(this.conditionsRecords)));
+        } catch (final IOException e) {
+            LOGGER.log(Level.WARNING, "Error reading conditions records from snapshot.", e);
+            return null;
+        }
+        return collection;
+    }
+
+    /**
+     * Store the conditions records read from the database in the snapshot.
+     *
+     * @param collection the conditions records
+     */
+    synchronized void putConditionsRecords(final ConditionsRecordCollection collection) {
+        try {
+            this.conditionsRecords = serialize(collection);
+            this.dirty = true;
+        } catch (final IOException e) {
+            LOGGER.log(Level.WARNING, "Conditions records cannot be stored in the snapshot.", e);
+        }
+    }
+
+    /**
+     * Get a collection from the snapshot if it was stored with the same conditions record.
+     *
+     * @param tableMetaData the table meta data of the collection
+     * @param conditionsRecord the conditions record of the collection
+     * @return the collection or <code>null</code> if it is not in the snapshot or is out of date
+     */
+    synchronized BaseConditionsObjectCollection<?> getCollection(final TableMetaData tableMetaData,
+            final ConditionsRecord conditionsRecord) {
+        final Entry entry = this.entries.get(getEntryKey(tableMetaData.getTableName(),
+                conditionsRecord.getCollectionId()));
+        if (entry == null || !entry.matches(conditionsRecord)) {
+            return null;
+        }
+        try {
+            final BaseConditionsObjectCollection<?> collection = (BaseConditionsObjectCollection<?>) tableMetaData
+                    .getCollectionClass().newInstance();
+            collection.setTableMetaData(tableMetaData);
+            collection.readSnapshot(entry.collectionId, new DataInputStream(new ByteArrayInputStream(entry.data)));
+            ++this.hits;
+            return collection;
+        } catch (InstantiationException | IllegalAccessException | IOException e) {
+            LOGGER.log(Level.WARNING, "Error reading " + tableMetaData.getTableName() + " from snapshot.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Check if a collection is in the snapshot with the same conditions record.
+     *
+     * @param tableMetaData the table meta data of the collection
+     * @param conditionsRecord the conditions record of the collection
+     * @return <code>true</code> if {@link #getCollection(TableMetaData, ConditionsRecord)} would find the collection
+     */
+    synchronized boolean hasCollection(final TableMetaData tableMetaData, final ConditionsRecord conditionsRecord) {
+        final Entry entry = this.entries.get(getEntryKey(tableMetaData.getTableName(),
+                conditionsRecord.getCollectionId()));
+        return entry != null && entry.matches(conditionsRecord);
+    }
+
+    /**
+     * Store a collection read from the database in the snapshot.
+     *
+     * @param tableMetaData the table meta data of the collection
+     * @param conditionsRecord the conditions record of the collection
+     * @param collection the collection
+     */
+    synchronized void putCollection(final TableMetaData tableMetaData, final ConditionsRecord conditionsRecord,
+            final BaseConditionsObjectCollection<?> collection) {
+        try {
+            this.entries.put(getEntryKey(tableMetaData.getTableName(), conditionsRecord.getCollectionId()),
+                    new Entry(tableMetaData.getTableName(), conditionsRecord.getRowId(),
+                            conditionsRecord.getCollectionId(), getUpdated(conditionsRecord), serialize(collection)));
+            this.dirty = true;
+            ++this.misses;
+        } catch (final IOException e) {
+            LOGGER.log(Level.WARNING, "Table " + tableMetaData.getTableName() + " cannot be stored in the snapshot.",
+                    e);
+        }
+    }
+
+    /**
+     * Write the current snapshot to its file if it has changed.
+     * <p>
+     * The snapshot is written to a temporary file which then replaces the old file, so a reader never sees a partly
+     * written snapshot.
+     */
+    synchronized void save() {
+        if (!this.dirty || this.key == null) {
+            return;
+        }
+        final File file = this.getFile();
+        try {
+            if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+                throw new IOException("Failed to create directory " + this.directory.getPath());
+            }
+            final File tmpFile = File.createTempFile(file.getName(), ".tmp", this.directory);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+                    tmpFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(this.key);
+                writeBytes(out, this.conditionsRecords);
+                out.writeInt(this.entries.size());
+                for (final Entry entry : this.entries.values()) {
+                    out.writeUTF(entry.tableName);
+                    out.writeInt(entry.recordId);
+                    out.writeInt(entry.collectionId);
+                    out.writeLong(entry.updated);
+                    writeBytes(out, entry.data);
+                }
+            }
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            this.dirty = false;
+            LOGGER.info("wrote conditions snapshot " + file.getPath() + " with " + this.entries.size()
+                    + " collections; " + this.hits + " collections were read from the snapshot and " + this.misses
+                    + " from the database");
+        } catch (final IOException e) {
+            LOGGER.log(Level.WARNING, "Error writing conditions snapshot " + file.getPath(), e);
+        }
+    }
+
+    /**
+     * Read a snapshot file.
+     *
+     * @param file the snapshot file
+     * @throws IOException if there is an error reading the file or it is not a snapshot of the current key
+     */
+    private void read(final File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a conditions snapshot or wrong version.");
+            }
+            final String fileKey = in.readUTF();
+            if (!fileKey.equals(this.key)) {
+                throw new IOException("The snapshot has key " + fileKey + " instead of " + this.key);
+            }
+            this.conditionsRecords = readBytes(in);
+            final int nEntries = in.readInt();
+            for (int i = 0; i < nEntries; i++) {
+                final String tableName = in.readUTF();
+                final int recordId = in.readInt();
+                final int collectionId = in.readInt();
+                final long updated = in.readLong();
+                this.entries.put(getEntryKey(tableName, collectionId), new Entry(tableName, recordId, collectionId,
+                        updated, readBytes(in)));
+            }
+        }
+    }
+
+    /**
+     * Get the snapshot file of the current key.
+     * <p>
+     * The file name has the detector name and run number for readability and a hash of the full key to tell apart
+     * the different sets of tags.
+     *
+     * @return the snapshot file
+     */
+    private File getFile() {
+        final String[] fields = this.key.split(":", 3);
+        return new File(this.directory, fields[0].replaceAll("[^A-Za-z0-9._-]", "_") + "-" + fields[1] + "-"
+                + String.format("%08x", this.key.hashCode()) + ".snapshot");
+    }
+
+    private static byte[] serialize(final BaseConditionsObjectCollection<?> collection) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        collection.writeSnapshot(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeBytes(final DataOutputStream out, final byte[] data) throws IOException {
+        if (data == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(data.length);
+            out.write(data);
+        }
+    }
+
+    private static byte[] readBytes(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] data = new byte[length];
+        in.readFully(data);
+        return data;
+    }
+}
@@ -6,11 +6,15 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.logging.Level;
@@ -18,7 +22,9 @@ import java.util.logging.Logger;
 
 import org.hps.conditions.api.ConditionsObject;
 import org.hps.conditions.api.ConditionsObjectCollection;
+import org.hps.conditions.api.ConditionsRecord;
 import org.hps.conditions.api.ConditionsRecord.ConditionsRecordCollection;
+import org.hps.conditions.api.ConditionsRecordIndex;
 import org.hps.conditions.api.ConditionsSeries;
 import org.hps.conditions.api.ConditionsTag.ConditionsTagCollection;
 import org.hps.conditions.api.TableMetaData;
@@ -30,9 +36,12 @@ import org.hps.conditions.hodoscope.HodoscopeConditionsConverter;
 import org.hps.conditions.svt.SvtConditions;
 import org.hps.conditions.svt.SvtConditionsConverter;
 import org.lcsim.conditions.ConditionsConverter;
+import org.lcsim.conditions.ConditionsEvent;
+import org.lcsim.conditions.ConditionsListener;
 import org.lcsim.conditions.ConditionsManager;
 import org.lcsim.conditions.ConditionsManagerImplementation;
 import org.lcsim.geometry.Detector;
+import org.lcsim.geometry.Subdetector;
 import org.lcsim.util.loop.DetectorConditionsConverter;
 
 /**
@@ -60,6 +69,13 @@ import org.lcsim.util.loop.DetectorConditionsConverter;
  * <p>
  * SQLite is not supported in write mode. The local database should be a clone
  * of a particular version of the master MySQL database at JLab.
+ * A compact SQLite bundle with only the conditions of a run range can be
+ * created with the <i>bundle</i> command of the conditions command line tool.
+ * <p>
+ * Code which reads conditions from several threads, or which must keep the
+ * conditions of one run while the manager is set up for another, should enable
+ * the snapshots with {@link #setPublishSnapshots(boolean)} and hold the
+ * {@link ConditionsSnapshot} of the run returned by {@link #getSnapshot()}.
  *
  * @see org.lcsim.conditions.ConditionsManager
  */
@@ -110,6 +126,74 @@ public final class DatabaseConditionsManager extends ConditionsManagerImplementa
      */
     private static final int RETRY_WAIT = 5000;
 
+    /**
+     * Tables which are prefetched on the first initialization, before the tables used by the job are known. These are
+     * the tables of the ECal, SVT and hodoscope conditions objects.
+     */
+    private static final String[] DEFAULT_PREFETCH_TABLES = {"ecal_channels", "ecal_gains", "ecal_calibrations",
+            "ecal_time_shifts", "ecal_pulse_widths", "svt_channels", "svt_daq_map", "svt_t0_shifts",
+            "svt_calibrations", "svt_gains", "svt_shape_fit_parameters", "hodo_channels", "hodo_gains",
+            "hodo_calibrations", "hodo_time_shifts"};
+
+    /**
+     * Tables of the ECal and SVT conditions objects which are loaded as a {@link ConditionsSeries}, so that all of
+     * their collections for the run are prefetched.
+     */
+    private static final String[] DEFAULT_PREFETCH_SERIES = {"ecal_bad_channels", "svt_bad_channels"};
+
+    /**
+     * The package of the lcsim conditions system, whose own conditions listeners are notified at once.
+     */
+    private static final String LCSIM_CONDITIONS_PACKAGE = "org.lcsim.conditions.";
+
+    /**
+     * Conditions listener which records the number of callbacks and the time spent in them, and which skips the
+     * callback if none of the tables the listener depends on changed.
+     */
+    static final class TimedConditionsListener implements ConditionsListener {
+
+        private final DatabaseConditionsManager manager;
+        private final ConditionsListener listener;
+        private final String[] tableNames;
+        private final String name;
+
+        TimedConditionsListener(final DatabaseConditionsManager manager, final ConditionsListener listener,
+                final String[] tableNames) {
+            this.manager = manager;
+            this.listener = listener;
+            this.tableNames = tableNames != null ? tableNames.clone() : null;
+            this.name = listener.getClass().getName();
+        }
+
+        @Override
+        public void conditionsChanged(final ConditionsEvent event) {
+            // The listeners of lcsim itself, such as those which clear the cached conditions, are never deferred so
+            // that the snapshot is built from the conditions of the new run.
+            if (!this.name.startsWith(LCSIM_CONDITIONS_PACKAGE) && this.manager.deferCallback(this, event)) {
+                return;
+            }
+            this.notifyListener(event);
+        }
+
+        /**
+         * Notify the listener unless none of its tables changed.
+         *
+         * @param event the conditions event
+         */
+        void notifyListener(final ConditionsEvent event) {
+            if (this.tableNames != null && !this.manager.hasChanged(this.tableNames)) {
+                LOG.fine("skipping conditions listener " + this.name + " because its tables did not change");
+                return;
+            }
+            final long start = System.nanoTime();
+            try {
+                this.listener.conditionsChanged(event);
+            } finally {
+                ConditionsLoadMetrics.getInstance().addListenerCallback(this.name, System.nanoTime() - start);
+            }
+        }
+    }
+
     /**
      * Get a connection to the conditions database, possibly using properties
      * from the command line for the database URL, username, and password
@@ -117,7 +201,7 @@ public final class DatabaseConditionsManager extends ConditionsManagerImplementa
      *
      * @return A connection to the conditions database
      */
-    private Connection createConnection() {
+    Connection createConnection() {
 
         Connection connection = null;
 
@@ -264,6 +348,72 @@ public final class DatabaseConditionsManager extends ConditionsManagerImplementa
      */
     private final Set<String> tags = new HashSet<String>();
 
+    /**
+     * The on-disk conditions snapshot cache or <code>null</code> if it is not enabled.
+     */
+    private ConditionsSnapshotCache snapshotCache = ConditionsSnapshotCache.fromSystemProperties();
+
+    /**
+     * The number of threads used to load conditions collections, or 0 to load them one at a time.
+     */
+    private int loadThreads = Integer.getInteger("org.hps.conditions.loadThreads", 0);
+
+    /**
+     * The prefetcher which loads conditions collections concurrently or <code>null</code> if it is not enabled.
+     */
+    private ConditionsPrefetcher prefetcher = null;
+
+    /**
+     * The tables which are prefetched when the run changes, mapped to the action which selects the collection used
+     * from the records of the run. A <code>null</code> action means that the table is loaded as a series and all of
+     * its collections are prefetched.
+     */
+    private final Map<String, MultipleCollectionsAction> prefetchTables = Collections
+            .synchronizedMap(new LinkedHashMap<String, MultipleCollectionsAction>());
+
+    /**
+     * True if only the conditions which changed are loaded again when the run changes.
+     */
+    private boolean incrementalRefresh = Boolean.getBoolean("org.hps.conditions.incremental");
+
+    /**
+     * Keeps track of the conditions which changed between runs for the incremental refresh.
+     */
+    private final IncrementalRefresh refresh = new IncrementalRefresh();
+
+    /**
+     * The run of the conditions records which were resolved before the conditions of the run were set up.
+     */
+    private int resolvedRun = -1;
+
+    /**
+     * The conditions records which were resolved before the conditions of the run were set up, before the tags are
+     * applied, or <code>null</code> if they were not resolved in advance.
+     */
+    private ConditionsRecordCollection resolvedRecords = null;
+
+    /**
+     * The conditions of the current run, which is replaced with a new snapshot when the conditions change.
+     */
+    private volatile ConditionsSnapshot snapshot = null;
+
+    /**
+     * True if a complete snapshot of the conditions is published for every detector and run.
+     */
+    private boolean publishSnapshots = Boolean.getBoolean("org.hps.conditions.snapshots");
+
+    /**
+     * The listener callbacks which wait for the snapshot of the new run to be published, or <code>null</code> if
+     * callbacks are not deferred.
+     */
+    private Map<TimedConditionsListener, ConditionsEvent> deferredCallbacks = null;
+
+    /**
+     * The listeners which record their callbacks in the load metrics, by the listener which was added.
+     */
+    private final Map<ConditionsListener, TimedConditionsListener> timedListeners =
+            new IdentityHashMap<ConditionsListener, TimedConditionsListener>();
+
     private ConditionsConverter hodoscopeConverter;
 
     /**
@@ -283,10 +433,50 @@ public final class DatabaseConditionsManager extends ConditionsManagerImplementa
             this.registerConditionsConverter(converter);
         }
 
+        // Prefetch the default tables with the actions of their converters.
+        for (final String tableName : DEFAULT_PREFETCH_TABLES) {
+            final TableMetaData tableMetaData = this.findTableMetaData(tableName);
+            final AbstractConditionsObjectConverter converter = tableMetaData != null ? this.converters
+                    .get(tableMetaData.getCollectionClass()) : null;
+            this.prefetchTables.put(tableName, converter != null ? converter.getMultipleCollectionsAction()
+                    : MultipleCollectionsAction.LAST_CREATED);
+        }
+        for (final String tableName : DEFAULT_PREFETCH_SERIES) {
+            this.prefetchTables.put(tableName, null);
+        }
+
         // Set default global conditions manager.
         ConditionsManager.setDefaultConditionsManager(this);
     }
 
+    /**
+     * Add a conditions listener, whose callbacks are counted and timed in the {@link ConditionsLoadMetrics}.
+     *
+     * @param listener the conditions listener
+     */
+    @Override
+    public synchronized void addConditionsListener(final ConditionsListener listener) {
+        this.addConditionsListener(listener, (String[]) null);
+    }
+
+    /**
+     * Add a conditions listener which depends only on the given tables.
+     * <p>
+     * When the incremental refresh is enabled and the run changes without a change of detector, the listener is not
+     * notified unless one of the tables changed. Otherwise it is notified of every change like any other listener.
+     * Adding a listener which was already added has no effect.
+     *
+     * @param listener the conditions listener
+     * @param tableNames the tables the listener depends on or <code>null</code> to notify it of every change
+     */
+    public synchronized void addConditionsListener(final ConditionsListener listener, final String... tableNames) {
+        if (!this.timedListeners.containsKey(listener)) {
+            final TimedConditionsListener timedListener = new TimedConditionsListener(this, listener, tableNames);
+            this.timedListeners.put(listener, timedListener);
+            super.addConditionsListener(timedListener);
+        }
+    }
+
     /**
      * Add a tag used to filter the accessible conditions records.
      * <p>
@@ -561,6 +751,78 @@ public final class DatabaseConditionsManager extends ConditionsManagerImplementa
         return converter.createSeries(tableName);
     }
 
+    /**
+     * Add a table to the tables which are prefetched when the run changes. Only the collection which is selected by
+     * the action is prefetched.
+     *
+     * @param tableName the table name
+     * @param action the action which selects one collection from the records of the run
+     */
+    void addPrefetchTable(final String tableName, final MultipleCollectionsAction action) {
+        synchronized (this.prefetchTables) {
+            // A table which is also loaded as a series keeps all of its collections.
+            if (!this.prefetchTables.containsKey(tableName) || this.prefetchTables.get(tableName) != null) {
+                this.prefetchTables.put(tableName, action);
+            }
+        }
+    }
+
+    /**
+     * Add a table which is loaded as a {@link ConditionsSeries} to the tables which are prefetched when the run
+     * changes. All of the collections of the run are prefetched.
+     *
+     * @param tableName the table name
+     */
+    void addPrefetchSeries(final String tableName) {
+        this.prefetchTables.put(tableName, null);
+    }
+
+    /**
+     * Get the tracker of the conditions which changed between runs.
+     *
+     * @return the tracker or <code>null</code> if the incremental refresh is not enabled
+     */
+    IncrementalRefresh getIncrementalRefresh() {
+        return this.incrementalRefresh ? this.refresh : null;
+    }
+
+    /**
+     * Get the conditions records of a run which were resolved before the conditions of the run were set up.
+     *
+     * @param run the run number
+     * @return the conditions records before the tags are applied or <code>null</code> if they were not resolved
+     */
+    ConditionsRecordCollection getResolvedConditionsRecords(final int run) {
+        return this.resolvedRecords != null && this.resolvedRun == run ? this.resolvedRecords : null;
+    }
+
+    /**
+     * Get the prefetcher which loads conditions collections concurrently.
+     *
+     * @return the prefetcher or <code>null</code> if it is not enabled
+     */
+    ConditionsPrefetcher getPrefetcher() {
+        return this.prefetcher;
+    }
+
+    /**
+     * Get the on-disk conditions snapshot cache.
+     *
+     * @return the snapshot cache or <code>null</code> if it is not enabled
+     */
+    ConditionsSnapshotCache getSnapshotCache() {
+        return this.snapshotCache;
+    }
+
+    /**
+     * Set the on-disk conditions snapshot cache, replacing the one set up from the system properties.
+     *
+     * @param snapshotCache the snapshot cache or <code>null</code> to disable it
+     */
+    synchronized void setSnapshotCache(final ConditionsSnapshotCache snapshotCache) {
+        this.snapshotCache = snapshotCache;
+    }
+
     /**
      * Get the JDBC connection.
      *
@@ -577,6 +839,37 @@ public final class DatabaseConditionsManager extends ConditionsManagerImplementa
         return this.connection;
     }
 
+    /**
+     * Get the metrics of the time spent loading conditions.
+     *
+     * @return the load metrics
+     */
+    public ConditionsLoadMetrics getLoadMetrics() {
+        return ConditionsLoadMetrics.getInstance();
+    }
+
+    /**
+     * Get the snapshot of the conditions of the current detector and run.
+     * <p>
+     * When the snapshots are enabled, a new snapshot is published each time the detector or run changes. It is
+     * complete when it is published, and the conditions listeners other than those of lcsim itself are only notified
+     * after that, so listeners get the snapshot of the new run. Threads processing events concurrently should get the
+     * snapshot once, for example at the start of a run, and read all of their conditions from it instead of from this
+     * manager.
+     *
+     * @return the conditions snapshot
+     * @throws IllegalStateException if the snapshots are not enabled or the conditions system is not initialized
+     * @see #setPublishSnapshots(boolean)
+     */
+    public ConditionsSnapshot getSnapshot() {
+        final ConditionsSnapshot current = this.snapshot;
+        if (current == null) {
+            throw new IllegalStateException(this.publishSnapshots ? "Conditions system is not initialized."
+                    : "Conditions snapshots are not enabled.");
+        }
+        return current;
+    }
+
     /**
      * Get the current LCSim compact <code>Detector</code> object with the
      * geometry and detector model.
@@ -713,6 +1006,71 @@ public final class DatabaseConditionsManager extends ConditionsManagerImplementa
         }
     }
 
+    /**
+     * Create the snapshot of the conditions of the current detector and run, which has the collection of every
+     * conditions key of the run, the detector object and the combined ECAL, SVT and hodoscope conditions.
+     * <p>
+     * Conditions which cannot be loaded, such as a key whose records are ambiguous or the combined conditions of a
+     * subdetector which is not in the detector, are left out of the snapshot.
+     *
+     * @param detectorName the detector name
+     * @param runNumber the run number
+     * @param records the conditions records of the run after the tags are applied
+     * @return the snapshot
+     */
+    private ConditionsSnapshot createSnapshot(final String detectorName, final int runNumber,
+            final ConditionsRecordCollection records) {
+        final ConditionsRecordIndex index = records.getIndex();
+        final Map<String, Object> conditions = new LinkedHashMap<String, Object>();
+        for (final String key : index.getConditionsKeys()) {
+            final TableMetaData tableMetaData = this.findTableMetaData(key);
+            if (tableMetaData == null) {
+                LOG.fine("conditions key " + key + " has no table and is left out of the snapshot");
+                continue;
+            }
+            this.addSnapshotConditions(conditions, tableMetaData.getCollectionClass(), key);
+        }
+        this.addSnapshotConditions(conditions, Detector.class, "compact.xml");
+        this.addSnapshotConditions(conditions, EcalConditions.class, "ecal_conditions");
+        this.addSnapshotConditions(conditions, SvtConditions.class, "svt_conditions");
+        this.addSnapshotConditions(conditions, HodoscopeConditions.class, "hodo_conditions");
+        return new ConditionsSnapshot(detectorName, runNumber, this.tags, index, conditions);
+    }
+
+    /**
+     * Load a conditions object of the current run and add it to the conditions of a snapshot.
+     *
+     * @param conditions the conditions of the snapshot by their key
+     * @param type the class of the conditions object
+     * @param name the name of the conditions
+     */
+    private void addSnapshotConditions(final Map<String, Object> conditions, final Class<?> type, final String name) {
+        try {
+            final Object data = this.getCachedConditions(type, name).getCachedData();
+            if (data != null) {
+                conditions.put(ConditionsSnapshot.key(type, name), data);
+            }
+        } catch (final RuntimeException e) {
+            LOG.log(Level.FINE, "conditions " + name + " are left out of the snapshot", e);
+        }
+    }
+
+    /**
+     * Defer a listener callback until the snapshot of the new run is published.
+     *
+     * @param listener the listener
+     * @param event the conditions event
+     * @return <code>true</code> if the callback was deferred or <code>false</code> if the listener should be notified
+     *         now
+     */
+    synchronized boolean deferCallback(final TimedConditionsListener listener, final ConditionsEvent event) {
+        if (this.deferredCallbacks == null) {
+            return false;
+        }
+        this.deferredCallbacks.put(listener, event);
+        return true;
+    }
+
     /**
      * Register the conditions converters with the manager.
      */
@@ -743,6 +1101,245 @@ public final class DatabaseConditionsManager extends ConditionsManagerImplementa
         }
     }
 
+    /**
+     * Find a combined conditions object from a previous run which can be reused in the current run.
+     * <p>
+     * This is used by the converters of combined conditions objects such as {@link EcalConditions} when the
+     * incremental refresh is enabled. The object is reused if none of the tables it was built from changed and the
+     * keys of the other objects it depends on, such as the one returned by {@link #getSubdetectorKey(Subdetector)},
+     * are equal to those when it was built.
+     *
+     * @param type the class of the conditions object
+     * @param name the name of the conditions
+     * @param tableNames the tables the conditions are built from
+     * @param dependencies keys of other objects the conditions depend on, which are compared with equals
+     * @param <T> the type of the conditions object
+     * @return the conditions object or <code>null</code> if it must be built again
+     */
+    public <T> T findUnchangedConditions(final Class<T> type, final String name, final String[] tableNames,
+            final Object... dependencies) {
+        if (!this.incrementalRefresh) {
+            return null;
+        }
+        final Object conditions = this.refresh.findConditions(name, tableNames, dependencies);
+        if (conditions != null) {
+            LOG.info("reusing unchanged conditions " + name);
+        }
+        return type.cast(conditions);
+    }
+
+    /**
+     * Get a key which identifies a subdetector of the current detector, to be used as a dependency of a combined
+     * conditions object in {@link #findUnchangedConditions(Class, String, String[], Object...)}.
+     * <p>
+     * The detector object may be built again when the run changes, so its subdetectors cannot be compared by
+     * identity. Their geometry only changes with the detector name, in which case no conditions are reused.
+     *
+     * @param subdetector the subdetector or <code>null</code>
+     * @return the key of the subdetector
+     */
+    public String getSubdetectorKey(final Subdetector subdetector) {
+        return this.getDetector() + ":" + (subdetector != null ? subdetector.getName() : null);
+    }
+
+    /**
+     * Check if any of the conditions tables changed when the run changed.
+     * <p>
+     * Conditions listeners can use this to skip work which only depends on tables that did not change. Every table is
+     * considered changed unless the incremental refresh is enabled and the detector did not change.
+     *
+     * @param tableNames the table names
+     * @return <code>true</code> if any of the tables changed
+     */
+    public boolean hasChanged(final String... tableNames) {
+        return !this.incrementalRefresh || this.refresh.hasChanged(tableNames);
+    }
+
+    /**
+     * Return <code>true</code> if only the conditions which changed are loaded again when the run changes.
+     *
+     * @return <code>true</code> if the incremental refresh is enabled
+     */
+    public boolean isIncrementalRefresh() {
+        return this.incrementalRefresh;
+    }
+
+    /**
+     * Return <code>true</code> if a snapshot of the conditions is published for every detector and run.
+     *
+     * @return <code>true</code> if the snapshots are enabled
+     */
+    public boolean isPublishSnapshots() {
+        return this.publishSnapshots;
+    }
+
+    /**
+     * Keep a combined conditions object so it can be reused in later runs by
+     * {@link #findUnchangedConditions(Class, String, String[], Object...)}.
+     *
+     * @param name the name of the conditions
+     * @param conditions the conditions object
+     * @param tableNames the tables the conditions are built from
+     * @param dependencies keys of other objects the conditions depend on, which are compared with equals
+     */
+    public void putUnchangedConditions(final String name, final Object conditions, final String[] tableNames,
+            final Object... dependencies) {
+        if (this.incrementalRefresh) {
+            this.refresh.putConditions(name, conditions, tableNames, dependencies);
+        }
+    }
+
+    /**
+     * Set whether only the conditions which changed are loaded again when the run changes.
+     * <p>
+     * When this is enabled and the run changes without a change of detector, the conditions records of the new run
+     * are compared to those of the previous run. The collections of the tables whose records did not change are
+     * reused instead of being selected again, and the combined ECAL, SVT and hodoscope conditions objects are reused
+     * if none of their tables changed. The conditions listeners which were added with the tables they depend on,
+     * using {@link #addConditionsListener(ConditionsListener, String...)}, are only notified if one of those tables
+     * changed. Other listeners are notified of every change, but they can check which tables changed with
+     * {@link #hasChanged(String...)}. This can also be enabled with the
+     * <code>org.hps.conditions.incremental</code> system property.
+     *
+     * @param incrementalRefresh <code>true</code> to enable the incremental refresh
+     */
+    public synchronized void setIncrementalRefresh(final boolean incrementalRefresh) {
+        this.incrementalRefresh = incrementalRefresh;
+        if (!incrementalRefresh) {
+            this.refresh.reset();
+        }
+    }
+
+    /**
+     * Set whether a complete {@link ConditionsSnapshot} of the conditions is published for every detector and run.
+     * <p>
+     * The snapshot has the collections of every conditions key of the run, so all of them are loaded when the run
+     * changes, even those which are not used by the job. The default is <code>false</code>, in which case
+     * {@link #getSnapshot()} cannot be used. This can also be enabled with the
+     * <code>org.hps.conditions.snapshots</code> system property.
+     *
+     * @param publishSnapshots <code>true</code> to publish the snapshots
+     */
+    public synchronized void setPublishSnapshots(final boolean publishSnapshots) {
+        this.publishSnapshots = publishSnapshots;
+        if (!publishSnapshots) {
+            this.snapshot = null;
+        }
+    }
+
+    /**
+     * Set the number of threads used to load the conditions collections of a run concurrently, each with its own
+     * database connection.
+     * <p>
+     * With more than one thread, the conditions records of a new run are resolved first and then the collections of
+     * the tables used by the job are selected concurrently, which hides most of the round-trip latency to a remote
+     * database. The default is 0, which loads the collections one at a time on the thread that sets up the
+     * conditions. This can also be set with the <code>org.hps.conditions.loadThreads</code> system property.
+     *
+     * @param loadThreads the number of threads
+     */
+    public synchronized void setLoadThreads(final int loadThreads) {
+        this.loadThreads = loadThreads;
+        if (this.prefetcher != null && this.prefetcher.getThreads() != loadThreads) {
+            this.prefetcher.shutdown();
+            this.prefetcher = null;
+        }
+    }
+
+    /**
+     * Resolve the conditions records of a new run before its conditions are set up.
+     *
+     * @param runNumber the new run number
+     * @return the conditions records of the run after the tags are applied
+     */
+    private ConditionsRecordCollection resolveConditionsRecords(final int runNumber) {
+        this.resolvedRecords = ConditionsRecordConverter.resolve(this, this.findTableMetaData("conditions"), runNumber);
+        this.resolvedRun = runNumber;
+        return this.conditionsTagCollection.size() > 0 ? this.conditionsTagCollection.filter(this.resolvedRecords)
+                : this.resolvedRecords;
+    }
+
+    /**
+     * Select the records of a table whose collections are prefetched, which are the record chosen by the converter
+     * of the table or all of the records if the table is loaded as a series.
+     *
+     * @param records the conditions records of the run
+     * @param tableName the table name
+     * @param action the action which selects the record or <code>null</code> to select all records
+     * @return the selected records
+     */
+    static List<ConditionsRecord> selectPrefetchRecords(final ConditionsRecordCollection records,
+            final String tableName, final MultipleCollectionsAction action) {
+        if (action == null) {
+            final List<ConditionsRecord> selected = new ArrayList<ConditionsRecord>();
+            for (final ConditionsRecord record : records.findByKey(tableName)) {
+                selected.add(record);
+            }
+            return selected;
+        }
+        final ConditionsRecord record;
+        try {
+            record = records.findUniqueRecord(tableName, action);
+        } catch (final RuntimeException e) {
+            // The converter reports the ambiguous records when the table is used.
+            return Collections.emptyList();
+        }
+        if (record == null) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(record);
+    }
+
+    /**
+     * Start loading the collections of the prefetched tables for a new run.
+     *
+     * @param runNumber the new run number
+     * @param records the conditions records of the run after the tags are applied
+     */
+    private void startPrefetch(final int runNumber, final ConditionsRecordCollection records) {
+        if (this.prefetcher == null) {
+            this.prefetcher = new ConditionsPrefetcher(this, this.loadThreads);
+        }
+        this.prefetcher.start(runNumber);
+        final Map<String, MultipleCollectionsAction> tables;
+        synchronized (this.prefetchTables) {
+            tables = new LinkedHashMap<String, MultipleCollectionsAction>(this.prefetchTables);
+        }
+        int submitted = 0;
+        for (final Map.Entry<String, MultipleCollectionsAction> entry : tables.entrySet()) {
+            final String tableName = entry.getKey();
+            final TableMetaData tableMetaData = this.findTableMetaData(tableName);
+            if (tableMetaData == null) {
+                continue;
+            }
+            for (final ConditionsRecord record : selectPrefetchRecords(records, tableName, entry.getValue())) {
+                if (this.snapshotCache != null && this.snapshotCache.hasCollection(tableMetaData, record)) {
+                    continue;
+                }
+                if (this.refresh.findCollection(tableName, record.getCollectionId()) != null) {
+                    continue;
+                }
+                this.prefetcher.submit(tableMetaData, record.getCollectionId());
+                ++submitted;
+            }
+        }
+        LOG.config("prefetching " + submitted + " conditions collections for run " + runNumber + " using "
+                + this.loadThreads + " threads");
+    }
+
+    /**
+     * Remove a conditions listener.
+     *
+     * @param listener the conditions listener which was added
+     */
+    @Override
+    public synchronized void removeConditionsListener(final ConditionsListener listener) {
+        final TimedConditionsListener timedListener = this.timedListeners.remove(listener);
+        if (timedListener != null) {
+            super.removeConditionsListener(timedListener);
+        }
+    }
+
     /**
      * This method can be used to perform a database SELECT query.
      *
@@ -777,22 +1374,77 @@ public final class DatabaseConditionsManager extends ConditionsManagerImplementa
 
                 LOG.config("Initializing conditions system with detector '" + detectorName + "' and run " + runNumber);
 
+                final long start = System.nanoTime();
+
                 // Register the converters for this initialization.
                 this.registerConverters();
 
-                // Open the database connection.
-                this.openConnection();
+                // Open the database connection unless conditions may be read from the snapshot cache, in which
+                // case it is opened when it is first needed.
+                if (this.snapshotCache == null) {
+                    this.openConnection();
+                } else {
+                    this.snapshotCache.open(detectorName, runNumber, this.tags);
+                }
 
                 // Reset the conditions records.
                 this.conditionsRecordCollection = null;
+                this.resolvedRecords = null;
+
+                // Conditions of the previous run can only be reused if the detector is the same.
+                if (!this.incrementalRefresh || !this.isInitialized || !detectorName.equals(this.getDetector())) {
+                    this.refresh.reset();
+                }
+
+                // Resolve the conditions records of the new run in advance to publish its snapshot, to find the
+                // tables which changed and to start loading the collections of the new run concurrently.
+                final ConditionsRecordCollection records = this.resolveConditionsRecords(runNumber);
+                if (this.incrementalRefresh) {
+                    this.refresh.startRun(records);
+                }
+                if (this.loadThreads > 0) {
+                    this.startPrefetch(runNumber, records);
+                }
 
                 // Call the super class's setDetector method to construct the detector object
-                // and activate conditions listeners.
-                super.setDetector(detectorName, runNumber);
+                // and activate conditions listeners. With snapshots, the listeners other than those of lcsim are
+                // notified after the complete snapshot of the new run is published, so they can read the conditions
+                // of the new run from it.
+                Map<TimedConditionsListener, ConditionsEvent> callbacks = null;
+                if (this.publishSnapshots) {
+                    this.deferredCallbacks = new LinkedHashMap<TimedConditionsListener, ConditionsEvent>();
+                }
+                try {
+                    super.setDetector(detectorName, runNumber);
+                    if (this.publishSnapshots) {
+                        this.snapshot = this.createSnapshot(detectorName, runNumber, records);
+                        LOG.config("published " + this.snapshot);
+                    }
+                } finally {
+                    callbacks = this.deferredCallbacks;
+                    this.deferredCallbacks = null;
+                }
+                if (callbacks != null) {
+                    for (final Map.Entry<TimedConditionsListener, ConditionsEvent> callback : callbacks.entrySet()) {
+                        callback.getKey().notifyListener(callback.getValue());
+                    }
+                }
+
+                // Discard the prefetched collections which were not used and close their connections.
+                if (this.prefetcher != null) {
+                    this.prefetcher.finish();
+                }
+
+                // Write the collections which were loaded from the database to the snapshot cache.
+                if (this.snapshotCache != null) {
+                    this.snapshotCache.save();
+                }
 
                 // Close the connection.
                 this.closeConnection();
 
+                ConditionsLoadMetrics.getInstance().addSetup(System.nanoTime() - start);
+
                 this.isInitialized = true;
             }
         }
@@ -0,0 +1,233 @@
+package org.hps.conditions.database;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import org.hps.conditions.api.ConditionsObjectCollection;
+import org.hps.conditions.api.ConditionsRecord;
+import org.hps.conditions.api.ConditionsRecord.ConditionsRecordCollection;
+
+/**
+ * Keeps track of which conditions changed between runs so that the conditions which did not change are reused
+ * instead of being loaded and built again.
+ * <p>
+ * A table is changed if the set of conditions records with its key, after the tags are applied, is different in the
+ * new run. The collections loaded in the previous run are kept by their collection ID and are returned to the
+ * converters for the tables which did not change. Combined conditions objects such as
+ * {@link org.hps.conditions.ecal.EcalConditions} are kept together with the tables they were built from and the
+ * keys of the objects they depend on, and are reused if none of the tables changed and the keys are equal.
+ */
+final class IncrementalRefresh {
+
+    /**
+     * Initialize the logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(IncrementalRefresh.class.getPackage().getName());
+
+    /**
+     * A combined conditions object which may be reused.
+     */
+    private static final class ReusableConditions {
+
+        private final Object conditions;
+        private final String[] tableNames;
+        private final Object[] dependencies;
+
+        ReusableConditions(final Object conditions, final String[] tableNames, final Object[] dependencies) {
+            this.conditions = conditions;
+            this.tableNames = tableNames.clone();
+            this.dependencies = dependencies.clone();
+        }
+
+        /**
+         * Check if the object depends on the same tables and on equal dependency keys.
+         */
+        boolean matches(final String[] tableNames, final Object[] dependencies) {
+            if (tableNames.length != this.tableNames.length || dependencies.length != this.dependencies.length) {
+                return false;
+            }
+            for (int i = 0; i < tableNames.length; i++) {
+                if (!tableNames[i].equals(this.tableNames[i])) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < dependencies.length; i++) {
+                if (!Objects.equals(dependencies[i], this.dependencies[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Create the key of a collection.
+     *
+     * @param tableName the table name
+     * @param collectionId the collection ID
+     * @return the key
+     */
+    private static String key(final String tableName, final int collectionId) {
+        return tableName + ":" + collectionId;
+    }
+
+    /**
+     * The row IDs of the conditions records of each key in the current run or <code>null</code> before the first run.
+     */
+    private Map<String, Set<Integer>> recordIds = null;
+
+    /**
+     * The tables which changed in the current run or <code>null</code> if every table is considered changed.
+     */
+    private Set<String> changedTables = null;
+
+    /**
+     * The collections used in the current run.
+     */
+    private Map<String, ConditionsObjectCollection<?>> collections =
+            new HashMap<String, ConditionsObjectCollection<?>>();
+
+    /**
+     * The collections used in the previous run.
+     */
+    private Map<String, ConditionsObjectCollection<?>> previousCollections = Collections.emptyMap();
+
+    /**
+     * The combined conditions objects by name.
+     */
+    private final Map<String, ReusableConditions> reusableConditions = new HashMap<String, ReusableConditions>();
+
+    /**
+     * Forget all conditions, for example because the detector changed.
+     */
+    synchronized void reset() {
+        this.recordIds = null;
+        this.changedTables = null;
+        this.collections = new HashMap<String, ConditionsObjectCollection<?>>();
+        this.previousCollections = Collections.emptyMap();
+        this.reusableConditions.clear();
+    }
+
+    /**
+     * Start a new run, finding the tables which changed from the previous run.
+     *
+     * @param records the conditions records of the new run after the tags are applied
+     */
+    synchronized void startRun(final ConditionsRecordCollection records) {
+        final Map<String, Set<Integer>> newRecordIds = new HashMap<String, Set<Integer>>();
+        for (final ConditionsRecord record : records) {
+            Set<Integer> ids = newRecordIds.get(record.getName());
+            if (ids == null) {
+                ids = new HashSet<Integer>();
+                newRecordIds.put(record.getName(), ids);
+            }
+            ids.add(record.getRowId());
+        }
+        if (this.recordIds != null) {
+            this.changedTables = new HashSet<String>();
+            final Set<String> keys = new HashSet<String>(this.recordIds.keySet());
+            keys.addAll(newRecordIds.keySet());
+            for (final String key : keys) {
+                final Set<Integer> previousIds = this.recordIds.get(key);
+                if (previousIds == null || !previousIds.equals(newRecordIds.get(key))) {
+                    this.changedTables.add(key);
+                }
+            }
+            final Iterator<ReusableConditions> it = this.reusableConditions.values().iterator();
+            while (it.hasNext()) {
+                if (this.hasChanged(it.next().tableNames)) {
+                    it.remove();
+                }
+            }
+            LOGGER.config("conditions changed for " + this.changedTables.size() + " of " + keys.size() + " keys: "
+                    + this.changedTables);
+        }
+        this.recordIds = newRecordIds;
+        this.previousCollections = this.collections;
+        this.collections = new HashMap<String, ConditionsObjectCollection<?>>();
+    }
+
+    /**
+     * Check if any of the tables changed in the current run.
+     *
+     * @param tableNames the table names
+     * @return <code>true</code> if any of the tables changed or it is not known which tables changed
+     */
+    synchronized boolean hasChanged(final String... tableNames) {
+        if (this.changedTables == null) {
+            return true;
+        }
+        for (final String tableName : tableNames) {
+            if (this.changedTables.contains(tableName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find a collection which was already loaded in the current or the previous run.
+     *
+     * @param tableName the table name
+     * @param collectionId the collection ID
+     * @return the collection or <code>null</code> if it was not loaded
+     */
+    synchronized ConditionsObjectCollection<?> findCollection(final String tableName, final int collectionId) {
+        final String key = key(tableName, collectionId);
+        ConditionsObjectCollection<?> collection = this.collections.get(key);
+        if (collection == null) {
+            collection = this.previousCollections.get(key);
+            if (collection != null) {
+                this.collections.put(key, collection);
+            }
+        }
+        return collection;
+    }
+
+    /**
+     * Add a collection which was loaded in the current run.
+     *
+     * @param tableName the table name
+     * @param collectionId the collection ID
+     * @param collection the collection
+     */
+    synchronized void addCollection(final String tableName, final int collectionId,
+            final ConditionsObjectCollection<?> collection) {
+        this.collections.put(key(tableName, collectionId), collection);
+    }
+
+    /**
+     * Find a combined conditions object which can be reused.
+     *
+     * @param name the name of the conditions
+     * @param tableNames the tables the conditions are built from
+     * @param dependencies keys of other objects the conditions depend on, which are compared with equals
+     * @return the conditions or <code>null</code> if they must be built again
+     */
+    synchronized Object findConditions(final String name, final String[] tableNames, final Object[] dependencies) {
+        final ReusableConditions reusable = this.reusableConditions.get(name);
+        if (reusable == null || this.hasChanged(tableNames) || !reusable.matches(tableNames, dependencies)) {
+            return null;
+        }
+        return reusable.conditions;
+    }
+
+    /**
+     * Keep a combined conditions object so it can be reused.
+     *
+     * @param name the name of the conditions
+     * @param conditions the conditions object
+     * @param tableNames the tables the conditions are built from
+     * @param dependencies keys of other objects the conditions depend on, which are compared with equals
+     */
+    synchronized void putConditions(final String name, final Object conditions, final String[] tableNames,
+            final Object[] dependencies) {
+        this.reusableConditions.put(name, new ReusableConditions(conditions, tableNames, dependencies));
+    }
+}
@@ -206,6 +206,25 @@ public final class EcalChannel extends BaseConditionsObject {
             }
         }
 
+        /**
+         * Get the map of encoded {@link #DaqId} values to channels.
+         *
+         * @return the map of DAQ IDs to channels
+         */
+        Map<Long, EcalChannel> getDaqMap() {
+            return this.daqMap;
+        }
+
+        /**
+         * Get the map of encoded {@link #GeometryId} values to channels, which is empty if the geometry map was not
+         * built.
+         *
+         * @return the map of geometric IDs to channels
+         */
+        Map<Long, EcalChannel> getGeometryMap() {
+            return this.geometryMap;
+        }
+
         /**
          * Find a channel by its channel ID.
          *
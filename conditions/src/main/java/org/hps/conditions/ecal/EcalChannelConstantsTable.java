@@ -0,0 +1,223 @@
+package org.hps.conditions.ecal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hps.conditions.api.ChannelIndex;
+
+/**
+ * Immutable array-based view of the {@link EcalConditions} of every ECAL channel.
+ * <p>
+ * The channels are numbered with dense indices from zero in order of their channel ID, and the constants of each
+ * channel are stored in primitive arrays by index. A geometric cell ID, DAQ ID or channel ID is translated to an index
+ * with {@link #findGeometric(long)}, {@link #findDaq(long)} or {@link #findChannelId(int)}, and the constants are then
+ * read without any map lookups or boxing, for example:
+ *
+ * <pre>
+ * final int index = table.findGeometric(hit.getCellID());
+ * final double energy = (adcSum - table.getPedestal(index)) * table.getGain(index);
+ * </pre>
+ *
+ * Constants which are not set for a channel are <code>Double.NaN</code>.
+ */
+public final class EcalChannelConstantsTable {
+
+    private final EcalChannel[] channels;
+    private final ChannelIndex geometryIndex;
+    private final ChannelIndex daqIndex;
+    private final int[] channelIdIndex;
+
+    private final double[] gain;
+    private final double[] pedestal;
+    private final double[] noise;
+    private final double[] timeShift;
+    private final double[] pulseWidth;
+    private final boolean[] badChannel;
+
+    /**
+     * Create the table from the conditions after all of their constants have been set.
+     *
+     * @param conditions the ECAL conditions
+     */
+    EcalChannelConstantsTable(final EcalConditions conditions) {
+        final EcalChannel.EcalChannelCollection collection = conditions.getChannelCollection();
+        final List<EcalChannel> sorted = new ArrayList<EcalChannel>(collection.size());
+        for (final EcalChannel channel : collection.sorted()) {
+            sorted.add(channel);
+        }
+        this.channels = sorted.toArray(new EcalChannel[sorted.size()]);
+        final int n = this.channels.length;
+
+        final Map<EcalChannel, Integer> indices = new IdentityHashMap<EcalChannel, Integer>();
+        int maxChannelId = 0;
+        for (int index = 0; index < n; index++) {
+            indices.put(this.channels[index], index);
+            maxChannelId = Math.max(maxChannelId, this.channels[index].getChannelId());
+        }
+        this.channelIdIndex = new int[maxChannelId + 1];
+        Arrays.fill(this.channelIdIndex, -1);
+        for (int index = 0; index < n; index++) {
+            final int channelId = this.channels[index].getChannelId();
+            if (channelId >= 0) {
+                this.channelIdIndex[channelId] = index;
+            }
+        }
+        this.geometryIndex = createIndex(collection.getGeometryMap(), indices);
+        this.daqIndex = createIndex(collection.getDaqMap(), indices);
+
+        this.gain = new double[n];
+        this.pedestal = new double[n];
+        this.noise = new double[n];
+        this.timeShift = new double[n];
+        this.pulseWidth = new double[n];
+        this.badChannel = new boolean[n];
+        for (int index = 0; index < n; index++) {
+            final EcalChannelConstants constants = conditions.getChannelConstants(this.channels[index]);
+            this.gain[index] = constants.getGain() != null ? constants.getGain().getGain() : Double.NaN;
+            if (constants.getCalibration() != null) {
+                this.pedestal[index] = constants.getCalibration().getPedestal();
+                this.noise[index] = constants.getCalibration().getNoise();
+            } else {
+                this.pedestal[index] = Double.NaN;
+                this.noise[index] = Double.NaN;
+            }
+            this.timeShift[index] = constants.getTimeShift() != null ? constants.getTimeShift().getTimeShift()
+                    : Double.NaN;
+            this.pulseWidth[index] = constants.getPulseWidth() != null ? constants.getPulseWidth().getPulseWidth()
+                    : Double.NaN;
+            this.badChannel[index] = constants.isBadChannel();
+        }
+    }
+
+    /**
+     * Create the index of the encoded IDs of a channel map.
+     *
+     * @param map the map of encoded IDs to channels
+     * @param indices the channel indices
+     * @return the index
+     */
+    private static ChannelIndex createIndex(final Map<Long, EcalChannel> map,
+            final Map<EcalChannel, Integer> indices) {
+        final long[] ids = new long[map.size()];
+        final int[] channelIndices = new int[map.size()];
+        int i = 0;
+        for (final Map.Entry<Long, EcalChannel> entry : map.entrySet()) {
+            ids[i] = entry.getKey();
+            channelIndices[i] = indices.get(entry.getValue());
+            ++i;
+        }
+        return new ChannelIndex(ids, channelIndices);
+    }
+
+    /**
+     * Get the number of channels.
+     *
+     * @return the number of channels
+     */
+    public int getChannelCount() {
+        return this.channels.length;
+    }
+
+    /**
+     * Find the index of a channel by its geometric cell ID.
+     *
+     * @param cellID the cell ID
+     * @return the channel index or -1 if there is no channel with this cell ID
+     */
+    public int findGeometric(final long cellID) {
+        return this.geometryIndex.find(cellID);
+    }
+
+    /**
+     * Find the index of a channel by its encoded {@link EcalChannel.DaqId}.
+     *
+     * @param daqId the encoded DAQ ID
+     * @return the channel index or -1 if there is no channel with this DAQ ID
+     */
+    public int findDaq(final long daqId) {
+        return this.daqIndex.find(daqId);
+    }
+
+    /**
+     * Find the index of a channel by its channel ID.
+     *
+     * @param channelId the channel ID
+     * @return the channel index or -1 if there is no channel with this channel ID
+     */
+    public int findChannelId(final int channelId) {
+        return channelId >= 0 && channelId < this.channelIdIndex.length ? this.channelIdIndex[channelId] : -1;
+    }
+
+    /**
+     * Get the channel at an index.
+     *
+     * @param index the channel index
+     * @return the channel
+     */
+    public EcalChannel getChannel(final int index) {
+        return this.channels[index];
+    }
+
+    /**
+     * Get the gain of a channel.
+     *
+     * @param index the channel index
+     * @return the gain in MeV per ADC count
+     */
+    public double getGain(final int index) {
+        return this.gain[index];
+    }
+
+    /**
+     * Get the pedestal of a channel.
+     *
+     * @param index the channel index
+     * @return the pedestal in ADC counts per sample
+     */
+    public double getPedestal(final int index) {
+        return this.pedestal[index];
+    }
+
+    /**
+     * Get the noise of a channel.
+     *
+     * @param index the channel index
+     * @return the noise in ADC counts
+     */
+    public double getNoise(final int index) {
+        return this.noise[index];
+    }
+
+    /**
+     * Get the time shift of a channel.
+     *
+     * @param index the channel index
+     * @return the time shift in ns
+     */
+    public double getTimeShift(final int index) {
+        return this.timeShift[index];
+    }
+
+    /**
+     * Get the pulse width of a channel.
+     *
+     * @param index the channel index
+     * @return the pulse width in ns
+     */
+    public double getPulseWidth(final int index) {
+        return this.pulseWidth[index];
+    }
+
+    /**
+     * Get whether a channel is bad and should not be used for reconstruction.
+     *
+     * @param index the channel index
+     * @return <code>true</code> if the channel is bad
+     */
+    public boolean isBadChannel(final int index) {
+        return this.badChannel[index];
+    }
+}
@@ -31,6 +31,11 @@ public final class EcalConditions {
      */
     private final Map<EcalChannel, EcalChannelConstants> channelConstants = new HashMap<EcalChannel, EcalChannelConstants>();
 
+    /**
+     * The array-based view of the channel constants.
+     */
+    private EcalChannelConstantsTable channelConstantsTable = null;
+
     /**
      * The current ECAL subdetector in the geometry.
      */
@@ -78,6 +83,23 @@ public final class EcalConditions {
         return this.channelConstants.get(channel);
     }
 
+    /**
+     * Get the array-based view of the constants of every channel, which is faster than
+     * {@link #getChannelConstants(EcalChannel)} for lookups by cell ID in per-hit code.
+     *
+     * @return the channel constants table
+     */
+    public EcalChannelConstantsTable getChannelConstantsTable() {
+        return this.channelConstantsTable;
+    }
+
+    /**
+     * Build the channel constants table after all constants have been set.
+     */
+    void buildChannelConstantsTable() {
+        this.channelConstantsTable = new EcalChannelConstantsTable(this);
+    }
+
     /**
      * Set the channel map.
      *
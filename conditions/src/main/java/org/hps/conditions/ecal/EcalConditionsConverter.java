@@ -15,6 +15,7 @@ import org.hps.conditions.ecal.EcalTimeShift.EcalTimeShiftCollection;
 import org.lcsim.conditions.ConditionsConverter;
 import org.lcsim.conditions.ConditionsManager;
 import org.lcsim.geometry.Detector;
+import org.lcsim.geometry.Subdetector;
 
 /**
  * This class loads all ECAL conditions into an {@link EcalConditions} object from the database, based on the current
@@ -33,6 +34,12 @@ public class EcalConditionsConverter implements ConditionsConverter<EcalConditio
      * Initialize the logger.
      */
     private static Logger LOGGER = Logger.getLogger(EcalConditionsConverter.class.getPackage().getName());
+
+    /**
+     * The tables the ECal conditions are built from.
+     */
+    private static final String[] TABLE_NAMES = {"ecal_channels", "ecal_gains", "ecal_bad_channels",
+            "ecal_calibrations", "ecal_time_shifts", "ecal_pulse_widths"};
        
     /**
      * Create combined ECAL conditions object containing all data for the current run.
@@ -41,7 +48,21 @@ public class EcalConditionsConverter implements ConditionsConverter<EcalConditio
      */
     @Override
     public final EcalConditions getData(final ConditionsManager manager, final String name) {
-       
+
+        // Get the ECal subdetector, which is needed to map the channels to geometric cell IDs.
+        final Detector detector = getDatabaseConditionsManager().getDetectorObject();
+        // FIXME: Hard-coded ECal detector name.
+        final Subdetector subdetector = detector.getSubdetector("Ecal");
+
+        // Reuse the ECal conditions of the previous run if none of their tables changed. The detector object is built
+        // again for each run, so the subdetector is compared by its key.
+        final String subdetectorKey = getDatabaseConditionsManager().getSubdetectorKey(subdetector);
+        final EcalConditions unchanged = getDatabaseConditionsManager().findUnchangedConditions(EcalConditions.class,
+                name, TABLE_NAMES, subdetectorKey);
+        if (unchanged != null) {
+            return unchanged;
+        }
+
         // Get the ECal channel map from the conditions database.
         final EcalChannelCollection channels = this.getEcalChannelCollection();
         
@@ -55,9 +76,7 @@ public class EcalConditionsConverter implements ConditionsConverter<EcalConditio
         LOGGER.fine("ECal channel collection has " + channels.size() + " objects");
 
         // Create the ECal conditions object that will be used to encapsulate ECal conditions collections.
-        final Detector detector = getDatabaseConditionsManager().getDetectorObject();
-        // FIXME: Hard-coded ECal detector name.
-        final EcalConditions conditions = new EcalConditions(detector.getSubdetector("Ecal"));
+        final EcalConditions conditions = new EcalConditions(subdetector);
 
         // Set the channel map.
         conditions.setChannelCollection(channels);
@@ -119,6 +138,12 @@ public class EcalConditionsConverter implements ConditionsConverter<EcalConditio
             LOGGER.warning("no conditions found for EcalPulseWidthCollection");
         }
 
+        // Build the array-based view of the channel constants.
+        conditions.buildChannelConstantsTable();
+
+        // Keep the conditions so they can be reused in the next run.
+        getDatabaseConditionsManager().putUnchangedConditions(name, conditions, TABLE_NAMES, subdetectorKey);
+
         // Return the conditions object to caller.
         return conditions;
     }
@@ -105,6 +105,16 @@ public final class HodoscopeChannel extends BaseConditionsObject {
             }
         }
 
+        /**
+         * Get the map of encoded {@link #GeometryId} values to channels, which is empty if the geometry map was not
+         * built.
+         *
+         * @return the map of geometric IDs to channels
+         */
+        Map<Long, HodoscopeChannel> getGeometryMap() {
+            return this.geometryMap;
+        }
+
         public HodoscopeChannel findChannel(int channelId) {
             HodoscopeChannel foundIt = null;
             for (HodoscopeChannel channel : this) {
@@ -0,0 +1,221 @@
+package org.hps.conditions.hodoscope;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hps.conditions.api.ChannelIndex;
+
+/**
+ * Immutable array-based view of the {@link HodoscopeConditions} of every hodoscope channel.
+ * <p>
+ * The channels are numbered with dense indices from zero in order of their channel ID, and the constants of each
+ * channel are stored in primitive arrays by index. A geometric cell ID, channel ID or DAQ address is translated to an
+ * index with {@link #findGeometric(long)}, {@link #findChannelId(int)} or {@link #findDaq(int, int, int)}, which
+ * replace the map lookups and linear searches of {@link HodoscopeChannel.HodoscopeChannelCollection}. If several
+ * channels have the same DAQ address, the one with the lowest channel ID is found.
+ * <p>
+ * Constants which are not set for a channel are <code>Double.NaN</code>.
+ */
+public final class HodoscopeChannelConstantsTable {
+
+    private final HodoscopeChannel[] channels;
+    private final ChannelIndex geometryIndex;
+    private final ChannelIndex daqIndex;
+    private final int[] channelIdIndex;
+
+    private final double[] gain;
+    private final double[] pedestal;
+    private final double[] noise;
+    private final double[] timeShift;
+
+    /**
+     * Create the table from the conditions after all of their constants have been set.
+     *
+     * @param conditions the hodoscope conditions
+     */
+    HodoscopeChannelConstantsTable(final HodoscopeConditions conditions) {
+        final HodoscopeChannel.HodoscopeChannelCollection collection = conditions.getChannelCollection();
+        final List<HodoscopeChannel> sorted = new ArrayList<HodoscopeChannel>(collection.size());
+        for (final HodoscopeChannel channel : collection) {
+            sorted.add(channel);
+        }
+        Collections.sort(sorted, new Comparator<HodoscopeChannel>() {
+            @Override
+            public int compare(final HodoscopeChannel c1, final HodoscopeChannel c2) {
+                return Integer.compare(c1.getChannelId(), c2.getChannelId());
+            }
+        });
+        this.channels = sorted.toArray(new HodoscopeChannel[sorted.size()]);
+        final int n = this.channels.length;
+
+        final Map<HodoscopeChannel, Integer> indices = new IdentityHashMap<HodoscopeChannel, Integer>();
+        int maxChannelId = 0;
+        final Map<Long, Integer> daqMap = new LinkedHashMap<Long, Integer>();
+        for (int index = 0; index < n; index++) {
+            final HodoscopeChannel channel = this.channels[index];
+            indices.put(channel, index);
+            maxChannelId = Math.max(maxChannelId, channel.getChannelId());
+            if (channel.getCrate() != null && channel.getSlot() != null && channel.getChannel() != null) {
+                final long daqId = encodeDaq(channel.getCrate(), channel.getSlot(), channel.getChannel());
+                if (!daqMap.containsKey(daqId)) {
+                    daqMap.put(daqId, index);
+                }
+            }
+        }
+        this.channelIdIndex = new int[maxChannelId + 1];
+        Arrays.fill(this.channelIdIndex, -1);
+        for (int index = 0; index < n; index++) {
+            final int channelId = this.channels[index].getChannelId();
+            if (channelId >= 0) {
+                this.channelIdIndex[channelId] = index;
+            }
+        }
+        final long[] daqIds = new long[daqMap.size()];
+        final int[] daqIndices = new int[daqMap.size()];
+        int j = 0;
+        for (final Map.Entry<Long, Integer> entry : daqMap.entrySet()) {
+            daqIds[j] = entry.getKey();
+            daqIndices[j] = entry.getValue();
+            ++j;
+        }
+        this.daqIndex = new ChannelIndex(daqIds, daqIndices);
+
+        final Map<Long, HodoscopeChannel> geometryMap = collection.getGeometryMap();
+        final long[] geometryIds = new long[geometryMap.size()];
+        final int[] geometryIndices = new int[geometryMap.size()];
+        int i = 0;
+        for (final Map.Entry<Long, HodoscopeChannel> entry : geometryMap.entrySet()) {
+            geometryIds[i] = entry.getKey();
+            geometryIndices[i] = indices.get(entry.getValue());
+            ++i;
+        }
+        this.geometryIndex = new ChannelIndex(geometryIds, geometryIndices);
+
+        this.gain = new double[n];
+        this.pedestal = new double[n];
+        this.noise = new double[n];
+        this.timeShift = new double[n];
+        for (int index = 0; index < n; index++) {
+            final HodoscopeChannelConstants constants = conditions.getChannelConstants(this.channels[index]);
+            this.gain[index] = constants.getGain() != null ? constants.getGain().getGain() : Double.NaN;
+            if (constants.getCalibration() != null) {
+                this.pedestal[index] = constants.getCalibration().getPedestal();
+                this.noise[index] = constants.getCalibration().getNoise();
+            } else {
+                this.pedestal[index] = Double.NaN;
+                this.noise[index] = Double.NaN;
+            }
+            this.timeShift[index] = constants.getTimeShift() != null ? constants.getTimeShift().getTimeShift()
+                    : Double.NaN;
+        }
+    }
+
+    /**
+     * Pack a DAQ address into one identifier.
+     *
+     * @param crate the crate number
+     * @param slot the slot number
+     * @param channel the channel number
+     * @return the packed identifier
+     */
+    private static long encodeDaq(final int crate, final int slot, final int channel) {
+        return ((long) crate << 32) | ((long) (slot & 0xffff) << 16) | (channel & 0xffff);
+    }
+
+    /**
+     * Get the number of channels.
+     *
+     * @return the number of channels
+     */
+    public int getChannelCount() {
+        return this.channels.length;
+    }
+
+    /**
+     * Find the index of a channel by its geometric cell ID.
+     *
+     * @param cellID the cell ID
+     * @return the channel index or -1 if there is no channel with this cell ID
+     */
+    public int findGeometric(final long cellID) {
+        return this.geometryIndex.find(cellID);
+    }
+
+    /**
+     * Find the index of a channel by its channel ID.
+     *
+     * @param channelId the channel ID
+     * @return the channel index or -1 if there is no channel with this channel ID
+     */
+    public int findChannelId(final int channelId) {
+        return channelId >= 0 && channelId < this.channelIdIndex.length ? this.channelIdIndex[channelId] : -1;
+    }
+
+    /**
+     * Find the index of a channel by its DAQ address.
+     *
+     * @param crate the crate number
+     * @param slot the slot number
+     * @param channel the channel number
+     * @return the channel index or -1 if there is no channel with this address
+     */
+    public int findDaq(final int crate, final int slot, final int channel) {
+        return this.daqIndex.find(encodeDaq(crate, slot, channel));
+    }
+
+    /**
+     * Get the channel at an index.
+     *
+     * @param index the channel index
+     * @return the channel
+     */
+    public HodoscopeChannel getChannel(final int index) {
+        return this.channels[index];
+    }
+
+    /**
+     * Get the gain of a channel.
+     *
+     * @param index the channel index
+     * @return the gain
+     */
+    public double getGain(final int index) {
+        return this.gain[index];
+    }
+
+    /**
+     * Get the pedestal of a channel.
+     *
+     * @param index the channel index
+     * @return the pedestal in ADC counts per sample
+     */
+    public double getPedestal(final int index) {
+        return this.pedestal[index];
+    }
+
+    /**
+     * Get the noise of a channel.
+     *
+     * @param index the channel index
+     * @return the noise in ADC counts
+     */
+    public double getNoise(final int index) {
+        return this.noise[index];
+    }
+
+    /**
+     * Get the time shift of a channel.
+     *
+     * @param index the channel index
+     * @return the time shift in ns
+     */
+    public double getTimeShift(final int index) {
+        return this.timeShift[index];
+    }
+}
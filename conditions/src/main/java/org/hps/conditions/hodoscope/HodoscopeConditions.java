@@ -28,6 +28,28 @@ public class HodoscopeConditions {
         }
     }
 
+    /**
+     * The array-based view of the channel constants.
+     */
+    private HodoscopeChannelConstantsTable channelConstantsTable = null;
+
+    /**
+     * Get the array-based view of the constants of every channel, which is faster than
+     * {@link #getChannelConstants(HodoscopeChannel)} for lookups by cell ID or channel ID in per-hit code.
+     *
+     * @return the channel constants table
+     */
+    public HodoscopeChannelConstantsTable getChannelConstantsTable() {
+        return this.channelConstantsTable;
+    }
+
+    /**
+     * Build the channel constants table after all constants have been set.
+     */
+    void buildChannelConstantsTable() {
+        this.channelConstantsTable = new HodoscopeChannelConstantsTable(this);
+    }
+
     public HodoscopeChannelConstants getChannelConstants(HodoscopeChannel channel) {
 
         return channelConstants.get(channel);
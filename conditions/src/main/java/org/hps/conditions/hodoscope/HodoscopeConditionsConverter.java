@@ -1,16 +1,36 @@
 package org.hps.conditions.hodoscope;
 
+import org.hps.conditions.database.DatabaseConditionsManager;
 import org.hps.conditions.hodoscope.HodoscopeCalibration.HodoscopeCalibrationCollection;
 import org.hps.conditions.hodoscope.HodoscopeChannel.HodoscopeChannelCollection;
 import org.hps.conditions.hodoscope.HodoscopeGain.HodoscopeGainCollection;
 import org.hps.conditions.hodoscope.HodoscopeTimeShift.HodoscopeTimeShiftCollection;
 import org.lcsim.conditions.ConditionsConverter;
 import org.lcsim.conditions.ConditionsManager;
+import org.lcsim.geometry.Subdetector;
 
 public class HodoscopeConditionsConverter implements ConditionsConverter<HodoscopeConditions> {
-              
+
+    /**
+     * The tables the hodoscope conditions are built from.
+     */
+    private static final String[] TABLE_NAMES = {"hodo_channels", "hodo_gains", "hodo_calibrations",
+            "hodo_time_shifts"};
+
     public final HodoscopeConditions getData(final ConditionsManager manager, final String name) {
-       
+
+        // Reuse the hodoscope conditions of the previous run if none of their tables changed. The channel geometry
+        // map depends on the hodoscope subdetector, which is compared by its key as the detector object is built
+        // again for each run.
+        final DatabaseConditionsManager dbManager = DatabaseConditionsManager.getInstance();
+        final Subdetector subdetector = dbManager.getDetectorObject().getSubdetector("Hodoscope");
+        final String subdetectorKey = dbManager.getSubdetectorKey(subdetector);
+        final HodoscopeConditions unchanged = dbManager.findUnchangedConditions(HodoscopeConditions.class, name,
+                TABLE_NAMES, subdetectorKey);
+        if (unchanged != null) {
+            return unchanged;
+        }
+
         final HodoscopeChannelCollection channels = 
                 manager.getCachedConditions(HodoscopeChannelCollection.class, "hodo_channels").getCachedData();
         
@@ -42,7 +62,11 @@ public class HodoscopeConditionsConverter implements ConditionsConverter<Hodosco
             final HodoscopeChannel channel = channels.findChannel(timeShift.getChannelId());
             conditions.getChannelConstants(channel).setTimeShift(timeShift);
         }
-        
+
+        conditions.buildChannelConstantsTable();
+
+        dbManager.putUnchangedConditions(name, conditions, TABLE_NAMES, subdetectorKey);
+
         return conditions;
     }
 
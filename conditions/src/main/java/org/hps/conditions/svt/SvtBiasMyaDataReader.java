@@ -6,14 +6,10 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
-import java.util.TimeZone;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.commons.csv.CSVFormat;
@@ -76,47 +72,41 @@ public class SvtBiasMyaDataReader {
     }
 
     public static List<SvtBiasMyaRange> readMyaData(File file, double biasValueOn, int endMargin, boolean discardHeader) {
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
-        dateFormat.setTimeZone(TimeZone.getTimeZone("America/New_York"));
+        SvtMyaIndex index = SvtMyaIndex.isIndexFile(file) ? SvtMyaIndex.read(file) : indexMyaData(file, discardHeader);
+        return toRanges(index, biasValueOn, endMargin);
+    }
 
-        List<SvtBiasMyaRange> ranges = new ArrayList<SvtBiasMyaRange>();
+    /**
+     * Read a MYA dump of the SVT bias into a time index with the minimum bias of all channels at each time.
+     *
+     * @param file the MYA dump
+     * @param discardHeader <code>true</code> to skip the first line of the dump
+     * @return the index of the minimum bias
+     */
+    public static SvtMyaIndex indexMyaData(File file, boolean discardHeader) {
+        SvtMyaIndex index = new SvtMyaIndex(1);
+        List<String> tokens = new ArrayList<String>();
         try {
-            BufferedReader br = new BufferedReader(new FileReader(file));
+            BufferedReader br = new BufferedReader(new FileReader(file), 1 << 16);
             String line;
             if (discardHeader) {
                 System.out.println("myaData header: " + br.readLine()); //discard the first line
             }
-            SvtBiasMyaRange currentRange = null;
             while ((line = br.readLine()) != null) {
-                String arr[] = line.split(" +");
+                SvtMyaIndex.split(line, tokens);
 
-                if (arr.length < 3) {
+                if (tokens.size() < 3) {
                     throw new ParseException("this line is not correct.", 0);
                 }
 
-                Date date = dateFormat.parse(arr[0] + " " + arr[1]);
-                Double[] values = new Double[arr.length - 2];
-                for (int i = 2; i < arr.length; i++) {
-                    if (arr[i].equals("<undefined>")) {
-                        values[i - 2] = 0.0; //assume it's bad
-                    } else {
-                        values[i - 2] = Double.parseDouble(arr[i]);
-                    }
-                }
-                double biasValue = Collections.min(Arrays.asList(values));
-                if (biasValue > biasValueOn) {
-                    if (currentRange == null) {
-                        currentRange = new SvtBiasMyaRange(date, biasValue);
-//                            System.out.format("bias on:\t%d %d %f %s\n", date.getTime(), values.length, biasValue, date.toString());
-                    }
-                } else {
-                    if (currentRange != null) {
-                        currentRange.setEndDate(new Date(date.getTime() - endMargin));
-                        ranges.add(currentRange);
-                        currentRange = null;
-//                            System.out.format("bias off:\t%d %d %f %s\n", date.getTime(), values.length, biasValue, date.toString());
-                    }
+                long time = SvtMyaIndex.parseTime(tokens.get(0), tokens.get(1));
+                double biasValue = Double.POSITIVE_INFINITY;
+                for (int i = 2; i < tokens.size(); i++) {
+                    //assume it's bad if undefined
+                    double value = tokens.get(i).equals("<undefined>") ? 0.0 : Double.parseDouble(tokens.get(i));
+                    biasValue = Math.min(biasValue, value);
                 }
+                index.add(time, biasValue);
             }
             br.close();
 
@@ -124,11 +114,54 @@ public class SvtBiasMyaDataReader {
             throw new RuntimeException(e);
         } catch (ParseException e) {
             throw new RuntimeException(e);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException(e);
         }
+        index.sort();
 
+        return index;
+    }
+
+    /**
+     * Find the ranges when the bias was on from a time index of the minimum bias.
+     *
+     * @param index the index of the minimum bias
+     * @param biasValueOn the bias above which the bias is on
+     * @param endMargin the time in milliseconds to remove from the end of each range
+     * @return the ranges when the bias was on
+     */
+    public static List<SvtBiasMyaRange> toRanges(SvtMyaIndex index, double biasValueOn, int endMargin) {
+        List<SvtBiasMyaRange> ranges = new ArrayList<SvtBiasMyaRange>();
+        SvtBiasMyaRange currentRange = null;
+        for (int entry = 0; entry < index.size(); entry++) {
+            double biasValue = index.getValue(entry, 0);
+            if (biasValue > biasValueOn) {
+                if (currentRange == null) {
+                    currentRange = new SvtBiasMyaRange(new Date(index.getTime(entry)), biasValue);
+                }
+            } else {
+                if (currentRange != null) {
+                    currentRange.setEndDate(new Date(index.getTime(entry) - endMargin));
+                    ranges.add(currentRange);
+                    currentRange = null;
+                }
+            }
+        }
         return ranges;
     }
 
+    /**
+     * Check if the bias was on at a time using a time index of the minimum bias.
+     *
+     * @param index the index of the minimum bias
+     * @param date the time
+     * @param biasValueOn the bias above which the bias is on
+     * @return <code>true</code> if the bias was on
+     */
+    public static boolean isBiasOn(SvtMyaIndex index, Date date, double biasValueOn) {
+        return index.getValueAt(date, 0) > biasValueOn;
+    }
+
     public static List<RunData> readRunTable(File file) {
         List<CSVRecord> records = null;
         List<RunData> data = new ArrayList<RunData>();
@@ -3,7 +3,7 @@ package org.hps.conditions.svt;
 import static org.hps.conditions.svt.AbstractSvtChannel.MAX_NUMBER_OF_SAMPLES;
 
 import org.hps.conditions.api.BaseConditionsObject;
-import org.hps.conditions.api.BaseConditionsObjectCollection;
+import org.hps.conditions.api.ColumnarConditionsObjectCollection;
 import org.hps.conditions.database.Converter;
 import org.hps.conditions.database.Field;
 import org.hps.conditions.database.MultipleCollectionsAction;
@@ -20,7 +20,7 @@ public final class SvtCalibration extends BaseConditionsObject {
      * The collection implementation for {@link SvtCalibration}.
      */
     @SuppressWarnings("serial")
-    public static class SvtCalibrationCollection extends BaseConditionsObjectCollection<SvtCalibration> {
+    public static class SvtCalibrationCollection extends ColumnarConditionsObjectCollection<SvtCalibration> {
     }
 
     /**
@@ -12,6 +12,12 @@ import org.lcsim.conditions.ConditionsManager;
  */
 public final class SvtConditionsConverter extends AbstractSvtConditionsConverter<SvtConditions> {
 
+    /**
+     * The tables the SVT conditions are built from.
+     */
+    private static final String[] TABLE_NAMES = {"svt_channels", "svt_daq_map", "svt_t0_shifts", "svt_calibrations",
+            "svt_shape_fit_parameters", "svt_bad_channels", "svt_gains"};
+
     /**
      * Default constructor.
      */
@@ -30,6 +36,13 @@ public final class SvtConditionsConverter extends AbstractSvtConditionsConverter
 
         final DatabaseConditionsManager dbConditionsManager = (DatabaseConditionsManager) manager;
 
+        // Reuse the SVT conditions of the previous run if none of their tables changed.
+        final SvtConditions unchanged = dbConditionsManager.findUnchangedConditions(SvtConditions.class, name,
+                TABLE_NAMES);
+        if (unchanged != null) {
+            return unchanged;
+        }
+
         // Get the channel map from the conditions database
         final SvtChannelCollection channels = dbConditionsManager.getCachedConditions(SvtChannelCollection.class,
                 "svt_channels").getCachedData();
@@ -50,6 +63,9 @@ public final class SvtConditionsConverter extends AbstractSvtConditionsConverter
 
         this.conditions = super.getData(manager, name);
 
+        // Keep the conditions so they can be reused in the next run.
+        dbConditionsManager.putUnchangedConditions(name, this.conditions, TABLE_NAMES);
+
         return this.conditions;
     }
 
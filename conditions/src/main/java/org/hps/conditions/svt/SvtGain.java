@@ -1,7 +1,7 @@
 package org.hps.conditions.svt;
 
 import org.hps.conditions.api.BaseConditionsObject;
-import org.hps.conditions.api.BaseConditionsObjectCollection;
+import org.hps.conditions.api.ColumnarConditionsObjectCollection;
 import org.hps.conditions.database.Field;
 import org.hps.conditions.database.Table;
 
@@ -15,7 +15,7 @@ public final class SvtGain extends BaseConditionsObject {
      * Collection implementation for {@link SvtGain} objects.
      */
     @SuppressWarnings("serial")
-    public static class SvtGainCollection extends BaseConditionsObjectCollection<SvtGain> {
+    public static class SvtGainCollection extends ColumnarConditionsObjectCollection<SvtGain> {
     }
 
     /**
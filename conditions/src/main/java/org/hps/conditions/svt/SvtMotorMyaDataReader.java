@@ -5,12 +5,10 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
-import java.util.TimeZone;
 import org.hps.conditions.run.RunSpreadsheet.RunData;
 
 public class SvtMotorMyaDataReader {
@@ -57,38 +55,39 @@ public class SvtMotorMyaDataReader {
     }
 
     public static List<SvtPositionMyaRange> readMyaData(File file, int endMargin, double minDwellTime) {
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
-        dateFormat.setTimeZone(TimeZone.getTimeZone("America/New_York"));
+        SvtMyaIndex index = SvtMyaIndex.isIndexFile(file) ? SvtMyaIndex.read(file) : indexMyaData(file);
+        return toRanges(index, endMargin, minDwellTime);
+    }
 
-        List<SvtPositionMyaRange> ranges = new ArrayList<SvtPositionMyaRange>();
+    /**
+     * Read a MYA dump of the SVT motor positions into a time index with the top and bottom opening angles.
+     *
+     * @param file the MYA dump, whose first line is skipped
+     * @return the index of the top (column 0) and bottom (column 1) angles
+     */
+    public static SvtMyaIndex indexMyaData(File file) {
+        SvtMyaIndex index = new SvtMyaIndex(2);
+        List<String> tokens = new ArrayList<String>();
+        double[] values = new double[2];
         try {
-            BufferedReader br = new BufferedReader(new FileReader(file));
+            BufferedReader br = new BufferedReader(new FileReader(file), 1 << 16);
             String line;
             System.out.println("myaData header: " + br.readLine()); //discard the first line
-            SvtPositionMyaRange currentRange = null;
-            Date lastDate = null;
             while ((line = br.readLine()) != null) {
-                String arr[] = line.split(" +");
+                SvtMyaIndex.split(line, tokens);
 
-                if (arr.length != 4) {
+                if (tokens.size() != 4) {
                     throw new ParseException("this line is not correct.", 0);
                 }
-                Date date = dateFormat.parse(arr[0] + " " + arr[1]);
-                Double[] values = new Double[2];
+                long time = SvtMyaIndex.parseTime(tokens.get(0), tokens.get(1));
                 for (int i = 0; i < 2; i++) {
-                    if (arr[i + 2].equals("<undefined>")) {
+                    if (tokens.get(i + 2).equals("<undefined>")) {
                         values[i] = 0.0; //if no data, assume retracted
                     } else {
-                        values[i] = Double.parseDouble(arr[i + 2]);
+                        values[i] = Double.parseDouble(tokens.get(i + 2));
                     }
                 }
-                if (lastDate != null && currentRange != null && date.getTime() - lastDate.getTime() > minDwellTime) {
-                    currentRange.setEndDate(new Date(date.getTime() - endMargin));
-//                    System.out.format("motors stopped:\t %s\n", currentRange.toString());
-                    ranges.add(currentRange);
-                }
-                currentRange = new SvtPositionMyaRange(date, motorToAngleTop(values[0]), motorToAngleBottom(values[1]));
-                lastDate = date;
+                index.add(time, motorToAngleTop(values[0]), motorToAngleBottom(values[1]));
             }
             br.close();
 
@@ -96,8 +95,35 @@ public class SvtMotorMyaDataReader {
             throw new RuntimeException(e);
         } catch (ParseException e) {
             throw new RuntimeException(e);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException(e);
         }
+        index.sort();
 
+        return index;
+    }
+
+    /**
+     * Find the ranges when the motors were stopped from a time index of the opening angles.
+     *
+     * @param index the index of the top and bottom angles
+     * @param endMargin the time in milliseconds to remove from the end of each range
+     * @param minDwellTime the minimum time in milliseconds between two entries for the motors to be stopped
+     * @return the ranges when the motors were stopped
+     */
+    public static List<SvtPositionMyaRange> toRanges(SvtMyaIndex index, int endMargin, double minDwellTime) {
+        List<SvtPositionMyaRange> ranges = new ArrayList<SvtPositionMyaRange>();
+        SvtPositionMyaRange currentRange = null;
+        long lastTime = 0;
+        for (int entry = 0; entry < index.size(); entry++) {
+            long time = index.getTime(entry);
+            if (currentRange != null && time - lastTime > minDwellTime) {
+                currentRange.setEndDate(new Date(time - endMargin));
+                ranges.add(currentRange);
+            }
+            currentRange = new SvtPositionMyaRange(new Date(time), index.getValue(entry, 0), index.getValue(entry, 1));
+            lastTime = time;
+        }
         return ranges;
     }
 
@@ -0,0 +1,405 @@
+package org.hps.conditions.svt;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Time ordered index of the values read from a MYA archive dump, such as the SVT bias or the SVT motor positions.
+ * <p>
+ * Each entry has a timestamp in milliseconds since the epoch and a fixed number of values, which are stored in
+ * primitive arrays sorted by time. The value at any time, which is the value of the last entry at or before that time,
+ * is found with a binary search so that it can be looked up for every event instead of only once per run.
+ * <p>
+ * The dump is parsed one line at a time without creating objects for each entry, and the index can be written to a
+ * compact binary file with {@link #write(File)} which is read much faster than the text dump by {@link #read(File)}.
+ * The readers {@link SvtBiasMyaDataReader} and {@link SvtMotorMyaDataReader} accept either a dump or an index file.
+ * <p>
+ * To convert a dump to an index file:
+ * <code>SvtMyaIndex [bias|bias-header|motor] [dump file] [index file]</code>
+ */
+public final class SvtMyaIndex {
+
+    /**
+     * Initialize the logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(SvtMyaIndex.class.getPackage().getName());
+
+    /**
+     * The first bytes of an index file ("MYAI").
+     */
+    private static final int MAGIC = 0x4d594149;
+
+    /**
+     * The version of the index file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The initial number of entries allocated.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * The time zone of the dates in the MYA dumps.
+     */
+    private static final ZoneId ZONE = ZoneId.of("America/New_York");
+
+    /**
+     * Convert a MYA dump to an index file.
+     *
+     * @param args the dump type (<code>bias</code>, <code>bias-header</code> or <code>motor</code>), the dump file
+     * and the index file
+     */
+    public static void main(final String[] args) {
+        if (args.length != 3) {
+            System.out.println("SvtMyaIndex [bias|bias-header|motor] <myaData dump> <index file>");
+            System.exit(1);
+        }
+        final SvtMyaIndex index;
+        if (args[0].equals("bias")) {
+            index = SvtBiasMyaDataReader.indexMyaData(new File(args[1]), false);
+        } else if (args[0].equals("bias-header")) {
+            index = SvtBiasMyaDataReader.indexMyaData(new File(args[1]), true);
+        } else if (args[0].equals("motor")) {
+            index = SvtMotorMyaDataReader.indexMyaData(new File(args[1]));
+        } else {
+            throw new IllegalArgumentException("Unknown dump type: " + args[0]);
+        }
+        index.write(new File(args[2]));
+        LOGGER.info("wrote " + index.size() + " entries from " + args[1] + " to " + args[2]);
+    }
+
+    /**
+     * Check if a file is an index file instead of a text dump.
+     *
+     * @param file the file
+     * @return <code>true</code> if the file starts with the index file magic number
+     */
+    public static boolean isIndexFile(final File file) {
+        if (file.length() < 4) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC;
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Read an index file.
+     *
+     * @param file the index file
+     * @return the index
+     */
+    public static SvtMyaIndex read(final File file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a MYA index file: " + file.getPath());
+            }
+            final int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported MYA index version " + version + " in " + file.getPath());
+            }
+            final int width = in.readInt();
+            final int size = in.readInt();
+            final SvtMyaIndex index = new SvtMyaIndex(width, Math.max(size, 1));
+            for (int i = 0; i < size; i++) {
+                index.times[i] = in.readLong();
+            }
+            for (int i = 0; i < size * width; i++) {
+                index.values[i] = in.readDouble();
+            }
+            index.size = size;
+            return index;
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Parse the date and time of a line in a MYA dump, which have the format <code>yyyy-MM-dd HH:mm:ss.SSS</code> in
+     * the America/New_York time zone. As with <code>SimpleDateFormat</code>, a time which occurs twice when daylight
+     * saving time ends is taken to be the later one, and a time skipped when it begins is moved forward by an hour.
+     *
+     * @param date the date token
+     * @param time the time token
+     * @return the time in milliseconds since the epoch
+     * @throws IllegalArgumentException if the date or time is not in the expected format
+     */
+    static long parseTime(final String date, final String time) {
+        if (date.length() != 10 || date.charAt(4) != '-' || date.charAt(7) != '-' || time.length() < 10
+                || time.charAt(2) != ':' || time.charAt(5) != ':' || time.charAt(8) != '.') {
+            throw new IllegalArgumentException("Bad MYA date: " + date + " " + time);
+        }
+        final int millis = parseInt(time, 9, time.length());
+        final LocalDateTime local = LocalDateTime.of(parseInt(date, 0, 4), parseInt(date, 5, 7),
+                parseInt(date, 8, 10), parseInt(time, 0, 2), parseInt(time, 3, 5), parseInt(time, 6, 8));
+        return ZonedDateTime.ofLocal(local, ZONE, null).withLaterOffsetAtOverlap().toEpochSecond() * 1000L + millis;
+    }
+
+    /**
+     * Parse a non-negative integer from part of a string.
+     */
+    private static int parseInt(final String s, final int start, final int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            final int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IllegalArgumentException("Bad number in MYA date: " + s);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Split a line of a MYA dump into tokens separated by one or more spaces.
+     *
+     * @param line the line
+     * @param tokens the list which is cleared and filled with the tokens
+     */
+    static void split(final String line, final List<String> tokens) {
+        tokens.clear();
+        int start = -1;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == ' ') {
+                if (start >= 0) {
+                    tokens.add(line.substring(start, i));
+                    start = -1;
+                }
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+        if (start >= 0) {
+            tokens.add(line.substring(start));
+        }
+    }
+
+    /**
+     * The number of entries.
+     */
+    private int size = 0;
+
+    /**
+     * The timestamp of each entry in milliseconds since the epoch.
+     */
+    private long[] times;
+
+    /**
+     * The values of the entries, with {@link #width} values per entry.
+     */
+    private double[] values;
+
+    /**
+     * The number of values of each entry.
+     */
+    private final int width;
+
+    /**
+     * Create an empty index.
+     *
+     * @param width the number of values of each entry
+     */
+    public SvtMyaIndex(final int width) {
+        this(width, INITIAL_CAPACITY);
+    }
+
+    /**
+     * Create an empty index with a capacity.
+     */
+    private SvtMyaIndex(final int width, final int capacity) {
+        if (width < 1) {
+            throw new IllegalArgumentException("The width must be at least 1.");
+        }
+        this.width = width;
+        this.times = new long[capacity];
+        this.values = new double[capacity * width];
+    }
+
+    /**
+     * Add an entry.
+     * <p>
+     * Entries are normally added in time order. If they are not, the index is sorted by {@link #sort()}.
+     *
+     * @param time the time in milliseconds since the epoch
+     * @param entryValues the values of the entry
+     */
+    public void add(final long time, final double... entryValues) {
+        if (entryValues.length != this.width) {
+            throw new IllegalArgumentException("Expected " + this.width + " values but got " + entryValues.length);
+        }
+        if (this.size == this.times.length) {
+            this.times = Arrays.copyOf(this.times, this.size * 2);
+            this.values = Arrays.copyOf(this.values, this.size * 2 * this.width);
+        }
+        this.times[this.size] = time;
+        System.arraycopy(entryValues, 0, this.values, this.size * this.width, this.width);
+        ++this.size;
+    }
+
+    /**
+     * Find the last entry at or before a time.
+     *
+     * @param time the time in milliseconds since the epoch
+     * @return the index of the entry or -1 if the time is before the first entry
+     */
+    public int findEntry(final long time) {
+        int lo = 0;
+        int hi = this.size - 1;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (this.times[mid] <= time) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return hi;
+    }
+
+    /**
+     * Get the time of an entry.
+     *
+     * @param entry the index of the entry
+     * @return the time in milliseconds since the epoch
+     */
+    public long getTime(final int entry) {
+        if (entry < 0 || entry >= this.size) {
+            throw new IndexOutOfBoundsException("Entry " + entry + " is out of range.");
+        }
+        return this.times[entry];
+    }
+
+    /**
+     * Get a value of an entry.
+     *
+     * @param entry the index of the entry
+     * @param column the index of the value in the entry
+     * @return the value
+     */
+    public double getValue(final int entry, final int column) {
+        if (entry < 0 || entry >= this.size) {
+            throw new IndexOutOfBoundsException("Entry " + entry + " is out of range.");
+        }
+        if (column < 0 || column >= this.width) {
+            throw new IndexOutOfBoundsException("Column " + column + " is out of range.");
+        }
+        return this.values[entry * this.width + column];
+    }
+
+    /**
+     * Get the number of values of each entry.
+     *
+     * @return the number of values of each entry
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Get a value at a time, which is the value of the last entry at or before the time.
+     *
+     * @param time the time in milliseconds since the epoch
+     * @param column the index of the value in the entry
+     * @return the value or <code>Double.NaN</code> if the time is before the first entry
+     */
+    public double getValueAt(final long time, final int column) {
+        final int entry = this.findEntry(time);
+        return entry < 0 ? Double.NaN : this.getValue(entry, column);
+    }
+
+    /**
+     * Get a value at a date.
+     *
+     * @param date the date
+     * @param column the index of the value in the entry
+     * @return the value or <code>Double.NaN</code> if the date is before the first entry
+     */
+    public double getValueAt(final Date date, final int column) {
+        return this.getValueAt(date.getTime(), column);
+    }
+
+    /**
+     * Get the number of entries.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Sort the entries by time if they were not added in time order, keeping the order of entries with equal times.
+     */
+    void sort() {
+        boolean ordered = true;
+        for (int i = 1; i < this.size && ordered; i++) {
+            ordered = this.times[i - 1] <= this.times[i];
+        }
+        if (ordered) {
+            return;
+        }
+        LOGGER.warning("MYA entries are not in time order and will be sorted");
+        final List<Integer> order = new ArrayList<Integer>(this.size);
+        for (int i = 0; i < this.size; i++) {
+            order.add(i);
+        }
+        final long[] unsortedTimes = this.times;
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer i1, final Integer i2) {
+                return Long.compare(unsortedTimes[i1], unsortedTimes[i2]);
+            }
+        });
+        final long[] sortedTimes = new long[this.times.length];
+        final double[] sortedValues = new double[this.values.length];
+        for (int i = 0; i < this.size; i++) {
+            final int from = order.get(i);
+            sortedTimes[i] = this.times[from];
+            System.arraycopy(this.values, from * this.width, sortedValues, i * this.width, this.width);
+        }
+        this.times = sortedTimes;
+        this.values = sortedValues;
+    }
+
+    /**
+     * Write this index to a binary file.
+     *
+     * @param file the output file
+     */
+    public void write(final File file) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file),
+                1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(this.width);
+            out.writeInt(this.size);
+            for (int i = 0; i < this.size; i++) {
+                out.writeLong(this.times[i]);
+            }
+            for (int i = 0; i < this.size * this.width; i++) {
+                out.writeDouble(this.values[i]);
+            }
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
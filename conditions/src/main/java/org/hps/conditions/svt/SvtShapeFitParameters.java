@@ -1,7 +1,7 @@
 package org.hps.conditions.svt;
 
 import org.hps.conditions.api.BaseConditionsObject;
-import org.hps.conditions.api.BaseConditionsObjectCollection;
+import org.hps.conditions.api.ColumnarConditionsObjectCollection;
 import org.hps.conditions.database.Field;
 import org.hps.conditions.database.Table;
 
@@ -15,7 +15,8 @@ public final class SvtShapeFitParameters extends BaseConditionsObject {
      * Collection implementation for {@link SvtShapeFitParameters} objects.
      */
     @SuppressWarnings("serial")
-    public static class SvtShapeFitParametersCollection extends BaseConditionsObjectCollection<SvtShapeFitParameters> {
+    public static class SvtShapeFitParametersCollection extends
+            ColumnarConditionsObjectCollection<SvtShapeFitParameters> {
     }
 
     /**
@@ -0,0 +1,107 @@
+package org.hps.conditions.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import junit.framework.TestCase;
+
+import org.hps.conditions.svt.SvtCalibration;
+import org.hps.conditions.svt.SvtCalibration.SvtCalibrationCollection;
+
+/**
+ * Check that objects stored in {@link ConditionsColumns} return the same field values as objects with their own map.
+ */
+public class ConditionsColumnsTest extends TestCase {
+
+    /**
+     * The number of channels to create.
+     */
+    private static final int CHANNELS = 1000;
+
+    /**
+     * Create a collection of SVT calibrations which store their own field values.
+     */
+    private static BaseConditionsObjectCollection<SvtCalibration> createCalibrations(final TableMetaData tableMetaData)
+            throws Exception {
+        final BaseConditionsObjectCollection<SvtCalibration> calibrations =
+                new BaseConditionsObjectCollection<SvtCalibration>(null, tableMetaData);
+        for (int channel = 0; channel < CHANNELS; channel++) {
+            final SvtCalibration calibration = new SvtCalibration(channel);
+            calibration.setFieldValue("collection_id", 42);
+            for (int sample = 0; sample < 6; sample++) {
+                calibration.setFieldValue("noise_" + sample, 1.0 + channel + 0.1 * sample);
+                calibration.setFieldValue("pedestal_" + sample, 4000.0 + channel - sample);
+            }
+            calibrations.add(calibration);
+        }
+        return calibrations;
+    }
+
+    /**
+     * Read a collection into a columnar collection through a snapshot and compare the field values.
+     *
+     * @throws Exception if there is an error creating or reading the collection
+     */
+    public void testSnapshotIntoColumns() throws Exception {
+        final TableMetaData tableMetaData = TableRegistry.getTableRegistry().findByTableName("svt_calibrations");
+        final BaseConditionsObjectCollection<SvtCalibration> calibrations = createCalibrations(tableMetaData);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        calibrations.writeSnapshot(new DataOutputStream(bytes));
+        final SvtCalibrationCollection columnar = new SvtCalibrationCollection();
+        columnar.setTableMetaData(tableMetaData);
+        columnar.readSnapshot(42, new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(CHANNELS, columnar.size());
+        assertEquals(CHANNELS, columnar.getColumns().size());
+        for (int i = 0; i < CHANNELS; i++) {
+            final SvtCalibration expected = calibrations.get(i);
+            final SvtCalibration actual = columnar.get(i);
+            assertEquals(expected.getChannelID(), actual.getChannelID());
+            assertEquals(expected.getCollectionId(), actual.getCollectionId());
+            for (int sample = 0; sample < 6; sample++) {
+                assertEquals(expected.getNoise(sample), actual.getNoise(sample));
+                assertEquals(expected.getPedestal(sample), actual.getPedestal(sample));
+                assertEquals(expected.getNoise(sample), columnar.getColumns().getDouble(i, "noise_" + sample));
+            }
+        }
+
+        columnar.clear();
+        assertNull(columnar.getColumns());
+    }
+
+    /**
+     * Check null values, new fields and values which do not have the type of their column.
+     */
+    public void testColumnTypes() {
+        final TableMetaData tableMetaData = TableRegistry.getTableRegistry().findByTableName("svt_calibrations");
+        final ConditionsColumns columns = new ConditionsColumns(tableMetaData);
+        final FieldValues first = columns.addRow();
+        final FieldValues second = columns.addRow();
+
+        assertTrue(first.isNull("noise_0"));
+        assertTrue(Double.isNaN(columns.getDouble(0, "noise_0")));
+
+        first.setValue("noise_0", 2.5);
+        second.setValue("noise_0", 3.5);
+        assertEquals(Double.valueOf(2.5), first.getValue(Double.class, "noise_0"));
+        assertFalse(first.isNull("noise_0"));
+
+        // A value of another type converts the column without changing the other values.
+        second.setValue("noise_0", Float.valueOf(1.5f));
+        assertEquals(Double.valueOf(2.5), first.getValue("noise_0"));
+        assertEquals(Float.valueOf(1.5f), second.getValue("noise_0"));
+        assertEquals(1.5, columns.getDouble(1, "noise_0"));
+
+        // A field which is not in the table is added for every row.
+        second.setValue("extra", "value");
+        assertTrue(first.hasField("extra"));
+        assertTrue(first.isNull("extra"));
+        assertEquals("value", second.getValue("extra"));
+
+        first.setValue("noise_0", null);
+        assertTrue(first.isNull("noise_0"));
+    }
+}
@@ -0,0 +1,143 @@
+package org.hps.conditions.api;
+
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.hps.conditions.api.ConditionsRecord.ConditionsRecordCollection;
+import org.hps.conditions.database.MultipleCollectionsAction;
+
+/**
+ * Check that the index of conditions records finds the same records as sorting the records of a key.
+ */
+public class ConditionsRecordIndexTest extends TestCase {
+
+    /**
+     * The conditions keys of the records.
+     */
+    private static final String[] KEYS = {"ecal_gains", "svt_t0_shifts", "svt_alignments"};
+
+    /**
+     * The actions which pick one of several records.
+     */
+    private static final MultipleCollectionsAction[] ACTIONS = {MultipleCollectionsAction.LAST_CREATED,
+            MultipleCollectionsAction.LAST_UPDATED, MultipleCollectionsAction.LATEST_RUN_START};
+
+    /**
+     * Create a collection of records with random run ranges and dates, some of which are equal.
+     */
+    private static ConditionsRecordCollection createRecords(final Random random, final int size) throws Exception {
+        final ConditionsRecordCollection records = new ConditionsRecordCollection();
+        for (int i = 0; i < size; i++) {
+            final int runStart = 5000 + random.nextInt(200);
+            final int runEnd = runStart + random.nextInt(50);
+            final String key = KEYS[random.nextInt(KEYS.length)];
+            final ConditionsRecord record = new ConditionsRecord(i + 1, runStart, runEnd, key, key, null, null);
+            record.setFieldValue("created", new Date(1000L * random.nextInt(20)));
+            record.setFieldValue("updated", new Date(1000L * random.nextInt(20)));
+            records.add(record);
+        }
+        return records;
+    }
+
+    /**
+     * Pick a unique record by filtering and sorting the records like the conditions system did before the index.
+     */
+    private static ConditionsRecord findBySorting(final ConditionsRecordCollection records, final String key,
+            final int run, final MultipleCollectionsAction action) throws Exception {
+        final ConditionsRecordCollection keyRecords = new ConditionsRecordCollection();
+        for (final ConditionsRecord record : records) {
+            if (record.getName().equals(key) && record.getRunStart() <= run && record.getRunEnd() >= run) {
+                keyRecords.add(record);
+            }
+        }
+        if (keyRecords.size() == 0) {
+            return null;
+        }
+        final int last = keyRecords.size() - 1;
+        if (action.equals(MultipleCollectionsAction.LAST_UPDATED)) {
+            return keyRecords.sortedByUpdated().get(last);
+        } else if (action.equals(MultipleCollectionsAction.LAST_CREATED)) {
+            return keyRecords.sortedByCreated().get(last);
+        } else {
+            return keyRecords.sortedByRunStart().get(last);
+        }
+    }
+
+    /**
+     * Compare the records found by run with the index to those found by sorting.
+     *
+     * @throws Exception if there is an error creating the records
+     */
+    public void testFindByRun() throws Exception {
+        final Random random = new Random(1234);
+        final ConditionsRecordCollection records = createRecords(random, 500);
+        for (int run = 4990; run < 5260; run++) {
+            for (final String key : KEYS) {
+                int expectedCount = 0;
+                for (final ConditionsRecord record : records) {
+                    if (record.getName().equals(key) && record.getRunStart() <= run && record.getRunEnd() >= run) {
+                        ++expectedCount;
+                    }
+                }
+                final ConditionsRecordCollection found = records.findByKey(key, run);
+                assertEquals("Wrong number of records for " + key + " in run " + run, expectedCount, found.size());
+                for (final MultipleCollectionsAction action : ACTIONS) {
+                    assertSame("Wrong record for " + key + " in run " + run + " with " + action,
+                            findBySorting(records, key, run, action), records.findUniqueRecord(key, run, action));
+                }
+            }
+        }
+    }
+
+    /**
+     * Check that the unique record of a collection for one run matches the last sorted record.
+     *
+     * @throws Exception if there is an error creating the records
+     */
+    public void testFindUniqueRecord() throws Exception {
+        final Random random = new Random(5678);
+        final ConditionsRecordCollection records = createRecords(random, 100);
+        final ConditionsRecordCollection runRecords = new ConditionsRecordCollection();
+        for (final ConditionsRecord record : records) {
+            if (record.getRunStart() <= 5100 && record.getRunEnd() >= 5100) {
+                runRecords.add(record);
+            }
+        }
+        for (final String key : KEYS) {
+            assertEquals(runRecords.findByKey(key).size(), records.findByKey(key, 5100).size());
+            for (final MultipleCollectionsAction action : ACTIONS) {
+                assertSame(findBySorting(records, key, 5100, action), runRecords.findUniqueRecord(key, action));
+            }
+        }
+        assertNull(runRecords.findUniqueRecord("ecal_channels", MultipleCollectionsAction.LAST_CREATED));
+    }
+
+    /**
+     * Check that sorting the records through the collection interface discards the index, so that ties resolve in the
+     * new order of the records.
+     *
+     * @throws Exception if there is an error creating the records
+     */
+    public void testSortDiscardsIndex() throws Exception {
+        final ConditionsRecordCollection records = createRecords(new Random(4321), 200);
+        final ConditionsRecordIndex index = records.getIndex();
+        records.sort(new Comparator<ConditionsRecord>() {
+            @Override
+            public int compare(final ConditionsRecord c1, final ConditionsRecord c2) {
+                return c2.getCollectionId().compareTo(c1.getCollectionId());
+            }
+        });
+        assertNotSame(index, records.getIndex());
+        for (int run = 5000; run < 5250; run += 10) {
+            for (final String key : KEYS) {
+                for (final MultipleCollectionsAction action : ACTIONS) {
+                    assertSame("Wrong record for " + key + " in run " + run + " with " + action,
+                            findBySorting(records, key, run, action), records.findUniqueRecord(key, run, action));
+                }
+            }
+        }
+    }
+}
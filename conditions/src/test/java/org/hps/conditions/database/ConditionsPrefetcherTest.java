@@ -0,0 +1,61 @@
+package org.hps.conditions.database;
+
+import java.util.Date;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.hps.conditions.api.ConditionsRecord;
+import org.hps.conditions.api.ConditionsRecord.ConditionsRecordCollection;
+
+/**
+ * Check that only the collections which the converters use are prefetched.
+ */
+public class ConditionsPrefetcherTest extends TestCase {
+
+    /**
+     * Create a record with the given creation and update dates.
+     */
+    private static ConditionsRecord createRecord(final int collectionId, final String key, final long created,
+            final long updated) throws Exception {
+        final ConditionsRecord record = new ConditionsRecord(collectionId, 1000, 2000, key, key, null, null);
+        record.setFieldValue("created", new Date(created));
+        record.setFieldValue("updated", new Date(updated));
+        return record;
+    }
+
+    /**
+     * Check that the record picked by the action is the only one selected and that all records of a series are
+     * selected.
+     *
+     * @throws Exception if there is an error creating the records
+     */
+    public void testSelectPrefetchRecords() throws Exception {
+        final ConditionsRecordCollection records = new ConditionsRecordCollection();
+        records.add(createRecord(1, "svt_calibrations", 1000L, 5000L));
+        records.add(createRecord(2, "svt_calibrations", 2000L, 3000L));
+        records.add(createRecord(3, "svt_bad_channels", 1000L, 1000L));
+        records.add(createRecord(4, "svt_bad_channels", 2000L, 2000L));
+
+        List<ConditionsRecord> selected = DatabaseConditionsManager.selectPrefetchRecords(records,
+                "svt_calibrations", MultipleCollectionsAction.LAST_CREATED);
+        assertEquals(1, selected.size());
+        assertEquals(2, selected.get(0).getCollectionId().intValue());
+
+        selected = DatabaseConditionsManager.selectPrefetchRecords(records, "svt_calibrations",
+                MultipleCollectionsAction.LAST_UPDATED);
+        assertEquals(1, selected.size());
+        assertEquals(1, selected.get(0).getCollectionId().intValue());
+
+        selected = DatabaseConditionsManager.selectPrefetchRecords(records, "svt_calibrations",
+                MultipleCollectionsAction.ERROR);
+        assertTrue("Ambiguous records should not be prefetched.", selected.isEmpty());
+
+        selected = DatabaseConditionsManager.selectPrefetchRecords(records, "svt_bad_channels", null);
+        assertEquals(2, selected.size());
+
+        selected = DatabaseConditionsManager.selectPrefetchRecords(records, "ecal_gains",
+                MultipleCollectionsAction.LAST_CREATED);
+        assertTrue(selected.isEmpty());
+    }
+}
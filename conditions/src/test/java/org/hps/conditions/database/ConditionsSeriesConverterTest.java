@@ -0,0 +1,92 @@
+package org.hps.conditions.database;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+import org.hps.conditions.api.ConditionsObjectCollection;
+import org.hps.conditions.api.ConditionsRecord;
+import org.hps.conditions.api.ConditionsRecord.ConditionsRecordCollection;
+import org.hps.conditions.api.ConditionsSeries;
+import org.hps.conditions.api.TableMetaData;
+import org.hps.conditions.api.TableRegistry;
+import org.hps.conditions.svt.SvtBadChannel;
+import org.hps.conditions.svt.SvtBadChannel.SvtBadChannelCollection;
+
+/**
+ * Test that a {@link ConditionsSeries} is loaded from the {@link ConditionsSnapshotCache} without a database
+ * connection when the snapshot has all of its collections.
+ */
+public class ConditionsSeriesConverterTest extends TestCase {
+
+    /**
+     * Create a collection of bad channels.
+     */
+    private static SvtBadChannelCollection createBadChannels(final TableMetaData tableMetaData,
+            final int collectionId, final int... channels) throws Exception {
+        final SvtBadChannelCollection collection = new SvtBadChannelCollection();
+        collection.setTableMetaData(tableMetaData);
+        for (final int channel : channels) {
+            final SvtBadChannel badChannel = new SvtBadChannel();
+            badChannel.setFieldValue("svt_channel_id", channel);
+            collection.add(badChannel);
+        }
+        collection.setCollectionId(collectionId);
+        return collection;
+    }
+
+    private static void checkChannels(final ConditionsObjectCollection<SvtBadChannel> collection, final int collectionId,
+            final int... channels) {
+        assertEquals(collectionId, collection.getCollectionId());
+        assertEquals(channels.length, collection.size());
+        int i = 0;
+        for (final SvtBadChannel badChannel : collection) {
+            assertEquals(Integer.valueOf(channels[i++]), badChannel.getChannelId());
+        }
+    }
+
+    /**
+     * Load a series of bad channels with a warm snapshot cache. The collections must come from the snapshot, since
+     * the manager has no connection and the channels are not those in the database.
+     *
+     * @throws Exception if there is an error creating the collections or snapshot
+     */
+    public void testSeriesFromSnapshot() throws Exception {
+        final File directory = Files.createTempDirectory("snapshot").toFile();
+        final TableMetaData tableMetaData = TableRegistry.getTableRegistry().findByTableName("svt_bad_channels");
+        final ConditionsRecord firstRecord = new ConditionsRecord(1, 0, 9999, "svt_bad_channels",
+                "svt_bad_channels", null, null);
+        final ConditionsRecord secondRecord = new ConditionsRecord(2, 0, 9999, "svt_bad_channels",
+                "svt_bad_channels", null, null);
+        final ConditionsRecordCollection records = new ConditionsRecordCollection();
+        records.add(firstRecord);
+        records.add(secondRecord);
+
+        // Write the snapshot of a previous job.
+        final ConditionsSnapshotCache cache = new ConditionsSnapshotCache(directory, false);
+        cache.open("HPS-Test", 1000, Collections.<String>emptyList());
+        cache.putCollection(tableMetaData, firstRecord, createBadChannels(tableMetaData, 1, 10, 11));
+        cache.putCollection(tableMetaData, secondRecord, createBadChannels(tableMetaData, 2, 20));
+        cache.save();
+
+        final DatabaseConditionsManager manager = DatabaseConditionsManager.getInstance();
+        final ConditionsSnapshotCache oldCache = manager.getSnapshotCache();
+        final ConditionsSnapshotCache warmCache = new ConditionsSnapshotCache(directory, false);
+        warmCache.open("HPS-Test", 1000, Collections.<String>emptyList());
+        manager.setSnapshotCache(warmCache);
+        try {
+            final ConditionsSeriesConverter<SvtBadChannel, SvtBadChannelCollection> converter =
+                    new ConditionsSeriesConverter<SvtBadChannel, SvtBadChannelCollection>(SvtBadChannel.class,
+                            SvtBadChannelCollection.class);
+            final ConditionsSeries<SvtBadChannel, SvtBadChannelCollection> series = converter.createSeries(manager,
+                    tableMetaData, records);
+            assertEquals(2, series.size());
+            checkChannels(series.get(0), 1, 10, 11);
+            checkChannels(series.get(1), 2, 20);
+        } finally {
+            manager.setSnapshotCache(oldCache);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.hps.conditions.database;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+import org.hps.conditions.api.BaseConditionsObjectCollection;
+import org.hps.conditions.api.ConditionsRecord;
+import org.hps.conditions.api.TableMetaData;
+import org.hps.conditions.api.TableRegistry;
+import org.hps.conditions.svt.SvtBadChannel;
+import org.hps.conditions.svt.SvtBadChannel.SvtBadChannelCollection;
+
+/**
+ * Test of the {@link ConditionsSnapshotCache} with several collections from the same table, as loaded for a
+ * conditions series such as the SVT bad channels.
+ */
+public class ConditionsSnapshotCacheTest extends TestCase {
+
+    /**
+     * Create a collection of bad channels.
+     */
+    private static SvtBadChannelCollection createBadChannels(final TableMetaData tableMetaData,
+            final int collectionId, final int... channels) throws Exception {
+        final SvtBadChannelCollection collection = new SvtBadChannelCollection();
+        collection.setTableMetaData(tableMetaData);
+        for (final int channel : channels) {
+            final SvtBadChannel badChannel = new SvtBadChannel();
+            badChannel.setFieldValue("svt_channel_id", channel);
+            collection.add(badChannel);
+        }
+        collection.setCollectionId(collectionId);
+        return collection;
+    }
+
+    private static void checkChannels(final BaseConditionsObjectCollection<?> collection, final int... channels) {
+        assertNotNull("The collection should be in the snapshot.", collection);
+        assertEquals(channels.length, collection.size());
+        int i = 0;
+        for (final Object object : collection) {
+            assertEquals(Integer.valueOf(channels[i++]), ((SvtBadChannel) object).getChannelId());
+        }
+    }
+
+    /**
+     * Cache two collections of the same table and check that each is returned for its own conditions record, both
+     * from memory and after the snapshot is written and read back.
+     *
+     * @throws Exception if there is an error creating the collections or snapshot
+     */
+    public void testCollectionsOfSameTable() throws Exception {
+        final File directory = Files.createTempDirectory("snapshot").toFile();
+        final TableMetaData tableMetaData = TableRegistry.getTableRegistry().findByTableName("svt_bad_channels");
+        final ConditionsRecord firstRecord = new ConditionsRecord(1, 0, 9999, "svt_bad_channels",
+                "svt_bad_channels", null, null);
+        final ConditionsRecord secondRecord = new ConditionsRecord(2, 0, 9999, "svt_bad_channels",
+                "svt_bad_channels", null, null);
+        final ConditionsRecord unknownRecord = new ConditionsRecord(3, 0, 9999, "svt_bad_channels",
+                "svt_bad_channels", null, null);
+
+        final ConditionsSnapshotCache cache = new ConditionsSnapshotCache(directory, false);
+        cache.open("HPS-Test", 1000, Collections.<String>emptyList());
+        cache.putCollection(tableMetaData, firstRecord, createBadChannels(tableMetaData, 1, 10, 11));
+        cache.putCollection(tableMetaData, secondRecord, createBadChannels(tableMetaData, 2, 20));
+
+        assertTrue(cache.hasCollection(tableMetaData, firstRecord));
+        assertTrue(cache.hasCollection(tableMetaData, secondRecord));
+        assertFalse(cache.hasCollection(tableMetaData, unknownRecord));
+        checkChannels(cache.getCollection(tableMetaData, firstRecord), 10, 11);
+        checkChannels(cache.getCollection(tableMetaData, secondRecord), 20);
+        assertNull(cache.getCollection(tableMetaData, unknownRecord));
+
+        cache.save();
+
+        final ConditionsSnapshotCache reopened = new ConditionsSnapshotCache(directory, false);
+        reopened.open("HPS-Test", 1000, Collections.<String>emptyList());
+        checkChannels(reopened.getCollection(tableMetaData, firstRecord), 10, 11);
+        checkChannels(reopened.getCollection(tableMetaData, secondRecord), 20);
+        assertEquals(1, reopened.getCollection(tableMetaData, firstRecord).getCollectionId());
+        assertEquals(2, reopened.getCollection(tableMetaData, secondRecord).getCollectionId());
+    }
+}
@@ -0,0 +1,67 @@
+package org.hps.conditions.database;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.hps.conditions.api.ConditionsRecord;
+import org.hps.conditions.api.ConditionsRecord.ConditionsRecordCollection;
+import org.hps.conditions.ecal.EcalConditions;
+import org.hps.conditions.svt.SvtConditions;
+
+/**
+ * Check that a {@link ConditionsSnapshot} keeps the conditions it was created with.
+ */
+public class ConditionsSnapshotTest extends TestCase {
+
+    /**
+     * Create a snapshot of a run with the given conditions.
+     */
+    private static ConditionsSnapshot createSnapshot(final int run, final Map<String, Object> conditions)
+            throws Exception {
+        final ConditionsRecordCollection records = new ConditionsRecordCollection();
+        records.add(new ConditionsRecord(1, 0, 9999, "ecal_gains", "ecal_gains", null, null));
+        return new ConditionsSnapshot("HPS-Test", run, Collections.<String>emptySet(), records.getIndex(),
+                conditions);
+    }
+
+    /**
+     * Check that the conditions of a snapshot are those it was created with, that they do not change when the map it
+     * was created from changes, and that conditions which are not in the snapshot always fail the same way.
+     *
+     * @throws Exception if there is an error creating the snapshots
+     */
+    public void testImmutable() throws Exception {
+        final Map<String, Object> conditions = new HashMap<String, Object>();
+        final String first = new String("first");
+        conditions.put(ConditionsSnapshot.key(String.class, "conditions"), first);
+        final ConditionsSnapshot snapshot = createSnapshot(1000, conditions);
+        assertTrue(snapshot.hasConditions(String.class, "conditions"));
+        assertSame(first, snapshot.getConditions(String.class, "conditions"));
+
+        // Changes to the conditions of the next run are not seen by the snapshot.
+        conditions.put(ConditionsSnapshot.key(String.class, "conditions"), "next");
+        conditions.put(ConditionsSnapshot.key(Integer.class, "other"), 1);
+        final ConditionsSnapshot nextSnapshot = createSnapshot(1001, conditions);
+        assertEquals("next", nextSnapshot.getConditions(String.class, "conditions"));
+        assertSame(first, snapshot.getConditions(String.class, "conditions"));
+        assertFalse(snapshot.hasConditions(Integer.class, "other"));
+
+        // Conditions which are not in the snapshot cannot be read.
+        for (int i = 0; i < 2; i++) {
+            try {
+                snapshot.getConditions(Integer.class, "other");
+                fail("Conditions which are not in the snapshot should not be found.");
+            } catch (final IllegalArgumentException e) {
+                // expected
+            }
+        }
+
+        assertEquals(1000, snapshot.getRun());
+        assertEquals(1, snapshot.findConditionsRecords("ecal_gains").size());
+        assertFalse(snapshot.hasConditions(EcalConditions.class, "ecal_conditions"));
+        assertFalse(snapshot.hasConditions(SvtConditions.class, "svt_conditions"));
+    }
+}
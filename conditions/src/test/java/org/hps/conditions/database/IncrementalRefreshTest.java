@@ -0,0 +1,180 @@
+package org.hps.conditions.database;
+
+import java.lang.reflect.Method;
+
+import junit.framework.TestCase;
+
+import org.hps.conditions.api.BaseConditionsObject;
+import org.hps.conditions.api.ConditionsRecord;
+import org.hps.conditions.api.ConditionsRecord.ConditionsRecordCollection;
+import org.lcsim.conditions.ConditionsEvent;
+import org.lcsim.conditions.ConditionsListener;
+
+/**
+ * Check that the {@link IncrementalRefresh} reuses the conditions of tables which did not change between runs, and
+ * that the conditions of changed tables and the listeners which depend on them are refreshed.
+ */
+public class IncrementalRefreshTest extends TestCase {
+
+    /**
+     * The tables of the combined conditions object.
+     */
+    private static final String[] TABLE_NAMES = {"ecal_channels", "ecal_gains"};
+
+    /**
+     * Listener which counts its callbacks.
+     */
+    private static final class CountingListener implements ConditionsListener {
+
+        private int callbacks = 0;
+
+        @Override
+        public void conditionsChanged(final ConditionsEvent event) {
+            ++this.callbacks;
+        }
+    }
+
+    /**
+     * Create the conditions records of a run with the given row IDs for the channels and gains.
+     */
+    private static ConditionsRecordCollection createRecords(final int channelsId, final int gainsId)
+            throws Exception {
+        final ConditionsRecordCollection records = new ConditionsRecordCollection();
+        records.add(createRecord(channelsId, "ecal_channels"));
+        records.add(createRecord(gainsId, "ecal_gains"));
+        return records;
+    }
+
+    /**
+     * Create a conditions record with a row ID, which is otherwise only set when the record is read from the
+     * database.
+     */
+    private static ConditionsRecord createRecord(final int rowId, final String key) throws Exception {
+        final ConditionsRecord record = new ConditionsRecord(rowId, 0, 9999, key, key, null, null);
+        final Method setRowId = BaseConditionsObject.class.getDeclaredMethod("setRowId", int.class);
+        setRowId.setAccessible(true);
+        setRowId.invoke(record, rowId);
+        return record;
+    }
+
+    /**
+     * Change the run and check that the combined conditions are reused while their tables are unchanged, even
+     * though the key of the subdetector is a different but equal object, and are not reused once a table changed.
+     *
+     * @throws Exception if there is an error creating the records
+     */
+    public void testReuseAcrossRuns() throws Exception {
+        final IncrementalRefresh refresh = new IncrementalRefresh();
+        final Object conditions = new Object();
+
+        // First run.
+        refresh.startRun(createRecords(1, 2));
+        assertTrue(refresh.hasChanged(TABLE_NAMES));
+        assertNull(refresh.findConditions("ecal_conditions", TABLE_NAMES, new Object[] {"HPS-Test:Ecal"}));
+        refresh.putConditions("ecal_conditions", conditions, TABLE_NAMES,
+                new Object[] {new String("HPS-Test:Ecal")});
+
+        // Second run with the same records, in which the detector object is built again.
+        refresh.startRun(createRecords(1, 2));
+        assertFalse(refresh.hasChanged(TABLE_NAMES));
+        assertSame(conditions,
+                refresh.findConditions("ecal_conditions", TABLE_NAMES, new Object[] {new String("HPS-Test:Ecal")}));
+        assertNull("Conditions of another subdetector should not be reused.",
+                refresh.findConditions("ecal_conditions", TABLE_NAMES, new Object[] {"HPS-Test:Hodoscope"}));
+
+        // Third run with new gains.
+        refresh.startRun(createRecords(1, 3));
+        assertFalse(refresh.hasChanged("ecal_channels"));
+        assertTrue(refresh.hasChanged("ecal_gains"));
+        assertNull("Stale conditions should not be reused.",
+                refresh.findConditions("ecal_conditions", TABLE_NAMES, new Object[] {"HPS-Test:Ecal"}));
+
+        // Fourth run changing back to the old gains, after the stale conditions were dropped.
+        refresh.startRun(createRecords(1, 2));
+        assertTrue(refresh.hasChanged("ecal_gains"));
+        assertNull(refresh.findConditions("ecal_conditions", TABLE_NAMES, new Object[] {"HPS-Test:Ecal"}));
+    }
+
+    /**
+     * Check that a listener added with its tables is only notified when one of them changed, and that other
+     * listeners are always notified.
+     *
+     * @throws Exception if there is an error creating the records
+     */
+    public void testListenerDispatch() throws Exception {
+        final DatabaseConditionsManager manager = DatabaseConditionsManager.getInstance();
+        final CountingListener ecalListener = new CountingListener();
+        final CountingListener otherListener = new CountingListener();
+        final ConditionsListener ecal = new DatabaseConditionsManager.TimedConditionsListener(manager, ecalListener,
+                TABLE_NAMES);
+        final ConditionsListener other = new DatabaseConditionsManager.TimedConditionsListener(manager,
+                otherListener, null);
+        manager.setIncrementalRefresh(true);
+        try {
+            final IncrementalRefresh refresh = manager.getIncrementalRefresh();
+            refresh.reset();
+
+            refresh.startRun(createRecords(1, 2));
+            ecal.conditionsChanged(null);
+            other.conditionsChanged(null);
+            assertEquals(1, ecalListener.callbacks);
+            assertEquals(1, otherListener.callbacks);
+
+            refresh.startRun(createRecords(1, 2));
+            ecal.conditionsChanged(null);
+            other.conditionsChanged(null);
+            assertEquals("The listener should be skipped if its tables did not change.", 1, ecalListener.callbacks);
+            assertEquals(2, otherListener.callbacks);
+
+            refresh.startRun(createRecords(1, 3));
+            ecal.conditionsChanged(null);
+            other.conditionsChanged(null);
+            assertEquals(2, ecalListener.callbacks);
+            assertEquals(3, otherListener.callbacks);
+        } finally {
+            manager.setIncrementalRefresh(false);
+        }
+    }
+
+    /**
+     * Check that a run change which only touches tables a listener does not read, here the SVT gains, does not
+     * notify a listener added with the tables of an event builder, while a change of one of its tables does.
+     *
+     * @throws Exception if there is an error creating the records
+     */
+    public void testUnrelatedTablesChanged() throws Exception {
+        final DatabaseConditionsManager manager = DatabaseConditionsManager.getInstance();
+        final CountingListener builderListener = new CountingListener();
+        final ConditionsListener builder = new DatabaseConditionsManager.TimedConditionsListener(manager,
+                builderListener, new String[] {"ecal_channels", "ecal_gains", "hodo_channels", "ti_time_offsets"});
+        manager.setIncrementalRefresh(true);
+        try {
+            final IncrementalRefresh refresh = manager.getIncrementalRefresh();
+            refresh.reset();
+
+            final ConditionsRecordCollection firstRun = createRecords(1, 2);
+            firstRun.add(createRecord(10, "svt_gains"));
+            refresh.startRun(firstRun);
+            builder.conditionsChanged(null);
+            assertEquals(1, builderListener.callbacks);
+
+            final ConditionsRecordCollection secondRun = createRecords(1, 2);
+            secondRun.add(createRecord(11, "svt_gains"));
+            refresh.startRun(secondRun);
+            assertTrue(manager.hasChanged("svt_gains"));
+            builder.conditionsChanged(null);
+            assertEquals("The listener should not be notified of changes to unrelated tables.", 1,
+                    builderListener.callbacks);
+
+            final ConditionsRecordCollection thirdRun = createRecords(1, 2);
+            thirdRun.add(createRecord(11, "svt_gains"));
+            thirdRun.add(createRecord(12, "ti_time_offsets"));
+            refresh.startRun(thirdRun);
+            builder.conditionsChanged(null);
+            assertEquals("The listener should be notified when one of its tables was added.", 2,
+                    builderListener.callbacks);
+        } finally {
+            manager.setIncrementalRefresh(false);
+        }
+    }
+}
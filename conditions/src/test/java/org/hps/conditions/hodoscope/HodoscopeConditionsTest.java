@@ -61,6 +61,19 @@ public class HodoscopeConditionsTest extends TestCase {
             System.out.println(channelData.getTimeShift());
             System.out.println();
         }
+
+        System.out.println("Checking Hodoscope channel constants table ...");
+        final HodoscopeChannelConstantsTable table = conditions.getChannelConstantsTable();
+        assertEquals(conditions.getChannels().size(), table.getChannelCount());
+        for (HodoscopeChannel channel : conditions.getChannels()) {
+            final int index = table.findChannelId(channel.getChannelId());
+            assertSame(channel, table.getChannel(index));
+            assertEquals(index, table.findDaq(channel.getCrate(), channel.getSlot(), channel.getChannel()));
+            HodoscopeChannelConstants channelData = conditions.getChannelConstants(channel);
+            assertEquals(channelData.getCalibration().getPedestal(), table.getPedestal(index));
+            assertEquals(channelData.getGain().getGain(), table.getGain(index));
+            assertEquals(channelData.getTimeShift().getTimeShift(), table.getTimeShift(index));
+        }
     }
 
 }
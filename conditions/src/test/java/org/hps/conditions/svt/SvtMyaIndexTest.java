@@ -0,0 +1,37 @@
+package org.hps.conditions.svt;
+
+import java.text.SimpleDateFormat;
+import java.util.TimeZone;
+
+import junit.framework.TestCase;
+
+/**
+ * Test of the date parsing in {@link SvtMyaIndex}.
+ */
+public class SvtMyaIndexTest extends TestCase {
+
+    /**
+     * The days on which daylight saving time began and ended in 2019.
+     */
+    private static final String[] DAYS = new String[] {"2019-03-10", "2019-11-03", "2019-07-01"};
+
+    /**
+     * Check that the times parsed during the early hours of the daylight saving time changes, including the hour which
+     * is skipped and the hour which occurs twice, are the same as those given by <code>SimpleDateFormat</code>.
+     *
+     * @throws Exception if a date cannot be parsed
+     */
+    public void testParseTime() throws Exception {
+        final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        dateFormat.setTimeZone(TimeZone.getTimeZone("America/New_York"));
+        for (final String day : DAYS) {
+            for (int minute = 0; minute < 4 * 60; minute += 5) {
+                final String time = String.format("%02d:%02d:%02d.%03d", minute / 60, minute % 60, minute % 60,
+                        minute * 7 % 1000);
+                assertEquals(day + " " + time, dateFormat.parse(day + " " + time).getTime(),
+                        SvtMyaIndex.parseTime(day, time));
+            }
+        }
+        assertEquals(1572762600000L, SvtMyaIndex.parseTime("2019-11-03", "01:30:00.000"));
+    }
+}
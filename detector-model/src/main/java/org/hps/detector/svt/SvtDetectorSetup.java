@@ -51,6 +51,16 @@ public final class SvtDetectorSetup implements ConditionsListener {
      */
     private String svtName = "Tracker";
 
+    /**
+     * The subdetector which the conditions were last loaded onto.
+     */
+    private Subdetector loadedSubdetector = null;
+
+    /**
+     * The conditions which were last loaded onto the subdetector.
+     */
+    private SvtConditions loadedConditions = null;
+
     /**
      * Constructor that uses the default detector name.
      */
@@ -80,7 +90,15 @@ public final class SvtDetectorSetup implements ConditionsListener {
                 LOGGER.info("activating default setup");
                 final SvtConditions svtConditions = manager.getCachedConditions(SvtConditions.class,
                         "svt_conditions").getCachedData();
-                this.loadDefault(subdetector, svtConditions);
+                // The conditions are reused across runs by the incremental refresh if none of the SVT tables
+                // changed, in which case they are already loaded onto the sensors.
+                if (subdetector == this.loadedSubdetector && svtConditions == this.loadedConditions) {
+                    LOGGER.info("SVT conditions did not change so they were not loaded again");
+                } else {
+                    this.loadDefault(subdetector, svtConditions);
+                    this.loadedSubdetector = subdetector;
+                    this.loadedConditions = svtConditions;
+                }
             } else {
                 LOGGER.warning("no SVT detector was found so setup was NOT activated");
                 this.enabled = false;
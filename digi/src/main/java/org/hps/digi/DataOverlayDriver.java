@@ -1,7 +1,6 @@
 package org.hps.digi;
 
 import java.io.BufferedReader;
-import java.io.EOFException;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
@@ -14,10 +13,11 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.logging.Logger;
 
+import org.hps.digi.OverlayEventSource.OverlayEvent;
+import org.hps.util.RandomStreams;
 import org.lcsim.event.EventHeader;
 import org.lcsim.event.RawTrackerHit;
 import org.lcsim.event.base.BaseRawTrackerHit;
-import org.lcsim.lcio.LCIOReader;
 import org.lcsim.util.Driver;
 
 /**
@@ -54,6 +54,15 @@ import org.lcsim.util.Driver;
  * (they are always zero in the data as well).
  * </p>
  *
+ * <p>
+ * Overlay events are read ahead on a background thread by an
+ * {@link OverlayEventSource}. By default the input files are read in order.
+ * If random sampling is enabled, overlay events are instead picked at random
+ * from an {@link OverlayEventIndex}, which is read from the index file if it
+ * exists, or else built by scanning the input files and saved to the index
+ * file if one was given.
+ * </p>
+ *
  * @author Jeremy McCormick, SLAC
  */
 public class DataOverlayDriver extends Driver {
@@ -61,7 +70,22 @@ public class DataOverlayDriver extends Driver {
     private static Logger LOGGER = Logger.getLogger(DataOverlayDriver.class.getPackage().getName());
 
     private final Queue<String> inputFilePaths = new LinkedList<String>();
-    LCIOReader reader = null;
+    private OverlayEventSource source = null;
+
+    /**
+     * Maximum number of overlay events to read ahead.
+     */
+    private int prefetchSize = 16;
+
+    /**
+     * Whether overlay events are sampled at random instead of read in order.
+     */
+    private boolean randomSampling = false;
+
+    /**
+     * Path to the overlay event index used for random sampling.
+     */
+    private String eventIndexFile = null;
 
     /**
      * Collections names to read.
@@ -72,13 +96,6 @@ public class DataOverlayDriver extends Driver {
     static List<String> READOUT_NAMES = 
             Arrays.asList("EcalHits","HodoscopeHits","TrackerHits");
 
-    /**
-     * Thrown when events are exhausted from the overlay stream.
-     */
-    @SuppressWarnings("serial")
-    class EndOfDataException extends Exception {
-    }
-
     /**
      * Add path to an input file.
      *
@@ -113,39 +130,45 @@ public class DataOverlayDriver extends Driver {
         }
     }
 
-    private EventHeader readNextEvent() throws EndOfDataException {
-        EventHeader event = null;
-        try {
-            LOGGER.info("Reading next event...");
-            event = this.reader.read();
-        } catch (EOFException eof) {
-            openNextFile();
-            try {
-                LOGGER.info("Reading first event in new file...");
-                event = this.reader.read();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        } catch (IOException ioe) {
-            ioe.printStackTrace();
-        } finally {
-            if (event == null) {
-                throw new RuntimeException("Failed to read next event.");
-            }
-        }
-        return event;
+    /**
+     * Set the maximum number of overlay events to read ahead of the event loop.
+     *
+     * @param prefetchSize the number of events
+     */
+    public void setPrefetchSize(int prefetchSize) {
+        this.prefetchSize = prefetchSize;
+    }
+
+    /**
+     * Set whether overlay events are sampled at random, with replacement,
+     * instead of read in order. The sampled events are reproducible for a
+     * given random seed.
+     *
+     * @param randomSampling true to sample overlay events at random
+     */
+    public void setRandomSampling(boolean randomSampling) {
+        this.randomSampling = randomSampling;
+    }
+
+    /**
+     * Set the path to the overlay event index used for random sampling. If
+     * the file does not exist, it is created from the input files.
+     *
+     * @param eventIndexFile path to the index file
+     */
+    public void setEventIndexFile(String eventIndexFile) {
+        this.eventIndexFile = eventIndexFile;
     }
 
     @Override
     protected void process(EventHeader event) {
-        try {
-            LOGGER.fine("Processing event: " + event.getEventNumber());
-            EventHeader overlayEvent = this.readNextEvent();
-            LOGGER.fine("Read overlay event: " + overlayEvent.getEventNumber());
-            this.overlayEvent(overlayEvent, event);
-        } catch (EndOfDataException e) {
+        LOGGER.fine("Processing event: " + event.getEventNumber());
+        OverlayEvent overlayEvent = source.next();
+        if (overlayEvent == null) {
             throw new RuntimeException("Ran out of overlay events!");
         }
+        LOGGER.fine("Read overlay event: " + overlayEvent.getEventNumber());
+        this.overlayEvent(overlayEvent, event);
     }
 
     /**
@@ -159,24 +182,20 @@ public class DataOverlayDriver extends Driver {
      * @param overlayEvent the source event, typically pulser data
      * @param targetEvent the target event, typically a SLIC signal event
      */
-    private void overlayEvent(EventHeader overlayEvent, EventHeader targetEvent) {
+    private void overlayEvent(OverlayEvent overlayEvent, EventHeader targetEvent) {
         LOGGER.fine("Overlaying event " + overlayEvent.getEventNumber() + " onto primary event " + targetEvent.getEventNumber());
         int cnt=0;
         for (String collName : COLLECTION_NAMES) {
             if (!targetEvent.hasCollection(RawTrackerHit.class, collName)) {
                 // Copy raw data collection into output event.
                 LOGGER.finer("Adding new raw data collection to output event: " + collName);
-                List<RawTrackerHit> overlayColl = overlayEvent.get(RawTrackerHit.class, collName);
-                //                System.out.println( overlayEvent.get(RawTrackerHit.class, collName).getClass().getSimpleName());
-                //                System.out.println(overlayEvent.getMetaData(overlayColl).getFlags().getClass().getSimpleName());
-                // System.out.println(READOUT_NAMES.get(cnt).getClass().getSimpleName());
                 targetEvent.put(collName,
-                        overlayEvent.get(RawTrackerHit.class, collName),
+                        overlayEvent.getHits(collName),
                         RawTrackerHit.class,
-                                overlayEvent.getMetaData(overlayColl).getFlags(),READOUT_NAMES.get(cnt));
+                                overlayEvent.getFlags(collName),READOUT_NAMES.get(cnt));
             } else {
                 // Add ADC values for matching collections and add the new collection to the event.
-                List<RawTrackerHit> overlayHits = overlayEvent.get(RawTrackerHit.class, collName);
+                List<RawTrackerHit> overlayHits = overlayEvent.getHits(collName);
                 LOGGER.finer("Overlay " + collName + ": " + overlayHits.size());
                 List<RawTrackerHit> hits = targetEvent.get(RawTrackerHit.class, collName);
                 LOGGER.finer("Primary " + collName + ": " + hits.size());
@@ -233,33 +252,44 @@ public class DataOverlayDriver extends Driver {
         if (this.inputFilePaths.size() == 0) {
             throw new RuntimeException("No input file paths were provided!");
         }
-        String filePath = this.inputFilePaths.remove();
-        try {
-            LOGGER.info("Opening overlay file: " + filePath);
-            reader = new LCIOReader(new File(filePath));
-        } catch (IOException e) {
-            LOGGER.severe("Failed to read from: " + filePath);
-            throw new RuntimeException(e);
+        List<String> filePaths = new ArrayList<String>(inputFilePaths);
+        if (randomSampling) {
+            OverlayEventIndex index = getEventIndex(filePaths);
+            LOGGER.info("Sampling from " + index.getEventCount() + " overlay events in " + filePaths.size() + " files");
+            long seed = RandomStreams.getStreamSeed(RandomStreams.getKey(DataOverlayDriver.class.getName()));
+            source = new OverlayEventSource(index, COLLECTION_NAMES, prefetchSize, seed);
+        } else {
+            source = new OverlayEventSource(filePaths, COLLECTION_NAMES, prefetchSize);
         }
+        source.start();
     }
 
-    private void openNextFile() throws EndOfDataException {
-        try {
-            LOGGER.info("Closing previous reader...");
-            reader.close();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-        if (inputFilePaths.size() == 0) {
-            throw new EndOfDataException();
+    @Override
+    protected void endOfData() {
+        if (source != null) {
+            source.close();
+            source = null;
         }
-        String path = inputFilePaths.remove();
-        LOGGER.info("Opening next file: " + path);
+    }
+
+    private OverlayEventIndex getEventIndex(List<String> filePaths) {
         try {
-            reader = new LCIOReader(new File(path));
+            if (eventIndexFile != null && new File(eventIndexFile).exists()) {
+                LOGGER.info("Reading overlay event index: " + eventIndexFile);
+                OverlayEventIndex index = OverlayEventIndex.read(eventIndexFile);
+                if (!index.getFilePaths().equals(filePaths)) {
+                    throw new RuntimeException("Overlay event index " + eventIndexFile + " does not match the input files.");
+                }
+                return index;
+            }
+            OverlayEventIndex index = OverlayEventIndex.build(filePaths);
+            if (eventIndexFile != null) {
+                LOGGER.info("Writing overlay event index: " + eventIndexFile);
+                index.write(eventIndexFile);
+            }
+            return index;
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 }
-
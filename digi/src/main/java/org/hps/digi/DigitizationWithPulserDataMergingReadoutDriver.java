@@ -6,6 +6,7 @@ import static org.hps.recon.ecal.EcalUtils.nBit;
 import static org.hps.recon.ecal.EcalUtils.riseTime;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -16,14 +17,15 @@ import java.util.Set;
 import org.hps.readout.ReadoutDriver;
 import org.hps.readout.ReadoutDataManager;
 import org.hps.readout.ReadoutTimestamp;
-import org.hps.readout.util.DoubleRingBuffer;
-import org.hps.readout.util.IntegerRingBuffer;
+import org.hps.readout.util.DoubleChannelRingBuffer;
+import org.hps.readout.util.IntegerChannelRingBuffer;
 import org.hps.readout.util.ObjectRingBuffer;
 import org.hps.readout.util.collection.LCIOCollection;
 import org.hps.readout.util.collection.LCIOCollectionFactory;
 import org.hps.readout.util.collection.TriggeredLCIOData;
 import org.hps.recon.ecal.EcalUtils;
-import org.hps.util.RandomGaussian;
+import org.hps.util.GaussianStream;
+import org.hps.util.RandomStreams;
 import org.lcsim.event.CalorimeterHit;
 import org.lcsim.event.EventHeader;
 import org.lcsim.event.LCRelation;
@@ -185,47 +187,101 @@ public abstract class DigitizationWithPulserDataMergingReadoutDriver<D extends S
      * READOUT_PERIOD}).
      */
     private int readoutCounter = 0;
+    /**
+     * The subdetector channel IDs in ascending order. The position
+     * of a channel ID in this array is the dense channel index used
+     * to access all of the per-channel buffers and arrays.
+     */
+    private long[] channelIDs = new long[0];
+    /**
+     * Maps each subdetector channel ID to its channel index.
+     */
+    private Map<Long, Integer> channelIndexMap = new HashMap<Long, Integer>();
     /**
      * A buffer for storing pulse amplitudes representing the signals
      * from the preamplifiers. These are stored in units of Volts
-     * with no pedestal. One buffer exists for each subdetector
-     * channel.
+     * with no pedestal. The buffer holds one pipeline for each
+     * subdetector channel.
      */
-    private Map<Long, DoubleRingBuffer> voltageBufferMap = new HashMap<Long, DoubleRingBuffer>();
+    private DoubleChannelRingBuffer voltageBuffer = null;
     /**
      * Buffers the truth information for each sample period so that
-     * truth relations can be retained upon readout.
+     * truth relations can be retained upon readout. The list is
+     * indexed by channel index.
      */
-    private Map<Long, ObjectRingBuffer<SimCalorimeterHit>> truthBufferMap = new HashMap<Long, ObjectRingBuffer<SimCalorimeterHit>>();
+    private List<ObjectRingBuffer<SimCalorimeterHit>> truthBuffers = new ArrayList<ObjectRingBuffer<SimCalorimeterHit>>();
     /**
      * A buffer for storing ADC values representing the converted
-     * voltage values from the voltage buffers. These are stored in
-     * units of ADC and include a pedestal. One buffer exists for
-     * each subdetector channel.
+     * voltage values from the voltage buffers, or the ADC samples of
+     * the pulser data. These are stored in units of ADC and include
+     * a pedestal. The buffer holds one pipeline for each subdetector
+     * channel.
+     */
+    private IntegerChannelRingBuffer adcBuffer = null;
+    /**
+     * The pedestal of each channel, by channel index. Conditions are
+     * stored when the buffers are reset so that they need not be
+     * looked up on every clock cycle.
+     */
+    private double[] channelPedestals = new double[0];
+    /**
+     * The noise of each channel, by channel index. Like the gains
+     * and time shifts, the noise of a channel is only looked up the
+     * first time that a truth hit occurs on it, and is
+     * <code>NaN</code> until then.
      */
-    private Map<Long, IntegerRingBuffer> adcBufferMap = new HashMap<Long, IntegerRingBuffer>();
+    private double[] channelNoise = new double[0];
+    /**
+     * The gain of each channel, by channel index. This is the fixed
+     * gain if one is defined.
+     */
+    private double[] channelGains = new double[0];
+    /**
+     * The time shift of each channel, by channel index.
+     */
+    private double[] channelTimeShifts = new double[0];
+    /**
+     * The random number streams used to generate the electronic
+     * noise of each channel. Each channel has its own stream, keyed
+     * by run and channel ID, so that the noise is reproducible for a
+     * given random seed.
+     */
+    private Map<Long, GaussianStream> channelNoiseStreamMap = new HashMap<Long, GaussianStream>();
+    /**
+     * The random number streams used to generate the amplitude
+     * fluctuations of truth hits on each channel.
+     */
+    private Map<Long, GaussianStream> channelFluctuationStreamMap = new HashMap<Long, GaussianStream>();
+    /**
+     * The run for which the noise streams were created.
+     */
+    private int noiseStreamRun = Integer.MIN_VALUE;
     
     /**
      * Stores the subdetector geometry object.
      */
     private D geometry = null;
     /**
-     * Stores the total ADC sums for each subdetector channel that is
-     * currently undergoing integration.
+     * Indicates, by channel index, whether each subdetector channel
+     * is currently undergoing integration.
      */
-    private Map<Long, Integer> channelIntegrationSumMap = new HashMap<Long, Integer>();
+    private boolean[] channelIntegrating = new boolean[0];
     /**
      * Stores the total ADC sums for each subdetector channel that is
-     * currently undergoing integration.
+     * currently undergoing integration, by channel index.
      */
-    private Map<Long, Set<SimCalorimeterHit>> channelIntegrationTruthMap = new HashMap<Long, Set<SimCalorimeterHit>>();
+    private int[] channelIntegrationSum = new int[0];
     /**
-     * Stores the time at which integration began on a given channel.
-     * This is used to track when the integration period has ended.
+     * Stores the truth hits for each subdetector channel that is
+     * currently undergoing integration, by channel index.
      */
-    private Map<Long, Integer> channelIntegrationTimeMap = new HashMap<Long, Integer>();
-    // TODO: Give this documentation.
-    private Map<Long, List<Integer>> channelIntegrationADCMap = new HashMap<Long, List<Integer>>();
+    private List<Set<SimCalorimeterHit>> channelIntegrationTruth = new ArrayList<Set<SimCalorimeterHit>>();
+    /**
+     * Stores the time at which integration began on a given channel,
+     * by channel index. This is used to track when the integration
+     * period has ended.
+     */
+    private int[] channelIntegrationTime = new int[0];
     /**
      * Defines the time offset of objects produced by this driver
      * from the actual true time that they should appear.
@@ -287,7 +343,7 @@ public abstract class DigitizationWithPulserDataMergingReadoutDriver<D extends S
      * between <code>CHANNEL_INTEGRATION_DEADTIME</code> and <code>numSamplesAfter</code>  
      * for the case <CHANNEL_INTEGRATION_DEADTIME> is less than <code>numSamplesAfter</code> 
      */
-    private Map<Long, Boolean> flagStartNewIntegration = new HashMap<>();
+    private boolean[] flagStartNewIntegration = new boolean[0];
     
     /**
      * Since new integration could happen between <code>CHANNEL_INTEGRATION_DEADTIME</code> and <code>numSamplesAfter</code>, 
@@ -382,6 +438,11 @@ public abstract class DigitizationWithPulserDataMergingReadoutDriver<D extends S
     
     @Override
     public void process(EventHeader event) {
+        // Create the noise streams for the run if they do not exist
+        // yet.
+        if(addNoise && event.getRunNumber() != noiseStreamRun) {
+            createNoiseStreams(event.getRunNumber());
+        }
         
         /*
          * Get current SLIC hits and current raw hits in pulser data.
@@ -395,14 +456,11 @@ public abstract class DigitizationWithPulserDataMergingReadoutDriver<D extends S
         Collection<RawTrackerHit> rawHits = ReadoutDataManager.getData(ReadoutDataManager.getCurrentTime(), ReadoutDataManager.getCurrentTime() + 2.0,
                 PulserDataCollectionName, RawTrackerHit.class);        
         
-        // Once an overlaid event is input, reset adcBufferMap to ensure that other overlaid events do not affect the current event. 
+        // Once an overlaid event is input, reset the ADC buffer to ensure that other overlaid events do not affect the current event. 
         if(hits.size()!=0 || rawHits.size()!=0) {
-            // Get the set of all possible channel IDs.
-            Set<Long> cells = getChannelIDs();
-            
-            // Reset adcBufferMap.
-            for(Long cellID : cells)
-                adcBufferMap.get(cellID).setAll((int) Math.round(getPedestalConditions(cellID)));
+            // Reset the ADC buffer of each channel to its pedestal.
+            for(int channel = 0; channel < channelIDs.length; channel++)
+                adcBuffer.setAll(channel, (int) Math.round(channelPedestals[channel]));
         }
         
         /* To merge MC data with pulser data, three different cases are handled separately.
@@ -435,8 +493,7 @@ public abstract class DigitizationWithPulserDataMergingReadoutDriver<D extends S
             // Store the truth data.
             Long hitCellID = hit.getCellID(); // For Ecal, cell ID is geometry ID; For hodo, cell ID is channel ID after hodoscope preprocessing
             
-            ObjectRingBuffer<SimCalorimeterHit> hitBuffer = truthBufferMap.get(hitCellID);
-            hitBuffer.addToCell(0, hit);
+            truthBuffers.get(getChannelIndex(hitCellID)).addToCell(0, hit);
             
             // Save cell IDs of hits as keys in the hit Cell ID hash map, and set values as 1.
             if(hitCellIDMap.get(hitCellID) == null)
@@ -452,8 +509,8 @@ public abstract class DigitizationWithPulserDataMergingReadoutDriver<D extends S
         for(RawTrackerHit rawHit : rawHits) {
             Long rawHitID = getID(rawHit); // For Ecal, ID is geometry ID; For hodo, ID is channel ID, which is converted from geometry ID. 
             if(hitCellIDMap.get(rawHitID) == null) {
-                // Get the ADC buffer for the channel.
-                IntegerRingBuffer adcBuffer = adcBufferMap.get(rawHitID);
+                // Get the index of the channel.
+                int channel = getChannelIndex(rawHitID);
                 
                 // Get ADC samples for the channel.
                 short[] adcSamples = rawHit.getADCValues();                 
@@ -464,7 +521,7 @@ public abstract class DigitizationWithPulserDataMergingReadoutDriver<D extends S
                 
                 // Buffer ADC samples in pulser data
                 for(int i = 0; i < pulserDataWindow; i++) 
-                    adcBuffer.setValue(i - pulserSamplesShift, (int)adcSamples[i]);  
+                    adcBuffer.setValue(channel, i - pulserSamplesShift, (int)adcSamples[i]);  
             }
             else {
                 hitCellIDMap.put(rawHitID, 2);
@@ -488,14 +545,11 @@ public abstract class DigitizationWithPulserDataMergingReadoutDriver<D extends S
                 throw new RuntimeException("Error: Trying to add a hit to the analog pipeline, but the time seems incorrect.");
             }
             
-            // Get the ADC buffer for the channel.
-            IntegerRingBuffer adcBuffer = adcBufferMap.get(hitCellID);
+            // Get the index of the current truth hit's channel.
+            int channel = getChannelIndex(hitCellID);
 
             // Get the pedestal for the channel.
-            int pedestal = (int) Math.round(getPedestalConditions(hitCellID));           
-            
-            // Get the buffer for the current truth hit's channel.
-            DoubleRingBuffer voltageBuffer = voltageBufferMap.get(hitCellID);
+            int pedestal = (int) Math.round(channelPedestals[channel]);           
             
             // Get the truth hit energy deposition.
             double energyAmplitude = hit.getRawEnergy();
@@ -514,22 +568,22 @@ public abstract class DigitizationWithPulserDataMergingReadoutDriver<D extends S
                     // Calculate the voltage deposition for the current
                     // buffer time.
                     double voltageDeposition = energyAmplitude * pulseAmplitude((i + 1) * READOUT_PERIOD + readoutTime()
-                            - (ReadoutDataManager.getCurrentTime() + hit.getTime()) - getTimeShiftConditions(hitCellID), hitCellID);
+                            - (ReadoutDataManager.getCurrentTime() + hit.getTime()) - getChannelTimeShift(channel), channel);
                     
                     // Increase the current buffer time's voltage value
                     // by the calculated amount.
-                    voltageBuffer.addToCell(i, voltageDeposition);
+                    voltageBuffer.addToCell(channel, i, voltageDeposition);
                     
                     // Scale the current value of the preamplifier buffer
                     // to a 12-bit ADC value where the maximum represents
                     // a value of maxVolt.
-                    double currentValue = voltageBuffer.getValue(i) * ((Math.pow(2, nBit) - 1) / maxVolt);
+                    double currentValue = voltageBuffer.getValue(channel, i) * ((Math.pow(2, nBit) - 1) / maxVolt);
                     
                     // If noise should be added, calculate a random value for
                     // the noise and add it to the ADC value. 
                     if(addNoise) {
-                        double sigma = getNoiseConditions(hitCellID);
-                        currentValue += RandomGaussian.getGaussian(0, sigma);
+                        double sigma = getChannelNoise(channel);
+                        currentValue += channelNoiseStreamMap.get(hitCellID).nextGaussian(0, sigma);
                     }
                     
                     // An ADC value is not allowed to exceed 4095. If a
@@ -538,7 +592,7 @@ public abstract class DigitizationWithPulserDataMergingReadoutDriver<D extends S
                     int digitizedValue = Math.min((int) Math.round(pedestal + currentValue), (int) Math.pow(2, nBit));
 
                     // Write this value to the ADC buffer.
-                    adcBuffer.setValue(i, digitizedValue);
+                    adcBuffer.setValue(channel, i, digitizedValue);
                 } 
             }
             
@@ -557,16 +611,16 @@ public abstract class DigitizationWithPulserDataMergingReadoutDriver<D extends S
                     // Calculate the voltage deposition for the current
                     // buffer time.
                     double voltageDeposition = energyAmplitude * pulseAmplitude((i + 1) * READOUT_PERIOD + readoutTime()
-                            - (ReadoutDataManager.getCurrentTime() + hit.getTime()) - getTimeShiftConditions(hitCellID), hitCellID);
+                            - (ReadoutDataManager.getCurrentTime() + hit.getTime()) - getChannelTimeShift(channel), channel);
                     
                     // Increase the current buffer time's voltage value
                     // by the calculated amount.
-                    voltageBuffer.addToCell(i, voltageDeposition);
+                    voltageBuffer.addToCell(channel, i, voltageDeposition);
                     
                     // Scale the current value of the preamplifier buffer
                     // to a 12-bit ADC value where the maximum represents
                     // a value of maxVolt.
-                    double currentValue = voltageBuffer.getValue(i) * ((Math.pow(2, nBit) - 1) / maxVolt);
+                    double currentValue = voltageBuffer.getValue(channel, i) * ((Math.pow(2, nBit) - 1) / maxVolt);
                     
                     // An ADC value is not allowed to exceed 4095. If a
                     // larger value is observed, 4096 (overflow) is given
@@ -577,15 +631,15 @@ public abstract class DigitizationWithPulserDataMergingReadoutDriver<D extends S
                 // Write this value to the ADC buffer.  
                 // If pulserSamplesShift is larger than 0, merged sample window is [-pulserSamplesShift, pulserDataWindow]
                 if(pulserSamplesShift >= 0) {
-                    for(int i = -pulserSamplesShift; i < 0; i++) adcBuffer.setValue(i , (int)ADCSamples[i + pulserSamplesShift]);
-                    for(int i = 0; i < pulserDataWindow - pulserSamplesShift; i++) adcBuffer.setValue(i, digitizedValue[i] + ADCSamples[i + pulserSamplesShift]);
-                    for(int i = pulserDataWindow - pulserSamplesShift; i < pulserDataWindow; i++) adcBuffer.setValue(i, digitizedValue[i]);
+                    for(int i = -pulserSamplesShift; i < 0; i++) adcBuffer.setValue(channel, i, (int)ADCSamples[i + pulserSamplesShift]);
+                    for(int i = 0; i < pulserDataWindow - pulserSamplesShift; i++) adcBuffer.setValue(channel, i, digitizedValue[i] + ADCSamples[i + pulserSamplesShift]);
+                    for(int i = pulserDataWindow - pulserSamplesShift; i < pulserDataWindow; i++) adcBuffer.setValue(channel, i, digitizedValue[i]);
                 }
                 // If pulserSamplesShift is less than 0, merged sample window is [0, -pulserSamplesShift + pulserDataWindow]
                 else {
-                    for(int i = 0; i < -pulserSamplesShift; i++) adcBuffer.setValue(i, digitizedValue[i]);
-                    for(int i = -pulserSamplesShift; i < pulserDataWindow; i++) adcBuffer.setValue(i, digitizedValue[i] + ADCSamples[i + pulserSamplesShift]);
-                    for(int i = pulserDataWindow; i < pulserDataWindow - pulserSamplesShift; i++) adcBuffer.setValue(i, (int)ADCSamples[i + pulserSamplesShift]);
+                    for(int i = 0; i < -pulserSamplesShift; i++) adcBuffer.setValue(channel, i, digitizedValue[i]);
+                    for(int i = -pulserSamplesShift; i < pulserDataWindow; i++) adcBuffer.setValue(channel, i, digitizedValue[i] + ADCSamples[i + pulserSamplesShift]);
+                    for(int i = pulserDataWindow; i < pulserDataWindow - pulserSamplesShift; i++) adcBuffer.setValue(channel, i, (int)ADCSamples[i + pulserSamplesShift]);
                 }
             }            
         }       
@@ -613,59 +667,56 @@ public abstract class DigitizationWithPulserDataMergingReadoutDriver<D extends S
     // TODO: Document this.
     private void readHits(List<RawCalorimeterHit> newHits, List<LCRelation> newTruthRelations) {
         // Perform hit integration as needed for each subdetector
-        // channel in the buffer map.
-        for(Long cellID : adcBufferMap.keySet()) {
-            // Get the ADC buffer for the channel.
-            IntegerRingBuffer adcBuffer = adcBufferMap.get(cellID);   
+        // channel.
+        for(int channel = 0; channel < channelIDs.length; channel++) {
+            // Get the ID of the channel.
+            long cellID = channelIDs[channel];
             
             // Get the pedestal for the channel.
-            int pedestal = (int) Math.round(getPedestalConditions(cellID));
+            int pedestal = (int) Math.round(channelPedestals[channel]);
             
             // Store the pedestal subtracted value so that it may
             // be checked against the integration threshold.
-            int pedestalSubtractedValue = adcBuffer.getValue() - pedestal;
+            int pedestalSubtractedValue = adcBuffer.getValue(channel) - pedestal;
             
             // Get the total ADC value that has been integrated
             // on this channel.
-            Integer sum = channelIntegrationSumMap.get(cellID);
+            boolean isIntegrating = channelIntegrating[channel];
+            int sum = channelIntegrationSum[channel];
             
             // If any readout hits exist on this channel, add the
             // current ADC values to them.
             
-            // If the ADC sum is undefined, then there is not an
-            // ongoing integration. If the pedestal subtracted
+            // If the channel is not integrating, then there is not
+            // an ongoing integration. If the pedestal subtracted
             // value is also over the integration threshold, then
             // integration should be initiated.
-            if(sum == null && pedestalSubtractedValue > integrationThreshold) {
+            if(!isIntegrating && pedestalSubtractedValue > integrationThreshold) {
                 // Store the current local time in units of
                 // events (4 ns). This will indicate when the
                 // integration started and, in turn, should end.
-                channelIntegrationTimeMap.put(cellID, readoutCounter);
+                channelIntegrationTime[channel] = readoutCounter;
                 
                 // Integrate the ADC values for a number of
                 // samples defined by NSB and threshold
                 // crossing sample. 
                 int sumBefore = 0;
                 for(int i = 0; i <= numSamplesBefore; i++) {
-                    sumBefore += adcBuffer.getValue(-(numSamplesBefore - i));
+                    sumBefore += adcBuffer.getValue(channel, -(numSamplesBefore - i));
                 }
                 
                 // This will represent the total integral sum at
                 // the current point in time. Store it in the sum
                 // buffer so that it may be incremented later as
                 // additional samples are read.
-                channelIntegrationSumMap.put(cellID, sumBefore);
-                
-                // Collect and store truth information for trigger
-                // path hits.
-                channelIntegrationADCMap.put(cellID, new ArrayList<Integer>());
+                channelIntegrationSum[channel] = sumBefore;
+                channelIntegrating[channel] = true;
                 
                 // Get the truth information in the
                 // integration samples for this channel.
                 Set<SimCalorimeterHit> truthHits = new HashSet<SimCalorimeterHit>();
                 for(int i = 0; i < numSamplesBefore + 4; i++) {
-                    channelIntegrationADCMap.get(cellID).add(adcBuffer.getValue(-(numSamplesBefore - i)));
-                    truthHits.addAll(truthBufferMap.get(cellID).getValue(-(numSamplesBefore - i)));
+                    truthHits.addAll(truthBuffers.get(channel).getValue(-(numSamplesBefore - i)));
                 }
                 
                 // Store all the truth hits that occurred in
@@ -674,44 +725,42 @@ public abstract class DigitizationWithPulserDataMergingReadoutDriver<D extends S
                 // passed through the chain to allow for the
                 // accessing of truth information during the
                 // trigger simulation.
-                channelIntegrationTruthMap.put(cellID, truthHits);
+                channelIntegrationTruth.set(channel, truthHits);
             }
             
-            // If the integration sum is defined, then pulse
-            // integration is ongoing.
-            if(sum != null) {
+            // If the channel is integrating, then pulse integration
+            // is ongoing.
+            if(isIntegrating) {
                 // Three cases are treated separataly
                 // Case 1: CHANNEL_INTEGRATION_DEADTIME > numSamplesAfter
                 // Case 2: CHANNEL_INTEGRATION_DEADTIME == numSamplesAfter 
                 // Case 3: CHANNEL_INTEGRATION_DEADTIME < numSamplesAfter
                 if(CHANNEL_INTEGRATION_DEADTIME > numSamplesAfter) { // Case 1
                     //Continue integration until NSA, the threshold-crossing sample has been added before.
-                    if (channelIntegrationTimeMap.get(cellID) + numSamplesAfter - 1 >= readoutCounter) { 
-                        channelIntegrationADCMap.get(cellID).add(adcBuffer.getValue(0));
-
+                    if (channelIntegrationTime[channel] + numSamplesAfter - 1 >= readoutCounter) { 
                         // Add the new ADC sample.
-                        channelIntegrationSumMap.put(cellID, sum + adcBuffer.getValue(0));
+                        channelIntegrationSum[channel] = sum + adcBuffer.getValue(channel);
 
                         // Add the new truth information, if trigger
                         // path truth output is enabled.
                         if (writeTriggerTruth) {
-                            channelIntegrationTruthMap.get(cellID).addAll(truthBufferMap.get(cellID).getValue(0));
+                            channelIntegrationTruth.get(channel).addAll(truthBuffers.get(channel).getValue(0));
                         }
                     }
 
                     // If integration is complete, a hit may be added
                     // to data manager.
-                    else if (channelIntegrationTimeMap.get(cellID) + numSamplesAfter - 1 == readoutCounter - 1) {//At NSA + 1, hit is added into data manager
+                    else if (channelIntegrationTime[channel] + numSamplesAfter - 1 == readoutCounter - 1) {//At NSA + 1, hit is added into data manager
                         // Add a new calorimeter hit.
                         RawCalorimeterHit newHit = new BaseRawCalorimeterHit(cellID, sum,
-                                64 * channelIntegrationTimeMap.get(cellID));
+                                64 * channelIntegrationTime[channel]);
                         newHits.add(newHit);
                         // Cycle-clock for events is 2 ns, while cycle-clock for samples is 4 ns                        
-                        integrationTime = channelIntegrationTimeMap.get(cellID) * 4 + 2;
+                        integrationTime = channelIntegrationTime[channel] * 4 + 2;
                         // Add the truth relations for this hit, if
                         // trigger path truth is enabled.
                         if (writeTriggerTruth) {
-                            Set<SimCalorimeterHit> truthHits = channelIntegrationTruthMap.get(cellID);
+                            Set<SimCalorimeterHit> truthHits = channelIntegrationTruth.get(channel);
                             for (SimCalorimeterHit truthHit : truthHits) {
                                 newTruthRelations.add(new BaseLCRelation(newHit, truthHit));
                             }
@@ -720,97 +769,91 @@ public abstract class DigitizationWithPulserDataMergingReadoutDriver<D extends S
 
                     // Do not clear the channel for integration until  deadtime has passed.
                     // The threshold-crossing sample counts as the first sample in the deadtime.
-                    else if (channelIntegrationTimeMap.get(cellID) + CHANNEL_INTEGRATION_DEADTIME - 1 <= readoutCounter
+                    else if (channelIntegrationTime[channel] + CHANNEL_INTEGRATION_DEADTIME - 1 <= readoutCounter
                             - 1) { // No new integration until over deadtime
-                        channelIntegrationSumMap.remove(cellID);
+                        channelIntegrating[channel] = false;
                     }
                 } // Case 1 ends
                 else if(CHANNEL_INTEGRATION_DEADTIME == numSamplesAfter){ // Case 2
                     // Continue integration until NSA, the threshold-crossing sample has been added before.
-                    if (channelIntegrationTimeMap.get(cellID) + numSamplesAfter - 1 >= readoutCounter) {
-                        channelIntegrationADCMap.get(cellID).add(adcBuffer.getValue(0));
-
+                    if (channelIntegrationTime[channel] + numSamplesAfter - 1 >= readoutCounter) {
                         // Add the new ADC sample.
-                        channelIntegrationSumMap.put(cellID, sum + adcBuffer.getValue(0));
+                        channelIntegrationSum[channel] = sum + adcBuffer.getValue(channel);
 
                         // Add the new truth information, if trigger
                         // path truth output is enabled.
                         if (writeTriggerTruth) {
-                            channelIntegrationTruthMap.get(cellID).addAll(truthBufferMap.get(cellID).getValue(0));
+                            channelIntegrationTruth.get(channel).addAll(truthBuffers.get(channel).getValue(0));
                         }
                     }  
                     // If integration is complete, a hit may be added
                     // to data manager.
-                    else if (channelIntegrationTimeMap.get(cellID) + numSamplesAfter - 1 == readoutCounter - 1) {//At NSA + 1, hit is added into data manager
+                    else if (channelIntegrationTime[channel] + numSamplesAfter - 1 == readoutCounter - 1) {//At NSA + 1, hit is added into data manager
                         // Add a new calorimeter hit.
                         RawCalorimeterHit newHit = new BaseRawCalorimeterHit(cellID, sum,
-                                64 * channelIntegrationTimeMap.get(cellID));
+                                64 * channelIntegrationTime[channel]);
                         newHits.add(newHit);
                         // Cycle-clock for events is 2 ns, while cycle-clock for samples is 4 ns 
-                        integrationTime = channelIntegrationTimeMap.get(cellID) * 4 + 2;
+                        integrationTime = channelIntegrationTime[channel] * 4 + 2;
 
                         // Add the truth relations for this hit, if
                         // trigger path truth is enabled.
                         if (writeTriggerTruth) {
-                            Set<SimCalorimeterHit> truthHits = channelIntegrationTruthMap.get(cellID);
+                            Set<SimCalorimeterHit> truthHits = channelIntegrationTruth.get(channel);
                             for (SimCalorimeterHit truthHit : truthHits) {
                                 newTruthRelations.add(new BaseLCRelation(newHit, truthHit));
                             }
                         }
-                        channelIntegrationSumMap.remove(cellID);
+                        channelIntegrating[channel] = false;
                     }
                 } // Case 2 ends
                 else { // Case 3
-                    if (channelIntegrationTimeMap.get(cellID) + CHANNEL_INTEGRATION_DEADTIME - 1 >= readoutCounter) {
+                    if (channelIntegrationTime[channel] + CHANNEL_INTEGRATION_DEADTIME - 1 >= readoutCounter) {
                         // Continue integration until CHANNEL_INTEGRATION_DEADTIME
-                        channelIntegrationADCMap.get(cellID).add(adcBuffer.getValue(0));
-
                         // Add the new ADC sample.
-                        channelIntegrationSumMap.put(cellID, sum + adcBuffer.getValue(0));
+                        channelIntegrationSum[channel] = sum + adcBuffer.getValue(channel);
 
                         // Add the new truth information, if trigger
                         // path truth output is enabled.
                         if (writeTriggerTruth) {
-                            channelIntegrationTruthMap.get(cellID).addAll(truthBufferMap.get(cellID).getValue(0));
+                            channelIntegrationTruth.get(channel).addAll(truthBuffers.get(channel).getValue(0));
                         }
                         
                         // If sample at the end of deadtime is less than threshold, new integration could be started from next sample
-                        if(channelIntegrationTimeMap.get(cellID) + CHANNEL_INTEGRATION_DEADTIME == readoutCounter && pedestalSubtractedValue <= integrationThreshold)                            
-                            flagStartNewIntegration.put(cellID, true);                           
+                        if(channelIntegrationTime[channel] + CHANNEL_INTEGRATION_DEADTIME == readoutCounter && pedestalSubtractedValue <= integrationThreshold)                            
+                            flagStartNewIntegration[channel] = true;                           
                     }  
-                    else if (channelIntegrationTimeMap.get(cellID) + numSamplesAfter - 1 >= readoutCounter) {
-                        if(flagStartNewIntegration.get(cellID) == true) { // Flag for previous sample is true
+                    else if (channelIntegrationTime[channel] + numSamplesAfter - 1 >= readoutCounter) {
+                        if(flagStartNewIntegration[channel]) { // Flag for previous sample is true
                             if(pedestalSubtractedValue <= integrationThreshold) { // If sample is less than threshold, then do not start new integration
-                                channelIntegrationADCMap.get(cellID).add(adcBuffer.getValue(0));
-
                                 // Add the new ADC sample.
-                                channelIntegrationSumMap.put(cellID, sum + adcBuffer.getValue(0));
+                                channelIntegrationSum[channel] = sum + adcBuffer.getValue(channel);
 
                                 // Add the new truth information, if trigger
                                 // path truth output is enabled.
                                 if (writeTriggerTruth) {
-                                    channelIntegrationTruthMap.get(cellID).addAll(truthBufferMap.get(cellID).getValue(0));
+                                    channelIntegrationTruth.get(channel).addAll(truthBuffers.get(channel).getValue(0));
                                 }                                
                             }
                             else { // if sample is larger than threshold, a hit is added into data manager and start new integration
                                 // Add a new calorimeter hit.
                                 RawCalorimeterHit newHit = new BaseRawCalorimeterHit(cellID, sum,
-                                        64 * channelIntegrationTimeMap.get(cellID));
+                                        64 * channelIntegrationTime[channel]);
                                 newHits.add(newHit);
-                                integrationTime = channelIntegrationTimeMap.get(cellID) * 4 + 2;
+                                integrationTime = channelIntegrationTime[channel] * 4 + 2;
 
                                 // Add the truth relations for this hit, if
                                 // trigger path truth is enabled.
                                 if (writeTriggerTruth) {
-                                    Set<SimCalorimeterHit> truthHits = channelIntegrationTruthMap.get(cellID);
+                                    Set<SimCalorimeterHit> truthHits = channelIntegrationTruth.get(channel);
                                     for (SimCalorimeterHit truthHit : truthHits) {
                                         newTruthRelations.add(new BaseLCRelation(newHit, truthHit));
                                     }
                                 }                                                                
             
                                 //Start new integration
-                                channelIntegrationTimeMap.put(cellID, readoutCounter);
-                                flagStartNewIntegration.put(cellID, false);
+                                channelIntegrationTime[channel] = readoutCounter;
+                                flagStartNewIntegration[channel] = false;
                                 
                                 // Integrate the ADC values for a number of
                                 // samples defined by NSB from before threshold
@@ -819,25 +862,21 @@ public abstract class DigitizationWithPulserDataMergingReadoutDriver<D extends S
                                 // is handled in the subsequent code block.
                                 int sumBefore = 0;
                                 for(int i = 0; i <= numSamplesBefore; i++) {
-                                    sumBefore += adcBuffer.getValue(-(numSamplesBefore - i));
+                                    sumBefore += adcBuffer.getValue(channel, -(numSamplesBefore - i));
                                 }
                                 
                                 // This will represent the total integral sum at
                                 // the current point in time. Store it in the sum
                                 // buffer so that it may be incremented later as
                                 // additional samples are read.
-                                channelIntegrationSumMap.put(cellID, sumBefore);
-                                
-                                // Collect and store truth information for trigger
-                                // path hits.
-                                channelIntegrationADCMap.put(cellID, new ArrayList<Integer>());
+                                channelIntegrationSum[channel] = sumBefore;
+                                channelIntegrating[channel] = true;
                                 
                                 // Get the truth information in the
                                 // integration samples for this channel.
                                 Set<SimCalorimeterHit> truthHits = new HashSet<SimCalorimeterHit>();
                                 for(int i = 0; i < numSamplesBefore + 4; i++) {
-                                    channelIntegrationADCMap.get(cellID).add(adcBuffer.getValue(-(numSamplesBefore - i)));
-                                    truthHits.addAll(truthBufferMap.get(cellID).getValue(-(numSamplesBefore - i)));
+                                    truthHits.addAll(truthBuffers.get(channel).getValue(-(numSamplesBefore - i)));
                                 }
                                 
                                 // Store all the truth hits that occurred in
@@ -846,63 +885,57 @@ public abstract class DigitizationWithPulserDataMergingReadoutDriver<D extends S
                                 // passed through the chain to allow for the
                                 // accessing of truth information during the
                                 // trigger simulation.
-                                channelIntegrationTruthMap.put(cellID, truthHits);                                                                    
+                                channelIntegrationTruth.set(channel, truthHits);                                                                    
                             }                                                          
                         }
                         else { // Flag for previous sample is false
-                            channelIntegrationADCMap.get(cellID).add(adcBuffer.getValue(0));
-
                             // Add the new ADC sample.
-                            channelIntegrationSumMap.put(cellID, sum + adcBuffer.getValue(0));
+                            channelIntegrationSum[channel] = sum + adcBuffer.getValue(channel);
 
                             // Add the new truth information, if trigger
                             // path truth output is enabled.
                             if (writeTriggerTruth) {
-                                channelIntegrationTruthMap.get(cellID).addAll(truthBufferMap.get(cellID).getValue(0));
+                                channelIntegrationTruth.get(channel).addAll(truthBuffers.get(channel).getValue(0));
                             }
                             if(pedestalSubtractedValue <= integrationThreshold)
-                                flagStartNewIntegration.put(cellID, true);                                                       
+                                flagStartNewIntegration[channel] = true;                                                       
                         }  
                     }
-                    else if (channelIntegrationTimeMap.get(cellID) + numSamplesAfter - 1 == readoutCounter - 1) {//If reach NSA + 1, hit is added into data manager, and flag is set as false
+                    else if (channelIntegrationTime[channel] + numSamplesAfter - 1 == readoutCounter - 1) {//If reach NSA + 1, hit is added into data manager, and flag is set as false
                         // Add a new calorimeter hit.
                         RawCalorimeterHit newHit = new BaseRawCalorimeterHit(cellID, sum,
-                                64 * channelIntegrationTimeMap.get(cellID));
+                                64 * channelIntegrationTime[channel]);
                         newHits.add(newHit);
-                        integrationTime = channelIntegrationTimeMap.get(cellID) * 4 + 2;
+                        integrationTime = channelIntegrationTime[channel] * 4 + 2;
 
                         // Add the truth relations for this hit, if
                         // trigger path truth is enabled.
                         if (writeTriggerTruth) {
-                            Set<SimCalorimeterHit> truthHits = channelIntegrationTruthMap.get(cellID);
+                            Set<SimCalorimeterHit> truthHits = channelIntegrationTruth.get(channel);
                             for (SimCalorimeterHit truthHit : truthHits) {
                                 newTruthRelations.add(new BaseLCRelation(newHit, truthHit));
                             }
                         }
-                        channelIntegrationSumMap.remove(cellID);
-                        flagStartNewIntegration.put(cellID, false);
+                        channelIntegrating[channel] = false;
+                        flagStartNewIntegration[channel] = false;
                     }
                 } // Case 3 ends                 
             }
             
-            // Step to the next entry in the adc buffer.
-            adcBuffer.stepForward();  
-            
-            // Step to the next entry in the voltage buffer.
-            if(voltageBufferMap.get(cellID) != null) { // A channel could be from pulser data, while MC data has no such channel.
-                DoubleRingBuffer voltageBuffer = voltageBufferMap.get(cellID);
-                voltageBuffer.clearValue();
-                voltageBuffer.stepForward();
-            }
-                       
             // Step the truth buffer for this channel forward.
             // The new cell should be cleared of any old values.
-            if(truthBufferMap.get(cellID) != null) { // A channel could be from pulser data, while MC data has no such channel.
-                truthBufferMap.get(cellID).stepForward();
-                truthBufferMap.get(cellID).clearValue();
-            }
+            truthBuffers.get(channel).stepForward();
+            truthBuffers.get(channel).clearValue();
         }
         
+        // Step to the next entry in the ADC buffers of all channels.
+        adcBuffer.stepForward();
+        
+        // Step to the next entry in the voltage buffers of all
+        // channels.
+        voltageBuffer.clearValue();
+        voltageBuffer.stepForward();
+        
         // Write the trigger path output data to the readout data
         // manager. Truth data is optional.
         
@@ -1034,7 +1067,7 @@ public abstract class DigitizationWithPulserDataMergingReadoutDriver<D extends S
      */
     protected double getAmplitudeFluctuation(CalorimeterHit hit) {
         double sigma = Math.sqrt(hit.getRawEnergy() * EcalUtils.MeV / pePerMeV);
-        return RandomGaussian.getGaussian(0, sigma);
+        return channelFluctuationStreamMap.get(hit.getCellID()).nextGaussian(0, sigma);
     }
     
     @Override
@@ -1260,9 +1293,11 @@ public abstract class DigitizationWithPulserDataMergingReadoutDriver<D extends S
         List<RawTrackerHit> hits = new ArrayList<RawTrackerHit>();
         
         // Iterate over each channel.
-        for(Long cellID : adcBufferMap.keySet()) {
+        for(int channel = 0; channel < channelIDs.length; channel++) {
+            long cellID = channelIDs[channel];
+            
             // Get the ADC values at the time of the trigger.
-            short[] adcValues = getTriggerADCValues(cellID, triggerTime);
+            short[] adcValues = getTriggerADCValues(channel, triggerTime);
             
             // Iterate across the ADC values. If the ADC value is
             // sufficiently high to produce a hit, then it should be
@@ -1271,7 +1306,7 @@ public abstract class DigitizationWithPulserDataMergingReadoutDriver<D extends S
             for(int i = 0; i < adcValues.length; i++) {
                 // Check that there is a threshold-crossing at some
                 // point in the ADC buffer.
-                if(adcValues[i] > getPedestalConditions(cellID) + integrationThreshold) {
+                if(adcValues[i] > channelPedestals[channel] + integrationThreshold) {
                     isAboveThreshold = true;
                     break;
                 }
@@ -1299,12 +1334,13 @@ public abstract class DigitizationWithPulserDataMergingReadoutDriver<D extends S
         List<RawTrackerHit> hits = new ArrayList<RawTrackerHit>();
         
         // Iterate across the ADC values and extract Mode-3 hits.
-        for(Long cellID : adcBufferMap.keySet()) {
+        for(int channel = 0; channel < channelIDs.length; channel++) {
+            long cellID = channelIDs[channel];
             int pointerOffset = 0;
             int numSamplesToRead = 0;
             int thresholdCrossing = 0;
             short[] adcValues = null;
-            short[] window = getTriggerADCValues(cellID, triggerTime);
+            short[] window = getTriggerADCValues(channel, triggerTime);
             
             for(int i = 0; i < ReadoutDataManager.getReadoutWindow(); i++) {
                 if(numSamplesToRead != 0) {
@@ -1313,8 +1349,8 @@ public abstract class DigitizationWithPulserDataMergingReadoutDriver<D extends S
                     if (numSamplesToRead == 0) {
                         hits.add(new BaseRawTrackerHit(cellID, thresholdCrossing, adcValues));
                     }
-                } else if ((i == 0 || window[i - 1] <= getPedestalConditions(cellID) + integrationThreshold) && window[i]
-                        > getPedestalConditions(cellID) + integrationThreshold) {
+                } else if ((i == 0 || window[i - 1] <= channelPedestals[channel] + integrationThreshold) && window[i]
+                        > channelPedestals[channel] + integrationThreshold) {
                     thresholdCrossing = i;
                     pointerOffset = Math.min(numSamplesBefore, i);
                     numSamplesToRead = pointerOffset + Math.min(numSamplesAfter, ReadoutDataManager.getReadoutWindow() - i - pointerOffset - 1);
@@ -1339,12 +1375,13 @@ public abstract class DigitizationWithPulserDataMergingReadoutDriver<D extends S
         List<RawCalorimeterHit> hits = new ArrayList<RawCalorimeterHit>();
         
         // Iterate across the ADC values and extract Mode-7 hits.
-        for(Long cellID : adcBufferMap.keySet()) {
+        for(int channel = 0; channel < channelIDs.length; channel++) {
+            long cellID = channelIDs[channel];
             int adcSum = 0;
             int pointerOffset = 0;
             int numSamplesToRead = 0;
             int thresholdCrossing = 0;
-            short[] window = getTriggerADCValues(cellID, triggerTime);
+            short[] window = getTriggerADCValues(channel, triggerTime);
             
             // Generate Mode-7 hits.
             if(window != null) {
@@ -1355,8 +1392,8 @@ public abstract class DigitizationWithPulserDataMergingReadoutDriver<D extends S
                         if(numSamplesToRead == 0) {
                             hits.add(new BaseRawCalorimeterHit(cellID, adcSum, 64 * thresholdCrossing));
                         }
-                    } else if((i == 0 || window[i - 1] <= getPedestalConditions(cellID) + integrationThreshold)
-                            && window[i] > getPedestalConditions(cellID) + integrationThreshold) {
+                    } else if((i == 0 || window[i - 1] <= channelPedestals[channel] + integrationThreshold)
+                            && window[i] > channelPedestals[channel] + integrationThreshold) {
                         thresholdCrossing = i;
                         pointerOffset = Math.min(numSamplesBefore, i);
                         numSamplesToRead = pointerOffset + Math.min(numSamplesAfter, ReadoutDataManager.getReadoutWindow() - i - pointerOffset - 1);
@@ -1378,25 +1415,22 @@ public abstract class DigitizationWithPulserDataMergingReadoutDriver<D extends S
      * Gets the ADC values for the trigger readout window for the
      * requested cell ID and returns them as a <code>short</code>
      * primitive array.
-     * @param cellID - The ID for the channel of the requested ADC
+     * @param channel - The index of the channel of the requested ADC
      * value array.
      * @param triggerTime - The time of the trigger to be written.
      * @return Returns the ADC values in a time range equal to the
      * readout window positioned around the trigger time as array of
      * <code>short</code> primitives.
      */
-    private short[] getTriggerADCValues(long cellID, double triggerTime) {
+    private short[] getTriggerADCValues(int channel, double triggerTime) {
         // Calculate the offset between the current position and the
         // trigger time.
         int readoutLatency = getReadoutLatency(triggerTime);
         
-        // Get the ADC pipeline.
-        IntegerRingBuffer pipeline = adcBufferMap.get(cellID);
-        
         // Extract the ADC values for the requested channel.
         short[] adcValues = new short[readoutWindow];
         for(int i = 0; i < readoutWindow; i++) {
-            adcValues[i] = (short) pipeline.getValue(-(readoutLatency - i - 1)).intValue();
+            adcValues[i] = (short) adcBuffer.getValue(channel, -(readoutLatency - i - 1));
         }
         
         // Return the result.
@@ -1418,7 +1452,7 @@ public abstract class DigitizationWithPulserDataMergingReadoutDriver<D extends S
         int readoutLatency = getReadoutLatency(triggerTime);
         
         // Get the truth pipeline.
-        ObjectRingBuffer<SimCalorimeterHit> pipeline = truthBufferMap.get(cellID);
+        ObjectRingBuffer<SimCalorimeterHit> pipeline = truthBuffers.get(getChannelIndex(cellID));
         
         // Extract the truth for the requested channel. Note that one
         // extra sample is included over the range of ADC samples as
@@ -1447,21 +1481,17 @@ public abstract class DigitizationWithPulserDataMergingReadoutDriver<D extends S
      *
      * @param time Units of ns. Relative to hit time (negative=before the start
      * of the pulse).
-     * @param cellID Crystal ID as returned by hit.getCellID().
+     * @param channel Channel index of the crystal.
      * @return Amplitude, units of volts/GeV.
      */
-    private double pulseAmplitude(double time, long cellID) {
+    private double pulseAmplitude(double time, int channel) {
         //normalization constant from cal gain (MeV/integral bit) to amplitude gain (amplitude bit/GeV)
         // Determine the gain. Gain may either be fixed across all
         // channels, or be obtained from the conditions database
         // depending on the behavior defined in the steering file.
-        // The gain should also be normalized.
-        double gain;
-        if(fixedGain > 0) {
-            gain = READOUT_PERIOD / (fixedGain * EcalUtils.MeV * ((Math.pow(2, nBit) - 1) / maxVolt));
-        } else {
-            gain = READOUT_PERIOD / (getGainConditions(cellID) * EcalUtils.MeV * ((Math.pow(2, nBit) - 1) / maxVolt));
-        }
+        // This is resolved by getChannelGain. The gain should also
+        // be normalized.
+        double gain = READOUT_PERIOD / (getChannelGain(channel) * EcalUtils.MeV * ((Math.pow(2, nBit) - 1) / maxVolt));
         
         // Calculate the correct pulse amplitude and return it.
         return gain * pulseAmplitude(time, pulseShape, tp);
@@ -1527,24 +1557,128 @@ public abstract class DigitizationWithPulserDataMergingReadoutDriver<D extends S
      * successfully, and <code>false</code> if they were not.
      */
     private void resetBuffers() {
-        // Reset each of the buffer maps.
-        adcBufferMap.clear();
-        truthBufferMap.clear();
-        voltageBufferMap.clear();
-        
-        // Get the set of all possible channel IDs.
+        // Get the set of all possible channel IDs and assign each a
+        // channel index. The IDs are sorted so that the channels are
+        // always processed in the same order.
         Set<Long> cells = getChannelIDs();
-        
-        // Insert a new buffer for each channel ID.
+        channelIDs = new long[cells.size()];
+        int index = 0;
         for(Long cellID : cells) {
-            voltageBufferMap.put(cellID, new DoubleRingBuffer(BUFFER_LENGTH));
-            truthBufferMap.put(cellID, new ObjectRingBuffer<SimCalorimeterHit>(PIPELINE_LENGTH));
-            adcBufferMap.put(cellID, new IntegerRingBuffer(PIPELINE_LENGTH, (int) Math.round(getPedestalConditions(cellID))));
+            channelIDs[index++] = cellID.longValue();
+        }
+        Arrays.sort(channelIDs);
+        
+        // Reset each of the buffers and channel arrays.
+        int channels = channelIDs.length;
+        channelIndexMap.clear();
+        truthBuffers.clear();
+        voltageBuffer = new DoubleChannelRingBuffer(channels, BUFFER_LENGTH);
+        adcBuffer = new IntegerChannelRingBuffer(channels, PIPELINE_LENGTH);
+        channelPedestals = new double[channels];
+        channelNoise = new double[channels];
+        channelGains = new double[channels];
+        channelTimeShifts = new double[channels];
+        channelIntegrating = new boolean[channels];
+        channelIntegrationSum = new int[channels];
+        channelIntegrationTime = new int[channels];
+        channelIntegrationTruth.clear();
+        flagStartNewIntegration = new boolean[channels];
+        channelNoiseStreamMap.clear();
+        channelFluctuationStreamMap.clear();
+        noiseStreamRun = Integer.MIN_VALUE;
+        
+        // The noise, gain and time shift of a channel are looked up
+        // when they are first needed.
+        Arrays.fill(channelNoise, Double.NaN);
+        Arrays.fill(channelGains, Double.NaN);
+        Arrays.fill(channelTimeShifts, Double.NaN);
+        
+        // Initialize the buffers and store the pedestal for each
+        // channel.
+        for(int channel = 0; channel < channels; channel++) {
+            long cellID = channelIDs[channel];
+            channelIndexMap.put(cellID, channel);
+            
+            channelPedestals[channel] = getPedestalConditions(cellID);
             
-            truthBufferMap.get(cellID).stepForward();
+            ObjectRingBuffer<SimCalorimeterHit> truthBuffer = new ObjectRingBuffer<SimCalorimeterHit>(PIPELINE_LENGTH);
+            truthBuffer.stepForward();
+            truthBuffers.add(truthBuffer);
+            channelIntegrationTruth.add(null);
             
-            flagStartNewIntegration.put(cellID, false);
+            adcBuffer.setAll(channel, (int) Math.round(channelPedestals[channel]));
+        }
+    }
+    
+    /**
+     * Gets the channel index of a subdetector channel.
+     * @param cellID - The channel ID.
+     * @return Returns the index of the channel in the channel
+     * buffers and arrays.
+     * @throws IllegalArgumentException Occurs if the channel ID is
+     * not a channel of the subdetector.
+     */
+    private int getChannelIndex(long cellID) {
+        Integer channel = channelIndexMap.get(cellID);
+        if(channel == null) {
+            throw new IllegalArgumentException("Error: Channel ID " + cellID + " is not a channel of the subdetector.");
+        }
+        return channel.intValue();
+    }
+    
+    /**
+     * Gets the gain of a channel, looking it up in the conditions
+     * the first time it is needed. This is the fixed gain if one is
+     * defined.
+     * @param channel - The index of the channel.
+     * @return Returns the gain in units of MeV/ADC.
+     */
+    private double getChannelGain(int channel) {
+        if(Double.isNaN(channelGains[channel])) {
+            channelGains[channel] = fixedGain > 0 ? fixedGain : getGainConditions(channelIDs[channel]);
+        }
+        return channelGains[channel];
+    }
+    
+    /**
+     * Gets the noise of a channel, looking it up in the conditions
+     * the first time it is needed.
+     * @param channel - The index of the channel.
+     * @return Returns the noise in units of ADC.
+     */
+    private double getChannelNoise(int channel) {
+        if(Double.isNaN(channelNoise[channel])) {
+            channelNoise[channel] = getNoiseConditions(channelIDs[channel]);
+        }
+        return channelNoise[channel];
+    }
+    
+    /**
+     * Gets the time shift of a channel, looking it up in the
+     * conditions the first time it is needed.
+     * @param channel - The index of the channel.
+     * @return Returns the time shift in units of ns.
+     */
+    private double getChannelTimeShift(int channel) {
+        if(Double.isNaN(channelTimeShifts[channel])) {
+            channelTimeShifts[channel] = getTimeShiftConditions(channelIDs[channel]);
+        }
+        return channelTimeShifts[channel];
+    }
+    
+    /**
+     * Creates the noise streams of all channels for a run. Streams
+     * are keyed by the driver class, run, and channel ID, and so do
+     * not depend on the order in which channels are processed.
+     * @param run - The run number.
+     */
+    private void createNoiseStreams(int run) {
+        long driverKey = RandomStreams.getKey(getClass().getName());
+        for(Long cellID : getChannelIDs()) {
+            channelNoiseStreamMap.put(cellID, RandomStreams.getGaussianStream(driverKey, run, cellID, 0));
+            channelFluctuationStreamMap.put(cellID, RandomStreams.getGaussianStream(driverKey, run, cellID, 1));
         }
+        noiseStreamRun = run;
     }
     
     /**
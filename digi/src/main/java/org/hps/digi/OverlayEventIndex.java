@@ -0,0 +1,204 @@
+package org.hps.digi;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.lcsim.lcio.LCIOReader;
+
+/**
+ * <p>
+ * Index of the events in a set of overlay files, giving the number of events
+ * in each file so that an event can be located by its position in the whole
+ * data set.
+ * </p>
+ *
+ * <p>
+ * The index can be built by scanning the files and saved to a text file with
+ * one line per overlay file, holding the path and the number of events
+ * separated by whitespace, so that the scan is only done once.
+ * </p>
+ */
+public final class OverlayEventIndex {
+
+    private static Logger LOGGER = Logger.getLogger(OverlayEventIndex.class.getPackage().getName());
+
+    private final List<String> filePaths;
+    private final long[] firstEvents;
+    private final long eventCount;
+
+    /**
+     * Create an index from file paths and event counts.
+     *
+     * @param filePaths the overlay file paths
+     * @param eventCounts the number of events in each file
+     */
+    public OverlayEventIndex(List<String> filePaths, List<Integer> eventCounts) {
+        if (filePaths.size() != eventCounts.size()) {
+            throw new IllegalArgumentException("Number of files and event counts do not match.");
+        }
+        this.filePaths = Collections.unmodifiableList(new ArrayList<String>(filePaths));
+        this.firstEvents = new long[filePaths.size() + 1];
+        for (int i = 0; i < eventCounts.size(); i++) {
+            if (eventCounts.get(i) < 0) {
+                throw new IllegalArgumentException("Negative event count for file: " + filePaths.get(i));
+            }
+            firstEvents[i + 1] = firstEvents[i] + eventCounts.get(i);
+        }
+        this.eventCount = firstEvents[filePaths.size()];
+    }
+
+    /**
+     * Build an index by reading every event in the given files.
+     *
+     * @param filePaths the overlay file paths
+     * @return the index
+     * @throws IOException if a file cannot be read
+     */
+    public static OverlayEventIndex build(List<String> filePaths) throws IOException {
+        List<Integer> eventCounts = new ArrayList<Integer>(filePaths.size());
+        for (String filePath : filePaths) {
+            LOGGER.info("Indexing overlay file: " + filePath);
+            LCIOReader reader = new LCIOReader(new File(filePath));
+            int count = 0;
+            try {
+                while (true) {
+                    reader.read();
+                    count++;
+                }
+            } catch (EOFException eof) {
+                // Reached the end of the file.
+            } finally {
+                reader.close();
+            }
+            eventCounts.add(count);
+        }
+        return new OverlayEventIndex(filePaths, eventCounts);
+    }
+
+    /**
+     * Read an index from a text file.
+     *
+     * @param indexPath path to the index file
+     * @return the index
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public static OverlayEventIndex read(String indexPath) throws IOException {
+        List<String> filePaths = new ArrayList<String>();
+        List<Integer> eventCounts = new ArrayList<Integer>();
+        BufferedReader reader = new BufferedReader(new FileReader(indexPath));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith("#")) {
+                    continue;
+                }
+                int split = Math.max(line.lastIndexOf(' '), line.lastIndexOf('\t'));
+                if (split < 0) {
+                    throw new IOException("Malformed line in overlay index " + indexPath + ": " + line);
+                }
+                filePaths.add(line.substring(0, split).trim());
+                try {
+                    eventCounts.add(Integer.parseInt(line.substring(split + 1)));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Malformed line in overlay index " + indexPath + ": " + line, e);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return new OverlayEventIndex(filePaths, eventCounts);
+    }
+
+    /**
+     * Write this index to a text file.
+     *
+     * @param indexPath path to the index file
+     * @throws IOException if the file cannot be written
+     */
+    public void write(String indexPath) throws IOException {
+        PrintWriter writer = new PrintWriter(new FileWriter(indexPath));
+        try {
+            for (int i = 0; i < filePaths.size(); i++) {
+                writer.println(filePaths.get(i) + " " + getEventCount(i));
+            }
+        } finally {
+            writer.close();
+        }
+        if (writer.checkError()) {
+            throw new IOException("Failed to write overlay index: " + indexPath);
+        }
+    }
+
+    /**
+     * Get the indexed file paths.
+     *
+     * @return the file paths
+     */
+    public List<String> getFilePaths() {
+        return filePaths;
+    }
+
+    /**
+     * Get the total number of indexed events.
+     *
+     * @return the number of events
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Get the number of events in a file.
+     *
+     * @param file the position of the file in the index
+     * @return the number of events in the file
+     */
+    public int getEventCount(int file) {
+        return (int) (firstEvents[file + 1] - firstEvents[file]);
+    }
+
+    /**
+     * Get the position of the file containing an event.
+     *
+     * @param event the position of the event in the whole data set
+     * @return the position of the file in the index
+     */
+    public int getFile(long event) {
+        if (event < 0 || event >= eventCount) {
+            throw new IndexOutOfBoundsException("Event " + event + " is out of range for " + eventCount + " indexed events.");
+        }
+        // Find the last file whose first event is not after the event,
+        // skipping over empty files.
+        int low = 0;
+        int high = filePaths.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (firstEvents[mid] <= event) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Get the position of an event within its file.
+     *
+     * @param event the position of the event in the whole data set
+     * @return the position of the event in its file
+     */
+    public int getEventInFile(long event) {
+        return (int) (event - firstEvents[getFile(event)]);
+    }
+}
@@ -0,0 +1,315 @@
+package org.hps.digi;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Logger;
+
+import org.lcsim.event.EventHeader;
+import org.lcsim.event.RawTrackerHit;
+import org.lcsim.lcio.LCIOReader;
+
+/**
+ * <p>
+ * Source of overlay events which reads and decodes them on a background thread,
+ * so that the event loop does not wait on file reads or file switches.
+ * </p>
+ *
+ * <p>
+ * Only the requested RawTrackerHit collections are kept from each overlay
+ * event. Decoded events are held in a bounded queue, so at most
+ * <code>capacity</code> events are read ahead of the consumer.
+ * </p>
+ *
+ * <p>
+ * Events are read either in order, file by file, until all files are
+ * exhausted, or are sampled at random with replacement from an
+ * {@link OverlayEventIndex}. When sampling, events are picked in blocks, and
+ * the events of each block are read in file order by skipping forward through
+ * the files, before being queued in the order in which they were picked. The
+ * sampled sequence depends only on the seed.
+ * </p>
+ */
+public final class OverlayEventSource {
+
+    private static Logger LOGGER = Logger.getLogger(OverlayEventSource.class.getPackage().getName());
+
+    /**
+     * Marks the end of the overlay events in the queue.
+     */
+    private static final OverlayEvent END_OF_DATA = new OverlayEvent(-1, Collections.<String, List<RawTrackerHit>>emptyMap(),
+            Collections.<String, Integer>emptyMap());
+
+    private final List<String> filePaths;
+    private final List<String> collectionNames;
+    private final BlockingQueue<OverlayEvent> queue;
+    private final OverlayEventIndex index;
+    private final long seed;
+    private final int blockSize;
+
+    private Thread thread = null;
+    private volatile boolean closed = false;
+    private volatile Throwable failure = null;
+
+    /**
+     * A decoded overlay event.
+     */
+    public static final class OverlayEvent {
+
+        private final int eventNumber;
+        private final Map<String, List<RawTrackerHit>> hits;
+        private final Map<String, Integer> flags;
+
+        private OverlayEvent(int eventNumber, Map<String, List<RawTrackerHit>> hits, Map<String, Integer> flags) {
+            this.eventNumber = eventNumber;
+            this.hits = hits;
+            this.flags = flags;
+        }
+
+        /**
+         * Get the event number of the overlay event.
+         *
+         * @return the event number
+         */
+        public int getEventNumber() {
+            return eventNumber;
+        }
+
+        /**
+         * Get the hits of a collection. The returned list is a copy and may be
+         * modified or put into another event.
+         *
+         * @param collectionName the collection name
+         * @return the hits
+         */
+        public List<RawTrackerHit> getHits(String collectionName) {
+            List<RawTrackerHit> collection = hits.get(collectionName);
+            if (collection == null) {
+                throw new IllegalArgumentException("Collection was not read from overlay event: " + collectionName);
+            }
+            return new ArrayList<RawTrackerHit>(collection);
+        }
+
+        /**
+         * Get the LCIO flags of a collection.
+         *
+         * @param collectionName the collection name
+         * @return the flags
+         */
+        public int getFlags(String collectionName) {
+            Integer collectionFlags = flags.get(collectionName);
+            if (collectionFlags == null) {
+                throw new IllegalArgumentException("Collection was not read from overlay event: " + collectionName);
+            }
+            return collectionFlags;
+        }
+    }
+
+    /**
+     * Create a source which reads events in order from the given files.
+     *
+     * @param filePaths the overlay file paths
+     * @param collectionNames the RawTrackerHit collections to read
+     * @param capacity the maximum number of events to read ahead
+     */
+    public OverlayEventSource(List<String> filePaths, List<String> collectionNames, int capacity) {
+        this(filePaths, collectionNames, capacity, null, 0);
+    }
+
+    /**
+     * Create a source which samples events at random from an index.
+     *
+     * @param index the index of the overlay files
+     * @param collectionNames the RawTrackerHit collections to read
+     * @param capacity the maximum number of events to read ahead
+     * @param seed the seed used to pick the events
+     */
+    public OverlayEventSource(OverlayEventIndex index, List<String> collectionNames, int capacity, long seed) {
+        this(index.getFilePaths(), collectionNames, capacity, index, seed);
+        if (index.getEventCount() == 0) {
+            throw new IllegalArgumentException("Overlay index contains no events.");
+        }
+    }
+
+    private OverlayEventSource(List<String> filePaths, List<String> collectionNames, int capacity, OverlayEventIndex index,
+            long seed) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Overlay read-ahead capacity must be at least 1.");
+        }
+        this.filePaths = new ArrayList<String>(filePaths);
+        this.collectionNames = new ArrayList<String>(collectionNames);
+        this.queue = new ArrayBlockingQueue<OverlayEvent>(capacity);
+        this.index = index;
+        this.seed = seed;
+        this.blockSize = Math.max(capacity, 64);
+    }
+
+    /**
+     * Start reading events on the background thread.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            throw new IllegalStateException("Overlay event source was already started.");
+        }
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (index == null) {
+                        readSequential();
+                    } else {
+                        readSampled();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Throwable t) {
+                    failure = t;
+                }
+                try {
+                    queue.put(END_OF_DATA);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, OverlayEventSource.class.getSimpleName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Get the next overlay event, waiting for it to be read if necessary.
+     *
+     * @return the next event, or <code>null</code> if all events have been read
+     */
+    public OverlayEvent next() {
+        if (thread == null) {
+            throw new IllegalStateException("Overlay event source was not started.");
+        }
+        OverlayEvent event;
+        try {
+            event = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for overlay event.", e);
+        }
+        if (event == END_OF_DATA) {
+            // Leave the marker for later calls.
+            queue.offer(END_OF_DATA);
+            if (failure != null) {
+                throw new RuntimeException("Failed to read overlay events.", failure);
+            }
+            return null;
+        }
+        return event;
+    }
+
+    /**
+     * Stop the background thread and discard any events read ahead.
+     */
+    public synchronized void close() {
+        closed = true;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        queue.clear();
+    }
+
+    private void readSequential() throws IOException, InterruptedException {
+        for (String filePath : filePaths) {
+            LOGGER.info("Opening overlay file: " + filePath);
+            LCIOReader reader = new LCIOReader(new File(filePath));
+            try {
+                while (!closed) {
+                    EventHeader event;
+                    try {
+                        event = reader.read();
+                    } catch (EOFException eof) {
+                        break;
+                    }
+                    queue.put(decode(event));
+                }
+            } finally {
+                reader.close();
+            }
+            if (closed) {
+                return;
+            }
+        }
+        LOGGER.info("Read all overlay files.");
+    }
+
+    private void readSampled() throws IOException, InterruptedException {
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] picks = new long[blockSize];
+        long[] sorted = new long[blockSize];
+        Map<Long, OverlayEvent> events = new HashMap<Long, OverlayEvent>();
+        while (!closed) {
+            // Pick a block of events.
+            for (int i = 0; i < blockSize; i++) {
+                picks[i] = random.nextLong(index.getEventCount());
+            }
+            System.arraycopy(picks, 0, sorted, 0, blockSize);
+            Arrays.sort(sorted);
+
+            // Read the picked events in file order.
+            events.clear();
+            LCIOReader reader = null;
+            int readerFile = -1;
+            int nextEventInFile = 0;
+            try {
+                for (long pick : sorted) {
+                    if (events.containsKey(pick)) {
+                        continue;
+                    }
+                    int file = index.getFile(pick);
+                    if (file != readerFile) {
+                        if (reader != null) {
+                            reader.close();
+                        }
+                        reader = new LCIOReader(new File(filePaths.get(file)));
+                        readerFile = file;
+                        nextEventInFile = 0;
+                    }
+                    int eventInFile = index.getEventInFile(pick);
+                    if (eventInFile > nextEventInFile) {
+                        reader.skipEvents(eventInFile - nextEventInFile);
+                    }
+                    events.put(pick, decode(reader.read()));
+                    nextEventInFile = eventInFile + 1;
+                }
+            } finally {
+                if (reader != null) {
+                    reader.close();
+                }
+            }
+
+            // Queue the events in the order in which they were picked.
+            for (long pick : picks) {
+                queue.put(events.get(pick));
+            }
+        }
+    }
+
+    private OverlayEvent decode(EventHeader event) {
+        Map<String, List<RawTrackerHit>> hits = new HashMap<String, List<RawTrackerHit>>();
+        Map<String, Integer> flags = new HashMap<String, Integer>();
+        for (String collectionName : collectionNames) {
+            if (!event.hasCollection(RawTrackerHit.class, collectionName)) {
+                throw new RuntimeException("Overlay event " + event.getEventNumber() + " is missing collection: " + collectionName);
+            }
+            List<RawTrackerHit> collection = event.get(RawTrackerHit.class, collectionName);
+            hits.put(collectionName, new ArrayList<RawTrackerHit>(collection));
+            flags.put(collectionName, event.getMetaData(collection).getFlags());
+        }
+        return new OverlayEvent(event.getEventNumber(), hits, flags);
+    }
+}
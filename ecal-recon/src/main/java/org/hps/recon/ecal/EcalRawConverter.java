@@ -10,6 +10,7 @@ import java.util.Map;
 import org.hps.conditions.database.DatabaseConditionsManager;
 import org.hps.conditions.ecal.EcalChannel;
 import org.hps.conditions.ecal.EcalChannelConstants;
+import org.hps.conditions.ecal.EcalChannelConstantsTable;
 import org.hps.conditions.ecal.EcalConditions;
 import org.hps.record.daqconfig.ConfigurationManager;
 import org.hps.record.daqconfig.FADCConfig;
@@ -126,6 +127,11 @@ public class EcalRawConverter {
 
     private EcalConditions ecalConditions = null;
 
+    /**
+     * Array-based view of the channel constants used for the per-hit lookups.
+     */
+    private EcalChannelConstantsTable channelTable = null;
+
     /**
      * Currently sets up a listener for DAQ configuration from EVIO. This should be removed to a standalone
      * ECalRawConverter solely for trigger emulation.
@@ -307,13 +313,12 @@ public class EcalRawConverter {
      * Integrate the entire window. Return pedestal-subtracted integral.
      */
     public int sumADC(RawTrackerHit hit) {
-        EcalChannelConstants channelData = findChannel(hit.getCellID());
         double pedestal;
         if (useDAQConfig) {
             // EcalChannel channel = ecalConditions.getChannelCollection().findGeometric(hit.getCellID());
             pedestal = config.getPedestal(hit.getCellID());
         } else {
-            pedestal = channelData.getCalibration().getPedestal();
+            pedestal = channelTable.getPedestal(findIndex(hit.getCellID()));
         }
 
         int sum = 0;
@@ -362,7 +367,7 @@ public class EcalRawConverter {
                 useRunningPedestal = false;
             }
         }
-        return findChannel(cellID).getCalibration().getPedestal();
+        return channelTable.getPedestal(findIndex(cellID));
     }
 
     /**
@@ -581,7 +586,7 @@ public class EcalRawConverter {
 
             }
 
-            time -= findChannel(cellID).getTimeShift().getTimeShift();
+            time -= channelTable.getTimeShift(findIndex(cellID));
 
             newHits.add(CalorimeterHitUtilities.create(energy, time, cellID));
         }
@@ -604,7 +609,7 @@ public class EcalRawConverter {
         if (useTimeWalkCorrection) {
             time = EcalTimeWalk.correctTimeWalk(time, rawEnergy);
         }
-        time -= findChannel(hit.getCellID()).getTimeShift().getTimeShift();
+        time -= channelTable.getTimeShift(findIndex(id));
         return CalorimeterHitUtilities.create(rawEnergy, time + timeOffset, id);
     }
 
@@ -617,7 +622,7 @@ public class EcalRawConverter {
         double pedestal = getPulsePedestal(event, id, windowSamples, (int) time / nsPerSample);
         double adcSum = hit.getAmplitude() - pedestal;
         double rawEnergy = adcToEnergy(adcSum, id);
-        time -= findChannel(hit.getCellID()).getTimeShift().getTimeShift();
+        time -= channelTable.getTimeShift(findIndex(id));
         return CalorimeterHitUtilities.create(rawEnergy, time + timeOffset, id);
     }
 
@@ -628,17 +633,17 @@ public class EcalRawConverter {
     public RawCalorimeterHit HitAtoD(CalorimeterHit hit) {
         int time = (int) (Math.round(hit.getTime() / 4.0) * 64.0);
         long id = hit.getCellID();
-        // Get the channel data.
-        EcalChannelConstants channelData = findChannel(id);
+        // Get the channel index.
+        final int index = findIndex(id);
         int amplitude;
         double pedestal = getPulsePedestal(null, id, windowSamples, (int) hit.getTime() / nsPerSample);
         if (constantGain) {
             amplitude = (int) Math.round((hit.getRawEnergy() / EcalUtils.MeV) / gain + pedestal);
         } else {
-            amplitude = (int) Math.round((hit.getRawEnergy() / EcalUtils.MeV) / channelData.getGain().getGain()
+            amplitude = (int) Math.round((hit.getRawEnergy() / EcalUtils.MeV) / channelTable.getGain(index)
                     + pedestal);
         }
-        time += findChannel(id).getTimeShift().getTimeShift();
+        time += channelTable.getTimeShift(index);
         RawCalorimeterHit h = new BaseRawCalorimeterHit(id, amplitude, time);
         return h;
     }
@@ -648,9 +653,6 @@ public class EcalRawConverter {
      */
     private double adcToEnergy(double adcSum, long cellID) {
 
-        // Get the channel data.
-        EcalChannelConstants channelData = findChannel(cellID);
-
         if (useDAQConfig) {
             // float gain =
             // ConfigurationManager.getInstance().getFADCConfig().getGain(ecalConditions.getChannelCollection().findGeometric(cellID));
@@ -659,7 +661,7 @@ public class EcalRawConverter {
             if (constantGain) {
                 return adcSum * EcalUtils.gainFactor * EcalUtils.ecalReadoutPeriod;
             } else {
-                return channelData.getGain().getGain() * adcSum * EcalUtils.gainFactor * EcalUtils.ecalReadoutPeriod; // should
+                return channelTable.getGain(findIndex(cellID)) * adcSum * EcalUtils.gainFactor * EcalUtils.ecalReadoutPeriod; // should
                                                                                                                       // not
                                                                                                                       // be
                                                                                                                       // used
@@ -672,7 +674,7 @@ public class EcalRawConverter {
             if (constantGain) {
                 return gain * adcSum * EcalUtils.MeV;
             } else {
-                return channelData.getGain().getGain() * adcSum * EcalUtils.MeV; // gain is defined as MeV/integrated
+                return channelTable.getGain(findIndex(cellID)) * adcSum * EcalUtils.MeV; // gain is defined as MeV/integrated
                                                                                  // ADC
             }
         }
@@ -686,6 +688,7 @@ public class EcalRawConverter {
     public void setDetector(Detector detector) {
         // ECAL combined conditions object.
         ecalConditions = DatabaseConditionsManager.getInstance().getEcalConditions();
+        channelTable = ecalConditions.getChannelConstantsTable();
         pulseFitter.setDetector(detector);
     }
 
@@ -699,6 +702,20 @@ public class EcalRawConverter {
         return ecalConditions.getChannelConstants(ecalConditions.getChannelCollection().findGeometric(cellID));
     }
 
+    /**
+     * Convert physical ID to the index of the channel in the channel constants table.
+     *
+     * @param cellID (long)
+     * @return channel index
+     */
+    private int findIndex(long cellID) {
+        final int index = channelTable.findGeometric(cellID);
+        if (index < 0) {
+            throw new IllegalArgumentException("Channel was not found in map: " + cellID);
+        }
+        return index;
+    }
+
     public void setFixedWidth(boolean fixedWidth) {
         this.pulseFitter.fixShapeParameter = fixedWidth;
     }
@@ -5,6 +5,7 @@ import org.hps.conditions.hodoscope.HodoscopeConditions;
 import org.hps.conditions.hodoscope.HodoscopeChannel.GeometryId;
 import org.hps.conditions.hodoscope.HodoscopeChannel;
 import org.hps.conditions.hodoscope.HodoscopeChannelConstants;
+import org.hps.conditions.hodoscope.HodoscopeChannelConstantsTable;
 import org.lcsim.detector.identifier.IIdentifierHelper;
 import org.lcsim.event.CalorimeterHit;
 import org.lcsim.event.EventHeader;
@@ -16,6 +17,11 @@ public class HodoRawConverter {
 
     private HodoscopeConditions hodoConditions = null;
 
+    /**
+     * Array-based view of the channel constants used for the per-hit lookups.
+     */
+    private HodoscopeChannelConstantsTable channelTable = null;
+
     /**
      * If true, running pedestal is used.
      */
@@ -89,7 +95,7 @@ public class HodoRawConverter {
         if (useUserGain == true) {
             gain = this.userGains;
         } else {
-            gain = findChannel(cellID).getGain().getGain();
+            gain = channelTable.getGain(findIndex(cellID));
         }
         //System.out.println("The Gains = " + findChannel(cellID).getGain().toString());
         
@@ -132,20 +138,17 @@ public class HodoRawConverter {
 
             Map<HodoscopeChannel, Double> runningPedMap = (Map<HodoscopeChannel, Double>) event.get("HodoRunningPedestals");
             
-            HodoscopeChannel chan;
-            if(!isMC)
-                chan = hodoConditions.getChannels().findGeometric(cellid);
-            else
-                chan = hodoConditions.getChannels().findChannel((int)cellid);
+            HodoscopeChannel chan = channelTable.getChannel(findIndex(cellid));
             
             return runningPedMap.get(chan);
         } else {
-            return findChannel(cellid).getCalibration().getPedestal();
+            return channelTable.getPedestal(findIndex(cellid));
         }
     }
 
     public void setConditions(HodoscopeConditions condition, Subdetector subDetector, IIdentifierHelper helper) {
         hodoConditions = condition;
+        channelTable = condition.getChannelConstantsTable();
         this.subDetector = subDetector;
         this.helper = helper;
     }
@@ -157,14 +160,24 @@ public class HodoRawConverter {
             return hodoConditions.getChannelConstants(hodoConditions.getChannels().findChannel((int)cellID));
     }
 
+    /**
+     * Find the index of a channel in the channel constants table from its cellID, which is the channel ID for MC.
+     *
+     * @param cellID the cellID of the hit
+     * @return the channel index
+     */
+    private int findIndex(long cellID) {
+        final int index = isMC ? channelTable.findChannelId((int) cellID) : channelTable.findGeometric(cellID);
+        if (index < 0) {
+            throw new IllegalArgumentException("Channel was not found in map: " + cellID);
+        }
+        return index;
+    }
+
     // =========== Computed Hodoscop identifiers from cellID
     public int[] getHodoIdentifiers(long cellID) {
 
-        HodoscopeChannel chan;
-        if(!isMC) 
-            chan = hodoConditions.getChannels().findGeometric(cellID);
-        else
-            chan = hodoConditions.getChannels().findChannel((int)cellID);
+        HodoscopeChannel chan = channelTable.getChannel(findIndex(cellID));
 
         int[] hodo_ids = new int[4];
         hodo_ids[0] = chan.getIX();
@@ -1,5 +1,6 @@
 package org.hps.recon.ecal.cluster;
 
+import org.hps.conditions.database.DatabaseConditionsManager;
 import org.lcsim.conditions.ConditionsManager;
 
 /**
@@ -71,8 +72,14 @@ public final class ClustererFactory {
             }
         }
         
-        // Register the Clusterer for notification when conditions change.
-        ConditionsManager.defaultInstance().addConditionsListener(clusterer);        
+        // Register the Clusterer for notification when conditions change. It only reads the ECal geometry, which
+        // changes with the detector, so it does not depend on any conditions tables.
+        final ConditionsManager manager = ConditionsManager.defaultInstance();
+        if (manager instanceof DatabaseConditionsManager) {
+            ((DatabaseConditionsManager) manager).addConditionsListener(clusterer, new String[0]);
+        } else {
+            manager.addConditionsListener(clusterer);
+        }
         
         // Set cuts if they were provided.
         if (cuts != null) {
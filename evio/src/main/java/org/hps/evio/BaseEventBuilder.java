@@ -2,7 +2,10 @@ package org.hps.evio;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -26,6 +29,15 @@ import org.lcsim.event.base.BaseLCSimEvent;
  */
 public class BaseEventBuilder implements LCSimEventBuilder, ConditionsListener {
 
+    /**
+     * Groups of EVIO banks which are converted by a dedicated reader and can be selectively skipped.
+     * <p>
+     * The trigger banks are always converted because the event time is taken from them.
+     */
+    public enum Subsystem {
+        ECAL, HODO, SVT, VTP, TS, DAQ_CONFIG
+    }
+
     protected VTPEvioReader vtpReader = null;
     protected EcalEvioReader ecalReader = null;
     protected HodoEvioReader hodoReader = null;
@@ -35,6 +47,7 @@ public class BaseEventBuilder implements LCSimEventBuilder, ConditionsListener {
     protected int sspBankTag = 0xe106; //SSP bank's tag
     private static Logger LOGGER = Logger.getLogger(BaseEventBuilder.class.getCanonicalName());
     protected List<IntBankDefinition> intBanks = null;
+    protected final Set<Subsystem> enabledSubsystems = EnumSet.allOf(Subsystem.class);
 
     public BaseEventBuilder() {
         ecalReader = new EcalEvioReader(0x1, 0x2);
@@ -50,6 +63,46 @@ public class BaseEventBuilder implements LCSimEventBuilder, ConditionsListener {
         ecalReader.setHitCollectionName(ecalHitCollectionName);
     }
 
+    /**
+     * Set which subsystems are decoded when building events. Banks of the other subsystems are left in the EVIO event
+     * and their collections are not created, which saves the decoding time for jobs that do not need them.
+     *
+     * @param subsystems the subsystems to decode
+     */
+    public void setEnabledSubsystems(Set<Subsystem> subsystems) {
+        enabledSubsystems.clear();
+        enabledSubsystems.addAll(subsystems);
+        LOGGER.config("enabled subsystems " + enabledSubsystems);
+    }
+
+    /**
+     * Return <code>true</code> if a subsystem is decoded when building events.
+     *
+     * @param subsystem the subsystem
+     * @return <code>true</code> if the subsystem is decoded
+     */
+    public boolean isEnabled(Subsystem subsystem) {
+        return enabledSubsystems.contains(subsystem);
+    }
+
+    /**
+     * Parse a comma separated list of subsystem names such as "ecal,vtp,ts".
+     *
+     * @param names the subsystem names which are not case sensitive
+     * @return the set of subsystems
+     * @throws IllegalArgumentException if a name is not valid
+     */
+    public static Set<Subsystem> parseSubsystems(String names) {
+        Set<Subsystem> subsystems = EnumSet.noneOf(Subsystem.class);
+        for (String name : names.split(",")) {
+            name = name.trim();
+            if (!name.isEmpty()) {
+                subsystems.add(Subsystem.valueOf(name.toUpperCase(Locale.ROOT)));
+            }
+        }
+        return subsystems;
+    }
+
     @Override
     public void readEvioEvent(EvioEvent evioEvent) {
         if (EvioEventUtilities.isSyncEvent(evioEvent)) {
@@ -95,15 +148,17 @@ public class BaseEventBuilder implements LCSimEventBuilder, ConditionsListener {
         EventHeader lcsimEvent = getEventData(evioEvent);
 
         // Make RawCalorimeterHit collection, combining top and bottom section of ECal into one list.
-        try {
-            ecalReader.makeHits(evioEvent, lcsimEvent);
-        } catch (Exception e) {
-            Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error making ECal hits", e);
+        if (isEnabled(Subsystem.ECAL)) {
+            try {
+                ecalReader.makeHits(evioEvent, lcsimEvent);
+            } catch (Exception e) {
+                Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error making ECal hits", e);
+            }
         }
 
 
 //        // Make RawHodoscopeHit collection, combining top and bottom section of Hodo into one list.
-        if (hodoReader != null) {
+        if (hodoReader != null && isEnabled(Subsystem.HODO)) {
             try {
                 LOGGER.fine("Making Hodo hits");
                 hodoReader.makeHits(evioEvent, lcsimEvent);
@@ -114,10 +169,12 @@ public class BaseEventBuilder implements LCSimEventBuilder, ConditionsListener {
         }
 
         // Make SVT RawTrackerHits
-        try {
-            svtReader.makeHits(evioEvent, lcsimEvent);
-        } catch (Exception e) {
-            Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error making SVT hits", e);
+        if (isEnabled(Subsystem.SVT)) {
+            try {
+                svtReader.makeHits(evioEvent, lcsimEvent);
+            } catch (Exception e) {
+                Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error making SVT hits", e);
+            }
         }
 
         return lcsimEvent;
@@ -223,4 +280,17 @@ public class BaseEventBuilder implements LCSimEventBuilder, ConditionsListener {
             LOGGER.warning("No hodo_channels condition in this run so Hodoscope EVIO reader was not enabled.");
         }*/
     }
+
+    /**
+     * Get the conditions tables read by the ECal and hodoscope readers.
+     * <p>
+     * The readers also keep the subdetectors of the detector object, which is built again for each run. The builder
+     * is set up again whenever the detector changes, and a detector object of the same detector has the same
+     * geometry and identifiers, so keeping those of a previous run is harmless.
+     */
+    @Override
+    public String[] getConditionsTableNames() {
+        return new String[] {"ecal_channels", "ecal_gains", "ecal_bad_channels", "ecal_calibrations",
+                "ecal_time_shifts", "ecal_pulse_widths", "hodo_channels"};
+    }
 }
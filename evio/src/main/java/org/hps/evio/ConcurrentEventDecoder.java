@@ -0,0 +1,146 @@
+package org.hps.evio;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.lcsim.event.EventHeader;
+
+/**
+ * Runs the sub-detector readers of an event builder concurrently on a small fork-join pool.
+ * <p>
+ * Each reader is given its own view of the LCSim event. Calls which add collections to the view are recorded instead
+ * of being applied, and all other calls, such as getting the run number or detector, go to the event while holding
+ * its lock. Once every reader has finished, the recorded collections are added to the event in the order of the
+ * readers, so the event has the same collections in the same order as when the readers run one after another.
+ * <p>
+ * Readers must therefore not read back the collections they add to the event.
+ */
+final class ConcurrentEventDecoder {
+
+    /**
+     * Decodes the banks of one sub-detector into an LCSim event.
+     */
+    interface Decoder {
+
+        /**
+         * Decode the banks and add the collections to the event.
+         *
+         * @param lcsimEvent the LCSim event
+         */
+        void decode(EventHeader lcsimEvent);
+    }
+
+    /**
+     * Records the collections added by a reader and forwards all other calls to the event.
+     */
+    private static final class RecordingHandler implements InvocationHandler {
+
+        private final EventHeader lcsimEvent;
+        private final List<Method> methods = new ArrayList<Method>();
+        private final List<Object[]> arguments = new ArrayList<Object[]>();
+
+        RecordingHandler(final EventHeader lcsimEvent) {
+            this.lcsimEvent = lcsimEvent;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            if (method.getName().equals("put") && method.getReturnType() == void.class) {
+                this.methods.add(method);
+                this.arguments.add(args);
+                return null;
+            }
+            try {
+                synchronized (this.lcsimEvent) {
+                    return method.invoke(this.lcsimEvent, args);
+                }
+            } catch (final InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        /**
+         * Add the recorded collections to the event.
+         */
+        void replay() {
+            for (int i = 0; i < this.methods.size(); i++) {
+                try {
+                    this.methods.get(i).invoke(this.lcsimEvent, this.arguments.get(i));
+                } catch (final InvocationTargetException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new RuntimeException(e.getCause());
+                } catch (final IllegalAccessException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * The pool running the readers.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Create a decoder.
+     *
+     * @param threads the number of threads in the pool
+     */
+    ConcurrentEventDecoder(final int threads) {
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Run the decoders concurrently and add their collections to the event in the order of the list.
+     *
+     * @param lcsimEvent the LCSim event
+     * @param decoders the decoders
+     */
+    void decode(final EventHeader lcsimEvent, final List<Decoder> decoders) {
+        final List<RecordingHandler> handlers = new ArrayList<RecordingHandler>(decoders.size());
+        final List<Future<?>> futures = new ArrayList<Future<?>>(decoders.size());
+        for (final Decoder decoder : decoders) {
+            final RecordingHandler handler = new RecordingHandler(lcsimEvent);
+            final EventHeader view = (EventHeader) Proxy.newProxyInstance(EventHeader.class.getClassLoader(),
+                    new Class<?>[] {EventHeader.class}, handler);
+            handlers.add(handler);
+            futures.add(this.pool.submit(() -> decoder.decode(view)));
+        }
+        RuntimeException error = null;
+        for (final Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while decoding event.", e);
+            } catch (final ExecutionException e) {
+                if (error == null) {
+                    error = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                            : new RuntimeException(e.getCause());
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+        for (final RecordingHandler handler : handlers) {
+            handler.replay();
+        }
+    }
+
+    /**
+     * Shut down the pool.
+     */
+    void shutdown() {
+        this.pool.shutdown();
+    }
+}
@@ -42,5 +42,10 @@ public class DummyEventBuilder implements LCSimEventBuilder {
 
     @Override
     public void conditionsChanged(ConditionsEvent conditionsEvent) {
-    }   
+    }
+
+    @Override
+    public String[] getConditionsTableNames() {
+        return new String[0];
+    }
 }
@@ -0,0 +1,227 @@
+package org.hps.evio;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jlab.coda.jevio.EventParser;
+import org.jlab.coda.jevio.EvioEvent;
+import org.jlab.coda.jevio.EvioException;
+import org.jlab.coda.jevio.EvioReader;
+
+/**
+ * Reads EVIO events on a background thread and parses them on a pool of worker threads.
+ * <p>
+ * Events are returned from {@link #next()} in the same order as they appear in the file. The number of events which
+ * are read ahead is bounded by the queue capacity so that the reader blocks when the consumer falls behind.
+ * <p>
+ * Each worker thread uses its own <code>EventParser</code> so that parsing does not serialize on the parser of the
+ * <code>EvioReader</code>.
+ */
+public final class EvioEventPipeline {
+
+    private static final Logger LOGGER = Logger.getLogger(EvioEventPipeline.class.getPackage().getName());
+
+    /**
+     * Marker placed on the queue when the reader reaches the end of the file.
+     */
+    private static final Future<EvioEvent> END_OF_DATA = CompletableFuture.completedFuture(null);
+
+    /**
+     * Per-thread EVIO parsers.
+     */
+    private static final ThreadLocal<EventParser> PARSERS = new ThreadLocal<EventParser>() {
+        @Override
+        protected EventParser initialValue() {
+            return new EventParser();
+        }
+    };
+
+    /**
+     * The EVIO reader which must not be accessed by other threads while the pipeline is running.
+     */
+    private final EvioReader reader;
+
+    /**
+     * Pending parse results in file order.
+     */
+    private final BlockingQueue<Future<EvioEvent>> pending;
+
+    /**
+     * The parse workers.
+     */
+    private final ExecutorService parsePool;
+
+    /**
+     * The background reader thread.
+     */
+    private final Thread readerThread;
+
+    /**
+     * Set to <code>true</code> when the end of data marker has been returned.
+     */
+    private boolean endOfData = false;
+
+    /**
+     * Create a pipeline on an open EVIO reader.
+     *
+     * @param reader the EVIO reader positioned at the first event to process
+     * @param parseThreads the number of parse worker threads
+     * @param capacity the maximum number of events which may be read ahead of the consumer
+     */
+    public EvioEventPipeline(final EvioReader reader, final int parseThreads, final int capacity) {
+        if (parseThreads < 1) {
+            throw new IllegalArgumentException("The number of parse threads must be at least 1.");
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The pipeline capacity must be at least 1.");
+        }
+        this.reader = reader;
+        this.pending = new ArrayBlockingQueue<Future<EvioEvent>>(capacity);
+        this.parsePool = Executors.newFixedThreadPool(parseThreads, new DaemonThreadFactory("EvioParser"));
+        this.readerThread = new Thread(new ReaderTask(), "EvioReader");
+        this.readerThread.setDaemon(true);
+    }
+
+    /**
+     * Start reading events.
+     */
+    public void start() {
+        this.readerThread.start();
+    }
+
+    /**
+     * Get the next parsed event, blocking until it is available.
+     *
+     * @return the next parsed event or <code>null</code> if the end of the file was reached
+     * @throws IOException if the reader failed or the thread was interrupted while waiting
+     */
+    public EvioEvent next() throws IOException {
+        if (this.endOfData) {
+            return null;
+        }
+        try {
+            final Future<EvioEvent> future = this.pending.take();
+            if (future == END_OF_DATA) {
+                this.endOfData = true;
+                return null;
+            }
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for next EVIO event.", e);
+        } catch (final ExecutionException e) {
+            throw new IOException("Error reading EVIO event.", e.getCause());
+        }
+    }
+
+    /**
+     * Stop the reader thread and the parse workers.
+     * <p>
+     * This does not close the EVIO reader.
+     */
+    public void close() {
+        this.readerThread.interrupt();
+        this.pending.clear();
+        try {
+            this.readerThread.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.parsePool.shutdownNow();
+    }
+
+    /**
+     * Reads raw events from the file and submits them for parsing.
+     */
+    private final class ReaderTask implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    EvioEvent evioEvent = null;
+                    try {
+                        evioEvent = reader.nextEvent();
+                    } catch (IOException | EvioException e) {
+                        LOGGER.log(Level.SEVERE, e.getMessage(), e);
+                        continue;
+                    }
+                    if (evioEvent == null) { // This catches an end of file or bad event.
+                        break;
+                    }
+                    pending.put(parsePool.submit(new ParseTask(evioEvent)));
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    LOGGER.fine("EVIO reader thread was interrupted.");
+                    return;
+                }
+                pending.put(END_OF_DATA);
+            } catch (final InterruptedException e) {
+                LOGGER.fine("EVIO reader thread was interrupted.");
+            } catch (final RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "EVIO reader thread failed.", e);
+                final CompletableFuture<EvioEvent> failed = new CompletableFuture<EvioEvent>();
+                failed.completeExceptionally(e);
+                try {
+                    pending.put(failed);
+                } catch (final InterruptedException ie) {
+                    LOGGER.fine("EVIO reader thread was interrupted.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses a single event with the parser of the current thread.
+     */
+    private static final class ParseTask implements Callable<EvioEvent> {
+
+        private final EvioEvent evioEvent;
+
+        ParseTask(final EvioEvent evioEvent) {
+            this.evioEvent = evioEvent;
+        }
+
+        @Override
+        public EvioEvent call() {
+            try {
+                PARSERS.get().parseEvent(this.evioEvent);
+            } catch (final EvioException e) {
+                // Same as the sequential path which passes on events that failed to parse.
+                LOGGER.log(Level.SEVERE, e.getMessage(), e);
+            }
+            return this.evioEvent;
+        }
+    }
+
+    /**
+     * Creates named daemon threads so that the pipeline never blocks JVM exit.
+     */
+    static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        DaemonThreadFactory(final String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, this.prefix + "-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,496 @@
+package org.hps.evio;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import hep.aida.IAnalysisFactory;
+import hep.aida.IHistogram1D;
+import hep.aida.IHistogram2D;
+import hep.aida.IHistogram3D;
+import hep.aida.IManagedObject;
+import hep.aida.IProfile1D;
+import hep.aida.IProfile2D;
+import hep.aida.ITree;
+import hep.aida.ITreeFactory;
+
+import org.hps.record.evio.EvioFileSequenceComparator;
+import org.hps.record.lcio.BufferedLcioWriter;
+import org.lcsim.event.EventHeader;
+import org.lcsim.lcio.LCIOReader;
+
+/**
+ * Converts the EVIO file segments of a run concurrently and merges the results in sequence order.
+ * <p>
+ * Each segment is converted by a separate {@link EvioToLcio} JVM with its own event builder, conditions system and
+ * Driver chain, so that Drivers and the AIDA tree do not have to be thread safe. Every segment job runs in its own
+ * working directory, so output files written with relative paths by the steering file do not collide.
+ * <p>
+ * When all segments are done, every file they wrote is merged or moved to the same relative path under the current
+ * directory, so no output is lost when the temporary directory is deleted:
+ * <ul>
+ * <li>the LCIO files given by "-l" are concatenated in sequence order into the requested output file</li>
+ * <li>other LCIO files with the same relative path are concatenated in sequence order</li>
+ * <li>the histograms in AIDA files with the same relative path are added together</li>
+ * <li>any other file is moved with the segment number added to its name, e.g. <code>out-segment00002.root</code>,
+ * because there is no general way to merge it</li>
+ * </ul>
+ * The temporary directory is deleted only if all the segments succeeded and all of their output was merged or moved.
+ * <p>
+ * Steering variables given with "-D" whose values are absolute paths are shared by all segments. A path that does not
+ * exist yet is assumed to be an output and is refused, and a path that is modified while the segments run causes the
+ * job to fail, since every segment would have written to the same file.
+ */
+public final class EvioSegmentProcessor {
+
+    private static final Logger LOGGER = Logger.getLogger(EvioSegmentProcessor.class.getPackage().getName());
+
+    /**
+     * Name of the LCIO output file in each segment directory.
+     */
+    private static final String SEGMENT_LCIO_FILE = "segment.slcio";
+
+    /**
+     * Name of the log file in each segment directory.
+     */
+    private static final String SEGMENT_LOG_FILE = "segment.log";
+
+    /**
+     * The EVIO files in sequence order.
+     */
+    private final List<File> evioFiles = new ArrayList<File>();
+
+    /**
+     * The command line arguments for each segment job without the input files and output file.
+     */
+    private final List<String> jobArgs;
+
+    /**
+     * The merged LCIO output file or <code>null</code> if there is no LCIO output.
+     */
+    private final String lcioFileName;
+
+    /**
+     * The maximum number of segment jobs to run at the same time.
+     */
+    private final int nParallel;
+
+    /**
+     * The absolute paths given as steering variable values, with their modification times before the job.
+     */
+    private final Map<File, Long> sharedPaths;
+
+    /**
+     * Create a segment processor.
+     *
+     * @param evioFileNames the EVIO file paths
+     * @param jobArgs the command line arguments passed to every segment job
+     * @param lcioFileName the merged LCIO output file or <code>null</code> for no output
+     * @param nParallel the maximum number of segment jobs to run at the same time
+     */
+    public EvioSegmentProcessor(final List<String> evioFileNames, final List<String> jobArgs,
+            final String lcioFileName, final int nParallel) {
+        if (nParallel < 1) {
+            throw new IllegalArgumentException("The number of parallel jobs must be at least 1.");
+        }
+        for (final String evioFileName : evioFileNames) {
+            this.evioFiles.add(new File(evioFileName).getAbsoluteFile());
+        }
+        try {
+            Collections.sort(this.evioFiles, new EvioFileSequenceComparator());
+        } catch (final RuntimeException e) {
+            throw new IllegalArgumentException("EVIO files must have sequence numbers in their names to be processed "
+                    + "in parallel.", e);
+        }
+        this.sharedPaths = getSharedPaths(jobArgs);
+        this.jobArgs = jobArgs;
+        this.lcioFileName = lcioFileName;
+        this.nParallel = nParallel;
+    }
+
+    /**
+     * Run the segment jobs and merge their output.
+     */
+    public void run() {
+        final File workDir;
+        try {
+            workDir = Files.createTempDirectory("evio2lcio").toFile();
+        } catch (final IOException e) {
+            throw new RuntimeException("Error creating temporary directory.", e);
+        }
+        LOGGER.info("Processing " + this.evioFiles.size() + " EVIO files with " + this.nParallel
+                + " parallel jobs in " + workDir.getPath());
+
+        final List<File> segmentDirs = new ArrayList<File>();
+        final ExecutorService executor = Executors.newFixedThreadPool(this.nParallel);
+        final List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        for (int i = 0; i < this.evioFiles.size(); i++) {
+            final File segmentDir = new File(workDir, String.format("segment%05d", i));
+            if (!segmentDir.mkdir()) {
+                throw new RuntimeException("Error creating directory " + segmentDir.getPath());
+            }
+            segmentDirs.add(segmentDir);
+            results.add(executor.submit(new SegmentJob(this.evioFiles.get(i), segmentDir)));
+        }
+        executor.shutdown();
+
+        boolean failed = false;
+        for (int i = 0; i < results.size(); i++) {
+            final File logFile = new File(segmentDirs.get(i), SEGMENT_LOG_FILE);
+            try {
+                final int exitCode = results.get(i).get();
+                if (exitCode != 0) {
+                    LOGGER.severe("Job for " + this.evioFiles.get(i).getPath() + " failed with exit code " + exitCode
+                            + "; see " + logFile.getPath());
+                    failed = true;
+                }
+            } catch (final InterruptedException e) {
+                // Interrupting the jobs destroys their child processes.
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for segment jobs.", e);
+            } catch (final ExecutionException e) {
+                LOGGER.log(Level.SEVERE, "Error running job for " + this.evioFiles.get(i).getPath(), e.getCause());
+                failed = true;
+            }
+        }
+        if (failed) {
+            throw new RuntimeException("One or more segment jobs failed. Their output was kept in " + workDir.getPath());
+        }
+        for (final Map.Entry<File, Long> entry : this.sharedPaths.entrySet()) {
+            if (entry.getKey().lastModified() != entry.getValue()) {
+                throw new RuntimeException("The steering variable path " + entry.getKey().getPath() + " was modified "
+                        + "by the segment jobs, which all write to it. Use a relative path instead. The segment output "
+                        + "was kept in " + workDir.getPath());
+            }
+        }
+
+        if (this.lcioFileName != null) {
+            mergeLcio(segmentDirs, SEGMENT_LCIO_FILE, new File(this.lcioFileName));
+        }
+        for (final Path outputFile : getOutputFiles(segmentDirs)) {
+            final String name = outputFile.getFileName().toString();
+            if (name.endsWith(".aida")) {
+                mergeAida(segmentDirs, outputFile);
+            } else if (name.endsWith(".slcio")) {
+                mergeLcio(segmentDirs, outputFile.toString(), outputFile.toFile().getAbsoluteFile());
+            } else {
+                moveSegmentFiles(segmentDirs, outputFile);
+            }
+        }
+
+        deleteRecursive(workDir);
+        LOGGER.info("Merged output from " + segmentDirs.size() + " segments.");
+    }
+
+    /**
+     * Concatenate an LCIO file from each segment into an output file.
+     *
+     * @param segmentDirs the segment directories in sequence order
+     * @param segmentFileName the path of the LCIO file relative to each segment directory
+     * @param outputFile the output file
+     */
+    private static void mergeLcio(final List<File> segmentDirs, final String segmentFileName, final File outputFile) {
+        LOGGER.info("Merging LCIO output into " + outputFile.getPath());
+        if (outputFile.getParentFile() != null) {
+            outputFile.getParentFile().mkdirs();
+        }
+        long nEvents = 0;
+        try {
+            final BufferedLcioWriter writer = new BufferedLcioWriter(outputFile.getPath());
+            try {
+                for (final File segmentDir : segmentDirs) {
+                    final File segmentFile = new File(segmentDir, segmentFileName);
+                    if (!segmentFile.exists()) {
+                        LOGGER.warning("No " + segmentFileName + " in " + segmentDir.getPath());
+                        continue;
+                    }
+                    final LCIOReader reader = new LCIOReader(segmentFile);
+                    try {
+                        for (;;) {
+                            final EventHeader event;
+                            try {
+                                event = reader.read();
+                            } catch (final EOFException e) {
+                                break;
+                            }
+                            writer.write(event);
+                            ++nEvents;
+                        }
+                    } finally {
+                        reader.close();
+                    }
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (final IOException e) {
+            throw new RuntimeException("Error merging LCIO files.", e);
+        }
+        LOGGER.info("Wrote " + nEvents + " events to " + outputFile.getPath());
+    }
+
+    /**
+     * Add together the histograms from the AIDA files with the same relative path in each segment directory and write
+     * the result relative to the current directory.
+     *
+     * @param segmentDirs the segment directories in sequence order
+     * @param aidaFile the path of the AIDA file relative to each segment directory
+     */
+    private static void mergeAida(final List<File> segmentDirs, final Path aidaFile) {
+        final ITreeFactory treeFactory = IAnalysisFactory.create().createTreeFactory();
+        final File outputFile = aidaFile.toFile().getAbsoluteFile();
+        LOGGER.info("Merging AIDA output into " + outputFile.getPath());
+        try {
+            if (outputFile.getParentFile() != null) {
+                outputFile.getParentFile().mkdirs();
+            }
+            ITree target = null;
+            for (final File segmentDir : segmentDirs) {
+                final File segmentFile = segmentDir.toPath().resolve(aidaFile).toFile();
+                if (!segmentFile.exists()) {
+                    LOGGER.warning("Missing AIDA file " + segmentFile.getPath());
+                    continue;
+                }
+                if (target == null) {
+                    // The first segment with the file is the starting point of the sums.
+                    Files.copy(segmentFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    target = treeFactory.create(outputFile.getPath(), "xml", false, false);
+                    continue;
+                }
+                final ITree source = treeFactory.create(segmentFile.getPath(), "xml", true, false);
+                addHistograms(source, target);
+                source.close();
+            }
+            if (target != null) {
+                target.commit();
+                target.close();
+            }
+        } catch (final IOException e) {
+            throw new RuntimeException("Error merging AIDA file " + aidaFile, e);
+        }
+    }
+
+    /**
+     * Move a file which cannot be merged from each segment directory to the same relative path under the current
+     * directory, adding the segment number to its name.
+     *
+     * @param segmentDirs the segment directories in sequence order
+     * @param outputFile the path of the file relative to each segment directory
+     */
+    private static void moveSegmentFiles(final List<File> segmentDirs, final Path outputFile) {
+        for (int i = 0; i < segmentDirs.size(); i++) {
+            final Path segmentFile = segmentDirs.get(i).toPath().resolve(outputFile);
+            if (!Files.exists(segmentFile)) {
+                continue;
+            }
+            final File target = getSegmentFileName(outputFile, i).toFile().getAbsoluteFile();
+            LOGGER.warning("Output file " + outputFile + " cannot be merged; moving the copy from segment " + i
+                    + " to " + target.getPath());
+            try {
+                if (target.getParentFile() != null) {
+                    target.getParentFile().mkdirs();
+                }
+                Files.move(segmentFile, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (final IOException e) {
+                throw new RuntimeException("Error moving " + segmentFile + " to " + target.getPath(), e);
+            }
+        }
+    }
+
+    /**
+     * Get the name of a segment's copy of an output file by adding the segment number before the file extension.
+     *
+     * @param outputFile the output file path
+     * @param segment the segment number
+     * @return the path with the segment number
+     */
+    static Path getSegmentFileName(final Path outputFile, final int segment) {
+        final String name = outputFile.getFileName().toString();
+        final int dot = name.lastIndexOf('.');
+        final String segmentName = String.format("%s-segment%05d%s", dot > 0 ? name.substring(0, dot) : name, segment,
+                dot > 0 ? name.substring(dot) : "");
+        return outputFile.resolveSibling(segmentName);
+    }
+
+    /**
+     * Get the relative paths of all files written in any segment directory, except for each segment's log file and
+     * LCIO output file.
+     *
+     * @param segmentDirs the segment directories
+     * @return the relative paths in sorted order
+     */
+    private static List<Path> getOutputFiles(final List<File> segmentDirs) {
+        final TreeSet<Path> outputFiles = new TreeSet<Path>();
+        for (final File segmentDir : segmentDirs) {
+            final Path dir = segmentDir.toPath();
+            try {
+                Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                        final Path relative = dir.relativize(file);
+                        if (!relative.toString().equals(SEGMENT_LOG_FILE)
+                                && !relative.toString().equals(SEGMENT_LCIO_FILE)) {
+                            outputFiles.add(relative);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (final IOException e) {
+                throw new RuntimeException("Error listing output files in " + segmentDir.getPath(), e);
+            }
+        }
+        return new ArrayList<Path>(outputFiles);
+    }
+
+    /**
+     * Get the absolute paths given as steering variable values in the segment job arguments, with their modification
+     * times, so that segments writing to a shared file can be detected.
+     *
+     * @param jobArgs the segment job arguments
+     * @return the paths and their modification times
+     * @throws IllegalArgumentException if a path does not exist, which means it can only be an output
+     */
+    static Map<File, Long> getSharedPaths(final List<String> jobArgs) {
+        final Map<File, Long> paths = new LinkedHashMap<File, Long>();
+        for (int i = 0; i < jobArgs.size() - 1; i++) {
+            if (!jobArgs.get(i).equals("-D")) {
+                continue;
+            }
+            final String def = jobArgs.get(i + 1);
+            final String value = def.substring(def.indexOf('=') + 1);
+            final File file = new File(value);
+            if (!file.isAbsolute()) {
+                continue;
+            }
+            if (!file.exists()) {
+                throw new IllegalArgumentException("The steering variable " + def + " is an absolute path to an "
+                        + "output, which every segment job would write. Use a relative path with -P.");
+            }
+            paths.put(file, file.lastModified());
+        }
+        return paths;
+    }
+
+    /**
+     * Add the histograms in one tree to those with the same path in another.
+     *
+     * @param source the source tree
+     * @param target the target tree
+     */
+    private static void addHistograms(final ITree source, final ITree target) {
+        for (final String path : source.listObjectNames("/", true)) {
+            if (path.endsWith("/")) {
+                continue; // directory
+            }
+            final IManagedObject src = source.find(path);
+            final IManagedObject dest;
+            try {
+                dest = target.find(path);
+            } catch (final IllegalArgumentException e) {
+                LOGGER.warning("Skipping " + path + " which is not in the first segment.");
+                continue;
+            }
+            if (src instanceof IHistogram1D && dest instanceof IHistogram1D) {
+                ((IHistogram1D) dest).add((IHistogram1D) src);
+            } else if (src instanceof IHistogram2D && dest instanceof IHistogram2D) {
+                ((IHistogram2D) dest).add((IHistogram2D) src);
+            } else if (src instanceof IHistogram3D && dest instanceof IHistogram3D) {
+                ((IHistogram3D) dest).add((IHistogram3D) src);
+            } else if (src instanceof IProfile1D && dest instanceof IProfile1D) {
+                ((IProfile1D) dest).add((IProfile1D) src);
+            } else if (src instanceof IProfile2D && dest instanceof IProfile2D) {
+                ((IProfile2D) dest).add((IProfile2D) src);
+            } else {
+                LOGGER.warning("Skipping " + path + " which cannot be added.");
+            }
+        }
+    }
+
+    /**
+     * Delete a file or directory tree.
+     *
+     * @param file the file or directory
+     */
+    private static void deleteRecursive(final File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (final File child : children) {
+                deleteRecursive(child);
+            }
+        }
+        if (!file.delete()) {
+            LOGGER.warning("Failed to delete " + file.getPath());
+        }
+    }
+
+    /**
+     * Runs {@link EvioToLcio} on one EVIO file in a child JVM.
+     */
+    private final class SegmentJob implements Callable<Integer> {
+
+        private final File evioFile;
+        private final File segmentDir;
+
+        SegmentJob(final File evioFile, final File segmentDir) {
+            this.evioFile = evioFile;
+            this.segmentDir = segmentDir;
+        }
+
+        @Override
+        public Integer call() throws IOException, InterruptedException {
+            final List<String> command = new ArrayList<String>();
+            command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+            command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(EvioToLcio.class.getName());
+            command.addAll(jobArgs);
+            if (lcioFileName != null) {
+                command.add("-l");
+                command.add(new File(this.segmentDir, SEGMENT_LCIO_FILE).getPath());
+            }
+            command.add(this.evioFile.getPath());
+
+            final ProcessBuilder builder = new ProcessBuilder(command);
+            builder.directory(this.segmentDir);
+            builder.redirectErrorStream(true);
+            builder.redirectOutput(new File(this.segmentDir, SEGMENT_LOG_FILE));
+
+            LOGGER.info("Starting job for " + this.evioFile.getPath());
+            final long start = System.currentTimeMillis();
+            final Process process = builder.start();
+            final int exitCode;
+            try {
+                exitCode = process.waitFor();
+            } catch (final InterruptedException e) {
+                LOGGER.warning("Stopping job for " + this.evioFile.getPath());
+                process.destroyForcibly();
+                throw e;
+            }
+            LOGGER.info("Job for " + this.evioFile.getPath() + " finished with exit code " + exitCode + " in "
+                    + (System.currentTimeMillis() - start) / 1000L + " seconds");
+            return exitCode;
+        }
+    }
+}
@@ -11,7 +11,9 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -29,6 +31,8 @@ import org.hps.logging.config.DefaultLoggingConfig;
 import org.hps.record.LCSimEventBuilder;
 import org.hps.record.evio.EvioEventQueue;
 import org.hps.record.evio.EvioEventUtilities;
+import org.hps.record.evio.EvioFilePrefetcher;
+import org.hps.record.lcio.BufferedLcioWriter;
 import org.jlab.coda.jevio.BaseStructure;
 import org.jlab.coda.jevio.EvioEvent;
 import org.jlab.coda.jevio.EvioException;
@@ -36,7 +40,6 @@ import org.jlab.coda.jevio.EvioReader;
 import org.lcsim.conditions.ConditionsManager;
 import org.lcsim.conditions.ConditionsManager.ConditionsNotFoundException;
 import org.lcsim.event.EventHeader;
-import org.lcsim.lcio.LCIOWriter;
 
 /**
  * <p>
@@ -66,6 +69,16 @@ import org.lcsim.lcio.LCIOWriter;
  * In the case where a file has no PRESTART event and there are header banks present, the "-m" command line option can
  * be used to buffer a number of EVIO events. If there is a head bank found while adding these events to queue, the
  * conditions system will be initialized from it.
+ * <p>
+ * The "-T" option enables a pipelined mode in which EVIO events are read on a background thread, parsed by the given
+ * number of worker threads and written to LCIO on another thread. Event building and the Driver chain still run on
+ * the main thread in file order, because the event builders and conditions system are stateful.
+ * <p>
+ * The "-P" option instead converts each EVIO file in a separate JVM, running up to the given number at once, and
+ * then merges the LCIO and AIDA output in file sequence order (see {@link EvioSegmentProcessor}).
+ * <p>
+ * The "-a" option loads the given number of input files ahead of the current one on a background thread (see
+ * {@link EvioFilePrefetcher}) and logs how long the job waited for input at the end.
  *
  */
 public final class EvioToLcio {
@@ -122,6 +135,13 @@ public final class EvioToLcio {
         OPTIONS.addOption(new Option("M", false, "use memory mapping instead of sequential reading"));
         OPTIONS.addOption(new Option("s", true, "skip a number of events in each EVIO input file before starting"));
         OPTIONS.addOption(new Option("e", true, "event printing interval"));
+        OPTIONS.addOption(new Option("w", true, "number of events between LCIO output flushes"));
+        OPTIONS.addOption(new Option("W", true, "max seconds between LCIO output flushes (0 to disable)"));
+        OPTIONS.addOption(new Option("S", true, "comma separated subsystems to decode from: ecal,hodo,svt,vtp,ts,daq_config (default all)"));
+        OPTIONS.addOption(new Option("P", true, "number of EVIO files to process in parallel in separate JVMs, merging the output"));
+        OPTIONS.addOption(new Option("T", true, "number of EVIO parsing threads (enables pipelined reading and writing)"));
+        OPTIONS.addOption(new Option("C", true, "number of threads to decode the sub-detector banks of each event concurrently"));
+        OPTIONS.addOption(new Option("a", true, "number of EVIO files to open and load ahead in the background"));
     }
 
     /**
@@ -138,8 +158,16 @@ public final class EvioToLcio {
     private boolean useMemoryMapping = false;
     private JobManager jobManager = null;
     private String lcioFileName = null;
-    private LCIOWriter writer = null;
+    private BufferedLcioWriter writer = null;
     private InputStream steeringStream = null;
+    private int pipelineThreads = 0;
+    private int readAheadFiles = 0;
+    private EvioSegmentProcessor segmentProcessor = null;
+    private Set<BaseEventBuilder.Subsystem> subsystems = null;
+    private int decodeThreads = 0;
+    private LcioWriterThread writerThread = null;
+    private boolean firstEvent = true;
+    private long eventTime = 0; // in ms
     
 
     /**
@@ -184,27 +212,38 @@ public final class EvioToLcio {
                     continue;
                 }
 
-                // Get head bank from event.
-                final BaseStructure headBank = EvioEventUtilities.getHeadBank(evioEvent);
+                // Initialize the conditions from the head bank, if there is one.
+                this.checkHeadBank(evioEvent);
+            }
+        }
+        LOGGER.finer("buffered " + eventQueue.size() + " events");
+    }
 
-                // Is head bank available in this event?
-                if (headBank != null) {
+    /**
+     * Update the conditions system from the run number in the head bank of a parsed event, if it has one.
+     *
+     * @param evioEvent the parsed EVIO event
+     */
+    private void checkHeadBank(final EvioEvent evioEvent) {
 
-                    // Get the run number from the head bank.
-                    runNumber = headBank.getIntData()[1];
-                    LOGGER.finer("got head bank with run number " + runNumber);
+        // Get head bank from event.
+        final BaseStructure headBank = EvioEventUtilities.getHeadBank(evioEvent);
 
-                    // Is conditions system not frozen?
-                    if (!DatabaseConditionsManager.getInstance().isFrozen()) {
-                        // Check if the conditions system needs to be updated from the head bank.
-                        this.checkConditions(runNumber, false);
-                    }
-                } else {
-                    LOGGER.finer("event " + evioEvent.getEventNumber() + " does not have a head bank");
-                }
+        // Is head bank available in this event?
+        if (headBank != null) {
+
+            // Get the run number from the head bank.
+            runNumber = headBank.getIntData()[1];
+            LOGGER.finer("got head bank with run number " + runNumber);
+
+            // Is conditions system not frozen?
+            if (!DatabaseConditionsManager.getInstance().isFrozen()) {
+                // Check if the conditions system needs to be updated from the head bank.
+                this.checkConditions(runNumber, false);
             }
+        } else {
+            LOGGER.finer("event " + evioEvent.getEventNumber() + " does not have a head bank");
         }
-        LOGGER.finer("buffered " + eventQueue.size() + " events");
     }
 
     /**
@@ -303,6 +342,18 @@ public final class EvioToLcio {
             lcioFileName = cl.getOptionValue("l");
         }
 
+        // Process the files in parallel jobs instead of in this JVM.
+        if (cl.hasOption("P")) {
+            final int nParallel = Integer.parseInt(cl.getOptionValue("P"));
+            if (cl.hasOption("n")) {
+                throw new IllegalArgumentException("The -n option cannot be used with -P.");
+            }
+            segmentProcessor = new EvioSegmentProcessor(evioFileList, this.getSegmentJobArgs(cl), lcioFileName,
+                    nParallel);
+            LOGGER.config("Processing EVIO files with " + nParallel + " parallel jobs");
+            return;
+        }
+
         // Get the steering file or resource for the LCSim job.
         if (cl.hasOption("x")) {
             final String lcsimXmlName = cl.getOptionValue("x");
@@ -338,12 +389,22 @@ public final class EvioToLcio {
         // Setup the LCIO writer.
         if (lcioFileName != null) {
             try {
-                writer = new LCIOWriter(lcioFileName);
+                writer = new BufferedLcioWriter(lcioFileName);
                 LOGGER.config("initialized LCIO writer with file " + lcioFileName);
             } catch (final IOException e) {
                 LOGGER.severe("Problem initializing the LCIO writer.");
                 throw new RuntimeException(e);
             }
+            if (cl.hasOption("w")) {
+                final int flushEvents = Integer.parseInt(cl.getOptionValue("w"));
+                writer.setFlushEvents(flushEvents);
+                LOGGER.config("LCIO writer will flush every " + flushEvents + " events");
+            }
+            if (cl.hasOption("W")) {
+                final int flushSeconds = Integer.parseInt(cl.getOptionValue("W"));
+                writer.setFlushIntervalMillis(flushSeconds * 1000L);
+                LOGGER.config("LCIO writer will flush at least every " + flushSeconds + " seconds");
+            }
         }
 
         // Process the LCSim job variable definitions, if any.
@@ -449,7 +510,40 @@ public final class EvioToLcio {
         if (cl.hasOption("s")) {
             skipEvents = Integer.parseInt(cl.getOptionValue("s"));
             LOGGER.config("Skip events set to " + skipEvents);
-        }        
+        }
+
+        // subsystems to decode
+        if (cl.hasOption("S")) {
+            subsystems = BaseEventBuilder.parseSubsystems(cl.getOptionValue("S"));
+            LOGGER.config("Decoding subsystems " + subsystems);
+        }
+
+        // concurrent decoding of sub-detector banks
+        if (cl.hasOption("C")) {
+            decodeThreads = Integer.parseInt(cl.getOptionValue("C"));
+            if (decodeThreads < 0) {
+                throw new IllegalArgumentException("Value of -C option is invalid: " + decodeThreads);
+            }
+            LOGGER.config("Sub-detector banks will be decoded with " + decodeThreads + " threads");
+        }
+
+        // pipelined processing
+        if (cl.hasOption("T")) {
+            pipelineThreads = Integer.parseInt(cl.getOptionValue("T"));
+            if (pipelineThreads < 0) {
+                throw new IllegalArgumentException("Value of -T option is invalid: " + pipelineThreads);
+            }
+            LOGGER.config("EVIO pipeline enabled with " + pipelineThreads + " parse threads");
+        }
+
+        // read ahead of input files
+        if (cl.hasOption("a")) {
+            readAheadFiles = Integer.parseInt(cl.getOptionValue("a"));
+            if (readAheadFiles < 0) {
+                throw new IllegalArgumentException("Value of -a option is invalid: " + readAheadFiles);
+            }
+            LOGGER.config("EVIO files will be loaded " + readAheadFiles + " files ahead");
+        }
     }
 
     /**
@@ -459,15 +553,39 @@ public final class EvioToLcio {
      */
     public void run() {
 
+        // Are the files being processed in parallel jobs?
+        if (segmentProcessor != null) {
+            segmentProcessor.run();
+            LOGGER.info("Job finished successfully!");
+            return;
+        }
+
         // Is there a run number from the command line options?
         if (runNumber != null) {
             // Initialize the conditions system before the job starts and freeze it.
             this.checkConditions(runNumber, true);
         }
 
+        // In pipeline mode the LCIO events are written from a separate thread.
+        if (writer != null && pipelineThreads > 0) {
+            writerThread = new LcioWriterThread(writer, maxBufferSize);
+            writerThread.start();
+            LOGGER.config("started LCIO writer thread");
+        }
+
+        // Load the next input files in the background if read ahead is enabled.
+        EvioFilePrefetcher prefetcher = null;
+        if (readAheadFiles > 0) {
+            final List<File> evioFiles = new ArrayList<File>();
+            for (final String evioFileName : evioFileList) {
+                evioFiles.add(new File(evioFileName));
+            }
+            prefetcher = new EvioFilePrefetcher(evioFiles, readAheadFiles, EvioFilePrefetcher.DEFAULT_MEMORY_BUDGET);
+        }
+
         // Loop over the input EVIO files.
         EvioReader reader = null;
-        fileLoop: for (final String evioFileName : evioFileList) {
+        for (final String evioFileName : evioFileList) {
 
             // Get the next EVIO input file.
             final File evioFile = new File(evioFileName);
@@ -478,13 +596,17 @@ public final class EvioToLcio {
 
             // Open the EVIO reader.
             try {
-                reader = new EvioReader(evioFile, false, !useMemoryMapping);
+                if (prefetcher != null) {
+                    reader = prefetcher.next();
+                } else {
+                    reader = new EvioReader(evioFile, false, !useMemoryMapping);
+                }
             } catch (final Exception e) {
                 throw new RuntimeException("Error opening the EVIO file reader.", e);
             }
 
-            boolean firstEvent = true;
-            long eventTime = 0; // in ms
+            firstEvent = true;
+            eventTime = 0;
             
             // Skip some events in each file first if requested.
             if (skipEvents > 0) {
@@ -504,180 +626,282 @@ public final class EvioToLcio {
                 LOGGER.info("Done skipping events.");
             }
 
-            // Loop over events.
-            final EvioEventQueue eventQueue = new EvioEventQueue(-1L, maxBufferSize);
-            eventLoop: for (;;) {                
+            // Process the events from this file.
+            final boolean maxEventsReached;
+            if (pipelineThreads > 0) {
+                maxEventsReached = this.processPipelined(reader);
+            } else {
+                maxEventsReached = this.processBuffered(reader);
+            }
+            LOGGER.info("Last physics event time: " + eventTime / 1000 + " - " + new Date(eventTime));
+
+            // Close the EVIO reader.
+            try {
+                reader.close();
+                LOGGER.fine("EVIO reader closed.");
+            } catch (final IOException e) {
+                LOGGER.warning(e.getMessage());
+                e.printStackTrace();
+            }
+
+            // Check if max events was reached and end job if this is true.
+            if (maxEventsReached) {
+                break;
+            }
+        } // fileLoop
 
-                // Buffer the EVIO events into the queue.
-                this.bufferEvents(reader, eventQueue, maxBufferSize);
+        // Stop the read ahead and report how long the job waited for input files.
+        if (prefetcher != null) {
+            prefetcher.close();
+        }
 
-                LOGGER.fine("buffered " + eventQueue.size() + " events");
-                
-                // Is the event queue empty?
-                if (eventQueue.size() == 0) {
-                    // Break from the event processing loop.
-                    break eventLoop;
+        // Trigger endOfData on LCSim Drivers.
+        jobManager.finish();
+
+        // Close the LCIO writer.
+        if (writer != null) {
+            try {
+                if (writerThread != null) {
+                    writerThread.close();
+                } else {
+                    writer.close();
                 }
+                LOGGER.info("LCIO output writer closed okay.");
+            } catch (final IOException e) {
+                e.printStackTrace();
+                LOGGER.warning(e.getMessage());
+            }
+        }
 
-                // Loop over the EVIO events in the buffer until it is empty.
-                recordLoop: while (eventQueue.hasNext()) {
+        LOGGER.info("Job finished successfully!");
+    }
 
-                    // Read and parse the next EVIO event.
-                    EvioEvent evioEvent = null;
-                    try {
-                        eventQueue.next();
-                        evioEvent = (EvioEvent) eventQueue.getCurrentRecord();
-                        // The parseEvent method does not need to be called here.
-                        // The events were already parsed when buffering.
-                        if (evioEvent == null) {
-                            new RuntimeException("Failed to read EVIO event.").printStackTrace();
-                            continue recordLoop;
-                        }
-                        LOGGER.finer("processing EVIO event " + evioEvent.getEventNumber());
-                    } catch (final IOException e) {
-                        // This means the EVIO event has bad data.
-                        LOGGER.log(Level.SEVERE, e.getMessage(), e);
+    /**
+     * Get the command line arguments for the parallel segment jobs, which are the arguments of this job without the
+     * input files, output file and parallel option. Steering file paths are made absolute because the segment jobs
+     * run in their own directories.
+     *
+     * @param cl the parsed command line
+     * @return the arguments for the segment jobs
+     */
+    private List<String> getSegmentJobArgs(final CommandLine cl) {
+        final List<String> jobArgs = new ArrayList<String>();
+        final Set<String> added = new HashSet<String>();
+        for (final Option option : cl.getOptions()) {
+            final String opt = option.getOpt();
+            if (opt.equals("l") || opt.equals("f") || opt.equals("P") || !added.add(opt)) {
+                continue;
+            }
+            if (!option.hasArg()) {
+                jobArgs.add("-" + opt);
+                continue;
+            }
+            for (String value : cl.getOptionValues(opt)) {
+                if (opt.equals("x") && !cl.hasOption("r")) {
+                    value = new File(value).getAbsolutePath();
+                }
+                jobArgs.add("-" + opt);
+                jobArgs.add(value);
+            }
+        }
+        return jobArgs;
+    }
+
+    /**
+     * Process the events from one EVIO file by buffering and parsing them on the current thread.
+     *
+     * @param reader the EVIO reader
+     * @return <code>true</code> if the maximum number of events was reached
+     */
+    private boolean processBuffered(final EvioReader reader) {
+
+        // Loop over events.
+        final EvioEventQueue eventQueue = new EvioEventQueue(-1L, maxBufferSize);
+        for (;;) {
+
+            // Buffer the EVIO events into the queue.
+            this.bufferEvents(reader, eventQueue, maxBufferSize);
+
+            LOGGER.fine("buffered " + eventQueue.size() + " events");
+
+            // Is the event queue empty?
+            if (eventQueue.size() == 0) {
+                // Break from the event processing loop.
+                return false;
+            }
+
+            // Loop over the EVIO events in the buffer until it is empty.
+            recordLoop: while (eventQueue.hasNext()) {
+
+                // Read and parse the next EVIO event.
+                EvioEvent evioEvent = null;
+                try {
+                    eventQueue.next();
+                    evioEvent = (EvioEvent) eventQueue.getCurrentRecord();
+                    // The parseEvent method does not need to be called here.
+                    // The events were already parsed when buffering.
+                    if (evioEvent == null) {
+                        new RuntimeException("Failed to read EVIO event.").printStackTrace();
                         continue recordLoop;
-                    } catch (final NoSuchRecordException e) {
-                        // This means the queue does not have any more events.
-                        // We checked hasNext() already so it should not happen.
-                        LOGGER.log(Level.SEVERE, e.getMessage(), e);
-                        break recordLoop;
                     }
+                    LOGGER.finer("processing EVIO event " + evioEvent.getEventNumber());
+                } catch (final IOException e) {
+                    // This means the EVIO event has bad data.
+                    LOGGER.log(Level.SEVERE, e.getMessage(), e);
+                    continue recordLoop;
+                } catch (final NoSuchRecordException e) {
+                    // This means the queue does not have any more events.
+                    // We checked hasNext() already so it should not happen.
+                    LOGGER.log(Level.SEVERE, e.getMessage(), e);
+                    break recordLoop;
+                }
 
-                    // Print out event XML if enabled.
-                    if (printXml) {
-                        LOGGER.info(evioEvent.toXML());
-                    }
+                if (this.processEvioEvent(evioEvent)) {
+                    return true;
+                }
+            }
+        }
+    }
 
-                    // Is this a PRESTART event?
-                    if (EvioEventUtilities.isPreStartEvent(evioEvent)) {
+    /**
+     * Process the events from one EVIO file using a pipeline where events are read on a background thread and parsed
+     * by a pool of worker threads, while the event building and Driver processing stay on the current thread.
+     *
+     * @param reader the EVIO reader
+     * @return <code>true</code> if the maximum number of events was reached
+     */
+    private boolean processPipelined(final EvioReader reader) {
+        final EvioEventPipeline pipeline = new EvioEventPipeline(reader, pipelineThreads, maxBufferSize);
+        pipeline.start();
+        try {
+            for (;;) {
+                final EvioEvent evioEvent;
+                try {
+                    evioEvent = pipeline.next();
+                } catch (final IOException e) {
+                    throw new RuntimeException("Error reading from the EVIO pipeline.", e);
+                }
+                if (evioEvent == null) {
+                    return false;
+                }
+                LOGGER.finer("processing EVIO event " + evioEvent.getEventNumber());
 
-                        LOGGER.info("got PRESTART event");
-                        
-                        // Get the pre start event's data bank.
-                        final int[] data = EvioEventUtilities.getControlEventData(evioEvent);
+                // Events are checked for head banks in order, as they would be when buffering.
+                this.checkHeadBank(evioEvent);
 
-                        if (data == null) {
-                            // This should never happen but just ignore it.
-                            LOGGER.severe("PRESTART event is missing a data bank.");
-                        } else {
-                            // Check if conditions system needs to be updated from the pre start data.
-                            this.checkConditions(data[1], false);
-                        }
-                    }
+                if (this.processEvioEvent(evioEvent)) {
+                    return true;
+                }
+            }
+        } finally {
+            pipeline.close();
+        }
+    }
 
-                    // Is this an END event?
-                    if (EvioEventUtilities.isEndEvent(evioEvent)) {
-                        
-                        LOGGER.info("got END event");
-                        
-                        final int[] data = EvioEventUtilities.getControlEventData(evioEvent);
-                        if (data == null) {
-                            // This should never happen but just ignore it.
-                            LOGGER.severe("The END event is missing a data bank.");
-                        } else {
-                            final int seconds = data[0];
-                            final int totalEvents = data[2];
-                            LOGGER.info("EVIO END event with " + totalEvents + " events and " + seconds + " seconds");
-                        }
-                    }
+    /**
+     * Process a single parsed EVIO event by updating the conditions and event builder state, converting it to LCIO,
+     * running the Drivers and writing the output.
+     *
+     * @param evioEvent the parsed EVIO event
+     * @return <code>true</code> if the maximum number of events was reached
+     */
+    private boolean processEvioEvent(final EvioEvent evioEvent) {
 
-                    // Setup state in the LCSimEventBuilder based on the EVIO control event.
-                    if (eventBuilder != null) {
-                        LOGGER.finer("event builder reading in EVIO event " + evioEvent.getEventNumber());
-                        eventBuilder.readEvioEvent(evioEvent);
-                    }
+        // Print out event XML if enabled.
+        if (printXml) {
+            LOGGER.info(evioEvent.toXML());
+        }
 
-                    // Is this a physics event?
-                    if (EvioEventUtilities.isPhysicsEvent(evioEvent)) {
+        // Is this a PRESTART event?
+        if (EvioEventUtilities.isPreStartEvent(evioEvent)) {
 
-                        // Print physics event number, which is actually a sequence number from
-                        // the reader, not the actual event number from the data.
-                        LOGGER.finer("got physics event number " + evioEvent.getEventNumber());
+            LOGGER.info("got PRESTART event");
 
-                        // Is the event builder initialized?
-                        if (eventBuilder == null) {
-                            // Die here, because the event builder should be setup by now.
-                            throw new RuntimeException("The LCSimEventBuilder was never initialized.");
-                        }
+            // Get the pre start event's data bank.
+            final int[] data = EvioEventUtilities.getControlEventData(evioEvent);
 
-                        // Build the LCIO event.
-                        final EventHeader lcioEvent = eventBuilder.makeLCSimEvent(evioEvent);
-                        eventTime = lcioEvent.getTimeStamp() / 1000000;
-                        LOGGER.finer("created LCIO event " + lcioEvent.getEventNumber() + " with timestamp " + eventTime);
-                        if (firstEvent) {
-                            LOGGER.info("first physics event time: " + eventTime / 1000 + " - " + new Date(eventTime));
-                            firstEvent = false;
-                        }
+            if (data == null) {
+                // This should never happen but just ignore it.
+                LOGGER.severe("PRESTART event is missing a data bank.");
+            } else {
+                // Check if conditions system needs to be updated from the pre start data.
+                this.checkConditions(data[1], false);
+            }
+        }
 
-                        // Activate Driver process methods.
-                        LOGGER.finer("Job manager processing event " + lcioEvent.getEventNumber());
-                        jobManager.processEvent(lcioEvent);
-
-                        // Write out this LCIO event.
-                        if (writer != null) {
-                            try {
-                                writer.write(lcioEvent);
-                                writer.flush();
-                                LOGGER.finer("wrote LCSim event " + lcioEvent.getEventNumber());
-                            } catch (final IOException e) {
-                                throw new RuntimeException("Error writing LCIO file.", e);
-                            }
-                            LOGGER.finer("wrote event #" + lcioEvent.getEventNumber());
-                        }
+        // Is this an END event?
+        if (EvioEventUtilities.isEndEvent(evioEvent)) {
 
-                        // Increment number of events processed.
-                        nEvents++;
+            LOGGER.info("got END event");
 
-                        // Check if max events was reached and end job if this is true.
-                        if (maxEvents != -1 && nEvents >= maxEvents) {
-                            LOGGER.info("maxEvents " + maxEvents + " was reached");
-                            break fileLoop;
-                        }
-                    }
-                }
-            } // eventLoop
-            LOGGER.info("Last physics event time: " + eventTime / 1000 + " - " + new Date(eventTime));
+            final int[] data = EvioEventUtilities.getControlEventData(evioEvent);
+            if (data == null) {
+                // This should never happen but just ignore it.
+                LOGGER.severe("The END event is missing a data bank.");
+            } else {
+                final int seconds = data[0];
+                final int totalEvents = data[2];
+                LOGGER.info("EVIO END event with " + totalEvents + " events and " + seconds + " seconds");
+            }
+        }
 
-            // Close the EVIO reader.
-            try {
-                reader.close();
-                LOGGER.fine("EVIO reader closed.");
-            } catch (final IOException e) {
-                LOGGER.warning(e.getMessage());
-                e.printStackTrace();
+        // Setup state in the LCSimEventBuilder based on the EVIO control event.
+        if (eventBuilder != null) {
+            LOGGER.finer("event builder reading in EVIO event " + evioEvent.getEventNumber());
+            eventBuilder.readEvioEvent(evioEvent);
+        }
+
+        // Is this a physics event?
+        if (EvioEventUtilities.isPhysicsEvent(evioEvent)) {
+
+            // Print physics event number, which is actually a sequence number from
+            // the reader, not the actual event number from the data.
+            LOGGER.finer("got physics event number " + evioEvent.getEventNumber());
+
+            // Is the event builder initialized?
+            if (eventBuilder == null) {
+                // Die here, because the event builder should be setup by now.
+                throw new RuntimeException("The LCSimEventBuilder was never initialized.");
+            }
+
+            // Build the LCIO event.
+            final EventHeader lcioEvent = eventBuilder.makeLCSimEvent(evioEvent);
+            eventTime = lcioEvent.getTimeStamp() / 1000000;
+            LOGGER.finer("created LCIO event " + lcioEvent.getEventNumber() + " with timestamp " + eventTime);
+            if (firstEvent) {
+                LOGGER.info("first physics event time: " + eventTime / 1000 + " - " + new Date(eventTime));
+                firstEvent = false;
             }
-        } // fileLoop
 
-        // If the processing stopped because of max events then need to cleanup the reader.
-        if (reader != null) {
-            if (!reader.isClosed()) {
-                // Close the EVIO reader.
+            // Activate Driver process methods.
+            LOGGER.finer("Job manager processing event " + lcioEvent.getEventNumber());
+            jobManager.processEvent(lcioEvent);
+
+            // Write out this LCIO event.
+            if (writer != null) {
                 try {
-                    reader.close();
-                    LOGGER.fine("EVIO reader closed.");
+                    if (writerThread != null) {
+                        writerThread.write(lcioEvent);
+                    } else {
+                        writer.write(lcioEvent);
+                    }
+                    LOGGER.finer("wrote LCSim event " + lcioEvent.getEventNumber());
                 } catch (final IOException e) {
-                    LOGGER.log(Level.WARNING, e.getMessage(), e);
+                    throw new RuntimeException("Error writing LCIO file.", e);
                 }
+                LOGGER.finer("wrote event #" + lcioEvent.getEventNumber());
             }
-        }
 
-        // Trigger endOfData on LCSim Drivers.
-        jobManager.finish();
+            // Increment number of events processed.
+            nEvents++;
 
-        // Close the LCIO writer.
-        if (writer != null) {
-            try {
-                writer.close();
-                LOGGER.info("LCIO output writer closed okay.");
-            } catch (final IOException e) {
-                e.printStackTrace();
-                LOGGER.warning(e.getMessage());
+            // Check if max events was reached and end job if this is true.
+            if (maxEvents != -1 && nEvents >= maxEvents) {
+                LOGGER.info("maxEvents " + maxEvents + " was reached");
+                return true;
             }
         }
-
-        LOGGER.info("Job finished successfully!");
+        return false;
     }
 
     /**
@@ -696,7 +920,13 @@ public final class EvioToLcio {
             LOGGER.info("using Eng Run event builder");
             eventBuilder = new LCSimEngRunEventBuilder();
         }
-        final ConditionsManager conditions = ConditionsManager.defaultInstance();
-        conditions.addConditionsListener(eventBuilder);
+        if (subsystems != null) {
+            ((BaseEventBuilder) eventBuilder).setEnabledSubsystems(subsystems);
+        }
+        if (decodeThreads > 0) {
+            ((LCSimEngRunEventBuilder) eventBuilder).setDecodeThreads(decodeThreads);
+        }
+        DatabaseConditionsManager.getInstance().addConditionsListener(eventBuilder,
+                eventBuilder.getConditionsTableNames());
     }
 }
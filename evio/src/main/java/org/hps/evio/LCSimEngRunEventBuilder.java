@@ -1,6 +1,7 @@
 package org.hps.evio;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -71,6 +72,16 @@ public class LCSimEngRunEventBuilder extends BaseEventBuilder {
      */
     private Long currentTiTimeOffset = null;
 
+    /**
+     * Number of threads for decoding the sub-detector banks of an event concurrently.
+     */
+    private int decodeThreads = 0;
+
+    /**
+     * Runs the sub-detector readers concurrently when there is more than one decode thread.
+     */
+    private ConcurrentEventDecoder concurrentDecoder = null;
+
     /**
      * Class constructor.
      */
@@ -109,6 +120,17 @@ public class LCSimEngRunEventBuilder extends BaseEventBuilder {
         }
     }
 
+    /**
+     * Get the conditions tables read by the base builder, the SVT event flagger and for the TI time offset.
+     */
+    @Override
+    public String[] getConditionsTableNames() {
+        final List<String> tableNames = new ArrayList<String>(Arrays.asList(super.getConditionsTableNames()));
+        tableNames.addAll(Arrays.asList(SvtEventFlagger.CONDITIONS_TABLES));
+        tableNames.add("ti_time_offsets");
+        return tableNames.toArray(new String[tableNames.size()]);
+    }
+
     /**
      * Get the time from the TI data with time offset applied from run database.
      *
@@ -148,55 +170,116 @@ public class LCSimEngRunEventBuilder extends BaseEventBuilder {
         LOGGER.finest("created new LCSim event " + lcsimEvent.getEventNumber());
 
         // Put DAQ Configuration info into lcsimEvent.
-        try {
-            triggerConfigReader.getDAQConfig(evioEvent, lcsimEvent);
-        } catch (final Exception e) {
-            LOGGER.log(Level.SEVERE, "DAQ CONFIG BROKEN.", e);
+        if (isEnabled(Subsystem.DAQ_CONFIG)) {
+            try {
+                triggerConfigReader.getDAQConfig(evioEvent, lcsimEvent);
+            } catch (final Exception e) {
+                LOGGER.log(Level.SEVERE, "DAQ CONFIG BROKEN.", e);
+            }
         }
 
+        // Decode the sub-detector banks, concurrently if enabled.
+        final List<ConcurrentEventDecoder.Decoder> decoders = new ArrayList<ConcurrentEventDecoder.Decoder>();
+        this.addDecoders(evioEvent, decoders);
+        if (decodeThreads > 1) {
+            if (concurrentDecoder == null) {
+                concurrentDecoder = new ConcurrentEventDecoder(decodeThreads);
+            }
+            concurrentDecoder.decode(lcsimEvent, decoders);
+        } else {
+            for (final ConcurrentEventDecoder.Decoder decoder : decoders) {
+                decoder.decode(lcsimEvent);
+            }
+        }
+
+        // Write the current EPICS data into this event.
+        this.writeEpicsData(lcsimEvent);
+
+        // Write scalers into the event, if they exist in the EVIO data.
+        this.writeScalerData(evioEvent, lcsimEvent);
+
+        // The SVT flags describe the SVT data so they are skipped along with it.
+        if (svtEventFlagger != null && isEnabled(Subsystem.SVT)) this.svtEventFlagger.writeFlags(lcsimEvent);
+
+        return lcsimEvent;
+    }
+
+    /**
+     * Set the number of threads used to decode the sub-detector banks of each event concurrently.
+     * <p>
+     * With more than one thread, the ECal, hodoscope, VTP and SVT (and TS for 2019) readers run at the same time on
+     * a fork-join pool and their collections are then added to the event in the same order as when they run one
+     * after another. This reduces the latency of large events, e.g. in the online reconstruction.
+     *
+     * @param decodeThreads the number of threads or 0 or 1 to decode the banks on the calling thread
+     */
+    public void setDecodeThreads(final int decodeThreads) {
+        if (decodeThreads < 0) {
+            throw new IllegalArgumentException("The number of decode threads is invalid: " + decodeThreads);
+        }
+        if (concurrentDecoder != null) {
+            concurrentDecoder.shutdown();
+            concurrentDecoder = null;
+        }
+        this.decodeThreads = decodeThreads;
+    }
+
+    /**
+     * Add the readers for the sub-detector banks which are independent of each other and can run concurrently.
+     * <p>
+     * The readers are run and their collections are added to the event in the order of the list.
+     *
+     * @param evioEvent the EVIO event
+     * @param decoders the list of readers to add to
+     */
+    void addDecoders(final EvioEvent evioEvent, final List<ConcurrentEventDecoder.Decoder> decoders) {
+
         // Make RawCalorimeterHit collection, combining top and bottom section
         // of ECal into one list.
-        try {
-            ecalReader.makeHits(evioEvent, lcsimEvent);
-        } catch (final Exception e) {
-            LOGGER.log(Level.SEVERE, "Error making ECal hits.", e);
+        if (isEnabled(Subsystem.ECAL)) {
+            decoders.add(lcsimEvent -> {
+                try {
+                    ecalReader.makeHits(evioEvent, lcsimEvent);
+                } catch (final Exception e) {
+                    LOGGER.log(Level.SEVERE, "Error making ECal hits.", e);
+                }
+            });
         }
 
         // Make RawHodoscopeHit collection, combining top and bottom section
         // of Hodo into one list.
-        try {
-            if (hodoReader != null) {  // Skip if no hodoscope in this run period.
-                hodoReader.makeHits(evioEvent, lcsimEvent);
-            }
-        } catch (final Exception e) {
-            LOGGER.log(Level.SEVERE, "Error making Hodo hits.", e);
+        if (isEnabled(Subsystem.HODO) && hodoReader != null) { // Skip if no hodoscope in this run period.
+            decoders.add(lcsimEvent -> {
+                try {
+                    hodoReader.makeHits(evioEvent, lcsimEvent);
+                } catch (final Exception e) {
+                    LOGGER.log(Level.SEVERE, "Error making Hodo hits.", e);
+                }
+            });
         }
 
         // Make VTP collection, combining top and bottom section
         // into one list.
-        try {
-            vtpReader.makeHits(evioEvent, lcsimEvent);
-        } catch (final Exception e) {
-            LOGGER.log(Level.SEVERE, "Error reading VTP bank", e);
+        if (isEnabled(Subsystem.VTP)) {
+            decoders.add(lcsimEvent -> {
+                try {
+                    vtpReader.makeHits(evioEvent, lcsimEvent);
+                } catch (final Exception e) {
+                    LOGGER.log(Level.SEVERE, "Error reading VTP bank", e);
+                }
+            });
         }
-        
+
         // Make SVT RawTrackerHits.
-        try {
-            svtReader.makeHits(evioEvent, lcsimEvent);
-        } catch (final SvtEvioReaderException e) {
-            LOGGER.log(Level.SEVERE, "Error making SVT hits for run " + lcsimEvent.getRunNumber() + " event " + lcsimEvent.getEventNumber() + ". Don't stop!", e);
+        if (isEnabled(Subsystem.SVT)) {
+            decoders.add(lcsimEvent -> {
+                try {
+                    svtReader.makeHits(evioEvent, lcsimEvent);
+                } catch (final SvtEvioReaderException e) {
+                    LOGGER.log(Level.SEVERE, "Error making SVT hits for run " + lcsimEvent.getRunNumber() + " event " + lcsimEvent.getEventNumber() + ". Don't stop!", e);
+                }
+            });
         }
-        
-        // Write the current EPICS data into this event.
-        this.writeEpicsData(lcsimEvent);
-
-        // Write scalers into the event, if they exist in the EVIO data.
-        this.writeScalerData(evioEvent, lcsimEvent);
-
-        //
-        if (svtEventFlagger != null) this.svtEventFlagger.writeFlags(lcsimEvent);
-
-        return lcsimEvent;
     }
 
     /**
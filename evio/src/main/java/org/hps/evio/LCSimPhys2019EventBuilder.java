@@ -1,11 +1,10 @@
 package org.hps.evio;
 
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.hps.record.evio.EvioEventUtilities;
 import org.jlab.coda.jevio.EvioEvent;
-import org.lcsim.event.EventHeader;
 
 /**
  * This is the {@link org.hps.record.LCSimEventBuilder} implementation for the
@@ -38,34 +37,26 @@ public class LCSimPhys2019EventBuilder extends LCSimEngRunEventBuilder {
     
     
     /**
-     * Make an lcsim event from EVIO data.
+     * Add the TS reader after the readers of the Engineering Run builder.
      *
-     * @param evioEvent the input EVIO event
+     * @param evioEvent the EVIO event
+     * @param decoders the list of readers to add to
      */
     @Override
-    public EventHeader makeLCSimEvent(final EvioEvent evioEvent) {
-
-        LOGGER.finest("creating LCSim event from EVIO event " + evioEvent.getEventNumber());
-
-        if (!EvioEventUtilities.isPhysicsEvent(evioEvent)) {
-            throw new RuntimeException("Not a physics event: event tag " + evioEvent.getHeader().getTag());
-        }
-
-        // Create a new LCSimEvent.
-        final EventHeader lcsimEvent = super.makeLCSimEvent(evioEvent);
-        LOGGER.finest("created new LCSim event " + lcsimEvent.getEventNumber());
+    void addDecoders(final EvioEvent evioEvent, final List<ConcurrentEventDecoder.Decoder> decoders) {
+        super.addDecoders(evioEvent, decoders);
 
         // Make TS collection
         // into one list.
-        try {
-            tsReader.makeHits(evioEvent, lcsimEvent);
-        } catch (final Exception e) {
-            LOGGER.log(Level.SEVERE, "Error reading TS bank", e);
+        if (isEnabled(Subsystem.TS)) {
+            decoders.add(lcsimEvent -> {
+                try {
+                    tsReader.makeHits(evioEvent, lcsimEvent);
+                } catch (final Exception e) {
+                    LOGGER.log(Level.SEVERE, "Error reading TS bank", e);
+                }
+            });
         }
-
-        //if (svtEventFlagger != null) this.svtEventFlagger.writeFlags(lcsimEvent);
-
-        return lcsimEvent;
     }
     
 }
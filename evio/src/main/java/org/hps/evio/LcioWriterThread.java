@@ -0,0 +1,123 @@
+package org.hps.evio;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.hps.record.lcio.BufferedLcioWriter;
+import org.lcsim.event.EventHeader;
+
+/**
+ * Writes LCIO events on a background thread.
+ * <p>
+ * Events are written in the order they are submitted. The submit queue is bounded so that the event processing
+ * thread blocks if the writer falls behind. A write error is reported back to the caller on the next call to
+ * {@link #write(EventHeader)} or {@link #close()}.
+ */
+public final class LcioWriterThread extends Thread {
+
+    private static final Logger LOGGER = Logger.getLogger(LcioWriterThread.class.getPackage().getName());
+
+    /**
+     * Marker for the end of the event stream.
+     */
+    private static final Object END_OF_DATA = new Object();
+
+    /**
+     * The events waiting to be written.
+     */
+    private final BlockingQueue<Object> events;
+
+    /**
+     * The LCIO writer which is owned by this thread.
+     */
+    private final BufferedLcioWriter writer;
+
+    /**
+     * The first error from the writer.
+     */
+    private volatile IOException error;
+
+    /**
+     * Create a writer thread.
+     *
+     * @param writer the LCIO writer which must not be used by other threads after this one is started
+     * @param capacity the maximum number of events waiting to be written
+     */
+    public LcioWriterThread(final BufferedLcioWriter writer, final int capacity) {
+        super("LcioWriter");
+        this.writer = writer;
+        this.events = new ArrayBlockingQueue<Object>(capacity);
+        this.setDaemon(true);
+    }
+
+    /**
+     * Queue an event for writing, blocking if the queue is full.
+     *
+     * @param event the LCIO event
+     * @throws IOException if a previous write failed or the calling thread was interrupted
+     */
+    public void write(final EventHeader event) throws IOException {
+        this.checkError();
+        try {
+            this.events.put(event);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while queueing LCIO event.", e);
+        }
+    }
+
+    /**
+     * Write all remaining events, wait for the thread to finish and then flush and close the LCIO writer.
+     *
+     * @throws IOException if any write failed or the writer could not be closed
+     */
+    public void close() throws IOException {
+        try {
+            this.events.put(END_OF_DATA);
+            this.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing LCIO writer.", e);
+        }
+        try {
+            this.checkError();
+        } finally {
+            this.writer.close();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            for (;;) {
+                final Object next = this.events.take();
+                if (next == END_OF_DATA) {
+                    break;
+                }
+                if (this.error != null) {
+                    // Drain the queue so the producer is not blocked after a failure.
+                    continue;
+                }
+                final EventHeader event = (EventHeader) next;
+                try {
+                    this.writer.write(event);
+                    LOGGER.finer("wrote event #" + event.getEventNumber());
+                } catch (final IOException e) {
+                    LOGGER.log(Level.SEVERE, "Error writing LCIO event " + event.getEventNumber(), e);
+                    this.error = e;
+                }
+            }
+        } catch (final InterruptedException e) {
+            LOGGER.warning("LCIO writer thread was interrupted.");
+        }
+    }
+
+    private void checkError() throws IOException {
+        if (this.error != null) {
+            throw new IOException("Error writing LCIO file.", this.error);
+        }
+    }
+}
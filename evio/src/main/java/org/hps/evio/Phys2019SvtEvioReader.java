@@ -11,6 +11,7 @@ import org.hps.util.Pair;
 import org.lcsim.detector.tracker.silicon.HpsSiSensor;
 import org.lcsim.event.EventHeader;
 import org.lcsim.event.RawTrackerHit;
+import org.lcsim.event.base.BaseRawTrackerHit;
 import org.lcsim.geometry.Subdetector;
 
 /**
@@ -31,6 +32,16 @@ public class Phys2019SvtEvioReader extends AbstractSvtEvioReader {
 
     public static final int CHANNELS_PER_APV25 = 128;
 
+    // FEB ID and FEB hybrid ID ranges from the multisample tail bit masks
+    private static final int MAX_FEB_ID = 0xFF;
+    private static final int HYBRIDS_PER_FEB = 4;
+
+    // Sensors indexed by FEB ID and FEB hybrid ID, filled with the DAQ map
+    private final HpsSiSensor[] sensorTable = new HpsSiSensor[(MAX_FEB_ID + 1) * HYBRIDS_PER_FEB];
+
+    // Multisample locations reused for every data block
+    private final SvtMultisampleBuffer multisamples = new SvtMultisampleBuffer();
+
     @Override
     protected int getMinRocBankTag() {
         return MIN_ROC_BANK_TAG;
@@ -91,17 +102,30 @@ public class Phys2019SvtEvioReader extends AbstractSvtEvioReader {
      */
     @Override
     protected RawTrackerHit makeHit(int[] data) {
+        return makeHit(data, 0, SvtEvioUtils.getMultisampleTailWord(data));
+    }
 
-        int febID = SvtEvioUtils.getFebIDFromMultisampleTail(data[3]); 
+    /**
+     * Make a {@linkplain RawTrackerHit} from a multisample stored at an offset
+     * in a data block, decoding the samples directly from the block.
+     * 
+     * @param data : block of data containing the multisample
+     * @param offset : index of the first word of the multisample
+     * @param tail : tail word of the multisample
+     * @return A {@linkplain RawTrackerHit} or null if the sensor is unknown
+     */
+    private RawTrackerHit makeHit(int[] data, int offset, int tail) {
+
+        int febID = SvtEvioUtils.getFebIDFromMultisampleTail(tail); 
         int pChannel = 100; 
         //System.out.println("[ Phys2019SvtEvioReader ][ makeHit ] FEB ID: " + febID);  
         if ((febID == 0) || (febID == 1)) { 
            
             // 
-            int channel = SvtEvioUtils.getChannelNumber(data);
+            int channel = SvtEvioUtils.getChannelNumberFromMultisampleTail(tail);
 
             // Extract the APV ID from the data
-            int apv = SvtEvioUtils.getApvFromMultiSample(data);
+            int apv = SvtEvioUtils.getApvFromMultisampleTail(tail);
             if (apv == 0) apv = 1; 
             else if (apv == 1) apv = 0;   
 
@@ -115,11 +139,18 @@ public class Phys2019SvtEvioReader extends AbstractSvtEvioReader {
 
 
         } else { 
-            pChannel = SvtEvioUtils.getPhysicalChannelNumber(data); 
+            pChannel = SvtEvioUtils.getPhysicalChannelNumberFromMultisampleTail(tail); 
         }
 
         //System.out.println("[ Phys2019SvtEvioReader ][ makeHit ]: Channel: " + pChannel);  
-        return makeHit(data, pChannel);  
+        HpsSiSensor sensor = getSensor(febID, SvtEvioUtils.getFebHybridIDFromMultisampleTail(tail));
+        if (sensor == null) {
+            LOGGER.warning("makeHit: Bad sensor codes in hit evio data. " );
+            return null;
+        }
+
+        // The hit time is not set by the reader
+        return new BaseRawTrackerHit(0, sensor.makeChannelID(pChannel), SvtEvioUtils.getSamples(data, offset), null, sensor);
     }
 
 
@@ -137,6 +168,7 @@ public class Phys2019SvtEvioReader extends AbstractSvtEvioReader {
         for (HpsSiSensor sensor : sensors) {
             Pair<Integer, Integer> daqPair = new Pair<Integer, Integer>(sensor.getFebID(), sensor.getFebHybridID());
             daqPairToSensor.put(daqPair, sensor);
+            sensorTable[sensor.getFebID() * HYBRIDS_PER_FEB + sensor.getFebHybridID()] = sensor;
         }
         this.isDaqMapSetup = true;
     }
@@ -155,22 +187,29 @@ public class Phys2019SvtEvioReader extends AbstractSvtEvioReader {
         //System.out.println("FEB ID: " + SvtEvioUtils.getFebIDFromMultisample(data)
         // + " Hybrid ID: " + SvtEvioUtils.getFebHybridIDFromMultisample(data));
 
-        Pair<Integer, Integer> daqPair = new Pair<Integer, Integer>(SvtEvioUtils.getFebIDFromMultisample(data),
-                SvtEvioUtils.getFebHybridIDFromMultisample(data));
+        return getSensor(SvtEvioUtils.getFebIDFromMultisample(data), SvtEvioUtils.getFebHybridIDFromMultisample(data));
+    }
 
-        return daqPairToSensor.get(daqPair);
+    /**
+     * Get the sensor associated with a FEB ID and FEB hybrid ID.
+     *
+     * @param febID : the FEB ID
+     * @param febHybridID : the FEB hybrid ID
+     * @return The sensor or null if there is none
+     */
+    private HpsSiSensor getSensor(int febID, int febHybridID) {
+        return sensorTable[febID * HYBRIDS_PER_FEB + febHybridID];
     }
 
     @Override
     protected List<RawTrackerHit> makeHits(int bankNumber, int[] data) throws SvtEvioReaderException {
         
-        List< RawTrackerHit > rawHits = new ArrayList< RawTrackerHit >(); 
+        // Locate the multisamples in place instead of copying each one.
+        findMultiSamples(data, multisamples);
 
-        List< int[] > multiSamples = extractMultiSamples(0, data);
-
-        for (int[] samples : multiSamples) { 
-//            rawHits.add(this.makeHit(samples)); 
-            RawTrackerHit hit = this.makeHit(samples);
+        List< RawTrackerHit > rawHits = new ArrayList< RawTrackerHit >(multisamples.size()); 
+        for (int i = 0; i < multisamples.size(); i++) { 
+            RawTrackerHit hit = this.makeHit(data, multisamples.getOffset(i), multisamples.getTail(i));
             if (hit != null) {
                 rawHits.add(hit); 
             }
@@ -181,8 +220,27 @@ public class Phys2019SvtEvioReader extends AbstractSvtEvioReader {
 
     @Override
     protected List<int[]> extractMultiSamples(int sampleCount, int[] data) {
+        SvtMultisampleBuffer buffer = new SvtMultisampleBuffer();
+        findMultiSamples(data, buffer);
+        List< int[] > sampleList = new ArrayList< int[] >(buffer.size()); 
+        for (int i = 0; i < buffer.size(); i++) {
+            int[] samples = new int[SvtMultisampleBuffer.MULTISAMPLE_WORDS];
+            System.arraycopy(data, buffer.getOffset(i), samples, 0, samples.length);
+            sampleList.add(samples);
+        }
+        return sampleList;
+    }
+
+    /**
+     * Find the multisamples in the RSSI frames of a data block, skipping the
+     * multisample headers.
+     *
+     * @param data : SVT data block
+     * @param buffer : buffer which is cleared and filled with the multisamples
+     */
+    private void findMultiSamples(int[] data, SvtMultisampleBuffer buffer) {
         
-        List< int[] > sampleList = new ArrayList< int[] >(); 
+        buffer.clear(); 
         int currentSample = (data.length - 1); 
         
         // Transverse the data starting with the last word and find the tail
@@ -203,14 +261,12 @@ public class Phys2019SvtEvioReader extends AbstractSvtEvioReader {
                 // Once the number of multi samples is know, copy them and store
                 // the in a list so they can be used to make RawTrackerHits.
                 for (int imsample = 0; imsample < multiSampleCount; imsample++) { 
-                    int[] samples = new int[4];
-                    currentSample -= 4; 
-                    System.arraycopy(data, currentSample, samples, 0, samples.length);   
-                    if (((samples[3] >>> 30) & 0x1) == 1) { 
+                    currentSample -= SvtMultisampleBuffer.MULTISAMPLE_WORDS; 
+                    if (((data[currentSample + SvtMultisampleBuffer.TAIL_WORD_INDEX] >>> 30) & 0x1) == 1) { 
                         //System.out.println("Found a header."); 
                         continue; 
                     }
-                    sampleList.add(samples); 
+                    buffer.add(data, currentSample); 
                 }
                 //System.out.println("Total number of multisamples extracted: " + sampleList.size()); 
             }
@@ -218,7 +274,5 @@ public class Phys2019SvtEvioReader extends AbstractSvtEvioReader {
             // If a tail event is found, skip to the next word.
             currentSample -= 1;
         } 
-    
-        return sampleList; 
     } 
 }
@@ -33,6 +33,13 @@ public class SvtEventFlagger {
     static private final Logger LOG = Logger.getLogger(SvtEventFlagger.class.getName());
 
     private static final double angleTolerance = 0.0001;
+
+    /**
+     * The conditions tables read in {@link #initialize()}.
+     */
+    static final String[] CONDITIONS_TABLES = {"svt_bias_constants", "svt_motor_positions", "svt_alignments",
+            "svt_timing_constants", "svt_readout_sync_phases"};
+
     SvtBiasConstant.SvtBiasConstantCollection svtBiasConstants = null;
     SvtMotorPosition.SvtMotorPositionCollection svtPositionConstants = null;
     SvtReadoutSyncPhase.SvtReadoutSyncPhaseCollection svtSyncPhaseColl = null;
@@ -0,0 +1,78 @@
+package org.hps.evio;
+
+import java.util.Arrays;
+
+/**
+ * Reusable buffer holding the location and tail word of every multisample found in an SVT data block.
+ * <p>
+ * The multisamples are not copied out of the data block. Instead, the offset of each one is stored in a primitive
+ * array which grows as needed and is reused from one data block to the next, so scanning a block does not allocate.
+ */
+final class SvtMultisampleBuffer {
+
+    /**
+     * Number of 32 bit words in a multisample.
+     */
+    static final int MULTISAMPLE_WORDS = 4;
+
+    /**
+     * Offset of the tail word within a multisample.
+     */
+    static final int TAIL_WORD_INDEX = 3;
+
+    private int[] offsets = new int[1024];
+    private int[] tails = new int[1024];
+    private int size = 0;
+
+    /**
+     * Remove all entries while keeping the allocated arrays.
+     */
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Add the multisample starting at an offset in a data block.
+     *
+     * @param data the data block
+     * @param offset the index of the first word of the multisample
+     */
+    void add(int[] data, int offset) {
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, 2 * size);
+            tails = Arrays.copyOf(tails, 2 * size);
+        }
+        offsets[size] = offset;
+        tails[size] = data[offset + TAIL_WORD_INDEX];
+        ++size;
+    }
+
+    /**
+     * Get the number of multisamples in the buffer.
+     *
+     * @return the number of multisamples
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get the offset of a multisample in its data block.
+     *
+     * @param i the multisample index
+     * @return the offset of the first word of the multisample
+     */
+    int getOffset(int i) {
+        return offsets[i];
+    }
+
+    /**
+     * Get the tail word of a multisample.
+     *
+     * @param i the multisample index
+     * @return the tail word
+     */
+    int getTail(int i) {
+        return tails[i];
+    }
+}
@@ -0,0 +1,50 @@
+package org.hps.evio;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Test of the output file handling in {@link EvioSegmentProcessor}.
+ */
+public class EvioSegmentProcessorTest extends TestCase {
+
+    /**
+     * Test that the segment number is added before the file extension.
+     */
+    public void testSegmentFileName() {
+        assertEquals(Paths.get("out-segment00002.root"),
+                EvioSegmentProcessor.getSegmentFileName(Paths.get("out.root"), 2));
+        assertEquals(Paths.get("plots", "hits-segment00010.txt"),
+                EvioSegmentProcessor.getSegmentFileName(Paths.get("plots", "hits.txt"), 10));
+        assertEquals(Paths.get("summary-segment00000"),
+                EvioSegmentProcessor.getSegmentFileName(Paths.get("summary"), 0));
+    }
+
+    /**
+     * Test that absolute steering variable paths which do not exist are refused and that existing ones are recorded.
+     *
+     * @throws IOException if the temporary file cannot be created
+     */
+    public void testSharedPaths() throws IOException {
+        final File existing = File.createTempFile("segment", ".txt");
+        existing.deleteOnExit();
+        final Map<File, Long> paths = EvioSegmentProcessor.getSharedPaths(Arrays.asList("-d", "HPS-Test", "-D",
+                "input=" + existing.getAbsolutePath(), "-D", "outputFile=relative.slcio"));
+        assertEquals(Collections.singleton(existing), paths.keySet());
+        assertEquals(Long.valueOf(existing.lastModified()), paths.get(existing));
+
+        final File missing = new File(existing.getParentFile(), existing.getName() + ".missing");
+        try {
+            EvioSegmentProcessor.getSharedPaths(Arrays.asList("-D", "outputFile=" + missing.getAbsolutePath()));
+            fail("An absolute output path should be refused.");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
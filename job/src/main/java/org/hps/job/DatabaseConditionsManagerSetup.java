@@ -2,6 +2,8 @@ package org.hps.job;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -20,6 +22,7 @@ public final class DatabaseConditionsManagerSetup extends DefaultConditionsSetup
     private Set<String> tags = null;
     private boolean freeze = false;
     private DatabaseConditionsManager manager = null;
+    private Map<ConditionsListener, String[]> listenerTableNames = new HashMap<ConditionsListener, String[]>();
 
     public DatabaseConditionsManagerSetup() {
         manager = DatabaseConditionsManager.getInstance();
@@ -29,6 +32,16 @@ public final class DatabaseConditionsManagerSetup extends DefaultConditionsSetup
         return manager;
     }
 
+    /**
+     * Add a conditions listener which is only notified of a run change if one of its tables changed.
+     * @param listener the conditions listener
+     * @param tableNames the tables the listener depends on or <code>null</code> to notify it of every change
+     */
+    public void addConditionsListener(ConditionsListener listener, String... tableNames) {
+        addConditionsListener(listener);
+        listenerTableNames.put(listener, tableNames);
+    }
+
     /**
      * Set whether system should be frozen after initialization.
      * @param freeze <code>true</code> to freeze conditions after initialization
@@ -69,7 +82,7 @@ public final class DatabaseConditionsManagerSetup extends DefaultConditionsSetup
 
         // Add extra listeners to manager.
         for (ConditionsListener listener : listeners) {
-            manager.addConditionsListener(listener);
+            manager.addConditionsListener(listener, listenerTableNames.get(listener));
         }
     }
 
@@ -89,11 +102,14 @@ public final class DatabaseConditionsManagerSetup extends DefaultConditionsSetup
     /**
      * Do cleanup of conditions system after job.
      * <p>
-     * Shuts down the database connection to the conditions manager.
+     * Prints the conditions load metrics and shuts down the database connection to the conditions manager.
      */
     @Override
     public void cleanup() {
 
+        // Print the time spent loading conditions.
+        LOGGER.info(manager.getLoadMetrics().getSummary());
+
         // Close the conditions database connection.
         Connection connection = manager.getConnection();
         try {
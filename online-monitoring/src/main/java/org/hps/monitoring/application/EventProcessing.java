@@ -480,7 +480,7 @@ final class EventProcessing {
 
             // Setup the event builder to translate from EVIO to LCIO.
             LCSimEventBuilder eventBuilder = this.createEventBuilder(configurationModel);
-            conditions.addConditionsListener(eventBuilder);
+            conditions.addConditionsListener(eventBuilder, eventBuilder.getConditionsTableNames());
 
             // Add extra conditions listeners.
             for (final ConditionsListener conditionsListener : this.sessionState.conditionsListeners) {
@@ -7,6 +7,7 @@ import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.hps.evio.LCSimEngRunEventBuilder;
 import org.hps.job.DatabaseConditionsManagerSetup;
 import org.hps.job.JobManager;
 import org.hps.online.recon.eventbus.OnlineEventBus;
@@ -172,6 +173,7 @@ public class Station {
         Property<String> steering = props.get("lcsim.steering");
         Property<String> tag = props.get("lcsim.tag");
         Property<String> builderClass = props.get("lcsim.builder");
+        Property<Integer> decodeThreads = props.get("lcsim.decodeThreads");
         Property<String> conditionsUrl = props.get("lcsim.conditions");
 
         // Conditions URL
@@ -182,6 +184,9 @@ public class Station {
 
         // Setup the condition system from properties.
         conditionsSetup = new DatabaseConditionsManagerSetup();
+
+        // Publish a complete conditions snapshot for each run, from which the drivers read their conditions.
+        conditionsSetup.getConditionsManager().setPublishSnapshots(true);
         conditionsSetup.setDetectorName(detector.value());
         if (run.value() != null) {
             conditionsSetup.setRun(run.value());
@@ -205,7 +210,15 @@ public class Station {
         } catch (Exception e) {
             throw new IllegalArgumentException("Failed to create event builder: " + builderClass.value(), e);
         }
-        conditionsSetup.addConditionsListener(builder);
+        if (decodeThreads.value() != null && decodeThreads.value() > 1) {
+            if (builder instanceof LCSimEngRunEventBuilder) {
+                ((LCSimEngRunEventBuilder) builder).setDecodeThreads(decodeThreads.value());
+                LOG.config("Event builder will decode sub-detector banks with " + decodeThreads.value() + " threads");
+            } else {
+                LOG.warning("Event builder " + builderClass.value() + " does not support concurrent decoding");
+            }
+        }
+        conditionsSetup.addConditionsListener(builder, builder.getConditionsTableNames());
         LOG.config("Done creating event builder");
 
         // Setup the lcsim job manager.
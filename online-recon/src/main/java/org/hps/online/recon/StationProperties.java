@@ -53,6 +53,7 @@ public class StationProperties extends PropertyStore {
                 new StringProperty ( "lcsim.conditions",      "Conditions URL",                 null,           false),
                 new StringProperty ( "lcsim.tag",             "Conditions tag",                 null,           false),
                 new StringProperty ( "lcsim.builder",         "LCIO event builder",             BUILDER,        true),
+                new IntegerProperty( "lcsim.decodeThreads",   "Event decoding threads",         0,              false),
                 new StringProperty ( "lcsim.jvm_args",        "JVM args for the lcsim process", "-Xmx512m",     false),
                 new StringProperty ( "lcsim.classpath",       "Classpath for running lcsim",    null,           false),
                 new StringProperty ( "station.outputName",    "Base name for output files",     "output",       true),
@@ -299,7 +299,13 @@ public class HPSMonitoring2021 extends RemoteAidaDriver {
 
         // Get the HpsSiSensor objects from the geometry
         sensors = detector.getSubdetector(TRACKER_NAME).getDetectorElement().findDescendants(HpsSiSensor.class);
-        timingConstants = DatabaseConditionsManager.getInstance().getCachedConditions(SvtTimingConstants.SvtTimingConstantsCollection.class, "svt_timing_constants").getCachedData().get(0);
+        // Read the timing constants from the snapshot of the run when the station publishes one
+        final DatabaseConditionsManager conditionsManager = DatabaseConditionsManager.getInstance();
+        if (conditionsManager.isPublishSnapshots()) {
+            timingConstants = conditionsManager.getSnapshot().getConditions(SvtTimingConstants.SvtTimingConstantsCollection.class, "svt_timing_constants").get(0);
+        } else {
+            timingConstants = conditionsManager.getCachedConditions(SvtTimingConstants.SvtTimingConstantsCollection.class, "svt_timing_constants").getCachedData().get(0);
+        }
         // If there were no sensors found, throw an exception
         if (sensors.isEmpty()) {
             throw new RuntimeException("There are no sensors associated with this detector");
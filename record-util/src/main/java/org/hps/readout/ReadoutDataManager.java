@@ -3,11 +3,11 @@ package org.hps.readout;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -18,7 +18,7 @@ import java.util.logging.Logger;
 import org.hps.conditions.database.DatabaseConditionsManager;
 import org.hps.record.evio.EvioEventConstants;
 import org.hps.record.triggerbank.TSGenericObject;
-import org.hps.readout.util.TimedList;
+import org.hps.readout.util.TimedDataBuffer;
 import org.hps.readout.util.TriggerTime;
 import org.hps.readout.util.collection.LCIOCollection;
 import org.hps.readout.util.collection.LCIOCollectionFactory;
@@ -26,10 +26,12 @@ import org.hps.readout.util.collection.ManagedLCIOCollection;
 import org.hps.readout.util.collection.ManagedLCIOData;
 import org.hps.readout.util.collection.TriggeredLCIOData;
 import org.hps.record.triggerbank.BaseTriggerData;
+import org.hps.util.RandomStreams;
 import org.lcsim.event.EventHeader;
 import org.lcsim.event.GenericObject;
 import org.lcsim.event.MCParticle;
 import org.lcsim.event.base.BaseLCSimEvent;
+import org.lcsim.geometry.Detector;
 import org.lcsim.geometry.IDDecoder;
 import org.lcsim.lcio.LCIOWriter;
 import org.lcsim.util.Driver;
@@ -73,6 +75,34 @@ public class ReadoutDataManager extends Driver {
      * Tracks all registered readout drivers.
      */
     private static final Set<ReadoutDriver> driverSet = new HashSet<ReadoutDriver>();
+    /**
+     * Tracks all readout drivers, including trigger drivers, in the
+     * order in which they were instantiated.
+     */
+    private static final List<ReadoutDriver> registrationList = new ArrayList<ReadoutDriver>();
+    /**
+     * The number of threads on which the readout drivers are run by
+     * the data manager. If this is zero, the readout drivers are run
+     * serially by the LCSim driver chain instead.
+     */
+    private static int threads = 0;
+    /**
+     * The names of the readout drivers which are run by the data
+     * manager when it runs them on its own threads.
+     */
+    private static final List<String> scheduledDriverNames = new ArrayList<String>();
+    /**
+     * Runs the readout drivers when they are scheduled by the data
+     * manager. This is <code>null</code> if they are run by the LCSim
+     * driver chain.
+     */
+    private static ReadoutDriverScheduler scheduler = null;
+    /**
+     * Holds the triggers sent by the trigger driver running on the
+     * current thread while it is being run by the scheduler, so that
+     * they may be added to the trigger queue in a fixed order.
+     */
+    private static final ThreadLocal<List<TriggerTime>> capturedTriggers = new ThreadLocal<List<TriggerTime>>();
     /**
      * Tracks all data collections which are managed by the readout
      * manager as well as their properties.
@@ -126,6 +156,19 @@ public class ReadoutDataManager extends Driver {
             throw new RuntimeException();
         }
         
+        // If the readout drivers are run by the data manager, they
+        // are not part of the LCSim driver chain and must be started
+        // here. This must be done before the buffer sizes are found,
+        // since drivers register their collections and triggers when
+        // they are started.
+        if(threads > 0) {
+            List<ReadoutDriver> scheduledDrivers = getScheduledDrivers(registrationList, scheduledDriverNames);
+            scheduler = new ReadoutDriverScheduler(scheduledDrivers, threads);
+            scheduler.startOfData();
+            logger.config("Running " + scheduledDrivers.size() + " of " + registrationList.size() + " readout drivers on "
+                    + threads + " threads.");
+        }
+        
         // Create a collection for the dummy trigger bank.
         LCIOCollectionFactory.setCollectionName("TriggerBank");
         LCIOCollectionFactory.setFlags(0);
@@ -194,8 +237,23 @@ public class ReadoutDataManager extends Driver {
         bufferTotal = totalNeededDisplacement;
     }
     
+    @Override
+    public void detectorChanged(Detector detector) {
+        // Readout drivers run by the data manager must be notified of
+        // detector changes by the data manager.
+        super.detectorChanged(detector);
+        if(scheduler != null) {
+            scheduler.detectorChanged(detector);
+        }
+    }
+    
     @Override
     public void endOfData() {
+        if(scheduler != null) {
+            scheduler.endOfData();
+            scheduler = null;
+        }
+        
         try { outputWriter.close(); }
         catch(IOException e) {
             e.printStackTrace();
@@ -207,6 +265,13 @@ public class ReadoutDataManager extends Driver {
     
     @Override
     public void process(EventHeader event) {
+        // If the readout drivers are run by the data manager, run
+        // them for the current time step. In the LCSim driver chain,
+        // they would have run before the data manager.
+        if(scheduler != null) {
+            scheduler.process(event);
+        }
+        
         // Check the trigger queue.
         if(!triggerQueue.isEmpty()) {
             // Check the earliest possible trigger write time.
@@ -424,9 +489,7 @@ public class ReadoutDataManager extends Driver {
         // Remove all data from the buffer that occurs before the max
         // buffer length cut-off.
         for(ManagedLCIOData<?> data : collectionMap.values()) {
-            while(!data.getData().isEmpty() && (data.getData().getFirst().getTime() < (getCurrentTime() - 500))) {
-                data.getData().removeFirst();
-            }
+            data.getData().pruneBefore(getCurrentTime() - 500);
         }
         
         // Increment the current time.
@@ -470,9 +533,12 @@ public class ReadoutDataManager extends Driver {
         // the buffer.
         if(!data.isEmpty()) {
             // Add the new data to the data buffer.
+            // Since the data type was validated above, the buffer is
+            // known to accept objects of type T.
             double time = Double.isNaN(dataTime) ? currentTime - collectionData.getCollectionParameters().getGlobalTimeDisplacement() : dataTime;
-            LinkedList<TimedList<?>> dataBuffer = collectionData.getData();
-            dataBuffer.add(new TimedList<T>(time, data));
+            @SuppressWarnings("unchecked")
+            TimedDataBuffer<? super T> dataBuffer = (TimedDataBuffer<? super T>) collectionData.getData();
+            dataBuffer.add(time, data);
         }
     }
     
@@ -737,6 +803,12 @@ public class ReadoutDataManager extends Driver {
      * @param productionDriver - The readout driver to register.
      */
     public static final void registerReadoutDriver(ReadoutDriver productionDriver) {
+        // Track all drivers in the order in which they are declared
+        // so that they may be run by the data manager, if needed.
+        if(!registrationList.contains(productionDriver)) {
+            registrationList.add(productionDriver);
+        }
+        
         // Trigger drivers are registered differently.
         if(productionDriver instanceof TriggerDriver) {
             logger.warning(nl + "Attempted to register TriggerDriver \"" + productionDriver.getClass().getSimpleName() + "\" as a readout driver."
@@ -788,9 +860,9 @@ public class ReadoutDataManager extends Driver {
         // Create a new managed LCIO data object and transfer all the
         // data from the old object to it.
         ManagedLCIOData<T> newData = new ManagedLCIOData<T>(newParams);
-        for(TimedList<?> oldList : oldData.getData()) {
-            newData.getData().add(oldList);
-        }
+        @SuppressWarnings("unchecked")
+        TimedDataBuffer<T> oldBuffer = (TimedDataBuffer<T>) oldData.getData();
+        newData.getData().addAll(oldBuffer);
         
         // Put the new data list into the map.
         collectionMap.put(collectionName, newData);
@@ -815,7 +887,7 @@ public class ReadoutDataManager extends Driver {
         double triggerTime = getCurrentTime() - triggerTimeDisplacementMap.get(driver);
         
         // Add the trigger to the trigger queue.
-        triggerQueue.add(new TriggerTime(triggerTime, driver));
+        addTrigger(new TriggerTime(triggerTime, driver));
         logger.finer("Added trigger to queue with trigger time " + triggerTime + " and readout time " + (triggerTime + bufferTotal) + " from driver "
                 + driver.getClass().getSimpleName() + ".");
     }
@@ -840,7 +912,7 @@ public class ReadoutDataManager extends Driver {
         double triggerTime = getCurrentTime() - triggerTimeDisplacementMap.get(driver);
         
         // Add the trigger to the trigger queue.
-        triggerQueue.add(new TriggerTime(triggerTime, triggerType, driver));
+        addTrigger(new TriggerTime(triggerTime, triggerType, driver));
         logger.finer("Added trigger to queue with trigger time " + triggerTime + " and readout time " + (triggerTime + bufferTotal) + " from driver "
                 + driver.getClass().getSimpleName() + ".");
     }
@@ -865,11 +937,99 @@ public class ReadoutDataManager extends Driver {
         double triggerTime = getCurrentTime() - triggerTimeDisplacementMap.get(driver);
         
         // Add the trigger to the trigger queue.
-        triggerQueue.add(new TriggerTime(triggerTime, triggerType, topBot, driver));
+        addTrigger(new TriggerTime(triggerTime, triggerType, topBot, driver));
         logger.finer("Added trigger to queue with trigger time " + triggerTime + " and readout time " + (triggerTime + bufferTotal) + " from driver "
                 + driver.getClass().getSimpleName() + ".");
     }
     
+    /**
+     * Sets the list in which triggers sent on the current thread are
+     * held instead of being added to the trigger queue.
+     * @param triggers - The list in which to hold triggers, or
+     * <code>null</code> to add triggers to the queue directly.
+     */
+    static final void captureTriggers(List<TriggerTime> triggers) {
+        if(triggers == null) {
+            capturedTriggers.remove();
+        } else {
+            capturedTriggers.set(triggers);
+        }
+    }
+    
+    /**
+     * Selects the readout drivers which are run by the data manager.
+     * A driver is selected if its name, or the simple name of its
+     * class, is one of the specified names.
+     * @param drivers - The readout drivers in the order in which
+     * they were registered.
+     * @param names - The names of the drivers to select.
+     * @return Returns the selected drivers in the order in which they
+     * were registered.
+     * @throws IllegalArgumentException Occurs if no names are given,
+     * or if a name does not match any driver.
+     */
+    static final List<ReadoutDriver> getScheduledDrivers(List<ReadoutDriver> drivers, List<String> names) {
+        if(names.isEmpty()) {
+            throw new IllegalArgumentException("Error: The readout drivers run by the data manager must be listed with the parameter \"scheduledDrivers\".");
+        }
+        
+        List<ReadoutDriver> scheduledDrivers = new ArrayList<ReadoutDriver>();
+        Set<String> matchedNames = new HashSet<String>();
+        for(ReadoutDriver driver : drivers) {
+            boolean scheduled = false;
+            for(String name : names) {
+                if(name.equals(driver.getName()) || name.equals(driver.getClass().getSimpleName())) {
+                    matchedNames.add(name);
+                    scheduled = true;
+                }
+            }
+            if(scheduled) {
+                scheduledDrivers.add(driver);
+            }
+        }
+        
+        for(String name : names) {
+            if(!matchedNames.contains(name)) {
+                throw new IllegalArgumentException("Error: Scheduled readout driver \"" + name + "\" is not defined.");
+            }
+        }
+        return scheduledDrivers;
+    }
+    
+    /**
+     * Gets the driver which produces the specified collection.
+     * @param collectionName - The name of the collection.
+     * @return Returns the production driver of the collection, or
+     * <code>null</code> if the collection is not registered.
+     */
+    static final ReadoutDriver getProductionDriver(String collectionName) {
+        ManagedLCIOData<?> collectionData = collectionMap.get(collectionName);
+        return collectionData == null ? null : collectionData.getCollectionParameters().getProductionDriver();
+    }
+    
+    /**
+     * Adds triggers held while a driver was being run by the
+     * scheduler to the trigger queue.
+     * @param triggers - The triggers to add.
+     */
+    static final void queueTriggers(Collection<TriggerTime> triggers) {
+        triggerQueue.addAll(triggers);
+    }
+    
+    /**
+     * Adds a trigger to the trigger queue, or holds it if triggers
+     * are being captured on the current thread.
+     * @param trigger - The trigger.
+     */
+    private static final void addTrigger(TriggerTime trigger) {
+        List<TriggerTime> triggers = capturedTriggers.get();
+        if(triggers == null) {
+            triggerQueue.add(trigger);
+        } else {
+            triggers.add(trigger);
+        }
+    }
+    
     /**
      * Adds a data collection corresponding to a given parameter set
      * to the data map. If there is already data existing under the
@@ -980,30 +1140,16 @@ public class ReadoutDataManager extends Driver {
             throw new IllegalArgumentException("Error: Collection \"" + collectionName + "\" does not exist.");
         }
         
-        // Throw an alert if the earliest requested time precedes the
-        // earliest buffered time, and similarly for the latest time.
-        LinkedList<TimedList<?>> dataLists = collectionData.getData();
-        
-        // Iterate through the data and collect all entries that have
-        // an associated truth time within the given time range. The
-        // lower bound is inclusive, the upper bound is exclusive.
-        List<T> outputList = new ArrayList<T>();
-        for(TimedList<?> dataList : dataLists) {
-            if(dataList.getTime() >= startTime && dataList.getTime() < endTime) {
-                // Add the items from the list to the output list.
-                for(Object o : dataList) {
-                    if(objectType.isAssignableFrom(o.getClass())) {
-                        outputList.add(objectType.cast(o));
-                    } else {
-                        throw new ClassCastException("Error: Unexpected object of type " + o.getClass().getSimpleName() + " in collection \""
-                                + collectionName + ".\"");
-                    }
-                }
-            }
-        }
+        // The object type of the collection was validated above, and
+        // the type of all data added to the collection is validated
+        // by addData, so the objects need not be checked again.
+        @SuppressWarnings("unchecked")
+        TimedDataBuffer<T> dataBuffer = (TimedDataBuffer<T>) collectionData.getData();
         
-        // Return the collected items.
-        return outputList;
+        // Collect all entries that have an associated truth time
+        // within the given time range. The lower bound is inclusive,
+        // the upper bound is exclusive.
+        return dataBuffer.getRange(startTime, endTime);
     }
     
     /**
@@ -1172,6 +1318,17 @@ public class ReadoutDataManager extends Driver {
         outputFileName = filepath;
     }
     
+    /**
+     * Sets the seed from which the random noise streams of all
+     * readout drivers are derived. Readout using the same seed and
+     * input will produce the same noise. If no seed is set, one is
+     * chosen at random and logged.
+     * @param seed - The random seed.
+     */
+    public static final void setRandomSeed(long seed) {
+        RandomStreams.setSeed(seed);
+    }
+    
     /**
      * Sets the default size of the readout window, in units of
      * nanoseconds. Note that this can be overridden by specific
@@ -1181,4 +1338,40 @@ public class ReadoutDataManager extends Driver {
     public static final void setReadoutWindow(int nanoseconds) {
         readoutWindow = nanoseconds;
     }
+    
+    /**
+     * Sets the readout and trigger drivers which the data manager
+     * runs when it runs them on its own threads. Each driver is
+     * named either by its name in the steering file or by the simple
+     * name of its class. Readout drivers which are defined in the
+     * steering file but not named here are not run by the data
+     * manager.
+     * @param names - The names of the drivers.
+     */
+    public static final void setScheduledDrivers(String[] names) {
+        scheduledDriverNames.clear();
+        scheduledDriverNames.addAll(Arrays.asList(names));
+    }
+    
+    /**
+     * Sets the number of threads on which the data manager runs the
+     * readout drivers. If this is zero, which is the default, the
+     * readout drivers are run serially by the LCSim driver chain.
+     * <br/><br/>
+     * Otherwise, the data manager runs the readout and trigger
+     * drivers named by {@link #setScheduledDrivers(String[])} itself
+     * at the start of each time step, concurrently where their
+     * dependencies allow. These drivers must be defined in the
+     * steering file, in an order in which they may be started, but
+     * must not be listed among the drivers to execute. Every
+     * collection which a driver reads must be declared as one of its
+     * dependencies.
+     * @param count - The number of threads.
+     */
+    public static final void setThreads(int count) {
+        if(count < 0) {
+            throw new IllegalArgumentException("Error: The number of threads may not be negative.");
+        }
+        threads = count;
+    }
 }
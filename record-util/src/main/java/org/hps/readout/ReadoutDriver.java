@@ -5,6 +5,8 @@ import java.util.HashSet;
 import java.util.Set;
 
 import org.hps.readout.util.collection.TriggeredLCIOData;
+import org.lcsim.event.EventHeader;
+import org.lcsim.geometry.Detector;
 import org.lcsim.geometry.IDDecoder;
 import org.lcsim.util.Driver;
 
@@ -98,6 +100,12 @@ import org.lcsim.util.Driver;
  * org.hps.readout.ReadoutDataManager#checkCollectionStatus(String, double)
  * ReadoutDataManager.checkCollectionStatus(String, double)} for the
  * appropriate collection.<br/><br/>
+ * Readout drivers may instead be run by the data manager, which
+ * runs drivers that do not depend on each other's output on separate
+ * threads. See {@link
+ * org.hps.readout.ReadoutDataManager#setThreads(int)
+ * ReadoutDataManager.setThreads(int)}. A driver run this way must
+ * not modify state shared with other drivers while processing.
  */
 public abstract class ReadoutDriver extends Driver {
     /**
@@ -272,4 +280,41 @@ public abstract class ReadoutDriver extends Driver {
     public void setReadoutWindowBefore(double value) throws UnsupportedOperationException {
         readoutWindowBefore = value;
     }
+    
+    /**
+     * Calls {@link org.lcsim.util.Driver#startOfData() startOfData()}
+     * when the driver is run by the data manager.
+     */
+    final void scheduledStartOfData() {
+        startOfData();
+    }
+    
+    /**
+     * Calls {@link
+     * org.lcsim.util.Driver#detectorChanged(Detector)
+     * detectorChanged(Detector)} when the driver is run by the data
+     * manager.
+     * @param detector - The new detector.
+     */
+    final void scheduledDetectorChanged(Detector detector) {
+        detectorChanged(detector);
+    }
+    
+    /**
+     * Calls {@link org.lcsim.util.Driver#process(EventHeader)
+     * process(EventHeader)} when the driver is run by the data
+     * manager.
+     * @param event - The current event.
+     */
+    final void scheduledProcess(EventHeader event) {
+        process(event);
+    }
+    
+    /**
+     * Calls {@link org.lcsim.util.Driver#endOfData() endOfData()}
+     * when the driver is run by the data manager.
+     */
+    final void scheduledEndOfData() {
+        endOfData();
+    }
 }
@@ -0,0 +1,287 @@
+package org.hps.readout;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.hps.readout.util.TriggerTime;
+import org.lcsim.event.EventHeader;
+import org.lcsim.geometry.Detector;
+
+/**
+ * Class <code>ReadoutDriverScheduler</code> runs the {@link
+ * org.hps.readout.ReadoutDriver ReadoutDriver} objects registered
+ * with the {@link org.hps.readout.ReadoutDataManager
+ * ReadoutDataManager} on a pool of worker threads, in place of the
+ * serial LCSim driver chain.
+ * <br/><br/>
+ * On each simulation time step, the drivers are run in dependency
+ * levels. A driver is placed one level after the latest level of
+ * any driver that produces one of its input collections, so all of
+ * the drivers in a level depend only on the output of earlier levels
+ * and may be run concurrently. Each level is completed before the
+ * next is started.
+ * <br/><br/>
+ * Triggers sent by trigger drivers while a level is running are held
+ * separately for each driver, and are added to the trigger queue in
+ * the order in which the drivers were registered once the level has
+ * completed. The trigger queue is thus always built in the same way
+ * regardless of the order in which the threads finish.
+ * <br/><br/>
+ * The LCSim lifecycle methods of scheduled drivers are called by the
+ * scheduler in the order in which the drivers were registered, which
+ * is the order in which they are defined in the steering file.
+ */
+final class ReadoutDriverScheduler {
+    /**
+     * The scheduled drivers in the order in which they were
+     * registered.
+     */
+    private final List<ReadoutDriver> drivers;
+    /**
+     * The pool of worker threads.
+     */
+    private final ExecutorService executor;
+    /**
+     * The drivers grouped by dependency level. This is built on the
+     * first time step, once all drivers have declared their
+     * dependencies and collections.
+     */
+    private List<List<ReadoutDriver>> levels = null;
+    
+    private static final Logger logger = Logger.getLogger(ReadoutDriverScheduler.class.getSimpleName());
+    
+    /**
+     * Instantiates a scheduler for the specified drivers.
+     * @param drivers - The drivers to schedule, in the order in
+     * which they were registered.
+     * @param threads - The number of worker threads.
+     */
+    ReadoutDriverScheduler(List<ReadoutDriver> drivers, int threads) {
+        if(threads < 1) {
+            throw new IllegalArgumentException("Error: The readout scheduler requires at least one thread.");
+        }
+        this.drivers = new ArrayList<ReadoutDriver>(drivers);
+        final AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ReadoutDriverScheduler-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+    
+    /**
+     * Calls the start of data method of every scheduled driver.
+     */
+    void startOfData() {
+        for(ReadoutDriver driver : drivers) {
+            driver.scheduledStartOfData();
+        }
+    }
+    
+    /**
+     * Notifies every scheduled driver of a detector change.
+     * @param detector - The new detector.
+     */
+    void detectorChanged(Detector detector) {
+        for(ReadoutDriver driver : drivers) {
+            driver.scheduledDetectorChanged(detector);
+        }
+    }
+    
+    /**
+     * Calls the end of data method of every scheduled driver, and
+     * stops the worker threads.
+     */
+    void endOfData() {
+        try {
+            for(ReadoutDriver driver : drivers) {
+                driver.scheduledEndOfData();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    /**
+     * Gets the scheduled drivers grouped by dependency level.
+     * @return Returns a {@link java.util.List List} of levels, each
+     * containing the drivers of that level in the order in which
+     * they were registered.
+     */
+    List<List<ReadoutDriver>> getLevels() {
+        if(levels == null) {
+            levels = buildLevels();
+        }
+        return levels;
+    }
+    
+    /**
+     * Runs all scheduled drivers for the current simulation time
+     * step.
+     * @param event - The current LCSim event.
+     */
+    void process(EventHeader event) {
+        for(List<ReadoutDriver> level : getLevels()) {
+            ReadoutDataManager.queueTriggers(runLevel(level, event));
+        }
+    }
+    
+    /**
+     * Runs the drivers of one dependency level for the current time
+     * step and collects the triggers that they send.
+     * @param level - The drivers of the level.
+     * @param event - The current LCSim event.
+     * @return Returns the triggers sent by the drivers, in the order
+     * of the drivers within the level.
+     */
+    List<TriggerTime> runLevel(List<ReadoutDriver> level, final EventHeader event) {
+        // A level with only one driver is simply run on the current
+        // thread.
+        if(level.size() == 1) {
+            return runDriver(level.get(0), event);
+        }
+        
+        // Otherwise, run each driver in the level as its own task and
+        // wait for all of them to complete.
+        List<Callable<List<TriggerTime>>> tasks = new ArrayList<Callable<List<TriggerTime>>>(level.size());
+        for(final ReadoutDriver driver : level) {
+            tasks.add(new Callable<List<TriggerTime>>() {
+                @Override
+                public List<TriggerTime> call() {
+                    return runDriver(driver, event);
+                }
+            });
+        }
+        List<Future<List<TriggerTime>>> results;
+        try {
+            results = executor.invokeAll(tasks);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Error: Interrupted while running readout drivers.", e);
+        }
+        
+        // Collect the triggers from each driver in the order of the
+        // drivers within the level.
+        List<TriggerTime> triggers = new ArrayList<TriggerTime>(0);
+        for(Future<List<TriggerTime>> result : results) {
+            try {
+                triggers.addAll(result.get());
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Error: Interrupted while running readout drivers.", e);
+            } catch(ExecutionException e) {
+                if(e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        return triggers;
+    }
+    
+    /**
+     * Runs a driver for the current time step and collects any
+     * triggers that it sends.
+     * @param driver - The driver.
+     * @param event - The current LCSim event.
+     * @return Returns the triggers sent by the driver.
+     */
+    private static List<TriggerTime> runDriver(ReadoutDriver driver, EventHeader event) {
+        List<TriggerTime> triggers = new ArrayList<TriggerTime>(0);
+        ReadoutDataManager.captureTriggers(triggers);
+        try {
+            driver.scheduledProcess(event);
+        } finally {
+            ReadoutDataManager.captureTriggers(null);
+        }
+        return triggers;
+    }
+    
+    /**
+     * Groups the scheduled drivers by dependency level.
+     * @return Returns the drivers grouped by dependency level.
+     */
+    private List<List<ReadoutDriver>> buildLevels() {
+        // Find the level of each driver.
+        Map<ReadoutDriver, Integer> levelMap = new HashMap<ReadoutDriver, Integer>();
+        int maxLevel = -1;
+        for(ReadoutDriver driver : drivers) {
+            maxLevel = Math.max(maxLevel, getLevel(driver, levelMap, new HashSet<ReadoutDriver>()));
+        }
+        
+        // Group the drivers by level, retaining the registration
+        // order within each level.
+        List<List<ReadoutDriver>> levelList = new ArrayList<List<ReadoutDriver>>(maxLevel + 1);
+        for(int i = 0; i <= maxLevel; i++) {
+            levelList.add(new ArrayList<ReadoutDriver>());
+        }
+        for(ReadoutDriver driver : drivers) {
+            levelList.get(levelMap.get(driver)).add(driver);
+        }
+        
+        // Log the schedule.
+        StringBuffer scheduleBuffer = new StringBuffer("Readout driver schedule:");
+        for(int i = 0; i < levelList.size(); i++) {
+            scheduleBuffer.append(String.format("%n\tLevel %d ::", i));
+            for(ReadoutDriver driver : levelList.get(i)) {
+                scheduleBuffer.append(" " + driver.getClass().getSimpleName());
+            }
+        }
+        logger.config(scheduleBuffer.toString());
+        
+        return Collections.unmodifiableList(levelList);
+    }
+    
+    /**
+     * Gets the dependency level of a driver. Drivers with no input
+     * collections produced by other scheduled drivers are at level
+     * <code>0</code>.
+     * @param driver - The driver.
+     * @param levelMap - The levels of the drivers that have already
+     * been processed.
+     * @param dependents - The drivers whose level depends on that of
+     * this driver.
+     * @return Returns the level of the driver.
+     * @throws IllegalStateException Occurs if the driver depends on
+     * its own output.
+     */
+    private int getLevel(ReadoutDriver driver, Map<ReadoutDriver, Integer> levelMap, Set<ReadoutDriver> dependents) {
+        Integer level = levelMap.get(driver);
+        if(level != null) {
+            return level.intValue();
+        }
+        if(!dependents.add(driver)) {
+            throw new IllegalStateException("Error: Driver \"" + driver.getClass().getSimpleName() + "\" depends on its own output.");
+        }
+        
+        // The driver must run after the producers of all of its
+        // input collections.
+        int driverLevel = 0;
+        for(String dependency : driver.getDependencies()) {
+            ReadoutDriver producer = ReadoutDataManager.getProductionDriver(dependency);
+            if(producer != null && producer != driver && drivers.contains(producer)) {
+                driverLevel = Math.max(driverLevel, getLevel(producer, levelMap, dependents) + 1);
+            }
+        }
+        
+        dependents.remove(driver);
+        levelMap.put(driver, driverLevel);
+        return driverLevel;
+    }
+}
@@ -0,0 +1,126 @@
+package org.hps.readout.util;
+
+/**
+ * Class <code>ChannelRingBuffer</code> is a framework for defining a
+ * set of ring buffers, one for each of a fixed number of channels,
+ * which all step forward together. Channels are identified by a
+ * dense index from <code>0</code> to <code>getChannelCount() -
+ * 1</code> rather than by a channel ID.
+ * <br/><br/>
+ * Subclasses store the buffer values in a single primitive array in
+ * which the values of all channels for a given buffer cell are
+ * contiguous. This allows all channels to be processed on each clock
+ * cycle without boxing values or looking up a buffer per channel,
+ * and allows the buffer to step forward without touching the stored
+ * values at all.
+ */
+public abstract class ChannelRingBuffer {
+    /**
+     * The number of channels in the buffer.
+     */
+    private final int channels;
+    /**
+     * The number of cells in the buffer of each channel.
+     */
+    private final int length;
+    /**
+     * The current cell within the buffer.
+     */
+    private int index = 0;
+    
+    /**
+     * Instantiates a channel ring buffer of the indicated size.
+     * @param channels - The number of channels.
+     * @param length - The number of cells in the buffer of each
+     * channel.
+     */
+    protected ChannelRingBuffer(int channels, int length) {
+        if(channels < 0 || length <= 0) {
+            throw new IllegalArgumentException("Error: Invalid buffer size " + channels + " x " + length + ".");
+        }
+        this.channels = channels;
+        this.length = length;
+    }
+    
+    /**
+     * Gets the number of channels in the buffer.
+     * @return Returns the number of channels.
+     */
+    public int getChannelCount() {
+        return channels;
+    }
+    
+    /**
+     * Gets the size of the buffer of each channel.
+     * @return Returns the number of cells in the buffer of each
+     * channel.
+     */
+    public int size() {
+        return length;
+    }
+    
+    /**
+     * Steps the buffers of all channels forward by one step.
+     */
+    public void stepForward() {
+        // Increment the current index position.
+        index++;
+        
+        // If the end of the buffer has been reached, wrap around to
+        // the front.
+        if(index == length) {
+            index = 0;
+        }
+    }
+    
+    /**
+     * Gets the position in the value array of the current cell of
+     * the first channel.
+     * @return Returns the array position.
+     */
+    protected final int getCellOffset() {
+        return index * channels;
+    }
+    
+    /**
+     * Gets the position in the value array of the specified buffer
+     * cell of the specified channel.
+     * @param channel - The index of the channel.
+     * @param position - The position of the target value relative
+     * to the current value. A value of <code>0</code> represents the
+     * current position.
+     * @return Returns the array position.
+     * @throws ArrayIndexOutOfBoundsException Occurs if either the
+     * channel index or buffer position is not valid.
+     */
+    protected final int getOffset(int channel, int position) throws ArrayIndexOutOfBoundsException {
+        validateChannel(channel);
+        if(position >= length || position <= -length) {
+            throw new ArrayIndexOutOfBoundsException("Array index " + position + " is invalid for buffer size " + length + ".");
+        }
+        
+        // Wrap the cell around the end of the buffer in either
+        // direction.
+        int cell = index + position;
+        if(cell >= length) {
+            cell -= length;
+        } else if(cell < 0) {
+            cell += length;
+        }
+        return cell * channels + channel;
+    }
+    
+    /**
+     * Produces an {@link java.lang.ArrayIndexOutOfBoundsException
+     * ArrayIndexOutOfBoundsException} exception if the requested
+     * channel index is not valid.
+     * @param channel - The index of the channel.
+     * @throws ArrayIndexOutOfBoundsException Occurs if the specified
+     * index is negative or not less than <code>getChannelCount()</code>.
+     */
+    protected final void validateChannel(int channel) throws ArrayIndexOutOfBoundsException {
+        if(channel < 0 || channel >= channels) {
+            throw new ArrayIndexOutOfBoundsException("Channel index " + channel + " is invalid for " + channels + " channels.");
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.hps.readout.util;
+
+import java.util.Arrays;
+
+/**
+ * Class <code>IntegerChannelRingBuffer</code> is an implementation
+ * of {@link org.hps.readout.util.ChannelRingBuffer ChannelRingBuffer}
+ * for integers. It serves the same purpose as one {@link
+ * org.hps.readout.util.IntegerRingBuffer IntegerRingBuffer} for each
+ * channel, but stores the values of all channels as primitives in a
+ * single array.
+ */
+public class IntegerChannelRingBuffer extends ChannelRingBuffer {
+    /**
+     * The buffer values of all channels.
+     */
+    private final int[] values;
+    
+    /**
+     * Instantiates an <code>IntegerChannelRingBuffer</code> of the
+     * specified size and initializes all values to zero.
+     * @param channels - The number of channels.
+     * @param length - The number of cells in the buffer of each
+     * channel.
+     */
+    public IntegerChannelRingBuffer(int channels, int length) {
+        super(channels, length);
+        values = new int[channels * length];
+    }
+    
+    /**
+     * Adds a value to the specified buffer cell of a channel.
+     * @param channel - The index of the channel.
+     * @param position - The position of the target value relative
+     * to the current value. A value of <code>0</code> represents the
+     * current position.
+     * @param value - The value to add to the cell.
+     */
+    public void addToCell(int channel, int position, int value) {
+        values[getOffset(channel, position)] += value;
+    }
+    
+    /**
+     * Clears the current cell of all channels.
+     */
+    public void clearValue() {
+        int offset = getCellOffset();
+        Arrays.fill(values, offset, offset + getChannelCount(), 0);
+    }
+    
+    /**
+     * Gets the current value of a channel.
+     * @param channel - The index of the channel.
+     * @return Returns the current value.
+     */
+    public int getValue(int channel) {
+        return values[getOffset(channel, 0)];
+    }
+    
+    /**
+     * Gets the value in the specified buffer cell of a channel.
+     * @param channel - The index of the channel.
+     * @param position - The position of the target value relative
+     * to the current value. A value of <code>0</code> represents the
+     * current position.
+     * @return Returns the value.
+     */
+    public int getValue(int channel, int position) {
+        return values[getOffset(channel, position)];
+    }
+    
+    /**
+     * Sets all buffer cells of a channel to the specified value.
+     * @param channel - The index of the channel.
+     * @param value - The value.
+     */
+    public void setAll(int channel, int value) {
+        validateChannel(channel);
+        for(int i = channel; i < values.length; i += getChannelCount()) {
+            values[i] = value;
+        }
+    }
+    
+    /**
+     * Sets the current value of a channel.
+     * @param channel - The index of the channel.
+     * @param value - The new value.
+     */
+    public void setValue(int channel, int value) {
+        values[getOffset(channel, 0)] = value;
+    }
+    
+    /**
+     * Sets the value in the specified buffer cell of a channel.
+     * @param channel - The index of the channel.
+     * @param position - The position of the target value relative
+     * to the current value. A value of <code>0</code> represents the
+     * current position.
+     * @param value - The new value.
+     */
+    public void setValue(int channel, int position, int value) {
+        values[getOffset(channel, position)] = value;
+    }
+}
@@ -0,0 +1,269 @@
+package org.hps.readout.util;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Class <code>TimedDataBuffer</code> stores a sequence of {@link
+ * org.hps.readout.util.TimedList TimedList} objects ordered by their
+ * simulation time. The lists are kept in a circular array which
+ * grows as needed, so that data may be appended at the end and the
+ * oldest data removed from the front without allocating any new
+ * nodes.
+ * <br/><br/>
+ * Because the lists are always in time order, the data within a time
+ * range can be located with a binary search rather than a walk over
+ * the entire buffer, and all data older than a given time may be
+ * removed in a single operation with {@link
+ * org.hps.readout.util.TimedDataBuffer#pruneBefore(double)
+ * pruneBefore(double)}. Data is normally added in time order; lists
+ * which arrive out of order are inserted after all lists with a time
+ * less than or equal to their own.
+ * 
+ * @param <T> - The object type of the stored data.
+ */
+public class TimedDataBuffer<T> extends AbstractCollection<TimedList<T>> {
+    /**
+     * The default initial capacity of the buffer. This must be a
+     * power of two.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+    
+    /**
+     * The circular array of lists. Its length is always a power of
+     * two so that positions may be wrapped with a mask.
+     */
+    private TimedList<T>[] lists;
+    
+    /**
+     * The array position of the oldest list in the buffer.
+     */
+    private int head = 0;
+    
+    /**
+     * The number of lists in the buffer.
+     */
+    private int size = 0;
+    
+    /**
+     * Instantiates a new, empty <code>TimedDataBuffer</code>.
+     */
+    public TimedDataBuffer() {
+        lists = newArray(DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * Adds a list of data to the buffer at the position corresponding
+     * to its time.
+     * @param list - The list to add.
+     * @return Always returns <code>true</code>.
+     */
+    @Override
+    public boolean add(TimedList<T> list) {
+        // Expand the array if it is full.
+        if(size == lists.length) {
+            grow();
+        }
+        
+        // Find the insertion point. In the usual case the new list
+        // is the most recent, and it is simply appended.
+        int position = size;
+        if(size != 0 && getList(size - 1).getTime() > list.getTime()) {
+            position = upperBound(list.getTime());
+            for(int i = size; i > position; i--) {
+                lists[(head + i) & (lists.length - 1)] = lists[(head + i - 1) & (lists.length - 1)];
+            }
+        }
+        
+        // Store the list.
+        lists[(head + position) & (lists.length - 1)] = list;
+        size++;
+        return true;
+    }
+    
+    /**
+     * Adds a set of data objects to the buffer at the time specified.
+     * @param time - The time in nanoseconds at which the data
+     * occurred.
+     * @param data - The data to add.
+     */
+    public void add(double time, Collection<? extends T> data) {
+        add(new TimedList<T>(time, data));
+    }
+    
+    @Override
+    public void clear() {
+        pruneBefore(Double.POSITIVE_INFINITY);
+    }
+    
+    /**
+     * Gets the oldest list in the buffer.
+     * @return Returns the oldest list.
+     * @throws NoSuchElementException Occurs if the buffer is empty.
+     */
+    public TimedList<T> getFirst() {
+        if(size == 0) {
+            throw new NoSuchElementException();
+        }
+        return getList(0);
+    }
+    
+    /**
+     * Gets the most recent list in the buffer.
+     * @return Returns the most recent list.
+     * @throws NoSuchElementException Occurs if the buffer is empty.
+     */
+    public TimedList<T> getLast() {
+        if(size == 0) {
+            throw new NoSuchElementException();
+        }
+        return getList(size - 1);
+    }
+    
+    /**
+     * Gets all data objects with a time within the specified range.
+     * @param startTime - The (inclusive) start of the time range.
+     * @param endTime - The (exclusive) end of the time range.
+     * @return Returns the data objects in time order in a {@link
+     * java.util.List List}.
+     */
+    public List<T> getRange(double startTime, double endTime) {
+        // Locate the first list in the time range, and then count
+        // the objects in range so that the output list need only be
+        // allocated once.
+        int first = lowerBound(startTime);
+        int last = first;
+        int count = 0;
+        while(last < size && getList(last).getTime() < endTime) {
+            count += getList(last).size();
+            last++;
+        }
+        
+        // Copy the data objects into the output list.
+        List<T> outputList = new ArrayList<T>(count);
+        for(int i = first; i < last; i++) {
+            outputList.addAll(getList(i));
+        }
+        return outputList;
+    }
+    
+    @Override
+    public Iterator<TimedList<T>> iterator() {
+        return new Iterator<TimedList<T>>() {
+            private int position = 0;
+            
+            @Override
+            public boolean hasNext() {
+                return position < size;
+            }
+            
+            @Override
+            public TimedList<T> next() {
+                if(position >= size) {
+                    throw new NoSuchElementException();
+                }
+                return getList(position++);
+            }
+        };
+    }
+    
+    /**
+     * Removes all lists with a time before the specified time.
+     * @param time - The time in nanoseconds before which data is
+     * removed.
+     * @return Returns the number of lists removed.
+     */
+    public int pruneBefore(double time) {
+        int count = lowerBound(time);
+        for(int i = 0; i < count; i++) {
+            lists[(head + i) & (lists.length - 1)] = null;
+        }
+        head = (head + count) & (lists.length - 1);
+        size -= count;
+        return count;
+    }
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Gets the list at the specified position, where position
+     * <code>0</code> is the oldest list in the buffer.
+     * @param position - The position of the list.
+     * @return Returns the list.
+     */
+    private TimedList<T> getList(int position) {
+        return lists[(head + position) & (lists.length - 1)];
+    }
+    
+    /**
+     * Doubles the capacity of the array, moving the oldest list to
+     * the start of the new array.
+     */
+    private void grow() {
+        TimedList<T>[] newLists = newArray(lists.length * 2);
+        for(int i = 0; i < size; i++) {
+            newLists[i] = getList(i);
+        }
+        lists = newLists;
+        head = 0;
+    }
+    
+    /**
+     * Finds the position of the first list with a time greater than
+     * or equal to the specified time.
+     * @param time - The time.
+     * @return Returns the position of the list, or the size of the
+     * buffer if there is no such list.
+     */
+    private int lowerBound(double time) {
+        int low = 0;
+        int high = size;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(getList(mid).getTime() < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Finds the position of the first list with a time strictly
+     * greater than the specified time.
+     * @param time - The time.
+     * @return Returns the position of the list, or the size of the
+     * buffer if there is no such list.
+     */
+    private int upperBound(double time) {
+        int low = 0;
+        int high = size;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(getList(mid).getTime() <= time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Creates a new array of lists.
+     * @param length - The length of the array.
+     * @return Returns the new array.
+     */
+    @SuppressWarnings("unchecked")
+    private static final <T> TimedList<T>[] newArray(int length) {
+        return (TimedList<T>[]) new TimedList<?>[length];
+    }
+}
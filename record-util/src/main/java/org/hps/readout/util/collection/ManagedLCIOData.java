@@ -1,25 +1,24 @@
 package org.hps.readout.util.collection;
 
-import java.util.LinkedList;
-
-import org.hps.readout.util.TimedList;
+import org.hps.readout.util.TimedDataBuffer;
 
 /**
  * Class <code>ManagedLCIOData</code> represents the actual managed
  * data associated with a managed LCIO collection. It stores both the
- * collection parameters and also a list of data in the form of a
- * {@link org.hps.readout.util.TimedList TimedList}, where each entry
- * corresponds to the data present at a given time.
+ * collection parameters and also a time-ordered buffer of data in
+ * the form of {@link org.hps.readout.util.TimedList TimedList}
+ * objects, where each entry corresponds to the data present at a
+ * given time.
  * 
  * @param <T> - The object type of the data stored by the collection.
  */
-public class ManagedLCIOData<T> extends LCIOData<T, ManagedLCIOCollection<T>, LinkedList<TimedList<?>>> {
+public class ManagedLCIOData<T> extends LCIOData<T, ManagedLCIOCollection<T>, TimedDataBuffer<T>> {
     /**
-     * The collection data. Each entry in the data list represents a
-     * specific simulation time quantum, while the list itself holds
-     * the collection object data.
+     * The collection data. Each entry in the data buffer represents
+     * a specific simulation time quantum, while the list itself
+     * holds the collection object data.
      */
-    private final LinkedList<TimedList<?>> data;
+    private final TimedDataBuffer<T> data;
     
     /**
      * Creates a new <code>ManagedLCIOData</code> based on the
@@ -29,11 +28,11 @@ public class ManagedLCIOData<T> extends LCIOData<T, ManagedLCIOCollection<T>, Li
      */
     public ManagedLCIOData(ManagedLCIOCollection<T> params) {
         super(params);
-        this.data = new LinkedList<TimedList<?>>();
+        this.data = new TimedDataBuffer<T>();
     }
     
     @Override
-    public LinkedList<TimedList<?>> getData() {
+    public TimedDataBuffer<T> getData() {
         return data;
     }
 }
@@ -25,4 +25,14 @@ public interface LCSimEventBuilder extends ConditionsListener {
      * @param evioEvent the input <code>EvioEvent</code>
      */
     void readEvioEvent(EvioEvent evioEvent);
+
+    /**
+     * Get the conditions tables which the builder reads when the conditions change.
+     * <p>
+     * The builder can be registered with these tables so that it is not set up again on a run change which did not
+     * change any of them.
+     *
+     * @return the conditions table names or <code>null</code> to be notified of every change
+     */
+    String[] getConditionsTableNames();
 }
@@ -0,0 +1,324 @@
+package org.hps.record.evio;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jlab.coda.jevio.EvioEvent;
+import org.jlab.coda.jevio.EvioException;
+import org.jlab.coda.jevio.EvioReader;
+
+/**
+ * Index of the events in an EVIO file which maps event numbers to positions in the file.
+ * <p>
+ * The index stores the event number from the EVENT ID bank and the header tag of every event, in file order. The
+ * position of an event is its zero-based index in the file, which can be passed to a memory mapped
+ * <code>EvioReader</code> to read it directly.
+ * <p>
+ * Since building the index requires parsing every event, it is cached in a sidecar file next to the EVIO file with
+ * the {@link #INDEX_EXTENSION} extension. The cached index is only used if the size and modification time of the
+ * EVIO file have not changed.
+ */
+public final class EvioFileIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(EvioFileIndex.class.getPackage().getName());
+
+    /**
+     * Extension of the sidecar index file.
+     */
+    public static final String INDEX_EXTENSION = ".idx";
+
+    /**
+     * Magic number at the start of an index file.
+     */
+    private static final int MAGIC = 0x48505349; // "HPSI"
+
+    /**
+     * Version of the index file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Event number for events without an EVENT ID bank, such as control events.
+     */
+    public static final int NO_EVENT_NUMBER = -1;
+
+    /**
+     * Length of the EVIO file when the index was built.
+     */
+    private final long fileLength;
+
+    /**
+     * Modification time of the EVIO file when the index was built.
+     */
+    private final long fileLastModified;
+
+    /**
+     * Event numbers by file position.
+     */
+    private final int[] eventNumbers;
+
+    /**
+     * Event tags by file position.
+     */
+    private final int[] tags;
+
+    /**
+     * Positions of events with an event number, sorted by event number.
+     */
+    private final int[] sortedPositions;
+
+    /**
+     * Event numbers in the same order as {@link #sortedPositions}.
+     */
+    private final int[] sortedEventNumbers;
+
+    private EvioFileIndex(final long fileLength, final long fileLastModified, final int[] eventNumbers,
+            final int[] tags) {
+        this.fileLength = fileLength;
+        this.fileLastModified = fileLastModified;
+        this.eventNumbers = eventNumbers;
+        this.tags = tags;
+
+        // Sort the positions by event number so lookups are a binary search.
+        int count = 0;
+        final long[] keys = new long[eventNumbers.length];
+        for (int position = 0; position < eventNumbers.length; position++) {
+            if (eventNumbers[position] != NO_EVENT_NUMBER) {
+                keys[count++] = ((long) eventNumbers[position] << 32) | position;
+            }
+        }
+        Arrays.sort(keys, 0, count);
+        this.sortedPositions = new int[count];
+        this.sortedEventNumbers = new int[count];
+        for (int i = 0; i < count; i++) {
+            this.sortedEventNumbers[i] = (int) (keys[i] >> 32);
+            this.sortedPositions[i] = (int) keys[i];
+        }
+    }
+
+    /**
+     * Get the index for an EVIO file, loading it from the sidecar file if it is up to date or otherwise building it
+     * and writing the sidecar file.
+     *
+     * @param evioFile the EVIO file
+     * @return the index for the file
+     * @throws IOException if the EVIO file cannot be read
+     */
+    public static EvioFileIndex getIndex(final File evioFile) throws IOException {
+        final File indexFile = getIndexFile(evioFile);
+        if (indexFile.exists()) {
+            try {
+                final EvioFileIndex index = read(indexFile);
+                if (index.isValid(evioFile)) {
+                    LOGGER.config("loaded EVIO index " + indexFile.getPath() + " with " + index.size() + " events");
+                    return index;
+                }
+                LOGGER.info("EVIO index " + indexFile.getPath() + " is out of date and will be rebuilt");
+            } catch (final IOException e) {
+                LOGGER.log(Level.WARNING, "Error reading EVIO index " + indexFile.getPath(), e);
+            }
+        }
+        final EvioFileIndex index = build(evioFile);
+        try {
+            index.write(indexFile);
+        } catch (final IOException e) {
+            // The index is still usable for this job if the sidecar cannot be written, e.g. on a read-only disk.
+            LOGGER.log(Level.WARNING, "Error writing EVIO index " + indexFile.getPath(), e);
+        }
+        return index;
+    }
+
+    /**
+     * Get the sidecar index file for an EVIO file.
+     *
+     * @param evioFile the EVIO file
+     * @return the index file
+     */
+    public static File getIndexFile(final File evioFile) {
+        return new File(evioFile.getPath() + INDEX_EXTENSION);
+    }
+
+    /**
+     * Build the index by reading and parsing every event in an EVIO file.
+     *
+     * @param evioFile the EVIO file
+     * @return the new index
+     * @throws IOException if there is an error reading the file
+     */
+    public static EvioFileIndex build(final File evioFile) throws IOException {
+        LOGGER.info("building EVIO index for " + evioFile.getPath() + " ...");
+        final long fileLength = evioFile.length();
+        final long fileLastModified = evioFile.lastModified();
+        EvioReader reader = null;
+        try {
+            reader = EvioFileUtilities.open(evioFile, false);
+            final int eventCount = reader.getEventCount();
+            final int[] eventNumbers = new int[eventCount];
+            final int[] tags = new int[eventCount];
+            for (int position = 0; position < eventCount; position++) {
+                final EvioEvent evioEvent = reader.parseEvent(position + 1);
+                tags[position] = evioEvent.getHeader().getTag();
+                final int[] eventId = EvioEventUtilities.getEventIdData(evioEvent);
+                eventNumbers[position] = eventId != null ? eventId[0] : NO_EVENT_NUMBER;
+            }
+            LOGGER.info("built EVIO index for " + evioFile.getPath() + " with " + eventCount + " events");
+            return new EvioFileIndex(fileLength, fileLastModified, eventNumbers, tags);
+        } catch (final EvioException e) {
+            throw new IOException("Error building index for EVIO file " + evioFile.getPath(), e);
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Read an index from a file.
+     *
+     * @param indexFile the index file
+     * @return the index
+     * @throws IOException if there is an error reading the file or it is not a valid index
+     */
+    public static EvioFileIndex read(final File indexFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an EVIO index file: " + indexFile.getPath());
+            }
+            final int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported EVIO index version " + version + " in " + indexFile.getPath());
+            }
+            final long fileLength = in.readLong();
+            final long fileLastModified = in.readLong();
+            final int eventCount = in.readInt();
+            final int[] eventNumbers = new int[eventCount];
+            final int[] tags = new int[eventCount];
+            for (int position = 0; position < eventCount; position++) {
+                eventNumbers[position] = in.readInt();
+                tags[position] = in.readInt();
+            }
+            return new EvioFileIndex(fileLength, fileLastModified, eventNumbers, tags);
+        }
+    }
+
+    /**
+     * Write the index to a file.
+     * <p>
+     * The index is written to a temporary file which is then renamed, so concurrent jobs never see a partial index.
+     *
+     * @param indexFile the output file
+     * @throws IOException if there is an error writing the file
+     */
+    public void write(final File indexFile) throws IOException {
+        final File tmpFile = new File(indexFile.getPath() + ".tmp" + System.nanoTime());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(this.fileLength);
+            out.writeLong(this.fileLastModified);
+            out.writeInt(this.eventNumbers.length);
+            for (int position = 0; position < this.eventNumbers.length; position++) {
+                out.writeInt(this.eventNumbers[position]);
+                out.writeInt(this.tags[position]);
+            }
+        }
+        if (!tmpFile.renameTo(indexFile)) {
+            tmpFile.delete();
+            throw new IOException("Failed to rename " + tmpFile.getPath() + " to " + indexFile.getPath());
+        }
+        LOGGER.config("wrote EVIO index " + indexFile.getPath());
+    }
+
+    /**
+     * Return <code>true</code> if this index was built from the current version of an EVIO file.
+     *
+     * @param evioFile the EVIO file
+     * @return <code>true</code> if the index matches the file
+     */
+    public boolean isValid(final File evioFile) {
+        return evioFile.length() == this.fileLength && evioFile.lastModified() == this.fileLastModified;
+    }
+
+    /**
+     * Get the number of events in the file.
+     *
+     * @return the number of events
+     */
+    public int size() {
+        return this.eventNumbers.length;
+    }
+
+    /**
+     * Get the event number at a position.
+     *
+     * @param position the zero-based position in the file
+     * @return the event number or {@link #NO_EVENT_NUMBER} if the event does not have one
+     */
+    public int getEventNumber(final int position) {
+        return this.eventNumbers[position];
+    }
+
+    /**
+     * Get the event tag at a position.
+     *
+     * @param position the zero-based position in the file
+     * @return the event tag
+     */
+    public int getTag(final int position) {
+        return this.tags[position];
+    }
+
+    /**
+     * Find the position of an event number.
+     *
+     * @param eventNumber the event number
+     * @return the zero-based position of the first event with this number or -1 if it is not in the file
+     */
+    public int findPosition(final int eventNumber) {
+        int i = Arrays.binarySearch(this.sortedEventNumbers, eventNumber);
+        if (i < 0) {
+            return -1;
+        }
+        // Move to the first match in case of duplicates.
+        while (i > 0 && this.sortedEventNumbers[i - 1] == eventNumber) {
+            --i;
+        }
+        return this.sortedPositions[i];
+    }
+
+    /**
+     * Split the file into contiguous ranges of positions which can be processed independently.
+     * <p>
+     * Each range is given as a two element array with the inclusive start and exclusive end position.
+     *
+     * @param ranges the number of ranges
+     * @return the list of ranges which has fewer elements than requested if there are not enough events
+     */
+    public List<int[]> split(final int ranges) {
+        if (ranges < 1) {
+            throw new IllegalArgumentException("The number of ranges must be at least 1.");
+        }
+        final List<int[]> splits = new ArrayList<int[]>();
+        final int size = this.size();
+        final int n = Math.min(ranges, Math.max(size, 1));
+        for (int i = 0; i < n; i++) {
+            final int start = (int) ((long) size * i / n);
+            final int end = (int) ((long) size * (i + 1) / n);
+            if (end > start) {
+                splits.add(new int[] {start, end});
+            }
+        }
+        return splits;
+    }
+}
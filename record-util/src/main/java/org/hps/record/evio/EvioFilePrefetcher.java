@@ -0,0 +1,370 @@
+package org.hps.record.evio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jlab.coda.jevio.EvioException;
+import org.jlab.coda.jevio.EvioReader;
+
+/**
+ * Opens the EVIO files of a list ahead of time on a background thread, so a job does not stall on file open and the
+ * first block reads when it moves from one file to the next.
+ * <p>
+ * Up to {@link #getReadAhead()} files after the current one are memory mapped and loaded into memory in list order.
+ * The total size of the loaded files, including the current one, is kept under a memory budget; a file larger than
+ * the whole budget is loaded only once all the files before it have been released.
+ * <p>
+ * The time spent in {@link #next()} waiting for a file which is not ready yet is recorded as the stall time. A large
+ * stall time compared to the job time means the job was limited by I/O.
+ */
+public final class EvioFilePrefetcher {
+
+    private static final Logger LOGGER = Logger.getLogger(EvioFilePrefetcher.class.getPackage().getName());
+
+    /**
+     * Default number of files to read ahead.
+     */
+    public static final int DEFAULT_READ_AHEAD = 2;
+
+    /**
+     * Default memory budget in bytes.
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 4L * 1024 * 1024 * 1024;
+
+    /**
+     * A file which is being or has been loaded by the background thread.
+     */
+    private static final class PrefetchedFile {
+
+        private final File file;
+        private Future<EvioReader> future;
+        private volatile long reservedBytes = 0;
+
+        PrefetchedFile(final File file) {
+            this.file = file;
+        }
+    }
+
+    /**
+     * The list of files.
+     */
+    private final List<File> files;
+
+    /**
+     * The number of files to load ahead of the current one.
+     */
+    private final int readAhead;
+
+    /**
+     * The memory budget in bytes.
+     */
+    private final long memoryBudget;
+
+    /**
+     * The bytes of the memory budget which are in use.
+     */
+    private long reservedBytes = 0;
+
+    /**
+     * The files which have been submitted for loading and not yet returned by {@link #next()}.
+     */
+    private final Deque<PrefetchedFile> pending = new ArrayDeque<PrefetchedFile>();
+
+    /**
+     * The file which was last returned by {@link #next()}.
+     */
+    private PrefetchedFile current = null;
+
+    /**
+     * The index of the next file to submit for loading.
+     */
+    private int nextFileIndex = 0;
+
+    /**
+     * The background thread which loads the files in order.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Total time in nanoseconds spent waiting for files in {@link #next()}.
+     */
+    private long stallNanos = 0;
+
+    /**
+     * Total time in nanoseconds spent loading files on the background thread.
+     */
+    private volatile long loadNanos = 0;
+
+    /**
+     * The number of files returned by {@link #next()}.
+     */
+    private int filesOpened = 0;
+
+    /**
+     * Flag set when the prefetcher has been closed.
+     */
+    private boolean closed = false;
+
+    /**
+     * Create a prefetcher with the default read ahead and memory budget.
+     *
+     * @param files the EVIO files in processing order
+     */
+    public EvioFilePrefetcher(final List<File> files) {
+        this(files, DEFAULT_READ_AHEAD, DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * Create a prefetcher.
+     *
+     * @param files the EVIO files in processing order
+     * @param readAhead the number of files to load ahead of the current one
+     * @param memoryBudget the maximum number of bytes of loaded files
+     */
+    public EvioFilePrefetcher(final List<File> files, final int readAhead, final long memoryBudget) {
+        if (readAhead < 1) {
+            throw new IllegalArgumentException("The read ahead must be at least 1.");
+        }
+        if (memoryBudget < 1) {
+            throw new IllegalArgumentException("The memory budget must be positive.");
+        }
+        this.files = new ArrayList<File>(files);
+        this.readAhead = readAhead;
+        this.memoryBudget = memoryBudget;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "EvioFilePrefetcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        LOGGER.config("EVIO prefetcher created for " + this.files.size() + " files with read ahead " + readAhead
+                + " and memory budget " + memoryBudget / (1024 * 1024) + " MB");
+        this.submit();
+    }
+
+    /**
+     * Get the reader for the next file, waiting for it to be loaded if necessary.
+     * <p>
+     * This releases the memory of the file returned by the previous call, so its reader must not be used any more.
+     *
+     * @return the reader for the next file or <code>null</code> if there are no more files
+     * @throws IOException if the next file could not be opened
+     */
+    public EvioReader next() throws IOException {
+        this.releaseCurrent();
+        final PrefetchedFile next = this.pending.poll();
+        if (next == null) {
+            return null;
+        }
+        this.submit();
+        final long start = System.nanoTime();
+        final EvioReader reader;
+        try {
+            reader = next.future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for EVIO file " + next.file.getPath());
+        } catch (final ExecutionException e) {
+            throw new IOException("Error opening EVIO file " + next.file.getPath(), e.getCause());
+        } finally {
+            final long stall = System.nanoTime() - start;
+            this.stallNanos += stall;
+            LOGGER.fine("waited " + TimeUnit.NANOSECONDS.toMillis(stall) + " ms for EVIO file "
+                    + next.file.getPath());
+        }
+        this.current = next;
+        ++this.filesOpened;
+        LOGGER.info("opened prefetched EVIO file " + next.file.getPath());
+        return reader;
+    }
+
+    /**
+     * Get the file which was last returned by {@link #next()}.
+     *
+     * @return the current file or <code>null</code> if there is none
+     */
+    public File getCurrentFile() {
+        return this.current != null ? this.current.file : null;
+    }
+
+    /**
+     * Return <code>true</code> if there are files which have not been returned by {@link #next()}.
+     *
+     * @return <code>true</code> if there are more files
+     */
+    public boolean hasNext() {
+        return !this.pending.isEmpty();
+    }
+
+    /**
+     * Get the number of files loaded ahead of the current one.
+     *
+     * @return the read ahead
+     */
+    public int getReadAhead() {
+        return this.readAhead;
+    }
+
+    /**
+     * Get the total time spent waiting for files to be loaded.
+     *
+     * @return the stall time in milliseconds
+     */
+    public long getStallTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.stallNanos);
+    }
+
+    /**
+     * Get the total time spent loading files on the background thread.
+     *
+     * @return the load time in milliseconds
+     */
+    public long getLoadTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.loadNanos);
+    }
+
+    /**
+     * Get the number of files which have been returned by {@link #next()}.
+     *
+     * @return the number of files opened
+     */
+    public int getFilesOpened() {
+        return this.filesOpened;
+    }
+
+    /**
+     * Stop loading files and release all the memory.
+     */
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.releaseCurrent();
+        this.executor.shutdownNow();
+        for (final PrefetchedFile prefetched : this.pending) {
+            prefetched.future.cancel(true);
+            if (prefetched.future.isDone() && !prefetched.future.isCancelled()) {
+                try {
+                    prefetched.future.get().close();
+                } catch (final Exception e) {
+                    LOGGER.log(Level.FINE, "error closing prefetched EVIO file " + prefetched.file.getPath(), e);
+                }
+            }
+            this.release(prefetched.reservedBytes);
+            prefetched.reservedBytes = 0;
+        }
+        this.pending.clear();
+        LOGGER.info("EVIO prefetcher opened " + this.filesOpened + " files; stalled "
+                + this.getStallTimeMillis() / 1000. + " s waiting for I/O; loaded files for "
+                + this.getLoadTimeMillis() / 1000. + " s in background");
+    }
+
+    /**
+     * Submit files for loading until the read ahead window is full.
+     */
+    private void submit() {
+        while (this.pending.size() < this.readAhead && this.nextFileIndex < this.files.size()) {
+            final PrefetchedFile prefetched = new PrefetchedFile(this.files.get(this.nextFileIndex++));
+            prefetched.future = this.executor.submit(new Callable<EvioReader>() {
+                @Override
+                public EvioReader call() throws Exception {
+                    return load(prefetched);
+                }
+            });
+            this.pending.add(prefetched);
+        }
+    }
+
+    /**
+     * Load a file into memory and open a reader on it. This runs on the background thread.
+     *
+     * @param prefetched the file to load
+     * @return the reader for the file
+     * @throws Exception if the file could not be loaded or opened
+     */
+    private EvioReader load(final PrefetchedFile prefetched) throws Exception {
+        final File file = prefetched.file;
+        final long length = file.length();
+
+        // Files too big for a single mapping are left to the reader which maps them in pieces.
+        if (length > Integer.MAX_VALUE) {
+            LOGGER.info("EVIO file " + file.getPath() + " is too large to preload and will be opened directly");
+            return EvioFileUtilities.open(file, false);
+        }
+
+        final long bytes = Math.min(length, this.memoryBudget);
+        this.reserve(bytes);
+        prefetched.reservedBytes = bytes;
+        try {
+            final long start = System.nanoTime();
+            final MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            }
+            // Read the whole file now so the reader does not wait on the storage.
+            buffer.load();
+            final EvioReader reader = new EvioReader(buffer);
+            final long elapsed = System.nanoTime() - start;
+            this.loadNanos += elapsed;
+            LOGGER.fine("loaded EVIO file " + file.getPath() + " with " + length + " bytes in "
+                    + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms");
+            return reader;
+        } catch (final IOException | EvioException | RuntimeException e) {
+            this.release(bytes);
+            prefetched.reservedBytes = 0;
+            throw e;
+        }
+    }
+
+    /**
+     * Release the memory of the current file.
+     */
+    private void releaseCurrent() {
+        if (this.current != null) {
+            this.release(this.current.reservedBytes);
+            this.current.reservedBytes = 0;
+            this.current = null;
+        }
+    }
+
+    /**
+     * Wait until some bytes of the memory budget are available and reserve them.
+     *
+     * @param bytes the number of bytes
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private synchronized void reserve(final long bytes) throws InterruptedException {
+        while (this.reservedBytes + bytes > this.memoryBudget) {
+            this.wait();
+        }
+        this.reservedBytes += bytes;
+    }
+
+    /**
+     * Return bytes to the memory budget.
+     *
+     * @param bytes the number of bytes
+     */
+    private synchronized void release(final long bytes) {
+        if (bytes > 0) {
+            this.reservedBytes -= bytes;
+            this.notifyAll();
+        }
+    }
+}
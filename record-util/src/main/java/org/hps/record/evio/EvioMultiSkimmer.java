@@ -0,0 +1,342 @@
+package org.hps.record.evio;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+import org.hps.record.triggerbank.AbstractIntData.IntBankDefinition;
+import org.hps.record.triggerbank.TIData;
+import org.hps.record.triggerbank.TSData2019;
+import org.jlab.coda.jevio.BaseStructure;
+import org.jlab.coda.jevio.EventWriter;
+import org.jlab.coda.jevio.EvioEvent;
+import org.jlab.coda.jevio.EvioReader;
+
+/**
+ * Skim EVIO events into several output files in a single pass over the input.
+ * <p>
+ * The skims are defined in a text file with one skim per line. Each line has the output file path followed by one or
+ * more selections, all of which must be true for an event to be written to that output:
+ * <ul>
+ * <li><code>events=&lt;file&gt;</code> - event number is in the list in the file (one per line)</li>
+ * <li><code>tag=SYNC|PHYSICS</code> - event tag matches the {@link EventTagMask}</li>
+ * <li><code>ti=single0,single1,pair0,pair1,calib,pulser</code> - any of the TI trigger bits is set</li>
+ * <li><code>ts=&lt;bit&gt;,&lt;bit&gt;,...</code> - any of the 2019 TS trigger bits is set, or <code>fc</code> for the
+ * Faraday cup trigger</li>
+ * </ul>
+ * Blank lines and lines starting with '#' are ignored. Every input event is read and parsed once and written to each
+ * output which accepts it.
+ */
+public class EvioMultiSkimmer {
+
+    /**
+     * Initialize the logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(EvioMultiSkimmer.class.getPackage().getName());
+
+    /**
+     * Location of the TI bank.
+     */
+    private static final IntBankDefinition TI_BANK = new IntBankDefinition(TIData.class, new int[] {0x2e,
+            TIData.BANK_TAG});
+
+    /**
+     * Location of the 2019 TS bank.
+     */
+    private static final IntBankDefinition TS_BANK = new IntBankDefinition(TSData2019.class, new int[] {
+            EvioEventConstants.TS_RocID, EvioEventConstants.TS_BANK_TAG});
+
+    /**
+     * Define command line options.
+     */
+    private static Options OPTIONS = new Options();
+    static {
+        OPTIONS.addOption("c", "skim-config", true, "skim definitions with one output file and its selections per line");
+        OPTIONS.addOption("e", "evio-list", true, "input EVIO files to process (text file)");
+        OPTIONS.addOption("L", "log-level", true, "set log level (Java conventions)");
+        OPTIONS.addOption("n", "max-events", true, "max number of events to read");
+    }
+
+    /**
+     * One output of the skim.
+     */
+    static final class Skim {
+
+        private final String outputPath;
+        private final Predicate<EvioEvent> selection;
+        private EventWriter writer;
+        private int eventsWritten = 0;
+
+        Skim(String outputPath, Predicate<EvioEvent> selection) {
+            this.outputPath = outputPath;
+            this.selection = selection;
+        }
+
+        String getOutputPath() {
+            return outputPath;
+        }
+
+        boolean accept(EvioEvent evioEvent) {
+            return selection.test(evioEvent);
+        }
+    }
+
+    /**
+     * Run the skim from the command line.
+     *
+     * @param args the command line arguments (parsed using Apache CLI)
+     */
+    public static void main(String[] args) {
+
+        PosixParser parser = new PosixParser();
+
+        CommandLine commandLine = null;
+        try {
+            commandLine = parser.parse(OPTIONS, args);
+        } catch (ParseException e) {
+            throw new RuntimeException(e);
+        }
+
+        if (commandLine.hasOption("L")) {
+            Level newLevel = Level.parse(commandLine.getOptionValue("L"));
+            LOGGER.config("setting new log level to " + newLevel);
+            LOGGER.setLevel(newLevel);
+        }
+
+        if (!commandLine.hasOption("e")) {
+            throw new RuntimeException("missing -e argument");
+        }
+        List<String> evioFilePaths = EvioEventSkimmer.getEvioFilePaths(commandLine.getOptionValue("e"));
+
+        if (!commandLine.hasOption("c")) {
+            throw new RuntimeException("missing -c argument with skim definitions");
+        }
+        List<Skim> skims = readSkims(commandLine.getOptionValue("c"));
+        LOGGER.config("got " + skims.size() + " skim definitions");
+
+        int maxEvents = Integer.MAX_VALUE;
+        if (commandLine.hasOption("n")) {
+            maxEvents = Integer.parseInt(commandLine.getOptionValue("n"));
+            LOGGER.config("max events set to " + maxEvents);
+        }
+
+        skim(evioFilePaths, skims, maxEvents);
+
+        LOGGER.info("Done!");
+    }
+
+    /**
+     * Read every input file once and write each event to the skims which accept it.
+     *
+     * @param evioFilePaths the input EVIO files
+     * @param skims the skim outputs
+     * @param maxEvents the maximum number of events to read
+     */
+    static void skim(List<String> evioFilePaths, List<Skim> skims, int maxEvents) {
+        EvioReader reader = null;
+        try {
+            for (Skim skim : skims) {
+                if (new File(skim.outputPath).exists()) {
+                    throw new RuntimeException("output file already exists: " + skim.outputPath);
+                }
+                skim.writer = new EventWriter(skim.outputPath, false);
+                LOGGER.config("skim output will be written to " + skim.outputPath);
+            }
+
+            int nEventsRead = 0;
+            fileLoop: for (String evioFileInPath : evioFilePaths) {
+
+                LOGGER.info("opening " + evioFileInPath + " for reading");
+                reader = new EvioReader(evioFileInPath, false, true);
+
+                EvioEvent evioEvent = null;
+                while ((evioEvent = reader.parseNextEvent()) != null) {
+
+                    if (nEventsRead >= maxEvents) {
+                        LOGGER.info("max events " + maxEvents + " was reached");
+                        break fileLoop;
+                    }
+
+                    // Set event number from event ID bank.
+                    EvioEventUtilities.setEventNumber(evioEvent);
+
+                    for (Skim skim : skims) {
+                        if (skim.accept(evioEvent)) {
+                            skim.writer.writeEvent(evioEvent);
+                            ++skim.eventsWritten;
+                            LOGGER.finest("wrote event " + evioEvent.getEventNumber() + " to " + skim.outputPath);
+                        }
+                    }
+                    ++nEventsRead;
+                }
+
+                LOGGER.info("closing reader");
+                reader.close();
+            }
+            LOGGER.info("read " + nEventsRead + " events");
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            for (Skim skim : skims) {
+                if (skim.writer != null) {
+                    skim.writer.close();
+                    LOGGER.info("wrote " + skim.eventsWritten + " events to " + skim.outputPath);
+                }
+            }
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    LOGGER.log(Level.SEVERE, e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the skim definitions from a text file.
+     *
+     * @param txtFilePath the skim definition file
+     * @return the list of skims
+     */
+    static List<Skim> readSkims(String txtFilePath) {
+        List<Skim> skims = new ArrayList<Skim>();
+        try (BufferedReader br = new BufferedReader(new FileReader(txtFilePath))) {
+            String currentLine = null;
+            while ((currentLine = br.readLine()) != null) {
+                currentLine = currentLine.trim();
+                if (currentLine.isEmpty() || currentLine.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = currentLine.split("\\s+");
+                if (fields.length < 2) {
+                    throw new IllegalArgumentException("Skim definition has no selection: " + currentLine);
+                }
+                Predicate<EvioEvent> selection = parseSelection(fields[1]);
+                for (int i = 2; i < fields.length; i++) {
+                    selection = selection.and(parseSelection(fields[i]));
+                }
+                skims.add(new Skim(fields[0], selection));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return skims;
+    }
+
+    /**
+     * Parse a single selection such as <code>ti=pair0,pair1</code>.
+     *
+     * @param selection the selection string
+     * @return the event predicate
+     */
+    static Predicate<EvioEvent> parseSelection(String selection) {
+        int eq = selection.indexOf('=');
+        if (eq < 1) {
+            throw new IllegalArgumentException("Bad skim selection: " + selection);
+        }
+        String type = selection.substring(0, eq).toLowerCase(Locale.ROOT);
+        String value = selection.substring(eq + 1);
+        switch (type) {
+            case "events":
+                final Set<Integer> eventNumbers = EvioEventSkimmer.getSkimEvents(value);
+                return evioEvent -> eventNumbers.contains(evioEvent.getEventNumber());
+            case "tag":
+                final EventTagMask mask = EventTagMask.valueOf(value.toUpperCase(Locale.ROOT));
+                return evioEvent -> mask.matches(evioEvent.getHeader().getTag());
+            case "ti":
+                return tiSelection(value.toLowerCase(Locale.ROOT).split(","));
+            case "ts":
+                return tsSelection(value.toLowerCase(Locale.ROOT).split(","));
+            default:
+                throw new IllegalArgumentException("Unknown skim selection type: " + type);
+        }
+    }
+
+    /**
+     * Create a selection which accepts events with any of the given TI trigger bits.
+     */
+    private static Predicate<EvioEvent> tiSelection(final String[] names) {
+        for (String name : names) {
+            if (!name.matches("single0|single1|pair0|pair1|calib|pulser")) {
+                throw new IllegalArgumentException("Unknown TI trigger: " + name);
+            }
+        }
+        return evioEvent -> {
+            BaseStructure bank = TI_BANK.findBank(evioEvent);
+            if (bank == null) {
+                return false;
+            }
+            TIData tiData = new TIData(bank.getIntData());
+            for (String name : names) {
+                switch (name) {
+                    case "single0":
+                        if (tiData.isSingle0Trigger()) return true;
+                        break;
+                    case "single1":
+                        if (tiData.isSingle1Trigger()) return true;
+                        break;
+                    case "pair0":
+                        if (tiData.isPair0Trigger()) return true;
+                        break;
+                    case "pair1":
+                        if (tiData.isPair1Trigger()) return true;
+                        break;
+                    case "calib":
+                        if (tiData.isCalibTrigger()) return true;
+                        break;
+                    default:
+                        if (tiData.isPulserTrigger()) return true;
+                        break;
+                }
+            }
+            return false;
+        };
+    }
+
+    /**
+     * Create a selection which accepts events with any of the given TS trigger bits.
+     */
+    private static Predicate<EvioEvent> tsSelection(String[] names) {
+        final boolean faradayCup = Arrays.asList(names).contains("fc");
+        final List<Integer> bits = new ArrayList<Integer>();
+        for (String name : names) {
+            if (!name.equals("fc")) {
+                int bit = Integer.parseInt(name);
+                if (bit < 0 || bit >= 32) {
+                    throw new IllegalArgumentException("TS trigger bit out of range: " + bit);
+                }
+                bits.add(bit);
+            }
+        }
+        return evioEvent -> {
+            BaseStructure bank = TS_BANK.findBank(evioEvent);
+            if (bank == null) {
+                return false;
+            }
+            TSData2019 tsData = new TSData2019(bank.getIntData());
+            if (faradayCup && tsData.isFaradayCupTrigger()) {
+                return true;
+            }
+            for (int bit : bits) {
+                if (tsData.checkTrigger(bit)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+}
@@ -0,0 +1,247 @@
+package org.hps.record.evio;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+import org.freehep.record.source.AbstractRecordSource;
+import org.freehep.record.source.NoSuchRecordException;
+import org.jlab.coda.jevio.EvioEvent;
+import org.jlab.coda.jevio.EvioException;
+import org.jlab.coda.jevio.EvioReader;
+
+/**
+ * Record source providing random access to the events of a single EVIO file using a memory mapped reader and an
+ * {@link EvioFileIndex}.
+ * <p>
+ * The source can be restricted to a range of positions in the file so that several sources, for instance one per
+ * worker thread, can process disjoint parts of the same file from the ranges given by
+ * {@link EvioFileIndex#split(int)}. Events are decoded directly from the mapped file buffer by the reader.
+ * <p>
+ * Record indices used by {@link #jump(long)} and {@link #getCurrentIndex()} are zero-based positions in the file.
+ */
+public final class IndexedEvioFileSource extends AbstractRecordSource {
+
+    private static final Logger LOGGER = Logger.getLogger(IndexedEvioFileSource.class.getPackage().getName());
+
+    /**
+     * The EVIO file.
+     */
+    private final File file;
+
+    /**
+     * The event index for the file.
+     */
+    private final EvioFileIndex index;
+
+    /**
+     * The memory mapped reader.
+     */
+    private final EvioReader reader;
+
+    /**
+     * The first position of the range (inclusive).
+     */
+    private final int start;
+
+    /**
+     * The last position of the range (exclusive).
+     */
+    private final int end;
+
+    /**
+     * The position of the current event or <code>start - 1</code> before the first call to {@link #next()}.
+     */
+    private int position;
+
+    /**
+     * The current event.
+     */
+    private EvioEvent currentEvent;
+
+    /**
+     * Create a source for all the events in a file.
+     *
+     * @param file the EVIO file
+     * @throws IOException if the file or its index cannot be read
+     */
+    public IndexedEvioFileSource(final File file) throws IOException {
+        this(file, EvioFileIndex.getIndex(file));
+    }
+
+    /**
+     * Create a source for all the events in a file with an existing index.
+     *
+     * @param file the EVIO file
+     * @param index the index of the file
+     * @throws IOException if the file cannot be opened
+     */
+    public IndexedEvioFileSource(final File file, final EvioFileIndex index) throws IOException {
+        this(file, index, 0, index.size());
+    }
+
+    /**
+     * Create a source for a range of events in a file.
+     *
+     * @param file the EVIO file
+     * @param index the index of the file
+     * @param start the first position (inclusive)
+     * @param end the last position (exclusive)
+     * @throws IOException if the file cannot be opened
+     */
+    public IndexedEvioFileSource(final File file, final EvioFileIndex index, final int start, final int end)
+            throws IOException {
+        if (start < 0 || end > index.size() || start > end) {
+            throw new IllegalArgumentException("Invalid event range [" + start + ", " + end + ") for file with "
+                    + index.size() + " events.");
+        }
+        this.file = file;
+        this.index = index;
+        this.start = start;
+        this.end = end;
+        this.position = start - 1;
+        try {
+            this.reader = EvioFileUtilities.open(file, false);
+        } catch (final EvioException e) {
+            throw new IOException("Error opening EVIO file " + file.getPath(), e);
+        }
+        if (this.reader.getEventCount() != index.size()) {
+            this.reader.close();
+            throw new IOException("The index for " + file.getPath() + " has " + index.size() + " events but the file has "
+                    + this.reader.getEventCount());
+        }
+    }
+
+    /**
+     * Close the reader.
+     *
+     * @throws IOException if there is an error closing the reader
+     */
+    public void close() throws IOException {
+        this.reader.close();
+    }
+
+    /**
+     * Get the EVIO file.
+     *
+     * @return the EVIO file
+     */
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * Get the index of the file.
+     *
+     * @return the index of the file
+     */
+    public EvioFileIndex getIndex() {
+        return this.index;
+    }
+
+    @Override
+    public Object getCurrentRecord() throws IOException {
+        return this.currentEvent;
+    }
+
+    @Override
+    public Class<?> getRecordClass() {
+        return EvioEvent.class;
+    }
+
+    @Override
+    public long getCurrentIndex() {
+        return this.position;
+    }
+
+    @Override
+    public boolean supportsCurrent() {
+        return true;
+    }
+
+    @Override
+    public boolean hasCurrent() {
+        return this.currentEvent != null;
+    }
+
+    @Override
+    public boolean supportsNext() {
+        return true;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return this.position + 1 < this.end;
+    }
+
+    @Override
+    public void next() throws IOException, NoSuchRecordException {
+        if (!this.hasNext()) {
+            throw new NoSuchRecordException("End of data.");
+        }
+        this.load(this.position + 1);
+    }
+
+    @Override
+    public boolean supportsIndex() {
+        return true;
+    }
+
+    @Override
+    public void jump(final long index) throws IOException, NoSuchRecordException {
+        if (index < this.start || index >= this.end) {
+            throw new NoSuchRecordException("Position " + index + " is outside of range [" + this.start + ", "
+                    + this.end + ").");
+        }
+        this.load((int) index);
+    }
+
+    /**
+     * Load the event with the given event number.
+     *
+     * @param eventNumber the event number from the EVENT ID bank
+     * @throws IOException if there is an error reading the event
+     * @throws NoSuchRecordException if the event number is not in the range of this source
+     */
+    public void jumpToEventNumber(final int eventNumber) throws IOException, NoSuchRecordException {
+        final int eventPosition = this.index.findPosition(eventNumber);
+        if (eventPosition == -1) {
+            throw new NoSuchRecordException("Event " + eventNumber + " is not in " + this.file.getPath());
+        }
+        this.jump(eventPosition);
+    }
+
+    @Override
+    public boolean supportsRewind() {
+        return true;
+    }
+
+    @Override
+    public void rewind() throws IOException {
+        this.position = this.start - 1;
+        this.currentEvent = null;
+    }
+
+    @Override
+    public long size() {
+        return this.end - this.start;
+    }
+
+    /**
+     * Read and parse the event at a position.
+     *
+     * @param eventPosition the zero-based position
+     * @throws IOException if there is an error reading the event
+     */
+    private void load(final int eventPosition) throws IOException {
+        try {
+            // The reader uses one-based event indices.
+            this.currentEvent = this.reader.parseEvent(eventPosition + 1);
+            this.position = eventPosition;
+            LOGGER.finest("read EVIO event at position " + eventPosition);
+        } catch (final EvioException e) {
+            throw new IOException("Error parsing EVIO event at position " + eventPosition + " in "
+                    + this.file.getPath(), e);
+        }
+    }
+}
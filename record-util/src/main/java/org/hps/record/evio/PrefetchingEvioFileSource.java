@@ -0,0 +1,198 @@
+package org.hps.record.evio;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.freehep.record.source.AbstractRecordSource;
+import org.freehep.record.source.NoSuchRecordException;
+import org.jlab.coda.jevio.EvioEvent;
+import org.jlab.coda.jevio.EvioException;
+import org.jlab.coda.jevio.EvioReader;
+
+/**
+ * Record source supplying <code>EvioEvent</code> objects from a list of EVIO files like {@link EvioFileSource}, but
+ * with the next files opened and loaded in the background by an {@link EvioFilePrefetcher}.
+ * <p>
+ * The time spent waiting for files is available from {@link #getStallTimeMillis()} and is logged when the source
+ * reaches the end of the data.
+ */
+public final class PrefetchingEvioFileSource extends AbstractRecordSource {
+
+    private static final Logger LOGGER = Logger.getLogger(PrefetchingEvioFileSource.class.getPackage().getName());
+
+    /**
+     * The current event.
+     */
+    private EvioEvent currentEvent;
+
+    /**
+     * The list of input data files.
+     */
+    private final List<File> files = new ArrayList<File>();
+
+    /**
+     * The prefetcher which opens the files.
+     */
+    private final EvioFilePrefetcher prefetcher;
+
+    /**
+     * The reader for the current file.
+     */
+    private EvioReader reader;
+
+    /**
+     * Whether to continue on parse errors or not.
+     */
+    private boolean continueOnErrors = false;
+
+    /**
+     * Create a source with the default read ahead and memory budget.
+     *
+     * @param files the list of EVIO files
+     */
+    public PrefetchingEvioFileSource(final List<File> files) {
+        this(files, EvioFilePrefetcher.DEFAULT_READ_AHEAD, EvioFilePrefetcher.DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * Create a source.
+     *
+     * @param files the list of EVIO files
+     * @param readAhead the number of files to load ahead of the current one
+     * @param memoryBudget the maximum number of bytes of loaded files
+     */
+    public PrefetchingEvioFileSource(final List<File> files, final int readAhead, final long memoryBudget) {
+        this.files.addAll(files);
+        this.prefetcher = new EvioFilePrefetcher(files, readAhead, memoryBudget);
+        this.openReader();
+    }
+
+    /**
+     * Set whether to continue on errors or not.
+     *
+     * @param continueOnErrors <code>true</code> to continue on errors
+     */
+    public void setContinueOnErrors(final boolean continueOnErrors) {
+        this.continueOnErrors = continueOnErrors;
+    }
+
+    /**
+     * Get the list of files.
+     *
+     * @return the list of files
+     */
+    public List<File> getFiles() {
+        return this.files;
+    }
+
+    /**
+     * Get the total time spent waiting for files to be loaded.
+     *
+     * @return the stall time in milliseconds
+     */
+    public long getStallTimeMillis() {
+        return this.prefetcher.getStallTimeMillis();
+    }
+
+    /**
+     * Stop the prefetching and close the current reader.
+     */
+    public void close() {
+        this.closeReader();
+        this.prefetcher.close();
+    }
+
+    @Override
+    public Object getCurrentRecord() throws IOException {
+        return this.currentEvent;
+    }
+
+    @Override
+    public boolean hasCurrent() {
+        return this.currentEvent != null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (this.reader == null) {
+            return false;
+        }
+        try {
+            return this.reader.getNumEventsRemaining() != 0 || this.prefetcher.hasNext();
+        } catch (IOException | EvioException e) {
+            throw new RuntimeException("Error getting num remaining events.");
+        }
+    }
+
+    @Override
+    public void next() throws IOException, NoSuchRecordException {
+        for (;;) {
+            if (this.reader == null) {
+                throw new NoSuchRecordException("End of data.");
+            }
+            try {
+                this.currentEvent = this.reader.parseNextEvent();
+                if (this.currentEvent == null && this.reader.getNumEventsRemaining() == 0) {
+                    this.closeReader();
+                    this.reader = this.prefetcher.next();
+                    if (this.reader == null) {
+                        this.prefetcher.close();
+                        throw new NoSuchRecordException("End of data.");
+                    }
+                } else {
+                    LOGGER.finest("Read EVIO event " + this.currentEvent.getEventNumber() + " okay.");
+                    break;
+                }
+            } catch (EvioException | NegativeArraySizeException e) {
+                LOGGER.log(Level.SEVERE, "Error parsing next EVIO event.", e);
+                if (!continueOnErrors) {
+                    throw new IOException("Fatal error parsing next EVIO event.", e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean supportsNext() {
+        return true;
+    }
+
+    /**
+     * Get the current file being processed.
+     *
+     * @return the current file
+     */
+    File getCurrentFile() {
+        return this.prefetcher.getCurrentFile();
+    }
+
+    /**
+     * Open the reader for the first file.
+     */
+    private void openReader() {
+        try {
+            this.reader = this.prefetcher.next();
+        } catch (final IOException e) {
+            this.prefetcher.close();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Close the current reader.
+     */
+    private void closeReader() {
+        if (this.reader != null) {
+            try {
+                this.reader.close();
+            } catch (final IOException e) {
+                throw new RuntimeException(e);
+            }
+            this.reader = null;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.hps.record.lcio;
+
+import java.io.IOException;
+
+import org.lcsim.event.EventHeader;
+import org.lcsim.util.Driver;
+
+/**
+ * Driver which writes every event to an LCIO file using a {@link BufferedLcioWriter}.
+ * <p>
+ * This can be used in place of the standard LCIO output Driver in steering files when flushing after every event is
+ * too slow for the output file system.
+ */
+public class BufferedLcioDriver extends Driver {
+
+    private String outputFilePath = null;
+    private int flushEvents = BufferedLcioWriter.DEFAULT_FLUSH_EVENTS;
+    private long flushIntervalMillis = BufferedLcioWriter.DEFAULT_FLUSH_INTERVAL_MILLIS;
+    private BufferedLcioWriter writer = null;
+
+    /**
+     * Set the output file path.
+     *
+     * @param outputFilePath the output file path
+     */
+    public void setOutputFilePath(String outputFilePath) {
+        if (!outputFilePath.endsWith(".slcio")) {
+            outputFilePath = outputFilePath + ".slcio";
+        }
+        this.outputFilePath = outputFilePath;
+    }
+
+    /**
+     * Set the number of events between flushes.
+     *
+     * @param flushEvents the number of events between flushes
+     */
+    public void setFlushEvents(int flushEvents) {
+        this.flushEvents = flushEvents;
+    }
+
+    /**
+     * Set the maximum time between flushes in seconds.
+     *
+     * @param flushIntervalSeconds the maximum time between flushes or zero to disable
+     */
+    public void setFlushIntervalSeconds(int flushIntervalSeconds) {
+        this.flushIntervalMillis = flushIntervalSeconds * 1000L;
+    }
+
+    @Override
+    protected void startOfData() {
+        if (outputFilePath == null) {
+            throw new RuntimeException("The outputFilePath was never set.");
+        }
+        try {
+            writer = new BufferedLcioWriter(outputFilePath);
+        } catch (IOException e) {
+            throw new RuntimeException("Error opening LCIO file " + outputFilePath, e);
+        }
+        writer.setFlushEvents(flushEvents);
+        writer.setFlushIntervalMillis(flushIntervalMillis);
+    }
+
+    @Override
+    protected void process(EventHeader event) {
+        try {
+            writer.write(event);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing LCIO file", e);
+        }
+    }
+
+    @Override
+    protected void suspend() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new RuntimeException("Error flushing LCIO file", e);
+        }
+    }
+
+    @Override
+    protected void endOfData() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Error closing LCIO file", e);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package org.hps.record.lcio;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+import org.lcsim.event.EventHeader;
+import org.lcsim.lcio.LCIOWriter;
+
+/**
+ * Writes LCIO events and flushes the output in batches instead of after every event.
+ * <p>
+ * The output is flushed when the number of events written since the last flush reaches the flush size, or when the
+ * time since the last flush exceeds the flush interval, whichever comes first. Each flush is a checkpoint: if the job
+ * crashes, the file is readable up to the last flushed event.
+ * <p>
+ * A flush size of 1 gives the same behavior as flushing after every write. A flush interval of zero or less disables
+ * the time threshold.
+ */
+public final class BufferedLcioWriter {
+
+    private static final Logger LOGGER = Logger.getLogger(BufferedLcioWriter.class.getPackage().getName());
+
+    /**
+     * Default number of events between flushes.
+     */
+    public static final int DEFAULT_FLUSH_EVENTS = 1000;
+
+    /**
+     * Default maximum time between flushes in milliseconds.
+     */
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 30000L;
+
+    /**
+     * The wrapped LCIO writer.
+     */
+    private final LCIOWriter writer;
+
+    /**
+     * The number of events between flushes.
+     */
+    private int flushEvents = DEFAULT_FLUSH_EVENTS;
+
+    /**
+     * The maximum time between flushes in milliseconds.
+     */
+    private long flushIntervalMillis = DEFAULT_FLUSH_INTERVAL_MILLIS;
+
+    /**
+     * The number of events written since the last flush.
+     */
+    private int pendingEvents = 0;
+
+    /**
+     * The system time of the last flush.
+     */
+    private long lastFlushMillis = System.currentTimeMillis();
+
+    /**
+     * The total number of events written.
+     */
+    private long eventsWritten = 0;
+
+    /**
+     * The number of flushes that have been performed.
+     */
+    private long flushes = 0;
+
+    /**
+     * Create a writer to a new LCIO file.
+     *
+     * @param file the output file
+     * @throws IOException if the file cannot be opened
+     */
+    public BufferedLcioWriter(final File file) throws IOException {
+        this(new LCIOWriter(file));
+    }
+
+    /**
+     * Create a writer to a new LCIO file.
+     *
+     * @param fileName the output file path
+     * @throws IOException if the file cannot be opened
+     */
+    public BufferedLcioWriter(final String fileName) throws IOException {
+        this(new LCIOWriter(fileName));
+    }
+
+    /**
+     * Create a writer wrapping an existing LCIO writer.
+     *
+     * @param writer the LCIO writer
+     */
+    public BufferedLcioWriter(final LCIOWriter writer) {
+        if (writer == null) {
+            throw new IllegalArgumentException("The writer argument is null.");
+        }
+        this.writer = writer;
+    }
+
+    /**
+     * Set the number of events between flushes.
+     *
+     * @param flushEvents the number of events between flushes which must be at least 1
+     */
+    public void setFlushEvents(final int flushEvents) {
+        if (flushEvents < 1) {
+            throw new IllegalArgumentException("The flush size must be at least 1: " + flushEvents);
+        }
+        this.flushEvents = flushEvents;
+    }
+
+    /**
+     * Set the maximum time between flushes.
+     *
+     * @param flushIntervalMillis the maximum time between flushes in milliseconds or zero to disable
+     */
+    public void setFlushIntervalMillis(final long flushIntervalMillis) {
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    /**
+     * Write an event and flush the output if a threshold was reached.
+     *
+     * @param event the LCIO event
+     * @throws IOException if there is an error writing the event
+     */
+    public void write(final EventHeader event) throws IOException {
+        this.writer.write(event);
+        ++this.eventsWritten;
+        ++this.pendingEvents;
+        if (this.pendingEvents >= this.flushEvents) {
+            this.flush();
+        } else if (this.flushIntervalMillis > 0
+                && System.currentTimeMillis() - this.lastFlushMillis >= this.flushIntervalMillis) {
+            this.flush();
+        }
+    }
+
+    /**
+     * Flush all events written so far to the output file.
+     *
+     * @throws IOException if there is an error flushing the output
+     */
+    public void flush() throws IOException {
+        this.writer.flush();
+        ++this.flushes;
+        LOGGER.finer("flushed " + this.pendingEvents + " events with " + this.eventsWritten + " total written");
+        this.pendingEvents = 0;
+        this.lastFlushMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Flush any remaining events and close the output file.
+     *
+     * @throws IOException if there is an error flushing or closing the file
+     */
+    public void close() throws IOException {
+        try {
+            if (this.pendingEvents > 0) {
+                this.flush();
+            }
+        } finally {
+            this.writer.close();
+        }
+        LOGGER.fine("closed LCIO writer after " + this.eventsWritten + " events and " + this.flushes + " flushes");
+    }
+
+    /**
+     * Get the total number of events written.
+     *
+     * @return the total number of events written
+     */
+    public long getEventsWritten() {
+        return this.eventsWritten;
+    }
+
+    /**
+     * Get the number of flushes that have been performed.
+     *
+     * @return the number of flushes
+     */
+    public long getFlushes() {
+        return this.flushes;
+    }
+}
@@ -0,0 +1,40 @@
+package org.hps.record.summary;
+
+/**
+ * Primitive types of the columns in a {@link ColumnarFile}.
+ */
+public enum ColumnType {
+
+    /**
+     * 32 bit integer.
+     */
+    INT(4),
+
+    /**
+     * 64 bit integer.
+     */
+    LONG(8),
+
+    /**
+     * 64 bit floating point.
+     */
+    DOUBLE(8);
+
+    /**
+     * The size of one value in bytes.
+     */
+    private final int size;
+
+    ColumnType(final int size) {
+        this.size = size;
+    }
+
+    /**
+     * Get the size of one value in bytes.
+     *
+     * @return the size of one value in bytes
+     */
+    public int size() {
+        return this.size;
+    }
+}
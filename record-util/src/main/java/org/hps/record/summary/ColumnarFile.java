@@ -0,0 +1,402 @@
+package org.hps.record.summary;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reader for files of typed primitive columns written by {@link ColumnarFileWriter}.
+ * <p>
+ * A file holds one or more named tables. The rows of each table are split into chunks, and the values of one column
+ * in one chunk are stored as a contiguous big-endian block of primitives which is read by memory mapping only that
+ * block. The minimum and maximum of each column in each chunk are stored in the footer of the file, so a scan can skip
+ * the chunks which cannot contain the values it is looking for without reading them.
+ * <p>
+ * The file layout is a header with the magic number and version, the column blocks, a footer with the string
+ * dictionary, the tables, their columns and chunks, and a trailer with the footer offset and the magic number.
+ */
+public final class ColumnarFile {
+
+    /**
+     * Magic number at the start and end of the file.
+     */
+    static final int MAGIC = 0x48505343; // "HPSC"
+
+    /**
+     * Version of the file format.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Location and statistics of the columns of one chunk of rows.
+     */
+    static final class Chunk {
+
+        private final int rows;
+        private final long[] offsets;
+        private final long[] min;
+        private final long[] max;
+
+        Chunk(final int rows, final long[] offsets, final long[] min, final long[] max) {
+            this.rows = rows;
+            this.offsets = offsets;
+            this.min = min;
+            this.max = max;
+        }
+
+        void write(final DataOutputStream out) throws IOException {
+            out.writeInt(this.rows);
+            for (int column = 0; column < this.offsets.length; column++) {
+                out.writeLong(this.offsets[column]);
+                out.writeLong(this.min[column]);
+                out.writeLong(this.max[column]);
+            }
+        }
+
+        static Chunk read(final DataInputStream in, final int nColumns) throws IOException {
+            final int rows = in.readInt();
+            final long[] offsets = new long[nColumns];
+            final long[] min = new long[nColumns];
+            final long[] max = new long[nColumns];
+            for (int column = 0; column < nColumns; column++) {
+                offsets[column] = in.readLong();
+                min[column] = in.readLong();
+                max[column] = in.readLong();
+            }
+            return new Chunk(rows, offsets, min, max);
+        }
+    }
+
+    /**
+     * A table of typed columns in the file.
+     */
+    public final class Table {
+
+        private final String name;
+        private final String[] columnNames;
+        private final ColumnType[] columnTypes;
+        private final Chunk[] chunks;
+
+        private Table(final String name, final String[] columnNames, final ColumnType[] columnTypes,
+                final Chunk[] chunks) {
+            this.name = name;
+            this.columnNames = columnNames;
+            this.columnTypes = columnTypes;
+            this.chunks = chunks;
+        }
+
+        /**
+         * Get the name of the table.
+         *
+         * @return the name of the table
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * Get the number of columns.
+         *
+         * @return the number of columns
+         */
+        public int getColumnCount() {
+            return this.columnNames.length;
+        }
+
+        /**
+         * Get the name of a column.
+         *
+         * @param column the column index
+         * @return the name of the column
+         */
+        public String getColumnName(final int column) {
+            return this.columnNames[column];
+        }
+
+        /**
+         * Get the type of a column.
+         *
+         * @param column the column index
+         * @return the type of the column
+         */
+        public ColumnType getColumnType(final int column) {
+            return this.columnTypes[column];
+        }
+
+        /**
+         * Get the index of a column.
+         *
+         * @param columnName the name of the column
+         * @return the index of the column
+         * @throws IllegalArgumentException if there is no column with this name
+         */
+        public int getColumnIndex(final String columnName) {
+            for (int column = 0; column < this.columnNames.length; column++) {
+                if (this.columnNames[column].equals(columnName)) {
+                    return column;
+                }
+            }
+            throw new IllegalArgumentException("Table " + this.name + " has no column " + columnName);
+        }
+
+        /**
+         * Get the number of chunks.
+         *
+         * @return the number of chunks
+         */
+        public int getChunkCount() {
+            return this.chunks.length;
+        }
+
+        /**
+         * Get the number of rows in a chunk.
+         *
+         * @param chunk the chunk index
+         * @return the number of rows in the chunk
+         */
+        public int getChunkRows(final int chunk) {
+            return this.chunks[chunk].rows;
+        }
+
+        /**
+         * Get the total number of rows.
+         *
+         * @return the number of rows
+         */
+        public long getRowCount() {
+            long rows = 0;
+            for (final Chunk chunk : this.chunks) {
+                rows += chunk.rows;
+            }
+            return rows;
+        }
+
+        /**
+         * Get the minimum of an integer or long column in a chunk.
+         *
+         * @param column the column index
+         * @param chunk the chunk index
+         * @return the minimum value
+         */
+        public long getMin(final int column, final int chunk) {
+            this.check(column, false);
+            return this.chunks[chunk].min[column];
+        }
+
+        /**
+         * Get the maximum of an integer or long column in a chunk.
+         *
+         * @param column the column index
+         * @param chunk the chunk index
+         * @return the maximum value
+         */
+        public long getMax(final int column, final int chunk) {
+            this.check(column, false);
+            return this.chunks[chunk].max[column];
+        }
+
+        /**
+         * Get the minimum of a double column in a chunk.
+         *
+         * @param column the column index
+         * @param chunk the chunk index
+         * @return the minimum value
+         */
+        public double getMinDouble(final int column, final int chunk) {
+            this.check(column, true);
+            return Double.longBitsToDouble(this.chunks[chunk].min[column]);
+        }
+
+        /**
+         * Get the maximum of a double column in a chunk.
+         *
+         * @param column the column index
+         * @param chunk the chunk index
+         * @return the maximum value
+         */
+        public double getMaxDouble(final int column, final int chunk) {
+            this.check(column, true);
+            return Double.longBitsToDouble(this.chunks[chunk].max[column]);
+        }
+
+        /**
+         * Map the values of an integer column in a chunk.
+         *
+         * @param column the column index
+         * @param chunk the chunk index
+         * @return the values
+         * @throws IOException if there is an error mapping the file
+         */
+        public IntBuffer mapInt(final int column, final int chunk) throws IOException {
+            if (this.columnTypes[column] != ColumnType.INT) {
+                throw new IllegalArgumentException("Column " + this.columnNames[column] + " is not an INT column.");
+            }
+            return this.map(column, chunk).asIntBuffer();
+        }
+
+        /**
+         * Map the values of a long column in a chunk.
+         *
+         * @param column the column index
+         * @param chunk the chunk index
+         * @return the values
+         * @throws IOException if there is an error mapping the file
+         */
+        public LongBuffer mapLong(final int column, final int chunk) throws IOException {
+            if (this.columnTypes[column] != ColumnType.LONG) {
+                throw new IllegalArgumentException("Column " + this.columnNames[column] + " is not a LONG column.");
+            }
+            return this.map(column, chunk).asLongBuffer();
+        }
+
+        /**
+         * Map the values of a double column in a chunk.
+         *
+         * @param column the column index
+         * @param chunk the chunk index
+         * @return the values
+         * @throws IOException if there is an error mapping the file
+         */
+        public DoubleBuffer mapDouble(final int column, final int chunk) throws IOException {
+            this.check(column, true);
+            return this.map(column, chunk).asDoubleBuffer();
+        }
+
+        private ByteBuffer map(final int column, final int chunk) throws IOException {
+            final Chunk c = this.chunks[chunk];
+            return channel.map(FileChannel.MapMode.READ_ONLY, c.offsets[column],
+                    (long) c.rows * this.columnTypes[column].size());
+        }
+
+        private void check(final int column, final boolean isDouble) {
+            if ((this.columnTypes[column] == ColumnType.DOUBLE) != isDouble) {
+                throw new IllegalArgumentException("Column " + this.columnNames[column] + " of table " + this.name
+                        + " has type " + this.columnTypes[column]);
+            }
+        }
+    }
+
+    /**
+     * The file channel.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The string dictionary.
+     */
+    private final List<String> strings;
+
+    /**
+     * The tables by name.
+     */
+    private final Map<String, Table> tables = new LinkedHashMap<String, Table>();
+
+    /**
+     * Open a file and read its footer.
+     *
+     * @param file the file
+     * @throws IOException if the file cannot be read or is not a valid columnar file
+     */
+    public ColumnarFile(final File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            final long size = this.channel.size();
+            if (size < 20) {
+                throw new IOException("File is too short to be a columnar file: " + file.getPath());
+            }
+            final ByteBuffer trailer = this.read(size - 12, 12);
+            final long footerOffset = trailer.getLong();
+            if (trailer.getInt() != MAGIC || this.read(0, 8).getInt() != MAGIC) {
+                throw new IOException("Not a columnar file: " + file.getPath());
+            }
+            final ByteBuffer footer = this.read(footerOffset, (int) (size - 12 - footerOffset));
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream(footer.array()));
+            final int nStrings = in.readInt();
+            final List<String> strings = new ArrayList<String>(nStrings);
+            for (int i = 0; i < nStrings; i++) {
+                strings.add(in.readUTF());
+            }
+            this.strings = Collections.unmodifiableList(strings);
+            final int nTables = in.readInt();
+            for (int i = 0; i < nTables; i++) {
+                final String name = in.readUTF();
+                final int nColumns = in.readInt();
+                final String[] columnNames = new String[nColumns];
+                final ColumnType[] columnTypes = new ColumnType[nColumns];
+                for (int column = 0; column < nColumns; column++) {
+                    columnNames[column] = in.readUTF();
+                    columnTypes[column] = ColumnType.values()[in.readByte()];
+                }
+                final Chunk[] chunks = new Chunk[in.readInt()];
+                for (int chunk = 0; chunk < chunks.length; chunk++) {
+                    chunks[chunk] = Chunk.read(in, nColumns);
+                }
+                this.tables.put(name, new Table(name, columnNames, columnTypes, chunks));
+            }
+        } catch (final IOException | RuntimeException e) {
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Get the string dictionary.
+     *
+     * @return the strings by index
+     */
+    public List<String> getStrings() {
+        return this.strings;
+    }
+
+    /**
+     * Get the names of the tables.
+     *
+     * @return the names of the tables
+     */
+    public List<String> getTableNames() {
+        return new ArrayList<String>(this.tables.keySet());
+    }
+
+    /**
+     * Get a table by name.
+     *
+     * @param name the name of the table
+     * @return the table or <code>null</code> if there is no table with this name
+     */
+    public Table getTable(final String name) {
+        return this.tables.get(name);
+    }
+
+    /**
+     * Close the file. Buffers which have already been mapped stay valid.
+     *
+     * @throws IOException if there is an error closing the file
+     */
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    private ByteBuffer read(final long offset, final int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (this.channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file.");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
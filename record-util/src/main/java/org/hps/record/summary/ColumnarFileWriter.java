@@ -0,0 +1,367 @@
+package org.hps.record.summary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Writer for {@link ColumnarFile} data.
+ * <p>
+ * Rows are added to a {@link Table} one at a time by setting the value of each column and calling
+ * {@link Table#endRow()}. Every {@link #getChunkRows()} rows, the values of each column are written to the file as a
+ * contiguous block of primitives together with their minimum and maximum. The table layout, chunk positions and
+ * statistics are written in a footer by {@link #close()}.
+ */
+public final class ColumnarFileWriter {
+
+    private static final Logger LOGGER = Logger.getLogger(ColumnarFileWriter.class.getPackage().getName());
+
+    /**
+     * Default number of rows in a chunk.
+     */
+    public static final int DEFAULT_CHUNK_ROWS = 65536;
+
+    /**
+     * A table of typed columns.
+     */
+    public final class Table {
+
+        private final String name;
+        private final String[] columnNames;
+        private final ColumnType[] columnTypes;
+        private final long[][] longValues;
+        private final double[][] doubleValues;
+        private final List<ColumnarFile.Chunk> chunks = new ArrayList<ColumnarFile.Chunk>();
+        private int rows = 0;
+        private long totalRows = 0;
+
+        private Table(final String name, final String[] columnNames, final ColumnType[] columnTypes) {
+            this.name = name;
+            this.columnNames = columnNames.clone();
+            this.columnTypes = columnTypes.clone();
+            this.longValues = new long[columnNames.length][];
+            this.doubleValues = new double[columnNames.length][];
+            for (int column = 0; column < columnNames.length; column++) {
+                if (columnTypes[column] == ColumnType.DOUBLE) {
+                    this.doubleValues[column] = new double[chunkRows];
+                } else {
+                    this.longValues[column] = new long[chunkRows];
+                }
+            }
+        }
+
+        /**
+         * Get the index of a column.
+         *
+         * @param columnName the name of the column
+         * @return the index of the column
+         * @throws IllegalArgumentException if there is no column with this name
+         */
+        public int getColumnIndex(final String columnName) {
+            for (int column = 0; column < this.columnNames.length; column++) {
+                if (this.columnNames[column].equals(columnName)) {
+                    return column;
+                }
+            }
+            throw new IllegalArgumentException("Table " + this.name + " has no column " + columnName);
+        }
+
+        /**
+         * Get the number of rows written to the table so far.
+         *
+         * @return the number of rows
+         */
+        public long getRowCount() {
+            return this.totalRows;
+        }
+
+        /**
+         * Set the value of an integer column in the current row.
+         *
+         * @param column the column index
+         * @param value the value
+         */
+        public void setInt(final int column, final int value) {
+            this.check(column, ColumnType.INT);
+            this.longValues[column][this.rows] = value;
+        }
+
+        /**
+         * Set the value of a long column in the current row.
+         *
+         * @param column the column index
+         * @param value the value
+         */
+        public void setLong(final int column, final long value) {
+            this.check(column, ColumnType.LONG);
+            this.longValues[column][this.rows] = value;
+        }
+
+        /**
+         * Set the value of a double column in the current row.
+         *
+         * @param column the column index
+         * @param value the value
+         */
+        public void setDouble(final int column, final double value) {
+            this.check(column, ColumnType.DOUBLE);
+            this.doubleValues[column][this.rows] = value;
+        }
+
+        /**
+         * End the current row. Columns which were not set in the row have the value zero.
+         *
+         * @throws IOException if there is an error writing a full chunk
+         */
+        public void endRow() throws IOException {
+            ++this.rows;
+            ++this.totalRows;
+            if (this.rows == chunkRows) {
+                this.writeChunk();
+            }
+        }
+
+        private void check(final int column, final ColumnType type) {
+            if (this.columnTypes[column] != type) {
+                throw new IllegalArgumentException("Column " + this.columnNames[column] + " of table " + this.name
+                        + " has type " + this.columnTypes[column] + " not " + type);
+            }
+        }
+
+        /**
+         * Write the buffered rows of every column and reset the buffers.
+         */
+        private void writeChunk() throws IOException {
+            if (this.rows == 0) {
+                return;
+            }
+            final int nColumns = this.columnNames.length;
+            final long[] offsets = new long[nColumns];
+            final long[] min = new long[nColumns];
+            final long[] max = new long[nColumns];
+            for (int column = 0; column < nColumns; column++) {
+                final ColumnType type = this.columnTypes[column];
+                final ByteBuffer buffer = ByteBuffer.allocate(this.rows * type.size());
+                if (type == ColumnType.DOUBLE) {
+                    final double[] values = this.doubleValues[column];
+                    double lo = Double.POSITIVE_INFINITY;
+                    double hi = Double.NEGATIVE_INFINITY;
+                    for (int row = 0; row < this.rows; row++) {
+                        buffer.putDouble(values[row]);
+                        lo = Math.min(lo, values[row]);
+                        hi = Math.max(hi, values[row]);
+                    }
+                    min[column] = Double.doubleToLongBits(lo);
+                    max[column] = Double.doubleToLongBits(hi);
+                    Arrays.fill(values, 0, this.rows, 0.);
+                } else {
+                    final long[] values = this.longValues[column];
+                    long lo = Long.MAX_VALUE;
+                    long hi = Long.MIN_VALUE;
+                    for (int row = 0; row < this.rows; row++) {
+                        if (type == ColumnType.INT) {
+                            buffer.putInt((int) values[row]);
+                        } else {
+                            buffer.putLong(values[row]);
+                        }
+                        lo = Math.min(lo, values[row]);
+                        hi = Math.max(hi, values[row]);
+                    }
+                    min[column] = lo;
+                    max[column] = hi;
+                    Arrays.fill(values, 0, this.rows, 0L);
+                }
+                buffer.flip();
+                offsets[column] = write(buffer);
+            }
+            this.chunks.add(new ColumnarFile.Chunk(this.rows, offsets, min, max));
+            this.rows = 0;
+        }
+    }
+
+    /**
+     * The output file.
+     */
+    private final File file;
+
+    /**
+     * The output channel.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The number of rows in a chunk.
+     */
+    private final int chunkRows;
+
+    /**
+     * The tables in the order they were added.
+     */
+    private final List<Table> tables = new ArrayList<Table>();
+
+    /**
+     * The string dictionary.
+     */
+    private final List<String> strings = new ArrayList<String>();
+
+    /**
+     * Map of strings to their dictionary index.
+     */
+    private final Map<String, Integer> stringIndices = new HashMap<String, Integer>();
+
+    /**
+     * Create a writer with the default chunk size.
+     *
+     * @param file the output file
+     * @throws IOException if the file cannot be created
+     */
+    public ColumnarFileWriter(final File file) throws IOException {
+        this(file, DEFAULT_CHUNK_ROWS);
+    }
+
+    /**
+     * Create a writer.
+     *
+     * @param file the output file
+     * @param chunkRows the number of rows in a chunk
+     * @throws IOException if the file cannot be created
+     */
+    public ColumnarFileWriter(final File file, final int chunkRows) throws IOException {
+        if (chunkRows < 1) {
+            throw new IllegalArgumentException("The chunk size must be at least 1.");
+        }
+        this.file = file;
+        this.chunkRows = chunkRows;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        final ByteBuffer header = ByteBuffer.allocate(8);
+        header.putInt(ColumnarFile.MAGIC);
+        header.putInt(ColumnarFile.VERSION);
+        header.flip();
+        this.write(header);
+    }
+
+    /**
+     * Get the number of rows in a chunk.
+     *
+     * @return the number of rows in a chunk
+     */
+    public int getChunkRows() {
+        return this.chunkRows;
+    }
+
+    /**
+     * Add a table.
+     *
+     * @param name the name of the table
+     * @param columnNames the names of the columns
+     * @param columnTypes the types of the columns
+     * @return the new table
+     */
+    public Table addTable(final String name, final String[] columnNames, final ColumnType[] columnTypes) {
+        if (columnNames.length != columnTypes.length) {
+            throw new IllegalArgumentException("Table " + name + " has " + columnNames.length + " column names and "
+                    + columnTypes.length + " column types.");
+        }
+        for (final Table table : this.tables) {
+            if (table.name.equals(name)) {
+                throw new IllegalArgumentException("Duplicate table " + name);
+            }
+        }
+        final Table table = new Table(name, columnNames, columnTypes);
+        this.tables.add(table);
+        return table;
+    }
+
+    /**
+     * Get the dictionary index of a string, adding it to the dictionary if necessary.
+     * <p>
+     * This is used to store string values such as EPICS variable names in integer columns.
+     *
+     * @param value the string
+     * @return the index of the string in the dictionary
+     */
+    public int getStringIndex(final String value) {
+        Integer index = this.stringIndices.get(value);
+        if (index == null) {
+            index = this.strings.size();
+            this.strings.add(value);
+            this.stringIndices.put(value, index);
+        }
+        return index;
+    }
+
+    /**
+     * Write the remaining rows and the footer and close the file.
+     *
+     * @throws IOException if there is an error writing the file
+     */
+    public void close() throws IOException {
+        try {
+            for (final Table table : this.tables) {
+                table.writeChunk();
+            }
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(this.strings.size());
+            for (final String value : this.strings) {
+                out.writeUTF(value);
+            }
+            out.writeInt(this.tables.size());
+            for (final Table table : this.tables) {
+                out.writeUTF(table.name);
+                out.writeInt(table.columnNames.length);
+                for (int column = 0; column < table.columnNames.length; column++) {
+                    out.writeUTF(table.columnNames[column]);
+                    out.writeByte(table.columnTypes[column].ordinal());
+                }
+                out.writeInt(table.chunks.size());
+                for (final ColumnarFile.Chunk chunk : table.chunks) {
+                    chunk.write(out);
+                }
+            }
+            out.flush();
+            final long footerOffset = this.write(ByteBuffer.wrap(bytes.toByteArray()));
+            final ByteBuffer trailer = ByteBuffer.allocate(12);
+            trailer.putLong(footerOffset);
+            trailer.putInt(ColumnarFile.MAGIC);
+            trailer.flip();
+            this.write(trailer);
+        } finally {
+            this.channel.close();
+        }
+        for (final Table table : this.tables) {
+            LOGGER.info("wrote " + table.totalRows + " rows in " + table.chunks.size() + " chunks to table "
+                    + table.name + " of " + this.file.getPath());
+        }
+    }
+
+    /**
+     * Write a buffer at the end of the file, aligned to 8 bytes so it can be read as any primitive type.
+     *
+     * @param buffer the buffer
+     * @return the offset of the buffer in the file
+     * @throws IOException if there is an error writing the buffer
+     */
+    private long write(final ByteBuffer buffer) throws IOException {
+        long position = this.channel.position();
+        final int padding = (int) ((8 - position % 8) % 8);
+        if (padding > 0) {
+            this.channel.write(ByteBuffer.allocate(padding));
+            position += padding;
+        }
+        while (buffer.hasRemaining()) {
+            this.channel.write(buffer);
+        }
+        return position;
+    }
+}
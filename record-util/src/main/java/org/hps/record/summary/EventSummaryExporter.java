@@ -0,0 +1,302 @@
+package org.hps.record.summary;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+import org.hps.record.epics.EpicsData;
+import org.hps.record.evio.EvioEventConstants;
+import org.hps.record.evio.EvioEventUtilities;
+import org.hps.record.evio.EvioFileUtilities;
+import org.hps.record.scalers.ScalerData;
+import org.hps.record.triggerbank.AbstractIntData.IntBankDefinition;
+import org.hps.record.triggerbank.TIData;
+import org.jlab.coda.jevio.BaseStructure;
+import org.jlab.coda.jevio.EvioEvent;
+import org.jlab.coda.jevio.EvioException;
+import org.jlab.coda.jevio.EvioReader;
+
+/**
+ * Extract per-event trigger information, scalers and EPICS values from EVIO files into a {@link ColumnarFile}.
+ * <p>
+ * The output has three tables:
+ * <ul>
+ * <li><b>events</b> - one row per physics event with the event number, the event tag, the Unix timestamp from the
+ * head bank, the TI trigger time in ns, the first TI bank word with the TI trigger bits and the 2019 TS trigger bits
+ * word</li>
+ * <li><b>scalers</b> - one row per scaler bank with the event number, timestamp and the {@link ScalerData#ARRAY_SIZE}
+ * scaler values</li>
+ * <li><b>epics</b> - one row per EPICS variable with the number of the last physics event, the EPICS timestamp, the
+ * index of the variable name in the string dictionary and the value</li>
+ * </ul>
+ * Values which are missing from an event, such as the trigger time of an event without a TI bank, are -1.
+ */
+public final class EventSummaryExporter {
+
+    /**
+     * Initialize the logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(EventSummaryExporter.class.getPackage().getName());
+
+    /**
+     * Location of the TI bank, which is the TS bank in 2019 data.
+     */
+    private static final IntBankDefinition TI_BANK = new IntBankDefinition(TIData.class, new int[] {
+            EvioEventConstants.TS_RocID, TIData.BANK_TAG});
+
+    /**
+     * Index of the trigger bits word in the 2019 TS bank.
+     */
+    private static final int TS_TRIGGER_BITS_WORD = 4;
+
+    /**
+     * Define command line options.
+     */
+    private static Options OPTIONS = new Options();
+    static {
+        OPTIONS.addOption("o", "output-file", true, "output summary file (required)");
+        OPTIONS.addOption("e", "evio-list", true, "text file with EVIO files to process");
+        OPTIONS.addOption("c", "chunk-rows", true, "number of rows in each chunk of the output");
+        OPTIONS.addOption("n", "max-events", true, "max number of events to read");
+        OPTIONS.addOption("L", "log-level", true, "set log level (Java conventions)");
+    }
+
+    /**
+     * The output writer.
+     */
+    private final ColumnarFileWriter writer;
+
+    private final ColumnarFileWriter.Table events;
+    private final int eventNumberColumn;
+    private final int eventTagColumn;
+    private final int eventTimestampColumn;
+    private final int triggerTimeColumn;
+    private final int tiTriggerWordColumn;
+    private final int tsTriggerBitsColumn;
+
+    private final ColumnarFileWriter.Table scalers;
+    private final int scalerEventNumberColumn;
+    private final int scalerTimestampColumn;
+    private final int firstScalerColumn;
+
+    private final ColumnarFileWriter.Table epics;
+    private final int epicsEventNumberColumn;
+    private final int epicsTimestampColumn;
+    private final int epicsKeyColumn;
+    private final int epicsValueColumn;
+
+    /**
+     * Number of the last physics event.
+     */
+    private int lastEventNumber = -1;
+
+    /**
+     * Create an exporter.
+     *
+     * @param writer the output writer
+     */
+    public EventSummaryExporter(final ColumnarFileWriter writer) {
+        this.writer = writer;
+
+        this.events = writer.addTable("events", new String[] {"event_number", "event_tag", "timestamp",
+                "trigger_time", "ti_trigger_word", "ts_trigger_bits"}, new ColumnType[] {ColumnType.INT,
+                ColumnType.INT, ColumnType.INT, ColumnType.LONG, ColumnType.INT, ColumnType.INT});
+        this.eventNumberColumn = this.events.getColumnIndex("event_number");
+        this.eventTagColumn = this.events.getColumnIndex("event_tag");
+        this.eventTimestampColumn = this.events.getColumnIndex("timestamp");
+        this.triggerTimeColumn = this.events.getColumnIndex("trigger_time");
+        this.tiTriggerWordColumn = this.events.getColumnIndex("ti_trigger_word");
+        this.tsTriggerBitsColumn = this.events.getColumnIndex("ts_trigger_bits");
+
+        final String[] scalerNames = new String[2 + ScalerData.ARRAY_SIZE];
+        final ColumnType[] scalerTypes = new ColumnType[scalerNames.length];
+        scalerNames[0] = "event_number";
+        scalerNames[1] = "timestamp";
+        for (int i = 0; i < ScalerData.ARRAY_SIZE; i++) {
+            scalerNames[2 + i] = String.format("scaler_%02d", i);
+        }
+        Arrays.fill(scalerTypes, ColumnType.INT);
+        this.scalers = writer.addTable("scalers", scalerNames, scalerTypes);
+        this.scalerEventNumberColumn = 0;
+        this.scalerTimestampColumn = 1;
+        this.firstScalerColumn = 2;
+
+        this.epics = writer.addTable("epics", new String[] {"event_number", "timestamp", "key", "value"},
+                new ColumnType[] {ColumnType.INT, ColumnType.INT, ColumnType.INT, ColumnType.DOUBLE});
+        this.epicsEventNumberColumn = this.epics.getColumnIndex("event_number");
+        this.epicsTimestampColumn = this.epics.getColumnIndex("timestamp");
+        this.epicsKeyColumn = this.epics.getColumnIndex("key");
+        this.epicsValueColumn = this.epics.getColumnIndex("value");
+    }
+
+    /**
+     * Add the summary information from an EVIO event.
+     *
+     * @param evioEvent the EVIO event
+     * @throws IOException if there is an error writing the output
+     */
+    public void process(final EvioEvent evioEvent) throws IOException {
+        if (EvioEventUtilities.isPhysicsEvent(evioEvent)) {
+            this.processPhysicsEvent(evioEvent);
+            final ScalerData scalerData = ScalerData.getScalerData(evioEvent);
+            if (scalerData != null) {
+                this.processScalers(scalerData);
+            }
+        } else if (EvioEventUtilities.isEpicsEvent(evioEvent)) {
+            final EpicsData epicsData = EpicsData.getEpicsData(evioEvent);
+            if (epicsData != null) {
+                this.processEpics(epicsData);
+            }
+        }
+    }
+
+    private void processPhysicsEvent(final EvioEvent evioEvent) throws IOException {
+        final int[] eventId = EvioEventUtilities.getEventIdData(evioEvent);
+        this.lastEventNumber = eventId != null ? eventId[0] : -1;
+        final int[] headBank = EvioEventUtilities.getHeadBankData(evioEvent);
+
+        long triggerTime = -1;
+        int tiTriggerWord = -1;
+        int tsTriggerBits = -1;
+        final BaseStructure tiBank = TI_BANK.findBank(evioEvent);
+        if (tiBank != null) {
+            final int[] data = tiBank.getIntData();
+            triggerTime = new TIData(data).getTime();
+            tiTriggerWord = data[0];
+            if (data.length > TS_TRIGGER_BITS_WORD) {
+                tsTriggerBits = data[TS_TRIGGER_BITS_WORD];
+            }
+        }
+
+        this.events.setInt(this.eventNumberColumn, this.lastEventNumber);
+        this.events.setInt(this.eventTagColumn, evioEvent.getHeader().getTag());
+        this.events.setInt(this.eventTimestampColumn, headBank != null ? headBank[3] : -1);
+        this.events.setLong(this.triggerTimeColumn, triggerTime);
+        this.events.setInt(this.tiTriggerWordColumn, tiTriggerWord);
+        this.events.setInt(this.tsTriggerBitsColumn, tsTriggerBits);
+        this.events.endRow();
+    }
+
+    /**
+     * Add a row for a scaler bank. The columns of the scalers which are missing from a short bank are -1.
+     *
+     * @param scalerData the scaler data
+     * @throws IOException if there is an error writing the output
+     */
+    void processScalers(final ScalerData scalerData) throws IOException {
+        this.scalers.setInt(this.scalerEventNumberColumn, scalerData.getEventId());
+        this.scalers.setInt(this.scalerTimestampColumn, scalerData.getTimestamp());
+        final int n = scalerData.size();
+        for (int i = 0; i < ScalerData.ARRAY_SIZE; i++) {
+            this.scalers.setInt(this.firstScalerColumn + i, i < n ? scalerData.getValue(i) : -1);
+        }
+        this.scalers.endRow();
+    }
+
+    private void processEpics(final EpicsData epicsData) throws IOException {
+        final int timestamp = epicsData.getEpicsHeader() != null ? epicsData.getEpicsHeader().getTimestamp() : -1;
+        for (final String key : epicsData.getKeys()) {
+            this.epics.setInt(this.epicsEventNumberColumn, this.lastEventNumber);
+            this.epics.setInt(this.epicsTimestampColumn, timestamp);
+            this.epics.setInt(this.epicsKeyColumn, this.writer.getStringIndex(key));
+            this.epics.setDouble(this.epicsValueColumn, epicsData.getValue(key));
+            this.epics.endRow();
+        }
+    }
+
+    /**
+     * Run the export from the command line.
+     *
+     * @param args the command line arguments (parsed using Apache CLI)
+     */
+    public static void main(final String[] args) {
+
+        final PosixParser parser = new PosixParser();
+        CommandLine commandLine = null;
+        try {
+            commandLine = parser.parse(OPTIONS, args);
+        } catch (final ParseException e) {
+            throw new RuntimeException(e);
+        }
+
+        if (commandLine.hasOption("L")) {
+            final Level newLevel = Level.parse(commandLine.getOptionValue("L"));
+            LOGGER.config("setting new log level to " + newLevel);
+            LOGGER.setLevel(newLevel);
+        }
+
+        if (!commandLine.hasOption("o")) {
+            throw new RuntimeException("missing -o argument");
+        }
+        final File outputFile = new File(commandLine.getOptionValue("o"));
+        if (outputFile.exists()) {
+            throw new RuntimeException("output file already exists: " + outputFile.getPath());
+        }
+
+        final List<File> evioFiles = new ArrayList<File>();
+        for (final String arg : commandLine.getArgs()) {
+            evioFiles.add(new File(arg));
+        }
+        if (commandLine.hasOption("e")) {
+            try {
+                for (final String line : Files.readAllLines(new File(commandLine.getOptionValue("e")).toPath(),
+                        Charset.defaultCharset())) {
+                    if (!line.trim().isEmpty()) {
+                        evioFiles.add(new File(line.trim()));
+                    }
+                }
+            } catch (final IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        if (evioFiles.isEmpty()) {
+            throw new RuntimeException("no EVIO files were provided");
+        }
+
+        final int chunkRows = commandLine.hasOption("c") ? Integer.parseInt(commandLine.getOptionValue("c"))
+                : ColumnarFileWriter.DEFAULT_CHUNK_ROWS;
+        final long maxEvents = commandLine.hasOption("n") ? Long.parseLong(commandLine.getOptionValue("n"))
+                : Long.MAX_VALUE;
+
+        try {
+            final ColumnarFileWriter writer = new ColumnarFileWriter(outputFile, chunkRows);
+            try {
+                final EventSummaryExporter exporter = new EventSummaryExporter(writer);
+                long nEventsRead = 0;
+                fileLoop: for (final File evioFile : evioFiles) {
+                    final EvioReader reader = EvioFileUtilities.open(evioFile, true);
+                    try {
+                        EvioEvent evioEvent = null;
+                        while ((evioEvent = reader.parseNextEvent()) != null) {
+                            if (nEventsRead >= maxEvents) {
+                                LOGGER.info("max events " + maxEvents + " was reached");
+                                break fileLoop;
+                            }
+                            exporter.process(evioEvent);
+                            ++nEventsRead;
+                        }
+                    } finally {
+                        reader.close();
+                    }
+                }
+                LOGGER.info("read " + nEventsRead + " events");
+            } finally {
+                writer.close();
+            }
+        } catch (IOException | EvioException e) {
+            throw new RuntimeException(e);
+        }
+
+        LOGGER.info("Done!");
+    }
+}
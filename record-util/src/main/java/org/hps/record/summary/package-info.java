@@ -0,0 +1,4 @@
+/**
+ * Columnar event summary files with per-event trigger, scaler and EPICS information extracted from EVIO.
+ */
+package org.hps.record.summary;
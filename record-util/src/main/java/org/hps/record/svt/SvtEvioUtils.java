@@ -147,7 +147,17 @@ public class SvtEvioUtils {
      *  @return A channel number in the range 0-127
      */
     public static int getChannelNumber(int[] data) {
-        return (data[ENG_RUN_SAMPLE_HEADER_INDEX] >>> 16) & ENG_RUN_CHANNEL_MASK;
+        return getChannelNumberFromMultisampleTail(data[ENG_RUN_SAMPLE_HEADER_INDEX]);
+    }
+
+    /**
+     *  Extract and return the channel number from the multisample tail.
+     * 
+     *  @param multisampleTail : tail word of a multisample
+     *  @return A channel number in the range 0-127
+     */
+    public static int getChannelNumberFromMultisampleTail(int multisampleTail) {
+        return (multisampleTail >>> 16) & ENG_RUN_CHANNEL_MASK;
     }
    
     /**
@@ -158,12 +168,23 @@ public class SvtEvioUtils {
      *  @throws RuntimeException if the physical channel number is out of range
      */
     public static int getPhysicalChannelNumber(int[] data) {
+        return getPhysicalChannelNumberFromMultisampleTail(getMultisampleTailWord(data));
+    }
+
+    /**
+     *  Extract the physical channel number from the multisample tail.
+     *  
+     *  @param multisampleTail : tail word of a multisample
+     *  @return A channel number in the range 0-639
+     *  @throws RuntimeException if the physical channel number is out of range
+     */
+    public static int getPhysicalChannelNumberFromMultisampleTail(int multisampleTail) {
 
         // Extract the channel number from the data
-        int channel = SvtEvioUtils.getChannelNumber(data);
+        int channel = SvtEvioUtils.getChannelNumberFromMultisampleTail(multisampleTail);
         
         // Extract the APV ID from the data
-        int apv = SvtEvioUtils.getApvFromMultiSample(data);
+        int apv = SvtEvioUtils.getApvFromMultisampleTail(multisampleTail);
     
         // Get the physical channel number
         int physicalChannel = (APV25_PER_HYBRID - apv - 1) * CHANNELS_PER_APV25 + channel;
@@ -394,6 +415,24 @@ public class SvtEvioUtils {
         }
         return samples;
     }
+
+    /**
+     *  Extract and return all SVT samples of a multisample stored at an
+     *  offset in a data block, without copying the multisample first.
+     * 
+     *  @param data : block of data containing the multisample
+     *  @param offset : index of the first word of the multisample
+     *  @return An array containing all SVT Shaper signal samples
+     */
+    public static short[] getSamples(int[] data, int offset) {
+        short[] samples = new short[TOTAL_SAMPLES];
+        for (int word = 0; word < TOTAL_SAMPLES / 2; word++) {
+            int value = data[offset + word];
+            samples[2 * word] = (short) (value & SAMPLE_MASK);
+            samples[2 * word + 1] = (short) ((value >>> 16) & SAMPLE_MASK);
+        }
+        return samples;
+    }
     
     /**
      *  Extract and return all SVT APV buffer addresses as an array 
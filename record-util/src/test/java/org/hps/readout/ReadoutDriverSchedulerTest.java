@@ -0,0 +1,186 @@
+package org.hps.readout;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.hps.readout.util.TriggerTime;
+import org.hps.readout.util.collection.LCIOCollectionFactory;
+import org.lcsim.event.CalorimeterHit;
+import org.lcsim.event.EventHeader;
+
+/**
+ * Class <code>ReadoutDriverSchedulerTest</code> checks the
+ * dependency levels assigned to the drivers run by the {@link
+ * org.hps.readout.ReadoutDriverScheduler ReadoutDriverScheduler},
+ * the detection of drivers which depend on their own output, the
+ * order of the triggers sent within a level, and the selection of
+ * the drivers which are scheduled.
+ */
+public class ReadoutDriverSchedulerTest extends TestCase {
+    /**
+     * Readout driver which produces one collection from any number
+     * of input collections.
+     */
+    private static class TestReadoutDriver extends ReadoutDriver {
+        TestReadoutDriver(String outputCollection, String... inputCollections) {
+            for(String inputCollection : inputCollections) {
+                addDependency(inputCollection);
+            }
+            LCIOCollectionFactory.setCollectionName(outputCollection);
+            LCIOCollectionFactory.setProductionDriver(this);
+            ReadoutDataManager.registerCollection(LCIOCollectionFactory.produceLCIOCollection(CalorimeterHit.class), false);
+        }
+        
+        void dependOn(String collectionName) {
+            addDependency(collectionName);
+        }
+        
+        @Override
+        protected double getTimeDisplacement() {
+            return 0;
+        }
+        
+        @Override
+        protected double getTimeNeededForLocalOutput() {
+            return 0;
+        }
+    }
+    
+    /**
+     * Trigger driver which waits for a given time and then sends a
+     * trigger on every time step.
+     */
+    private static class TestTriggerDriver extends TriggerDriver {
+        private final long delay;
+        
+        TestTriggerDriver(long delay, String inputCollection) {
+            this.delay = delay;
+            addDependency(inputCollection);
+            ReadoutDataManager.registerTrigger(this);
+        }
+        
+        @Override
+        public void process(EventHeader event) {
+            try {
+                Thread.sleep(delay);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sendTrigger();
+        }
+        
+        @Override
+        protected double getTimeDisplacement() {
+            return 0;
+        }
+        
+        @Override
+        protected double getTimeNeededForLocalOutput() {
+            return 0;
+        }
+    }
+    
+    /**
+     * Checks that each driver is placed one level after the latest
+     * level of the scheduled drivers which produce its inputs, and
+     * that drivers keep their registration order within a level.
+     */
+    public void testLevels() {
+        TestReadoutDriver a = new TestReadoutDriver("LevelsA");
+        TestReadoutDriver b = new TestReadoutDriver("LevelsB", "LevelsA");
+        TestReadoutDriver c = new TestReadoutDriver("LevelsC", "LevelsA");
+        TestReadoutDriver d = new TestReadoutDriver("LevelsD", "LevelsB", "LevelsC");
+        TestReadoutDriver e = new TestReadoutDriver("LevelsE");
+        
+        // A driver whose producer is not scheduled does not wait for
+        // it.
+        new TestReadoutDriver("LevelsUnscheduled");
+        TestReadoutDriver f = new TestReadoutDriver("LevelsF", "LevelsUnscheduled");
+        
+        ReadoutDriverScheduler scheduler = new ReadoutDriverScheduler(Arrays.<ReadoutDriver>asList(a, b, c, d, e, f), 2);
+        try {
+            List<List<ReadoutDriver>> levels = scheduler.getLevels();
+            assertEquals(3, levels.size());
+            assertEquals(Arrays.<ReadoutDriver>asList(a, e, f), levels.get(0));
+            assertEquals(Arrays.<ReadoutDriver>asList(b, c), levels.get(1));
+            assertEquals(Arrays.<ReadoutDriver>asList(d), levels.get(2));
+        } finally {
+            scheduler.endOfData();
+        }
+    }
+    
+    /**
+     * Checks that a driver which depends on its own output, through
+     * another driver, is refused.
+     */
+    public void testCycle() {
+        TestReadoutDriver a = new TestReadoutDriver("CycleA");
+        TestReadoutDriver b = new TestReadoutDriver("CycleB", "CycleA");
+        a.dependOn("CycleB");
+        
+        ReadoutDriverScheduler scheduler = new ReadoutDriverScheduler(Arrays.<ReadoutDriver>asList(a, b), 2);
+        try {
+            scheduler.getLevels();
+            fail("A dependency cycle should be refused.");
+        } catch(IllegalStateException ex) {
+            // expected
+        } finally {
+            scheduler.endOfData();
+        }
+    }
+    
+    /**
+     * Checks that the triggers of a level are returned in the order
+     * of the drivers within the level, regardless of the order in
+     * which the drivers finish.
+     */
+    public void testTriggerOrder() {
+        TestReadoutDriver clusters = new TestReadoutDriver("TriggerOrderClusters");
+        TestTriggerDriver slowTrigger = new TestTriggerDriver(200, "TriggerOrderClusters");
+        TestTriggerDriver fastTrigger = new TestTriggerDriver(0, "TriggerOrderClusters");
+        
+        ReadoutDriverScheduler scheduler = new ReadoutDriverScheduler(Arrays.<ReadoutDriver>asList(clusters, slowTrigger, fastTrigger), 2);
+        try {
+            List<List<ReadoutDriver>> levels = scheduler.getLevels();
+            assertEquals(Arrays.<ReadoutDriver>asList(slowTrigger, fastTrigger), levels.get(1));
+            
+            List<TriggerTime> triggers = scheduler.runLevel(levels.get(1), null);
+            assertEquals(2, triggers.size());
+            assertSame(slowTrigger, triggers.get(0).getTriggeringDriver());
+            assertSame(fastTrigger, triggers.get(1).getTriggeringDriver());
+        } finally {
+            scheduler.endOfData();
+        }
+    }
+    
+    /**
+     * Checks that only the named drivers are scheduled, in the order
+     * in which they were registered.
+     */
+    public void testScheduledDrivers() {
+        TestReadoutDriver clusters = new TestReadoutDriver("ScheduledClusters");
+        TestTriggerDriver trigger = new TestTriggerDriver(0, "ScheduledClusters");
+        List<ReadoutDriver> drivers = Arrays.<ReadoutDriver>asList(clusters, trigger);
+        
+        assertEquals(Arrays.<ReadoutDriver>asList(trigger),
+                ReadoutDataManager.getScheduledDrivers(drivers, Arrays.asList("TestTriggerDriver")));
+        assertEquals(drivers,
+                ReadoutDataManager.getScheduledDrivers(drivers, Arrays.asList("TestTriggerDriver", "TestReadoutDriver")));
+        
+        try {
+            ReadoutDataManager.getScheduledDrivers(drivers, Arrays.asList("UndefinedDriver"));
+            fail("A driver which is not defined should be refused.");
+        } catch(IllegalArgumentException ex) {
+            // expected
+        }
+        try {
+            ReadoutDataManager.getScheduledDrivers(drivers, Collections.<String>emptyList());
+            fail("The scheduled drivers must be listed.");
+        } catch(IllegalArgumentException ex) {
+            // expected
+        }
+    }
+}
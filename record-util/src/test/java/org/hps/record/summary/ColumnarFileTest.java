@@ -0,0 +1,128 @@
+package org.hps.record.summary;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+import junit.framework.TestCase;
+
+import org.hps.record.scalers.ScalerData;
+
+/**
+ * Write a {@link ColumnarFile} with the {@link ColumnarFileWriter} and the scaler table of the
+ * {@link EventSummaryExporter} and check that the values, chunks and statistics are read back, including the -1 of
+ * the scalers which are missing from a short scaler bank.
+ */
+public class ColumnarFileTest extends TestCase {
+
+    private File file;
+
+    @Override
+    protected void setUp() throws IOException {
+        this.file = File.createTempFile("ColumnarFileTest", ".col");
+        // The writer only creates new files.
+        this.file.delete();
+    }
+
+    @Override
+    protected void tearDown() {
+        this.file.delete();
+    }
+
+    /**
+     * Round trip a table with every column type and the string dictionary, spread over several chunks.
+     *
+     * @throws IOException if there is an error writing or reading the file
+     */
+    public void testRoundTrip() throws IOException {
+        final ColumnarFileWriter writer = new ColumnarFileWriter(this.file, 2);
+        final ColumnarFileWriter.Table table = writer.addTable("values", new String[] {"i", "l", "d"},
+                new ColumnType[] {ColumnType.INT, ColumnType.LONG, ColumnType.DOUBLE});
+        for (int row = 0; row < 5; row++) {
+            table.setInt(0, row - 2);
+            table.setLong(1, (long) row << 40);
+            table.setDouble(2, row * 0.5);
+            table.endRow();
+        }
+        assertEquals(0, writer.getStringIndex("first"));
+        assertEquals(1, writer.getStringIndex("second"));
+        assertEquals(0, writer.getStringIndex("first"));
+        writer.close();
+
+        final ColumnarFile columnarFile = new ColumnarFile(this.file);
+        try {
+            assertEquals("first", columnarFile.getStrings().get(0));
+            assertEquals("second", columnarFile.getStrings().get(1));
+            final ColumnarFile.Table values = columnarFile.getTable("values");
+            assertEquals(3, values.getColumnCount());
+            assertEquals(ColumnType.LONG, values.getColumnType(values.getColumnIndex("l")));
+            assertEquals(5, values.getRowCount());
+            assertEquals(3, values.getChunkCount());
+            assertEquals(1, values.getChunkRows(2));
+            int row = 0;
+            for (int chunk = 0; chunk < values.getChunkCount(); chunk++) {
+                final IntBuffer ints = values.mapInt(0, chunk);
+                final LongBuffer longs = values.mapLong(1, chunk);
+                final DoubleBuffer doubles = values.mapDouble(2, chunk);
+                assertEquals(values.getChunkRows(chunk), ints.remaining());
+                assertEquals(row - 2, values.getMin(0, chunk));
+                for (int i = 0; i < values.getChunkRows(chunk); i++, row++) {
+                    assertEquals(row - 2, ints.get(i));
+                    assertEquals((long) row << 40, longs.get(i));
+                    assertEquals(row * 0.5, doubles.get(i), 0.);
+                }
+            }
+            assertEquals(5, row);
+            assertEquals(1.5, values.getMaxDouble(2, 1), 0.);
+        } finally {
+            columnarFile.close();
+        }
+    }
+
+    /**
+     * Export a short scaler bank between two full ones and check that its missing scalers are -1.
+     *
+     * @throws IOException if there is an error writing or reading the file
+     */
+    public void testShortScalerBank() throws IOException {
+        final int[] full = new int[ScalerData.ARRAY_SIZE];
+        for (int i = 0; i < full.length; i++) {
+            full[i] = i + 1;
+        }
+        final int[] ticks = {100, 200, 300, 400};
+
+        final ColumnarFileWriter writer = new ColumnarFileWriter(this.file, 2);
+        final EventSummaryExporter exporter = new EventSummaryExporter(writer);
+        exporter.processScalers(new ScalerData(full, 1000, 1550000000));
+        exporter.processScalers(new ScalerData(ticks, 2000, 1550000010));
+        exporter.processScalers(new ScalerData(full, 3000, 1550000020));
+        writer.close();
+
+        final ColumnarFile columnarFile = new ColumnarFile(this.file);
+        try {
+            final ColumnarFile.Table scalers = columnarFile.getTable("scalers");
+            assertEquals(2 + ScalerData.ARRAY_SIZE, scalers.getColumnCount());
+            assertEquals(3, scalers.getRowCount());
+            assertEquals(2, scalers.getChunkCount());
+
+            final IntBuffer eventNumbers = scalers.mapInt(scalers.getColumnIndex("event_number"), 0);
+            assertEquals(1000, eventNumbers.get(0));
+            assertEquals(2000, eventNumbers.get(1));
+            assertEquals(1550000010, scalers.mapInt(scalers.getColumnIndex("timestamp"), 0).get(1));
+
+            for (int i = 0; i < ScalerData.ARRAY_SIZE; i++) {
+                final int column = scalers.getColumnIndex(String.format("scaler_%02d", i));
+                final IntBuffer first = scalers.mapInt(column, 0);
+                assertEquals(i + 1, first.get(0));
+                assertEquals("Scaler " + i + " of the short bank", i < ticks.length ? ticks[i] : -1, first.get(1));
+                assertEquals(i + 1, scalers.mapInt(column, 1).get(0));
+            }
+            assertEquals(-1, scalers.getMin(scalers.getColumnIndex("scaler_71"), 0));
+            assertEquals(72, scalers.getMax(scalers.getColumnIndex("scaler_71"), 0));
+        } finally {
+            columnarFile.close();
+        }
+    }
+}
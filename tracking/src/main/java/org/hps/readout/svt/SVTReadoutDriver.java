@@ -35,7 +35,8 @@ import org.hps.readout.util.collection.LCIOCollection;
 import org.hps.readout.util.collection.LCIOCollectionFactory;
 import org.hps.readout.util.collection.TriggeredLCIOData;
 import org.hps.recon.tracking.PulseShape;
-import org.hps.util.RandomGaussian;
+import org.hps.util.GaussianStream;
+import org.hps.util.RandomStreams;
 
 /**
  * SVT readout simulation.
@@ -51,6 +52,10 @@ public class SVTReadoutDriver extends ReadoutDriver {
     private SiSensorSim siSimulation = new CDFSiSensorSim();
     private Map<SiSensor, PriorityQueue<StripHit>[]> hitMap = new HashMap<SiSensor, PriorityQueue<StripHit>[]>();
     private List<HpsSiSensor> sensors = null;
+    private Map<SiSensor, Long> sensorNoiseKeys = new HashMap<SiSensor, Long>();
+    private final long driverNoiseKey = RandomStreams.getKey(SVTReadoutDriver.class.getName());
+    private final double[] noiseSamples = new double[6];
+    private int currentRun = 0;
     
     // readout period time offset in ns
     private double readoutOffset = 0.0;
@@ -227,6 +232,12 @@ public class SVTReadoutDriver extends ReadoutDriver {
         // Get the collection of all silicon sensors from the SVT.
         sensors = detector.getSubdetector(SVT_SUBDETECTOR_NAME).getDetectorElement().findDescendants(HpsSiSensor.class);
         
+        // Store the noise stream key of each sensor.
+        sensorNoiseKeys.clear();
+        for(HpsSiSensor sensor : sensors) {
+            sensorNoiseKeys.put(sensor, RandomStreams.getKey(sensor.getName()));
+        }
+        
         // If pile-up simulation is disabled, instantiate all
         // possible processing queues. For the pile-up simulation,
         // these are generated as needed.
@@ -251,6 +262,7 @@ public class SVTReadoutDriver extends ReadoutDriver {
     public void process(EventHeader event) {
 
         super.process(event);
+        currentRun = event.getRunNumber();
         
         // Generate the truth hits.
         List<StripHit> stripHits = doSiSimulation();
@@ -332,7 +344,7 @@ public class SVTReadoutDriver extends ReadoutDriver {
                 
                 // If noise should be added, do so.
                 if(addNoise) {
-                    addNoise(sensor, stripHit.channel, signal);
+                    addNoise(sensor, stripHit.channel, signal, event.getEventNumber());
                 }
                 
                 // Emulate the pulse response and add it to the
@@ -473,16 +485,23 @@ public class SVTReadoutDriver extends ReadoutDriver {
     
     /**
      * Adds a random Gaussian noise signature to the specified signal
-     * buffer based on the sensor and channel parameters.
+     * buffer based on the sensor and channel parameters. The noise
+     * is drawn from a random stream keyed by the run, readout event,
+     * sensor, and channel, so it is reproducible for a given random
+     * seed and does not depend on the order in which channels are
+     * read out.
      * @param sensor - The sensor on which the signal buffer occurs.
      * @param channel - The channel on which the signal buffer
      * occurs.
      * @param signal - The signal buffer. This must be an array of
      * size six.
+     * @param eventKey - A key identifying the readout event.
      */
-    private void addNoise(SiSensor sensor, int channel, double[] signal) {
+    private void addNoise(SiSensor sensor, int channel, double[] signal, long eventKey) {
+        GaussianStream noiseStream = RandomStreams.getGaussianStream(driverNoiseKey, currentRun, eventKey, sensorNoiseKeys.get(sensor), channel);
+        noiseStream.nextGaussians(noiseSamples, 0, 6, 0, 1);
         for(int sampleN = 0; sampleN < 6; sampleN++) {
-            signal[sampleN] += RandomGaussian.getGaussian(0, ((HpsSiSensor) sensor).getNoise(channel, sampleN));
+            signal[sampleN] += noiseSamples[sampleN] * ((HpsSiSensor) sensor).getNoise(channel, sampleN);
         }
     }
     
@@ -628,7 +647,7 @@ public class SVTReadoutDriver extends ReadoutDriver {
                 
                 // If noise should be added, do so.
                 if(addNoise) {
-                    addNoise(sensor, conditionsChannel, signal);
+                    addNoise(sensor, conditionsChannel, signal, Double.doubleToLongBits(triggerTime));
                 }
                 
                 // Create a list to store truth SVT hits.
@@ -0,0 +1,118 @@
+package org.hps.util;
+
+import java.util.SplittableRandom;
+
+/**
+ * A stream of Gaussian distributed random numbers backed by a
+ * {@link java.util.SplittableRandom SplittableRandom}. Streams are
+ * not thread-safe; each thread should use its own stream, either
+ * obtained from {@link RandomStreams} or created with {@link #split()}.
+ * <p>
+ * Numbers are generated in pairs with the Marsaglia polar method, so
+ * filling an array in a single call costs roughly one logarithm and
+ * one square root for every two values.
+ */
+public final class GaussianStream {
+
+    private final SplittableRandom random;
+
+    private double spare;
+    private boolean hasSpare = false;
+
+    /**
+     * Create a stream from a seed. Streams created with the same seed
+     * produce the same sequence of numbers.
+     *
+     * @param seed The seed of the stream
+     */
+    public GaussianStream(long seed) {
+        this(new SplittableRandom(seed));
+    }
+
+    private GaussianStream(SplittableRandom random) {
+        this.random = random;
+    }
+
+    /**
+     * Generate a Gaussian distributed number with mean 0 and standard
+     * deviation 1.
+     *
+     * @return Gaussian distributed number
+     */
+    public double nextGaussian() {
+        if (hasSpare) {
+            hasSpare = false;
+            return spare;
+        }
+        double u, v, s;
+        do {
+            u = 2.0 * random.nextDouble() - 1.0;
+            v = 2.0 * random.nextDouble() - 1.0;
+            s = u * u + v * v;
+        } while (s >= 1.0 || s == 0.0);
+        double scale = Math.sqrt(-2.0 * Math.log(s) / s);
+        spare = v * scale;
+        hasSpare = true;
+        return u * scale;
+    }
+
+    /**
+     * Generate a Gaussian distributed number with given mean and standard
+     * deviation.
+     *
+     * @param mean : Mean of the distribution
+     * @param sigma : Standard deviation of the distribution
+     * @return Gaussian distributed number
+     */
+    public double nextGaussian(double mean, double sigma) {
+        return mean + nextGaussian() * sigma;
+    }
+
+    /**
+     * Fill part of an array with Gaussian distributed numbers with given
+     * mean and standard deviation.
+     *
+     * @param values : The array to fill
+     * @param offset : The index of the first value to fill
+     * @param length : The number of values to fill
+     * @param mean : Mean of the distribution
+     * @param sigma : Standard deviation of the distribution
+     */
+    public void nextGaussians(double[] values, int offset, int length, double mean, double sigma) {
+        if (offset < 0 || length < 0 || offset + length > values.length) {
+            throw new ArrayIndexOutOfBoundsException("Range " + offset + " + " + length + " is invalid for array length " + values.length + ".");
+        }
+        int i = offset;
+        int end = offset + length;
+        if (hasSpare && i < end) {
+            hasSpare = false;
+            values[i++] = mean + spare * sigma;
+        }
+        while (i < end) {
+            double u, v, s;
+            do {
+                u = 2.0 * random.nextDouble() - 1.0;
+                v = 2.0 * random.nextDouble() - 1.0;
+                s = u * u + v * v;
+            } while (s >= 1.0 || s == 0.0);
+            double scale = Math.sqrt(-2.0 * Math.log(s) / s);
+            values[i++] = mean + u * scale * sigma;
+            if (i < end) {
+                values[i++] = mean + v * scale * sigma;
+            } else {
+                spare = v * scale;
+                hasSpare = true;
+            }
+        }
+    }
+
+    /**
+     * Split off a new stream which is statistically independent of this
+     * one. The new stream may be handed to another thread.
+     *
+     * @return The new stream
+     */
+    public GaussianStream split() {
+        return new GaussianStream(random.split());
+    }
+}
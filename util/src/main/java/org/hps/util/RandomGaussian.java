@@ -2,6 +2,13 @@ package org.hps.util;
 
 import java.util.Random;
 
+/**
+ * Generates Gaussian distributed numbers from a single shared generator.
+ * The generator is seeded from {@link RandomStreams}, so results are
+ * reproducible when the job seed is set, but code that generates many
+ * numbers or runs on several threads should use its own
+ * {@link GaussianStream} instead.
+ */
 public class RandomGaussian {
 
     private static Random randNumberGenerator;
@@ -19,9 +26,9 @@ public class RandomGaussian {
      * @param sigma : Standard deviation of the distribution
      * @return Gaussian distributed number
      */
-    public static double getGaussian(double mean, double sigma) {
+    public static synchronized double getGaussian(double mean, double sigma) {
         if (randNumberGenerator == null)
-            randNumberGenerator = new Random();
+            randNumberGenerator = new Random(RandomStreams.getStreamSeed(RandomStreams.getKey(RandomGaussian.class.getName())));
         return mean + randNumberGenerator.nextGaussian() * sigma;
     }
 }
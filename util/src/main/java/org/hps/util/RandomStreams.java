@@ -0,0 +1,112 @@
+package org.hps.util;
+
+import java.util.logging.Logger;
+
+/**
+ * Provides reproducible random number streams for simulation noise.
+ * <p>
+ * Every stream is derived from a single job seed and a list of keys, such
+ * as the run number, event number and channel. The same seed and keys
+ * always give the same stream, independent of the order in which streams
+ * are requested or of the thread requesting them, so noise may be
+ * generated for channels in parallel without sharing a generator.
+ * <p>
+ * If no seed is set, one is chosen at random when the first stream is
+ * requested and logged so that the job can be repeated.
+ */
+public final class RandomStreams {
+
+    private static final Logger LOGGER = Logger.getLogger(RandomStreams.class.getPackage().getName());
+
+    /**
+     * The golden ratio increment used by SplitMix64.
+     */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private static volatile Long seed = null;
+
+    /**
+     * Class shouldn't be instantiated by anyone
+     */
+    private RandomStreams() {
+    }
+
+    /**
+     * Set the job seed from which all streams are derived. This should be
+     * called before any stream is requested.
+     *
+     * @param jobSeed The job seed
+     */
+    public static synchronized void setSeed(long jobSeed) {
+        seed = jobSeed;
+        LOGGER.config("Random stream seed set to " + jobSeed + ".");
+    }
+
+    /**
+     * Get the job seed, choosing one at random if none has been set.
+     *
+     * @return The job seed
+     */
+    public static long getSeed() {
+        Long value = seed;
+        if (value == null) {
+            synchronized (RandomStreams.class) {
+                if (seed == null) {
+                    seed = mix(System.nanoTime() ^ Double.doubleToLongBits(Math.random()));
+                    LOGGER.info("No random stream seed was set; using seed " + seed + ".");
+                }
+                value = seed;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Get the seed of the stream identified by the given keys.
+     *
+     * @param keys The keys identifying the stream
+     * @return The stream seed
+     */
+    public static long getStreamSeed(long... keys) {
+        long hash = mix(getSeed());
+        for (long key : keys) {
+            hash = mix(hash ^ mix(key + GOLDEN_GAMMA));
+        }
+        return hash;
+    }
+
+    /**
+     * Get the Gaussian stream identified by the given keys. A new stream
+     * is returned on each call, starting from the beginning of the
+     * sequence.
+     *
+     * @param keys The keys identifying the stream
+     * @return The stream
+     */
+    public static GaussianStream getGaussianStream(long... keys) {
+        return new GaussianStream(getStreamSeed(keys));
+    }
+
+    /**
+     * Convert a name, such as a collection or sensor name, to a stream key.
+     *
+     * @param name The name
+     * @return The stream key
+     */
+    public static long getKey(String name) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            hash = (hash ^ name.charAt(i)) * 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * The SplitMix64 finalizer.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,67 @@
+package org.hps.util;
+
+import junit.framework.TestCase;
+
+/**
+ * Test of the numbers generated by {@link GaussianStream}.
+ */
+public class GaussianStreamTest extends TestCase {
+
+    /**
+     * Test that two streams created with the same seed produce the same numbers.
+     */
+    public void testSameSeed() {
+        final GaussianStream first = new GaussianStream(12345L);
+        final GaussianStream second = new GaussianStream(12345L);
+        for (int i = 0; i < 101; i++) {
+            assertEquals(first.nextGaussian(), second.nextGaussian(), 0.0);
+        }
+    }
+
+    /**
+     * Test that filling an array gives the same numbers as repeated single calls, both when the array starts with the
+     * spare value left by an odd number of earlier calls and when it leaves a spare value for the next call.
+     */
+    public void testArrayMatchesSingleValues() {
+        final GaussianStream single = new GaussianStream(987L);
+        final GaussianStream array = new GaussianStream(987L);
+        final double mean = 2.0;
+        final double sigma = 0.5;
+
+        // Leave a spare value in both streams.
+        assertEquals(single.nextGaussian(mean, sigma), array.nextGaussian(mean, sigma), 0.0);
+
+        // Consume the spare value first and leave a new one, with an odd length.
+        final double[] values = new double[9];
+        array.nextGaussians(values, 1, 7, mean, sigma);
+        assertEquals(0.0, values[0], 0.0);
+        for (int i = 1; i < 8; i++) {
+            assertEquals(single.nextGaussian(mean, sigma), values[i], 0.0);
+        }
+        assertEquals(0.0, values[8], 0.0);
+
+        // The spare value left by the array should be returned by the next single call.
+        assertEquals(single.nextGaussian(mean, sigma), array.nextGaussian(mean, sigma), 0.0);
+
+        // An even length without a spare value.
+        assertEquals(single.nextGaussian(mean, sigma), array.nextGaussian(mean, sigma), 0.0);
+        array.nextGaussians(values, 0, 6, mean, sigma);
+        for (int i = 0; i < 6; i++) {
+            assertEquals(single.nextGaussian(mean, sigma), values[i], 0.0);
+        }
+        assertEquals(single.nextGaussian(), array.nextGaussian(), 0.0);
+    }
+
+    /**
+     * Test that an invalid range is refused.
+     */
+    public void testInvalidRange() {
+        final GaussianStream stream = new GaussianStream(1L);
+        try {
+            stream.nextGaussians(new double[4], 2, 3, 0.0, 1.0);
+            fail("A range past the end of the array should be refused.");
+        } catch (final ArrayIndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+}
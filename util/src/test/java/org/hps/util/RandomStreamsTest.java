@@ -0,0 +1,72 @@
+package org.hps.util;
+
+import junit.framework.TestCase;
+
+/**
+ * Test of the streams derived by {@link RandomStreams} from the job seed and stream keys.
+ */
+public class RandomStreamsTest extends TestCase {
+
+    private static final int COUNT = 100;
+
+    private static double[] generate(final GaussianStream stream) {
+        final double[] values = new double[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            values[i] = stream.nextGaussian();
+        }
+        return values;
+    }
+
+    private static boolean isEqual(final double[] first, final double[] second) {
+        for (int i = 0; i < first.length; i++) {
+            if (first[i] != second[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Test that a stream depends only on the job seed and its keys, and not on the other streams requested before it.
+     */
+    public void testFixedSeed() {
+        RandomStreams.setSeed(42L);
+        assertEquals(42L, RandomStreams.getSeed());
+        final long key = RandomStreams.getKey("EcalRawHits");
+        final double[] first = generate(RandomStreams.getGaussianStream(key, 1000, 7));
+        generate(RandomStreams.getGaussianStream(key, 1000, 8));
+        final double[] second = generate(RandomStreams.getGaussianStream(key, 1000, 7));
+        assertTrue("The same seed and keys should give the same stream.", isEqual(first, second));
+        assertEquals(RandomStreams.getStreamSeed(key, 1000, 7), RandomStreams.getStreamSeed(key, 1000, 7));
+
+        RandomStreams.setSeed(43L);
+        final double[] other = generate(RandomStreams.getGaussianStream(key, 1000, 7));
+        assertFalse("A different job seed should give a different stream.", isEqual(first, other));
+    }
+
+    /**
+     * Test that streams with different keys, including the same keys in a different order, are uncorrelated.
+     */
+    public void testIndependentKeys() {
+        RandomStreams.setSeed(42L);
+        final long[][] keys = { { 1000, 0, 0 }, { 1000, 0, 1 }, { 1000, 1, 0 }, { 1001, 0, 0 }, { 0, 1000, 0 },
+                { 1000, 0 } };
+        final double[][] streams = new double[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            streams[i] = generate(RandomStreams.getGaussianStream(keys[i]));
+        }
+        for (int i = 0; i < keys.length; i++) {
+            for (int j = i + 1; j < keys.length; j++) {
+                assertTrue("Streams " + i + " and " + j + " should have different seeds.",
+                        RandomStreams.getStreamSeed(keys[i]) != RandomStreams.getStreamSeed(keys[j]));
+                double sum = 0.0;
+                for (int k = 0; k < COUNT; k++) {
+                    sum += streams[i][k] * streams[j][k];
+                }
+                // The correlation of independent streams has a standard deviation of 1 / sqrt(COUNT).
+                assertTrue("Streams " + i + " and " + j + " should be uncorrelated.", Math.abs(sum / COUNT) < 0.5);
+            }
+        }
+        assertTrue(RandomStreams.getKey("Tracker") != RandomStreams.getKey("Ecal"));
+    }
+}